@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2024. Robin Hillyard
+ */
+
+package com.phasmidsoftware.dsaipg.adt.bqs;
+
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.random.RandomGenerator;
+
+/**
+ * Class to implement an Iterator of int over the first n elements of an int array, in random order.
+ * This is the primitive counterpart of UnorderedIterator: it shuffles the array in place as it goes
+ * (each call to nextInt swaps the chosen element to the end of the part still to be visited),
+ * so it allocates nothing, and it may be reset to iterate over another array.
+ */
+public class UnorderedIntIterator implements PrimitiveIterator.OfInt {
+
+    /**
+     * Returns {@code true} if the iteration has more elements.
+     *
+     * @return {@code true} if the iteration has more elements
+     */
+    public boolean hasNext() {
+        return remaining > 0;
+    }
+
+    /**
+     * Returns the next element in the iteration.
+     *
+     * @return the next element in the iteration
+     * @throws NoSuchElementException if the iteration has no more elements
+     */
+    public int nextInt() {
+        if (remaining == 0) throw new NoSuchElementException();
+        int i = random.nextInt(remaining--);
+        int result = array[i];
+        array[i] = array[remaining];
+        array[remaining] = result;
+        return result;
+    }
+
+    /**
+     * Method to start a new iteration, reusing this iterator.
+     *
+     * @param array an array of int, which will be permuted (but retains the same elements).
+     * @param n     the number of elements of the array over which to iterate.
+     * @return this.
+     */
+    public UnorderedIntIterator reset(int[] array, int n) {
+        if (n < 0 || n > array.length) throw new IllegalArgumentException("UnorderedIntIterator: invalid length " + n + " for array of length " + array.length);
+        this.array = array;
+        this.remaining = n;
+        return this;
+    }
+
+    /**
+     * Primary constructor.
+     *
+     * @param array  an array of int, which will be permuted (but retains the same elements).
+     * @param n      the number of elements of the array over which to iterate.
+     * @param random an explicit random source.
+     */
+    public UnorderedIntIterator(int[] array, int n, RandomGenerator random) {
+        this.random = random;
+        reset(array, n);
+    }
+
+    /**
+     * Secondary constructor which iterates over the whole array.
+     *
+     * @param array  an array of int, which will be permuted (but retains the same elements).
+     * @param random an explicit random source.
+     */
+    public UnorderedIntIterator(int[] array, RandomGenerator random) {
+        this(array, array.length, random);
+    }
+
+    private final RandomGenerator random;
+    private int[] array;
+    private int remaining;
+}
@@ -99,11 +99,7 @@ public class UnorderedIterator<T> implements Iterator<T> {
     }
 
     private static <X> List<X> copyCollection(Collection<X> collection) {
-        if (collection instanceof ArrayList) {
-            ArrayList<X> result = new ArrayList<>(collection);
-            Collections.copy(result, (ArrayList<X>) collection);
-            return result;
-        } else return new ArrayList<>(collection);
+        return new ArrayList<>(collection);
     }
 
     private final List<T> list;
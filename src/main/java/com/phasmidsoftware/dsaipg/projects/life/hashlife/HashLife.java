@@ -0,0 +1,396 @@
+/*
+ * Copyright (c) 2024. Robin Hillyard
+ */
+
+package com.phasmidsoftware.dsaipg.projects.life.hashlife;
+
+import com.phasmidsoftware.dsaipg.projects.life.base.LifeException;
+import com.phasmidsoftware.dsaipg.projects.life.base.Point;
+import com.phasmidsoftware.dsaipg.projects.life.library.Library;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Gosper's HashLife: the Game of Life on an unbounded plane, held as a quadtree of canonical Nodes (see NodeTable)
+ * centred on the origin. The future of each node (its centre, 2^(level - 2) generations on) is memoised on the node,
+ * so a pattern with any regularity in space or time can be advanced by 2^k generations at once, for large k:
+ * unlike Game, which advances one generation at a time and so stops at Game.MaxGenerations.
+ * <p>
+ * The table of nodes is collected (see NodeTable.collect) before each step once it holds more than maxNodes nodes,
+ * so that only the nodes of the current pattern, and the results memoised on them, outlive a step.
+ * The coordinates are those of Point, with y increasing from north to south.
+ */
+public class HashLife {
+
+    /**
+     * The default number of nodes above which the node table is collected.
+     */
+    public static final int DEFAULT_MAX_NODES = 1 << 20;
+
+    // The greatest level of the root (so that the coordinates of every cell fit in a long).
+    private static final int MAX_LEVEL = 62;
+    // The level of the root of an empty universe.
+    private static final int MIN_LEVEL = 3;
+
+    private final NodeTable table;
+    private final int maxNodes;
+    private Node root;
+    private long generation;
+
+    public HashLife() {
+        this(DEFAULT_MAX_NODES);
+    }
+
+    /**
+     * @param maxNodes the number of nodes above which the node table is collected before the next step.
+     */
+    public HashLife(int maxNodes) {
+        if (maxNodes < 1) throw new IllegalArgumentException("maxNodes must be positive: " + maxNodes);
+        this.maxNodes = maxNodes;
+        this.table = new NodeTable(1 << 10);
+        this.root = table.empty(MIN_LEVEL);
+    }
+
+    /**
+     * Factory method to create a HashLife at generation 0 from the given string.
+     *
+     * @param pattern a String of points, typically from the Library.
+     * @return a new HashLife.
+     */
+    public static HashLife create(String pattern) {
+        if (pattern == null) throw new LifeException("create: was given null string");
+        HashLife result = new HashLife();
+        for (Point point : Point.points(pattern)) result.setAlive(point.getX(), point.getY());
+        return result;
+    }
+
+    /**
+     * Factory method to create a HashLife at generation 0 from a pattern of the Library.
+     *
+     * @param name the name of the pattern (in any case).
+     * @return a new HashLife.
+     */
+    public static HashLife fromLibrary(String name) {
+        String pattern = Library.get(name);
+        if (pattern == null) throw new LifeException("fromLibrary: no such pattern: " + name);
+        return create(pattern);
+    }
+
+    /**
+     * Method to bring the cell at (x, y) to life.
+     *
+     * @param x the x coordinate.
+     * @param y the y coordinate.
+     */
+    public void setAlive(long x, long y) {
+        while (!contains(root, x, y)) root = expand(root);
+        root = set(root, x, y);
+    }
+
+    /**
+     * @return true if the cell at (x, y) is alive.
+     */
+    public boolean isAlive(long x, long y) {
+        return contains(root, x, y) && get(root, x, y);
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * @return the number of live cells.
+     */
+    public long getPopulation() {
+        return root.population;
+    }
+
+    /**
+     * @return the number of nodes in the node table.
+     */
+    public int getNodeCount() {
+        return table.size();
+    }
+
+    /**
+     * @return the number of times the node table has been collected.
+     */
+    public long getCollections() {
+        return table.getCollections();
+    }
+
+    /**
+     * @return the live cells (whose coordinates must fit in an int).
+     */
+    public List<Point> getPoints() {
+        List<Point> result = new ArrayList<>();
+        long half = 1L << root.level - 1;
+        addPoints(root, -half, -half, result);
+        return result;
+    }
+
+    /**
+     * Method to advance by 2^k generations in a single step.
+     *
+     * @param k the binary logarithm of the number of generations.
+     */
+    public void jump(int k) {
+        if (k < 0 || k > MAX_LEVEL - 3) throw new IllegalArgumentException("cannot jump 2^" + k + " generations");
+        if (table.size() > maxNodes) table.collect(root);
+        // The pattern must lie in the central quarter of the root, which must be big enough that nothing can reach
+        // the edge of its central half (the result) in 2^k generations, at one cell per generation.
+        while (root.level < k + 3 || !isCentred(root)) root = expand(root);
+        root = successor(root, k);
+        generation += 1L << k;
+    }
+
+    /**
+     * Method to advance by the given number of generations, jumping by each power of two which makes it up.
+     *
+     * @param generations the number of generations.
+     */
+    public void advance(long generations) {
+        if (generations < 0) throw new IllegalArgumentException("cannot go back in time: " + generations);
+        for (int k = 0; generations != 0; k++, generations >>>= 1)
+            if ((generations & 1) != 0) jump(k);
+    }
+
+    /**
+     * Render the bounding box of the live cells, one row per line, from north to south.
+     *
+     * @return a String of '*' (live) and '.' (dead) characters.
+     */
+    public String render() {
+        List<Point> points = getPoints();
+        if (points.isEmpty()) return "";
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+        for (Point p : points) {
+            minX = Math.min(minX, p.getX());
+            maxX = Math.max(maxX, p.getX());
+            minY = Math.min(minY, p.getY());
+            maxY = Math.max(maxY, p.getY());
+        }
+        StringBuilder result = new StringBuilder();
+        for (int y = minY; y <= maxY; y++) {
+            for (int x = minX; x <= maxX; x++) result.append(isAlive(x, y) ? '*' : '.');
+            result.append('\n');
+        }
+        return result.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "HashLife{generation=" + generation + ", population=" + root.population + ", level=" + root.level + ", nodes=" + table.size() + "}";
+    }
+
+    /**
+     * Method to yield the centre of node (a node of one level less) after 2^j generations, memoising the result.
+     * At the full step (j = level - 2), the node is split into nine overlapping nodes of the level below, each of
+     * which is advanced by half the step; their results are joined into four nodes, which are advanced by the other
+     * half. At a smaller step, the nine are cut down to their centres instead, and only the four are advanced.
+     *
+     * @param node a node of level at least 2.
+     * @param j    the binary logarithm of the number of generations (at most level - 2).
+     * @return the centre of node, 2^j generations on.
+     */
+    private Node successor(Node node, int j) {
+        int level = node.level;
+        if (node.population == 0) return node.nw;
+        boolean full = j == level - 2;
+        if (full && node.result != null) return node.result;
+        if (!full && node.stepResult != null && node.step == j) return node.stepResult;
+        Node result;
+        if (level == 2) result = base(node);
+        else {
+            Node n00 = node.nw, n01 = horizontal(node.nw, node.ne), n02 = node.ne;
+            Node n10 = vertical(node.nw, node.sw), n11 = centre(node), n12 = vertical(node.ne, node.se);
+            Node n20 = node.sw, n21 = horizontal(node.sw, node.se), n22 = node.se;
+            int half = j - 1;
+            if (full) {
+                n00 = successor(n00, half);
+                n01 = successor(n01, half);
+                n02 = successor(n02, half);
+                n10 = successor(n10, half);
+                n11 = successor(n11, half);
+                n12 = successor(n12, half);
+                n20 = successor(n20, half);
+                n21 = successor(n21, half);
+                n22 = successor(n22, half);
+            } else {
+                n00 = centre(n00);
+                n01 = centre(n01);
+                n02 = centre(n02);
+                n10 = centre(n10);
+                n11 = centre(n11);
+                n12 = centre(n12);
+                n20 = centre(n20);
+                n21 = centre(n21);
+                n22 = centre(n22);
+                half = j;
+            }
+            result = table.join(successor(table.join(n00, n01, n10, n11), half), successor(table.join(n01, n02, n11, n12), half),
+                    successor(table.join(n10, n11, n20, n21), half), successor(table.join(n11, n12, n21, n22), half));
+        }
+        if (full) node.result = result;
+        else {
+            node.stepResult = result;
+            node.step = j;
+        }
+        return result;
+    }
+
+    /**
+     * @return the central 2x2 cells of a 4x4 node, one generation on.
+     */
+    private Node base(Node node) {
+        int bits = 0;
+        for (int row = 0; row < 4; row++)
+            for (int col = 0; col < 4; col++)
+                if (cell(node, row, col)) bits |= 1 << row * 4 + col;
+        return table.join(next(bits, 1, 1), next(bits, 1, 2), next(bits, 2, 1), next(bits, 2, 2));
+    }
+
+    /**
+     * @return the cell at (row, col) of the 4x4 cells, one generation on.
+     */
+    private Node next(int bits, int row, int col) {
+        int neighbours = 0;
+        for (int r = row - 1; r <= row + 1; r++)
+            for (int c = col - 1; c <= col + 1; c++)
+                if ((r != row || c != col) && (bits >>> r * 4 + c & 1) != 0) neighbours++;
+        boolean alive = (bits >>> row * 4 + col & 1) != 0;
+        return table.leaf(neighbours == 3 || alive && neighbours == 2);
+    }
+
+    private static boolean cell(Node node, int row, int col) {
+        Node quadrant = row < 2 ? col < 2 ? node.nw : node.ne : col < 2 ? node.sw : node.se;
+        Node leaf = (row & 1) == 0 ? (col & 1) == 0 ? quadrant.nw : quadrant.ne : (col & 1) == 0 ? quadrant.sw : quadrant.se;
+        return leaf.population != 0;
+    }
+
+    /**
+     * @return the central node of the level below.
+     */
+    private Node centre(Node node) {
+        return table.join(node.nw.se, node.ne.sw, node.sw.ne, node.se.nw);
+    }
+
+    /**
+     * @return the node of the same level between west and east.
+     */
+    private Node horizontal(Node west, Node east) {
+        return table.join(west.ne, east.nw, west.se, east.sw);
+    }
+
+    /**
+     * @return the node of the same level between north and south.
+     */
+    private Node vertical(Node north, Node south) {
+        return table.join(north.sw, north.se, south.nw, south.ne);
+    }
+
+    /**
+     * @return true if all the live cells of node lie in its central quarter.
+     */
+    private static boolean isCentred(Node node) {
+        return node.nw.se.se.population + node.ne.sw.sw.population + node.sw.ne.ne.population + node.se.nw.nw.population == node.population;
+    }
+
+    /**
+     * @return a node of the next level, with the given node at its centre.
+     */
+    private Node expand(Node node) {
+        if (node.level >= MAX_LEVEL) throw new LifeException("expand: the pattern has grown too large");
+        Node e = table.empty(node.level - 1);
+        return table.join(table.join(e, e, e, node.nw), table.join(e, e, node.ne, e),
+                table.join(e, node.sw, e, e), table.join(node.se, e, e, e));
+    }
+
+    /**
+     * @return true if (x, y) lies within node, which is centred on the origin.
+     */
+    private static boolean contains(Node node, long x, long y) {
+        long half = 1L << node.level - 1;
+        return x >= -half && x < half && y >= -half && y < half;
+    }
+
+    /**
+     * @return the given node with the cell at (x, y), relative to its centre, alive.
+     */
+    private Node set(Node node, long x, long y) {
+        if (node.level == 1) {
+            Node alive = table.leaf(true);
+            return table.join(x < 0 && y < 0 ? alive : node.nw, x >= 0 && y < 0 ? alive : node.ne,
+                    x < 0 && y >= 0 ? alive : node.sw, x >= 0 && y >= 0 ? alive : node.se);
+        }
+        long q = 1L << node.level - 2;
+        if (y < 0) {
+            if (x < 0) return table.join(set(node.nw, x + q, y + q), node.ne, node.sw, node.se);
+            return table.join(node.nw, set(node.ne, x - q, y + q), node.sw, node.se);
+        }
+        if (x < 0) return table.join(node.nw, node.ne, set(node.sw, x + q, y - q), node.se);
+        return table.join(node.nw, node.ne, node.sw, set(node.se, x - q, y - q));
+    }
+
+    /**
+     * @return true if the cell at (x, y), relative to the centre of node, is alive.
+     */
+    private static boolean get(Node node, long x, long y) {
+        while (node.level > 1 && node.population != 0) {
+            long q = 1L << node.level - 2;
+            if (y < 0) {
+                y += q;
+                if (x < 0) {
+                    x += q;
+                    node = node.nw;
+                } else {
+                    x -= q;
+                    node = node.ne;
+                }
+            } else {
+                y -= q;
+                if (x < 0) {
+                    x += q;
+                    node = node.sw;
+                } else {
+                    x -= q;
+                    node = node.se;
+                }
+            }
+        }
+        if (node.population == 0) return false;
+        Node leaf = y < 0 ? x < 0 ? node.nw : node.ne : x < 0 ? node.sw : node.se;
+        return leaf.population != 0;
+    }
+
+    /**
+     * Add the live cells of node, whose north-west corner is at (x, y), to points.
+     */
+    private static void addPoints(Node node, long x, long y, List<Point> points) {
+        if (node.population == 0) return;
+        if (node.level == 0) {
+            points.add(new Point(Math.toIntExact(x), Math.toIntExact(y)));
+            return;
+        }
+        long half = 1L << node.level - 1;
+        addPoints(node.nw, x, y, points);
+        addPoints(node.ne, x + half, y, points);
+        addPoints(node.sw, x, y + half, points);
+        addPoints(node.se, x + half, y + half, points);
+    }
+
+    public static void main(String[] args) {
+        String patternName = args.length > 0 ? args[0] : "Acorn";
+        long generations = args.length > 1 ? Long.parseLong(args[1]) : 1_000_000_000L;
+        System.out.println("HashLife with starting pattern: " + patternName);
+        HashLife life = fromLibrary(patternName);
+        long start = System.nanoTime();
+        for (long target = Math.min(1, generations); ; target = Math.min(target * 10, generations)) {
+            life.advance(target - life.getGeneration());
+            System.out.printf("generation %,d: population %,d (%,d nodes, %d collections, %.3f s)%n", life.getGeneration(),
+                    life.getPopulation(), life.getNodeCount(), life.getCollections(), (System.nanoTime() - start) / 1e9);
+            if (target == generations) break;
+        }
+    }
+}
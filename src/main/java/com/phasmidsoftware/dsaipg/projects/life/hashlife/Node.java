@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2024. Robin Hillyard
+ */
+
+package com.phasmidsoftware.dsaipg.projects.life.hashlife;
+
+/**
+ * A node of the HashLife quadtree: a square of 2^level by 2^level cells, made of four squares of half the size
+ * (or, at level zero, a single cell).
+ * Nodes are canonical (see NodeTable): two nodes with the same cells are the same node, so that nodes may be
+ * compared by identity and the future of each may be memoised on it.
+ */
+final class Node {
+    final int level;
+    final Node nw;
+    final Node ne;
+    final Node sw;
+    final Node se;
+    final long population;
+    final int hash;
+
+    // The next node in the same bucket of the NodeTable.
+    Node next;
+    // The memoised results of HashLife.successor: the centre of this node after 2^(level - 2) generations;
+    // and the centre after 2^step generations, for the most recent smaller step.
+    Node result;
+    Node stepResult;
+    int step;
+    // Set while the NodeTable is collecting garbage, for the nodes which are still reachable.
+    boolean marked;
+
+    /**
+     * Constructor for a single cell.
+     *
+     * @param alive true if the cell is alive.
+     */
+    Node(boolean alive) {
+        this.level = 0;
+        this.nw = null;
+        this.ne = null;
+        this.sw = null;
+        this.se = null;
+        this.population = alive ? 1 : 0;
+        this.hash = alive ? 1 : 0;
+    }
+
+    /**
+     * Constructor for a node made of four nodes of the same level.
+     */
+    Node(Node nw, Node ne, Node sw, Node se) {
+        this.level = nw.level + 1;
+        this.nw = nw;
+        this.ne = ne;
+        this.sw = sw;
+        this.se = se;
+        this.population = nw.population + ne.population + sw.population + se.population;
+        this.hash = hash(nw, ne, sw, se);
+    }
+
+    /**
+     * @return the hash of the node made of the given four nodes (which depends only on their cells).
+     */
+    static int hash(Node nw, Node ne, Node sw, Node se) {
+        int h = nw.hash;
+        h = h * 1_000_003 ^ ne.hash;
+        h = h * 1_000_003 ^ sw.hash;
+        h = h * 1_000_003 ^ se.hash;
+        return h ^ h >>> 15;
+    }
+
+    @Override
+    public String toString() {
+        return "Node{level=" + level + ", population=" + population + "}";
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2024. Robin Hillyard
+ */
+
+package com.phasmidsoftware.dsaipg.projects.life.hashlife;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The table of canonical Nodes (hash-consing): join yields the one node made of four given nodes, creating it only
+ * if there is none yet.
+ * The table is a chained hash table which grows as needed; collect removes the nodes which can no longer be reached
+ * from a given root, so that the memory used can be kept within bounds between the steps of a HashLife.
+ */
+final class NodeTable {
+    private final Node dead = new Node(false);
+    private final Node alive = new Node(true);
+    // The empty node of each level, which is created on first use.
+    private final List<Node> empties = new ArrayList<>();
+    private Node[] buckets;
+    private int size;
+    private long collections;
+    private long collected;
+
+    /**
+     * @param capacity the number of buckets to begin with (a power of two).
+     */
+    NodeTable(int capacity) {
+        if (capacity < 1 || Integer.bitCount(capacity) != 1) throw new IllegalArgumentException("capacity must be a power of two: " + capacity);
+        this.buckets = new Node[capacity];
+        empties.add(dead);
+    }
+
+    Node leaf(boolean isAlive) {
+        return isAlive ? alive : dead;
+    }
+
+    /**
+     * @return the canonical node made of the given nodes (which must be canonical, and of the same level).
+     */
+    Node join(Node nw, Node ne, Node sw, Node se) {
+        int hash = Node.hash(nw, ne, sw, se);
+        int index = hash & buckets.length - 1;
+        for (Node node = buckets[index]; node != null; node = node.next)
+            if (node.nw == nw && node.ne == ne && node.sw == sw && node.se == se) return node;
+        Node node = new Node(nw, ne, sw, se);
+        node.next = buckets[index];
+        buckets[index] = node;
+        if (++size > buckets.length) resize();
+        return node;
+    }
+
+    /**
+     * @return the canonical node of the given level with no live cells.
+     */
+    Node empty(int level) {
+        while (empties.size() <= level) {
+            Node e = empties.get(empties.size() - 1);
+            empties.add(join(e, e, e, e));
+        }
+        return empties.get(level);
+    }
+
+    /**
+     * @return the number of nodes in the table (not counting the two cells).
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return the number of times that collect has been called.
+     */
+    long getCollections() {
+        return collections;
+    }
+
+    /**
+     * @return the total number of nodes removed by collect.
+     */
+    long getCollected() {
+        return collected;
+    }
+
+    /**
+     * Method to remove every node which cannot be reached from root (or from the empty nodes), and to forget any
+     * memoised result which is such a node. Any other node must no longer be used: were it passed to join,
+     * the nodes made from it would not be canonical.
+     *
+     * @param root the root of the quadtree which is still in use.
+     */
+    void collect(Node root) {
+        mark(root);
+        for (Node e : empties) mark(e);
+        int kept = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            Node survivors = null;
+            for (Node node = buckets[i], next; node != null; node = next) {
+                next = node.next;
+                if (node.marked) {
+                    node.next = survivors;
+                    survivors = node;
+                    kept++;
+                }
+            }
+            buckets[i] = survivors;
+        }
+        for (Node bucket : buckets)
+            for (Node node = bucket; node != null; node = node.next) {
+                if (node.result != null && !node.result.marked) node.result = null;
+                if (node.stepResult != null && !node.stepResult.marked) node.stepResult = null;
+            }
+        for (Node bucket : buckets)
+            for (Node node = bucket; node != null; node = node.next) node.marked = false;
+        dead.marked = false;
+        alive.marked = false;
+        collected += size - kept;
+        size = kept;
+        collections++;
+    }
+
+    private static void mark(Node node) {
+        if (node == null || node.marked) return;
+        node.marked = true;
+        mark(node.nw);
+        mark(node.ne);
+        mark(node.sw);
+        mark(node.se);
+    }
+
+    private void resize() {
+        Node[] old = buckets;
+        buckets = new Node[old.length * 2];
+        for (Node bucket : old)
+            for (Node node = bucket, next; node != null; node = next) {
+                next = node.next;
+                int index = node.hash & buckets.length - 1;
+                node.next = buckets[index];
+                buckets[index] = node;
+            }
+    }
+}
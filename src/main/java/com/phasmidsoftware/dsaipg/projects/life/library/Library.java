@@ -27,6 +27,13 @@ public class Library {
 
     final public static String Glider3 = "0 0, 1 0, 2 0, 2 1, 1 2";
 
+    final public static String RPentomino = "1 0, 2 0, 0 1, 1 1, 1 2";
+
+    final public static String Acorn = "1 0, 3 1, 0 2, 1 2, 4 2, 5 2, 6 2";
+
+    final public static String GosperGliderGun = "24 0, 22 1, 24 1, 12 2, 13 2, 20 2, 21 2, 34 2, 35 2, 11 3, 15 3, 20 3, 21 3, 34 3, 35 3, " +
+            "0 4, 1 4, 10 4, 16 4, 20 4, 21 4, 0 5, 1 5, 10 5, 14 5, 16 5, 17 5, 22 5, 24 5, 10 6, 16 6, 24 6, 11 7, 15 7, 12 8, 13 8";
+
     final public static Map<String, String> map = new HashMap<>();
 
     public static String get(String key) {
@@ -47,5 +54,8 @@ public class Library {
         put("Glider1", Glider1);
         put("Glider2", Glider2);
         put("Glider3", Glider3);
+        put("RPentomino", RPentomino);
+        put("Acorn", Acorn);
+        put("GosperGliderGun", GosperGliderGun);
     }
 }
\ No newline at end of file
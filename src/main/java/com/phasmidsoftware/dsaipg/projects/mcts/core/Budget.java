@@ -0,0 +1,117 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+
+/**
+ * The stopping rule for one search tree: an iteration limit, an optional deadline, optional early stopping
+ * (once the most visited child of the root can no longer be overtaken), interruption of the calling thread,
+ * and an explicit stop.
+ * A budget may be shared by all the threads working on a tree: each iteration must first call tryStart.
+ * It knows nothing of the tree itself, only how far the most visited child of the root leads the next.
+ */
+public class Budget {
+    // Early stopping scans the children of the root, so it is only considered at this interval.
+    private static final int EARLY_STOP_INTERVAL = 64;
+
+    private final IntSupplier lead;
+    private final long iterationLimit;
+    private final long startNanos;
+    private final long deadlineNanos;
+    private final boolean hasDeadline;
+    private final boolean earlyStop;
+    private final Thread caller;
+    private final AtomicLong claimed = new AtomicLong();
+    private final AtomicLong iterations = new AtomicLong();
+    private volatile boolean stopped;
+    private volatile boolean stoppedEarly;
+
+    /**
+     * @param lead           yields the number of visits by which the most visited child of the root leads the next
+     *                       (used for early stopping).
+     * @param iterationLimit the maximum number of iterations (over all threads).
+     * @param startNanos     the value of System.nanoTime() when the search began.
+     * @param budgetMillis   the wall-clock budget in milliseconds (zero for none).
+     * @param earlyStop      true if the search should stop once the best child cannot be overtaken.
+     * @param caller         the thread which is waiting for the result (its interruption stops the search).
+     */
+    public Budget(IntSupplier lead, long iterationLimit, long startNanos, long budgetMillis, boolean earlyStop, Thread caller) {
+        this.lead = lead;
+        this.iterationLimit = iterationLimit;
+        this.startNanos = startNanos;
+        this.hasDeadline = budgetMillis > 0;
+        this.deadlineNanos = startNanos + budgetMillis * 1_000_000;
+        this.earlyStop = earlyStop;
+        this.caller = caller;
+    }
+
+    /**
+     * Method to ask whether another iteration may begin.
+     * The first iteration is always allowed, so that there is always a move to return.
+     *
+     * @return true if the caller should run one more iteration.
+     */
+    public boolean tryStart() {
+        long n = claimed.getAndIncrement();
+        if (n > 0) {
+            // The limit is not recorded in stopped: a thread which claimed an earlier iteration, but has yet to
+            // look at stopped, must still run it.
+            if (n >= iterationLimit) return false;
+            if (stopped || shouldStop(n)) {
+                stopped = true;
+                return false;
+            }
+        }
+        iterations.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * End the search as soon as the iterations in progress have finished.
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    /**
+     * @return the number of iterations started.
+     */
+    public long getIterations() {
+        return iterations.get();
+    }
+
+    /**
+     * @return true if the search ended because the best child could no longer be overtaken.
+     */
+    public boolean isStoppedEarly() {
+        return stoppedEarly;
+    }
+
+    private boolean shouldStop(long n) {
+        if (caller.isInterrupted()) return true;
+        // System.nanoTime is cheap compared with a playout, so the deadline is checked on every iteration.
+        long now = hasDeadline || earlyStop ? System.nanoTime() : 0;
+        if (hasDeadline && now - deadlineNanos >= 0) return true;
+        if (earlyStop && n % EARLY_STOP_INTERVAL == 0 && cannotBeOvertaken(remaining(n, now))) {
+            stoppedEarly = true;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return an upper estimate of the iterations still to come (from the iteration rate so far, with a deadline).
+     */
+    private long remaining(long n, long now) {
+        long result = iterationLimit - n;
+        if (hasDeadline) {
+            long elapsed = Math.max(1, now - startNanos);
+            result = Math.min(result, (long) ((double) n * (deadlineNanos - now) / elapsed));
+        }
+        return result;
+    }
+
+    private boolean cannotBeOvertaken(long remaining) {
+        return lead.getAsInt() > remaining;
+    }
+}
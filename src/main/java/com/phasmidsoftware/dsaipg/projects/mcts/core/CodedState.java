@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2024. Robin Hillyard
+ */
+
+package com.phasmidsoftware.dsaipg.projects.mcts.core;
+
+import com.phasmidsoftware.dsaipg.adt.bqs.UnorderedIntIterator;
+
+import java.util.Iterator;
+
+/**
+ * This interface defines a State of a game (G) which can enumerate its moves as non-negative int codes,
+ * so that searches and playouts need not allocate a collection, or any moves, to find the moves from it.
+ * Whoever needs the codes should test for this interface (e.g. state instanceof CodedState).
+ *
+ * @param <G> the type of game.
+ */
+public interface CodedState<G extends Game> extends State<G> {
+
+    /**
+     * @return an upper bound on the number of moves from any State of this game (the size of the array for moveCodes).
+     */
+    int maxMoves();
+
+    /**
+     * Method to write the moves that can be made directly from this State into an array, each as a non-negative int code,
+     * without allocating a collection or any moves.
+     * The moves are written in the same order as moves(player).
+     *
+     * @param player the player of the moves.
+     * @param codes  an array of at least maxMoves() elements.
+     * @return the number of codes written.
+     */
+    int moveCodes(int player, int[] codes);
+
+    /**
+     * Method to decode a move written by moveCodes.
+     *
+     * @param code the code of a move from this State.
+     * @return the move (for the player who is to move).
+     */
+    Move<G> move(int code);
+
+    /**
+     * Method to determine the next State from the code of a move, without creating the move.
+     *
+     * @param code the code of a move from this State.
+     * @return a new CodedState.
+     */
+    CodedState<G> next(int code);
+
+    /**
+     * Method to yield a (random) iterator of moves for the given player, decoded from moveCodes.
+     *
+     * @param player the player who will be making one of the moves.
+     * @return an Iterator of moves.
+     */
+    @Override
+    default Iterator<Move<G>> moveIterator(int player) {
+        int[] codes = new int[maxMoves()];
+        UnorderedIntIterator iterator = moveCodeIterator(player, codes);
+        return new Iterator<>() {
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            public Move<G> next() {
+                return move(iterator.nextInt());
+            }
+        };
+    }
+
+    /**
+     * Method to yield a (random) iterator over the codes of the moves for the given player (see moveCodes).
+     * The iterator allocates nothing beyond itself: the codes are shuffled in place.
+     *
+     * @param player the player who will be making one of the moves.
+     * @param codes  an array of at least maxMoves() elements, which will be overwritten.
+     * @return an iterator of move codes.
+     */
+    default UnorderedIntIterator moveCodeIterator(int player, int[] codes) {
+        return new UnorderedIntIterator(codes, moveCodes(player, codes), random());
+    }
+}
@@ -0,0 +1,263 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.core;
+
+/**
+ * Immutable settings for a SearchEngine.
+ * Start from iterations(n) or timeBudget(millis) and refine with the "with" methods, each of which yields a new EngineConfig.
+ */
+public final class EngineConfig {
+    private final int iterationLimit;
+    private final long timeBudgetMillis;
+    private final boolean earlyStop;
+    private final ParallelMode parallelMode;
+    private final int threads;
+    private final double virtualLoss;
+    private final SelectionPolicy selectionPolicy;
+    private final long seed;
+    private final boolean phaseTimers;
+    private final int batchSize;
+
+    /**
+     * The default virtual loss for ParallelMode.TREE, in lost playouts per pending visit.
+     */
+    public static final double DEFAULT_VIRTUAL_LOSS = 1.0;
+
+    /**
+     * Method to create a sequential configuration.
+     *
+     * @param iterationLimit the number of iterations per search (per thread, when searching in parallel).
+     * @return a new EngineConfig.
+     */
+    public static EngineConfig iterations(int iterationLimit) {
+        if (iterationLimit < 1) throw new IllegalArgumentException("iterationLimit must be positive: " + iterationLimit);
+        Builder result = new Builder();
+        result.iterationLimit = iterationLimit;
+        return result.build();
+    }
+
+    /**
+     * Method to create a sequential configuration which searches for as long as the given wall-clock budget allows
+     * (but stops sooner if the best move can no longer be overtaken).
+     *
+     * @param millis the time allowed for each search, in milliseconds.
+     * @return a new EngineConfig.
+     */
+    public static EngineConfig timeBudget(long millis) {
+        return iterations(Integer.MAX_VALUE).withTimeBudget(millis).withEarlyStop(true);
+    }
+
+    /**
+     * Method to yield a copy of this configuration with a wall-clock budget for each search.
+     * The search ends at the deadline or the iteration limit, whichever comes first.
+     *
+     * @param millis the time allowed for each search, in milliseconds (zero for no limit).
+     * @return a new EngineConfig.
+     */
+    public EngineConfig withTimeBudget(long millis) {
+        if (millis < 0) throw new IllegalArgumentException("time budget must not be negative: " + millis);
+        Builder result = new Builder(this);
+        result.timeBudgetMillis = millis;
+        return result.build();
+    }
+
+    /**
+     * Method to yield a copy of this configuration which stops searching as soon as the most visited move
+     * could not be overtaken by the second-most visited move in the iterations (or time) remaining.
+     *
+     * @param earlyStop true to stop early.
+     * @return a new EngineConfig.
+     */
+    public EngineConfig withEarlyStop(boolean earlyStop) {
+        Builder result = new Builder(this);
+        result.earlyStop = earlyStop;
+        return result.build();
+    }
+
+    /**
+     * Method to yield a copy of this configuration which searches using the given number of threads.
+     *
+     * @param mode    the parallel mode.
+     * @param threads the number of threads (ignored for SEQUENTIAL).
+     * @return a new EngineConfig.
+     */
+    public EngineConfig withParallelism(ParallelMode mode, int threads) {
+        if (threads < 1) throw new IllegalArgumentException("threads must be positive: " + threads);
+        Builder result = new Builder(this);
+        result.parallelMode = mode;
+        result.threads = mode == ParallelMode.SEQUENTIAL ? 1 : threads;
+        return result.build();
+    }
+
+    /**
+     * Method to yield a copy of this configuration with the given virtual loss (used only by ParallelMode.TREE and
+     * by batches: see withBatchSize).
+     *
+     * @param virtualLoss the number of lost playouts charged to a node for each thread currently below it.
+     * @return a new EngineConfig.
+     */
+    public EngineConfig withVirtualLoss(double virtualLoss) {
+        if (virtualLoss < 0) throw new IllegalArgumentException("virtualLoss must not be negative: " + virtualLoss);
+        Builder result = new Builder(this);
+        result.virtualLoss = virtualLoss;
+        return result.build();
+    }
+
+    /**
+     * Method to yield a copy of this configuration with the given selection policy (UCT by default).
+     *
+     * @param policy the policy which chooses the child to descend into.
+     * @return a new EngineConfig.
+     */
+    public EngineConfig withSelectionPolicy(SelectionPolicy policy) {
+        if (policy == null) throw new IllegalArgumentException("policy must not be null");
+        Builder result = new Builder(this);
+        result.selectionPolicy = policy;
+        return result.build();
+    }
+
+    /**
+     * Method to yield a copy of this configuration whose random choices (in expansion and in the playouts) are
+     * drawn from generators seeded by the given value.
+     * A sequential search with an iteration limit then chooses the same moves every time.
+     *
+     * @param seed the seed (zero for none).
+     * @return a new EngineConfig.
+     */
+    public EngineConfig withSeed(long seed) {
+        Builder result = new Builder(this);
+        result.seed = seed;
+        return result.build();
+    }
+
+    /**
+     * Method to yield a copy of this configuration which times each phase of each iteration (see PhaseTimers).
+     *
+     * @param phaseTimers true to time the phases.
+     * @return a new EngineConfig.
+     */
+    public EngineConfig withPhaseTimers(boolean phaseTimers) {
+        Builder result = new Builder(this);
+        result.phaseTimers = phaseTimers;
+        return result.build();
+    }
+
+    /**
+     * Method to yield a copy of this configuration which selects several leaves before simulating any of them,
+     * so that a SearchTree can simulate (or evaluate) them all at once (see SearchTree.simulate(List)).
+     * The leaves of a batch are kept apart by virtual loss (see withVirtualLoss), even in a sequential search;
+     * each leaf counts as one iteration.
+     *
+     * @param batchSize the greatest number of leaves in a batch (one for no batching).
+     * @return a new EngineConfig.
+     */
+    public EngineConfig withBatchSize(int batchSize) {
+        if (batchSize < 1) throw new IllegalArgumentException("batch size must be positive: " + batchSize);
+        Builder result = new Builder(this);
+        result.batchSize = batchSize;
+        return result.build();
+    }
+
+    public int getIterationLimit() {
+        return iterationLimit;
+    }
+
+    /**
+     * @return the wall-clock budget for each search, in milliseconds (zero if there is none).
+     */
+    public long getTimeBudgetMillis() {
+        return timeBudgetMillis;
+    }
+
+    public boolean isEarlyStop() {
+        return earlyStop;
+    }
+
+    public ParallelMode getParallelMode() {
+        return parallelMode;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public double getVirtualLoss() {
+        return virtualLoss;
+    }
+
+    public SelectionPolicy getSelectionPolicy() {
+        return selectionPolicy;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public boolean isPhaseTimers() {
+        return phaseTimers;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    @Override
+    public String toString() {
+        return "EngineConfig{iterations=" + iterationLimit + ", timeBudget=" + timeBudgetMillis + "ms, earlyStop=" + earlyStop
+                + ", mode=" + parallelMode + ", threads=" + threads + ", virtualLoss=" + virtualLoss
+                + ", selection=" + (selectionPolicy == SelectionPolicy.UCT ? "UCT" : selectionPolicy) + ", seed=" + seed + ", phaseTimers=" + phaseTimers + ", batchSize=" + batchSize + "}";
+    }
+
+    private EngineConfig(Builder builder) {
+        this.iterationLimit = builder.iterationLimit;
+        this.timeBudgetMillis = builder.timeBudgetMillis;
+        this.earlyStop = builder.earlyStop;
+        this.parallelMode = builder.parallelMode;
+        this.threads = builder.threads;
+        this.virtualLoss = builder.virtualLoss;
+        this.selectionPolicy = builder.selectionPolicy;
+        this.seed = builder.seed;
+        this.phaseTimers = builder.phaseTimers;
+        this.batchSize = builder.batchSize;
+    }
+
+    /**
+     * The mutable settings from which each new EngineConfig is built, so that every field of EngineConfig can be final
+     * (and so safely published to the threads of a search).
+     */
+    private static final class Builder {
+        private int iterationLimit;
+        private long timeBudgetMillis;
+        private boolean earlyStop;
+        private ParallelMode parallelMode;
+        private int threads;
+        private double virtualLoss;
+        private SelectionPolicy selectionPolicy;
+        private long seed;
+        private boolean phaseTimers;
+        private int batchSize;
+
+        Builder() {
+            this.parallelMode = ParallelMode.SEQUENTIAL;
+            this.threads = 1;
+            this.virtualLoss = DEFAULT_VIRTUAL_LOSS;
+            this.selectionPolicy = SelectionPolicy.UCT;
+            this.batchSize = 1;
+        }
+
+        Builder(EngineConfig config) {
+            this.iterationLimit = config.iterationLimit;
+            this.timeBudgetMillis = config.timeBudgetMillis;
+            this.earlyStop = config.earlyStop;
+            this.parallelMode = config.parallelMode;
+            this.threads = config.threads;
+            this.virtualLoss = config.virtualLoss;
+            this.selectionPolicy = config.selectionPolicy;
+            this.seed = config.seed;
+            this.phaseTimers = config.phaseTimers;
+            this.batchSize = config.batchSize;
+        }
+
+        EngineConfig build() {
+            return new EngineConfig(this);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright (c) 2024. Robin Hillyard
+ */
+
+package com.phasmidsoftware.dsaipg.projects.mcts.core;
+
+/**
+ * A buffer for the move codes of a CodedState (see CodedState.moveCodes), one per thread, so that a Node can be
+ * expanded without allocating an array each time.
+ * The buffer must be finished with before it is asked for again on the same thread.
+ */
+final class MoveCodeBuffer {
+    private static final ThreadLocal<int[]> buffers = ThreadLocal.withInitial(() -> new int[0]);
+
+    private MoveCodeBuffer() {
+    }
+
+    /**
+     * @param size the number of codes required (e.g. CodedState.maxMoves()).
+     * @return the buffer of the calling thread, grown if necessary to at least size elements.
+     */
+    static int[] get(int size) {
+        int[] result = buffers.get();
+        if (result.length < size) {
+            result = new int[size];
+            buffers.set(result);
+        }
+        return result;
+    }
+}
@@ -4,6 +4,8 @@
 
 package com.phasmidsoftware.dsaipg.projects.mcts.core;
 
+import com.phasmidsoftware.dsaipg.adt.bqs.UnorderedIntIterator;
+
 import java.util.Collection;
 import java.util.Iterator;
 
@@ -74,6 +76,13 @@ public interface Node<G extends Game> {
     int playouts();
 
     private void addChildren(final State<G> state) {
+        if (state instanceof CodedState<G> coded) {
+            for (UnorderedIntIterator it = coded.moveCodeIterator(coded.player(), MoveCodeBuffer.get(coded.maxMoves())); it.hasNext(); ) {
+                int code = it.nextInt();
+                addChild(coded.next(code), coded.move(code));
+            }
+            return;
+        }
         for (Iterator<Move<G>> it = state.moveIterator(state.player()); it.hasNext(); ) {
             Move<G> move = it.next();
             State<G> nextState = state.next(move);
@@ -0,0 +1,132 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.core;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+import java.util.random.RandomGenerator;
+
+/**
+ * The tree of SearchNodes which a SearchEngine builds for any game (see SearchEngine.search(State)).
+ * <p>
+ * Selection follows the SelectionPolicy; expansion adds all the children of a node at once and chooses one of them
+ * at random; simulation is by the Playout; and backpropagation follows the parents from the leaf up.
+ *
+ * @param <G> the type of the Game.
+ */
+final class NodeTree<G extends Game> implements SearchTree<G, NodeTree.Path<G>> {
+    private final SearchNode<G> root;
+    private final SelectionPolicy policy;
+    private final Playout<G> playout;
+    private final Function<State<G>, ? extends Collection<Move<G>>> moves; // null for all the legal moves.
+
+    /**
+     * The path of one iteration: only its last node is kept, since the others are its ancestors.
+     */
+    static final class Path<G extends Game> {
+        private final RandomGenerator random;
+        private int[] codes = new int[0]; // Scratch space for expand.
+        private SearchNode<G> node;
+        private int winner;
+
+        private Path(RandomGenerator random) {
+            this.random = random;
+        }
+    }
+
+    /**
+     * @param root    the root of the tree (which may have been searched before).
+     * @param policy  the selection policy.
+     * @param playout the playout.
+     * @param moves   yields the moves to expand from a (non-terminal) state (null for all the legal moves).
+     */
+    NodeTree(SearchNode<G> root, SelectionPolicy policy, Playout<G> playout, Function<State<G>, ? extends Collection<Move<G>>> moves) {
+        this.root = root;
+        this.policy = policy;
+        this.playout = playout;
+        this.moves = moves;
+    }
+
+    SearchNode<G> getRoot() {
+        return root;
+    }
+
+    @Override
+    public Path<G> newPath(RandomGenerator random) {
+        return new Path<>(random);
+    }
+
+    /**
+     * Walk down the tree by the selection policy until a node without children is reached.
+     */
+    @Override
+    public int select(Path<G> path, double virtualLoss) {
+        SearchNode<G> node = root;
+        if (virtualLoss > 0) node.addVirtualLoss();
+        int depth = 0;
+        while (!node.getChildren().isEmpty()) {
+            node = node.select(policy, virtualLoss);
+            if (virtualLoss > 0) node.addVirtualLoss();
+            depth++;
+        }
+        path.node = node;
+        return depth;
+    }
+
+    /**
+     * Expand the node (unless it is terminal, or another thread has claimed it) and choose one of its new children
+     * at random; otherwise the playout is from the node itself.
+     */
+    @Override
+    public int expand(Path<G> path, double virtualLoss) {
+        SearchNode<G> node = path.node;
+        State<G> state = node.state();
+        if (state.isTerminal() || !node.claimExpansion()) return 0;
+        List<SearchNode<G>> children;
+        if (moves == null && state instanceof CodedState<G> coded) {
+            if (path.codes.length < coded.maxMoves()) path.codes = new int[coded.maxMoves()];
+            int[] codes = path.codes;
+            int n = coded.moveCodes(coded.player(), codes);
+            if (n == 0) return 0;
+            children = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) children.add(new SearchNode<>(coded.next(codes[i]), node, coded.move(codes[i])));
+        } else {
+            Collection<Move<G>> possibleMoves = moves != null ? moves.apply(state) : state.moves(state.player());
+            if (possibleMoves.isEmpty()) return 0;
+            children = new ArrayList<>(possibleMoves.size());
+            for (Move<G> move : possibleMoves) children.add(new SearchNode<>(state.next(move), node, move));
+        }
+        node.publish(children);
+        SearchNode<G> child = children.get(path.random.nextInt(children.size()));
+        if (virtualLoss > 0) child.addVirtualLoss();
+        path.node = child;
+        return children.size();
+    }
+
+    @Override
+    public void simulate(Path<G> path) {
+        State<G> state = path.node.state();
+        path.winner = state.isTerminal() ? Playout.winner(state) : playout.play(state, path.random);
+    }
+
+    @Override
+    public void backPropagate(Path<G> path, double virtualLoss) {
+        for (SearchNode<G> n = path.node; n != null; n = n.getParent()) {
+            if (virtualLoss > 0) n.removeVirtualLoss();
+            n.update(path.winner);
+        }
+    }
+
+    @Override
+    public int lead() {
+        return root.lead();
+    }
+
+    @Override
+    public List<Move<G>> principalVariation() {
+        List<Move<G>> result = new ArrayList<>();
+        for (SearchNode<G> node = root.bestChild(); node != null && result.size() < SearchMetrics.PV_DEPTH; node = node.bestChild())
+            result.add(node.getMove());
+        return result;
+    }
+}
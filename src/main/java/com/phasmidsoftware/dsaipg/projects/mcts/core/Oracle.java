@@ -0,0 +1,31 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.core;
+
+/**
+ * A source of perfect play for a game: the game-theoretic value of any (reachable) state, and a move which achieves it.
+ *
+ * @param <G> the type of the Game.
+ */
+public interface Oracle<G extends Game> {
+    /**
+     * The values of a state, to the player who is to move.
+     */
+    int WIN = 1;
+    int DRAW = 0;
+    int LOSS = -1;
+
+    /**
+     * Method to determine the value of a state with perfect play by both sides.
+     *
+     * @param state a state.
+     * @return WIN, DRAW or LOSS, for the player who is to move (a terminal state is a LOSS or a DRAW).
+     */
+    int value(State<G> state);
+
+    /**
+     * Method to yield a move which achieves the value of the given state.
+     *
+     * @param state a state which is not terminal.
+     * @return a best move for the player who is to move.
+     */
+    Move<G> bestMove(State<G> state);
+}
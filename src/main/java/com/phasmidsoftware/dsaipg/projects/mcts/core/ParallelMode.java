@@ -0,0 +1,23 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.core;
+
+/**
+ * The ways in which a Monte Carlo tree search (SearchEngine, or Gomoku's MonteCarloTreeSearch) can make use of more than one thread.
+ */
+public enum ParallelMode {
+    /**
+     * A single tree, searched on the calling thread.
+     */
+    SEQUENTIAL,
+
+    /**
+     * Root parallelism: each thread builds its own independent tree from the same root state,
+     * and the root visit counts are merged, per move, at the end.
+     */
+    ROOT,
+
+    /**
+     * Tree parallelism: all threads share one tree, whose node statistics are updated atomically.
+     * Each node is expanded by only one thread, and virtual loss spreads the threads across the tree.
+     */
+    TREE
+}
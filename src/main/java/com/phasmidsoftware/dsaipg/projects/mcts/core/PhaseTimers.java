@@ -0,0 +1,140 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.core;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The time spent by a search in each of the four phases of an iteration, summed over all threads
+ * (see EngineConfig.withPhaseTimers). Timing costs two calls of System.nanoTime per phase, so it is off by default.
+ * <p>
+ * Each phase also has a histogram of the times of its individual executions, in power-of-two buckets:
+ * bucket k counts the times t (in nanoseconds) for which 2^(k-1) &lt;= t &lt; 2^k (bucket 0 counts t = 0).
+ */
+public final class PhaseTimers {
+    /**
+     * The phases of an iteration of Monte Carlo tree search.
+     */
+    public enum Phase {SELECTION, EXPANSION, ROLLOUT, BACKPROPAGATION}
+
+    /**
+     * The number of buckets in each histogram.
+     */
+    public static final int BUCKETS = 64;
+
+    private final LongAdder[] nanos = new LongAdder[Phase.values().length];
+    private final LongAdder[][] histograms = new LongAdder[Phase.values().length][BUCKETS];
+
+    public PhaseTimers() {
+        for (int i = 0; i < nanos.length; i++) {
+            nanos[i] = new LongAdder();
+            for (int k = 0; k < BUCKETS; k++) histograms[i][k] = new LongAdder();
+        }
+    }
+
+    /**
+     * @param phase a phase.
+     * @param time  the nanoseconds spent in it.
+     */
+    public void add(Phase phase, long time) {
+        nanos[phase.ordinal()].add(time);
+        histograms[phase.ordinal()][bucket(time)].increment();
+    }
+
+    /**
+     * @param phase a phase.
+     * @return the number of executions of the phase in each bucket (see PhaseTimers).
+     */
+    public long[] getHistogram(Phase phase) {
+        long[] result = new long[BUCKETS];
+        for (int k = 0; k < BUCKETS; k++) result[k] = histograms[phase.ordinal()][k].sum();
+        return result;
+    }
+
+    /**
+     * @param phase a phase.
+     * @return the number of times the phase has been timed.
+     */
+    public long getCount(Phase phase) {
+        long result = 0;
+        for (LongAdder bucket : histograms[phase.ordinal()]) result += bucket.sum();
+        return result;
+    }
+
+    /**
+     * Method to estimate a quantile of the time of one execution of a phase, from its histogram.
+     *
+     * @param phase    a phase.
+     * @param quantile a number between 0 and 1 (for example, 0.99 for the 99th percentile).
+     * @return the upper bound, in nanoseconds, of the bucket which contains the quantile (zero if nothing has been timed).
+     */
+    public long getQuantileNanos(Phase phase, double quantile) {
+        return quantile(getHistogram(phase), quantile);
+    }
+
+    /**
+     * @param phase a phase.
+     * @return the total time spent in that phase, in nanoseconds.
+     */
+    public long getNanos(Phase phase) {
+        return nanos[phase.ordinal()].sum();
+    }
+
+    /**
+     * @param phase a phase.
+     * @return the total time spent in that phase, in milliseconds.
+     */
+    public double getMillis(Phase phase) {
+        return getNanos(phase) / 1_000_000.0;
+    }
+
+    /**
+     * @return the total time spent in all the phases, in milliseconds.
+     */
+    public double getTotalMillis() {
+        double result = 0;
+        for (Phase phase : Phase.values()) result += getMillis(phase);
+        return result;
+    }
+
+    /**
+     * Set all the timers back to zero.
+     */
+    public void reset() {
+        for (LongAdder adder : nanos) adder.reset();
+        for (LongAdder[] histogram : histograms) for (LongAdder bucket : histogram) bucket.reset();
+    }
+
+    /**
+     * @param time a non-negative number of nanoseconds.
+     * @return the bucket for the time.
+     */
+    static int bucket(long time) {
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(time));
+    }
+
+    /**
+     * @param histogram a histogram in power-of-two buckets.
+     * @param quantile  a number between 0 and 1.
+     * @return the upper bound of the bucket which contains the quantile (zero if the histogram is empty).
+     */
+    static long quantile(long[] histogram, double quantile) {
+        long total = 0;
+        for (long count : histogram) total += count;
+        if (total == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long cumulative = 0;
+        for (int k = 0; k < histogram.length; k++) {
+            cumulative += histogram[k];
+            if (cumulative >= rank) return k == 0 ? 0 : k >= 63 ? Long.MAX_VALUE : 1L << k;
+        }
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        for (Phase phase : Phase.values())
+            result.append(String.format("%-16s %10.3f ms  p50 <%,9d ns  p99 <%,9d ns%n", phase, getMillis(phase),
+                    getQuantileNanos(phase, 0.5), getQuantileNanos(phase, 0.99)));
+        return result.append(String.format("%-16s %10.3f ms%n", "TOTAL", getTotalMillis())).toString();
+    }
+}
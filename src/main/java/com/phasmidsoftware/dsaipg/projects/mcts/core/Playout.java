@@ -0,0 +1,73 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.core;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.random.RandomGenerator;
+
+/**
+ * The simulation phase of a SearchEngine: play a game out from a state, and report who won.
+ * A playout may be called concurrently from several threads (each with its own source of randomness),
+ * so any scratch space it needs must be held per thread.
+ *
+ * @param <G> the type of the Game.
+ */
+@FunctionalInterface
+public interface Playout<G extends Game> {
+
+    /**
+     * The result of a playout which is drawn (no player is ever Integer.MIN_VALUE).
+     */
+    int DRAW = Integer.MIN_VALUE;
+
+    /**
+     * Method to play a game out.
+     *
+     * @param state  the state from which to play (not modified).
+     * @param random the source of randomness for this thread.
+     * @return the winner, or DRAW.
+     */
+    int play(State<G> state, RandomGenerator random);
+
+    /**
+     * Method to create a playout in which every move is chosen uniformly at random from State.moves.
+     * If the state is a CodedState, its move codes are used instead, so that no collections or moves are
+     * created along the way.
+     * This works for any game, but each move costs a new State: a game which can play out faster on a scratch board
+     * should provide its own Playout.
+     *
+     * @param <G> the type of the Game.
+     * @return a Playout.
+     */
+    static <G extends Game> Playout<G> uniform() {
+        return (state, random) -> {
+            if (state instanceof CodedState<G> coded) {
+                int[] codes = new int[coded.maxMoves()];
+                while (!coded.isTerminal())
+                    coded = coded.next(codes[random.nextInt(coded.moveCodes(coded.player(), codes))]);
+                return winner(coded);
+            }
+            State<G> current = state;
+            while (!current.isTerminal()) {
+                Collection<Move<G>> moves = current.moves(current.player());
+                current = current.next(pick(moves, random.nextInt(moves.size())));
+            }
+            return winner(current);
+        };
+    }
+
+    /**
+     * @param state a terminal state.
+     * @return the winner of the state, or DRAW.
+     */
+    static <G extends Game> int winner(State<G> state) {
+        return state.winner().orElse(DRAW);
+    }
+
+    private static <T> T pick(Collection<T> items, int index) {
+        if (items instanceof List<T> list) return list.get(index);
+        Iterator<T> iterator = items.iterator();
+        for (int i = 0; i < index; i++) iterator.next();
+        return iterator.next();
+    }
+}
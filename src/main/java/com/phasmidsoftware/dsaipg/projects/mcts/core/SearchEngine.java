@@ -0,0 +1,414 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.core;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
+import java.util.random.RandomGenerator;
+
+/**
+ * Monte Carlo tree search for any game whose states implement State.
+ * <p>
+ * Each iteration selects a path from the root, expands the node it reaches, plays a game out from one of the new
+ * children and backpropagates the result. The search ends when its Budget (an iteration limit, a time budget and
+ * early stopping, see EngineConfig) runs out.
+ * With ParallelMode.ROOT each thread builds its own tree and the root visits are summed; with ParallelMode.TREE all
+ * the threads share one tree, kept apart by virtual loss.
+ * Each search records its telemetry (see SearchMetrics), including the time spent in each phase if so configured.
+ * <p>
+ * The engine carries out each phase on a SearchTree. By default that is a tree of SearchNodes, for which a game
+ * supplies only its playout (Playout.uniform() will do for any game) and, optionally, the moves to expand from a
+ * state (all the legal moves by default): see findNextMove and search(State). A game which needs more of its tree
+ * (transpositions, RAVE, progressive widening, a solver and so on, as Gomoku's MonteCarloTreeSearch does) supplies
+ * a SearchTree of its own to search(SearchTree) or searchEach.
+ *
+ * @param <G> the type of the Game.
+ */
+public class SearchEngine<G extends Game> {
+    private final EngineConfig config;
+    private final Playout<G> playout; // null if the engine searches only the trees it is given.
+    private final Function<State<G>, ? extends Collection<Move<G>>> moves; // null for all the legal moves.
+    private final SplittableRandom seeds; // null unless seeded.
+    private final ThreadLocal<RandomGenerator> random;
+    private final SearchMetrics metrics = new SearchMetrics();
+    private final List<Budget> budgets = new ArrayList<>();
+    private ForkJoinPool pool;
+
+    /**
+     * Constructor for an engine which searches only the trees it is given (see search(SearchTree) and searchEach).
+     *
+     * @param config the configuration.
+     */
+    public SearchEngine(EngineConfig config) {
+        this(config, null, null);
+    }
+
+    /**
+     * Constructor for an engine which expands all the legal moves of each state
+     * (by their codes, if it is a CodedState).
+     *
+     * @param config  the configuration.
+     * @param playout the playout.
+     */
+    public SearchEngine(EngineConfig config, Playout<G> playout) {
+        this(config, playout, null);
+    }
+
+    /**
+     * @param config  the configuration.
+     * @param playout the playout.
+     * @param moves   yields the moves to expand from a (non-terminal) state, always in the same order for the same state
+     *                (null for all the legal moves).
+     */
+    public SearchEngine(EngineConfig config, Playout<G> playout, Function<State<G>, ? extends Collection<Move<G>>> moves) {
+        this.config = config;
+        this.playout = playout;
+        this.moves = moves;
+        this.seeds = config.getSeed() != 0 ? new SplittableRandom(config.getSeed()) : null;
+        this.random = ThreadLocal.withInitial(this::newRandom);
+    }
+
+    public EngineConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Method to search for the best move from the given state, within the limits set by the configuration.
+     * If the calling thread is interrupted, or stop is called, the search ends promptly and the best move
+     * found so far is returned (the interrupt status is left set).
+     *
+     * @param state a state which is not terminal.
+     * @return the most visited move.
+     */
+    public Move<G> findNextMove(State<G> state) {
+        if (config.getParallelMode() != ParallelMode.ROOT || config.getThreads() == 1)
+            return search(state).bestChild().getMove();
+        // Root parallelism: each tree is expanded from the same state, so the children of their roots correspond.
+        List<NodeTree<G>> trees = new ArrayList<>();
+        for (int t = 0; t < config.getThreads(); t++) trees.add(newTree(new SearchNode<>(state)));
+        searchEach(trees);
+        List<SearchNode<G>> children = trees.get(0).getRoot().getChildren();
+        int best = 0;
+        long bestVisits = -1;
+        for (int i = 0; i < children.size(); i++) {
+            long visits = 0;
+            for (NodeTree<G> tree : trees) {
+                List<SearchNode<G>> siblings = tree.getRoot().getChildren();
+                if (i < siblings.size()) visits += siblings.get(i).playouts();
+            }
+            if (visits > bestVisits) {
+                best = i;
+                bestVisits = visits;
+            }
+        }
+        return children.get(best).getMove();
+    }
+
+    /**
+     * Method to build a tree from the given state: with ParallelMode.TREE, by all the threads; otherwise on this thread
+     * (root parallelism needs a tree per thread: see findNextMove).
+     *
+     * @param state the state at the root.
+     * @return the root of the tree.
+     */
+    public SearchNode<G> search(State<G> state) {
+        return search(new SearchNode<>(state));
+    }
+
+    /**
+     * Method to continue building a tree: with ParallelMode.TREE, by all the threads; otherwise on this thread.
+     *
+     * @param root the root of the tree (which may have been searched before).
+     * @return root.
+     */
+    public SearchNode<G> search(SearchNode<G> root) {
+        search(newTree(root));
+        return root;
+    }
+
+    /**
+     * Method to search the given tree, within the limits set by the configuration: with ParallelMode.TREE, by all
+     * the threads; otherwise on this thread.
+     *
+     * @param tree the tree.
+     */
+    public void search(SearchTree<G, ?> tree) {
+        search(tree, config.getIterationLimit());
+    }
+
+    /**
+     * Method to search the given tree, as search(SearchTree), but with the given iteration limit.
+     *
+     * @param tree           the tree.
+     * @param iterationLimit the number of iterations (per thread, with ParallelMode.TREE).
+     */
+    public void search(SearchTree<G, ?> tree, int iterationLimit) {
+        resetStatistics();
+        if (config.getParallelMode() != ParallelMode.TREE || config.getThreads() == 1) {
+            run(tree, newBudget(tree, iterationLimit), batchVirtualLoss(), null);
+            return;
+        }
+        Budget budget = newBudget(tree, (long) iterationLimit * config.getThreads());
+        double virtualLoss = config.getVirtualLoss();
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int t = 0; t < config.getThreads(); t++)
+            tasks.add(() -> {
+                run(tree, budget, virtualLoss, null);
+                return null;
+            });
+        for (Future<Void> future : submitAll(tasks)) await(future);
+    }
+
+    /**
+     * Method to search each of the given trees on a thread of its own (root parallelism), each within the limits
+     * set by the configuration.
+     *
+     * @param trees the trees (as many as there are threads, typically).
+     */
+    public void searchEach(List<? extends SearchTree<G, ?>> trees) {
+        resetStatistics();
+        double virtualLoss = batchVirtualLoss();
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (SearchTree<G, ?> tree : trees) {
+            Budget budget = newBudget(tree, config.getIterationLimit());
+            tasks.add(() -> {
+                run(tree, budget, virtualLoss, null);
+                return null;
+            });
+        }
+        for (Future<Void> future : submitAll(tasks)) await(future);
+    }
+
+    /**
+     * Method to go on searching the given tree on this thread, without any limit, until the thread is interrupted
+     * (pondering on the opponent's time, for example).
+     * This search is not counted by getIterations, nor can stop end it; but it is recorded in the metrics.
+     *
+     * @param tree     the tree.
+     * @param progress is told the number of iterations run so far, after each iteration.
+     */
+    public void ponder(SearchTree<G, ?> tree, LongConsumer progress) {
+        run(tree, new Budget(tree::lead, Long.MAX_VALUE, System.nanoTime(), 0, false, Thread.currentThread()), batchVirtualLoss(), progress);
+    }
+
+    /**
+     * End the current search (if any) as soon as the iterations in progress have finished.
+     */
+    public void stop() {
+        synchronized (budgets) {
+            for (Budget budget : budgets) budget.stop();
+        }
+    }
+
+    /**
+     * @return the number of iterations run by the most recent search (over all threads).
+     */
+    public long getIterations() {
+        long result = 0;
+        synchronized (budgets) {
+            for (Budget budget : budgets) result += budget.getIterations();
+        }
+        return result;
+    }
+
+    /**
+     * @return true if the most recent search (or any of its trees) ended because the best move could no longer be overtaken.
+     */
+    public boolean isStoppedEarly() {
+        synchronized (budgets) {
+            for (Budget budget : budgets) if (budget.isStoppedEarly()) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the time spent in each phase, over all searches since the timers were last reset
+     * (all zero unless EngineConfig.withPhaseTimers).
+     */
+    public PhaseTimers getTimers() {
+        return metrics.getPhaseTimers();
+    }
+
+    /**
+     * @return the telemetry of all the searches since it was last reset (which may be polled during a search).
+     */
+    public SearchMetrics getMetrics() {
+        return metrics;
+    }
+
+    private NodeTree<G> newTree(SearchNode<G> root) {
+        if (playout == null) throw new IllegalStateException("this engine has no playout: it searches only the trees it is given");
+        return new NodeTree<>(root, config.getSelectionPolicy(), playout, moves);
+    }
+
+    /**
+     * @return the virtual loss for a tree which is not shared: none, unless the leaves are batched (and so must differ).
+     */
+    private double batchVirtualLoss() {
+        return config.getBatchSize() > 1 ? config.getVirtualLoss() : 0;
+    }
+
+    /**
+     * Run iterations (or batches of them) on the tree until the budget runs out or the tree is decided.
+     */
+    private <P> void run(SearchTree<G, P> tree, Budget budget, double virtualLoss, LongConsumer progress) {
+        RandomGenerator generator = random.get();
+        List<P> paths = new ArrayList<>(config.getBatchSize());
+        for (int i = 0; i < config.getBatchSize(); i++) paths.add(tree.newPath(generator));
+        boolean timed = config.isPhaseTimers();
+        while (budget.tryStart()) {
+            tree.beginIteration();
+            try {
+                if (paths.size() > 1) iterateBatch(tree, paths, virtualLoss, budget, timed);
+                else if (timed) iterateTimed(tree, paths.get(0), virtualLoss);
+                else iterate(tree, paths.get(0), virtualLoss);
+            } finally {
+                tree.endIteration();
+            }
+            if (tree.isDecided()) budget.stop();
+            if (progress != null) progress.accept(budget.getIterations());
+        }
+    }
+
+    /**
+     * One iteration of selection, expansion, simulation and backpropagation.
+     */
+    private <P> void iterate(SearchTree<G, P> tree, P path, double virtualLoss) {
+        select(tree, path, virtualLoss);
+        metrics.nodesAllocated(tree.expand(path, virtualLoss));
+        tree.simulate(path);
+        tree.backPropagate(path, virtualLoss);
+    }
+
+    /**
+     * As iterate, recording the time spent in each phase.
+     */
+    private <P> void iterateTimed(SearchTree<G, P> tree, P path, double virtualLoss) {
+        long t0 = System.nanoTime();
+        select(tree, path, virtualLoss);
+        long t1 = System.nanoTime();
+        metrics.nodesAllocated(tree.expand(path, virtualLoss));
+        long t2 = System.nanoTime();
+        tree.simulate(path);
+        long t3 = System.nanoTime();
+        tree.backPropagate(path, virtualLoss);
+        long t4 = System.nanoTime();
+        PhaseTimers timers = metrics.getPhaseTimers();
+        timers.add(PhaseTimers.Phase.SELECTION, t1 - t0);
+        timers.add(PhaseTimers.Phase.EXPANSION, t2 - t1);
+        timers.add(PhaseTimers.Phase.ROLLOUT, t3 - t2);
+        timers.add(PhaseTimers.Phase.BACKPROPAGATION, t4 - t3);
+    }
+
+    /**
+     * One batch of iterations (see EngineConfig.withBatchSize): select and expand up to the batch size of leaves
+     * (the first iteration having been started by the caller), simulate them all at once, then backpropagate each.
+     * When phases are timed, the simulation and the backpropagation of a batch are each timed as one.
+     */
+    private <P> void iterateBatch(SearchTree<G, P> tree, List<P> paths, double virtualLoss, Budget budget, boolean timed) {
+        long selection = 0;
+        long expansion = 0;
+        int n = 0;
+        do {
+            P path = paths.get(n++);
+            long t0 = timed ? System.nanoTime() : 0;
+            select(tree, path, virtualLoss);
+            long t1 = timed ? System.nanoTime() : 0;
+            metrics.nodesAllocated(tree.expand(path, virtualLoss));
+            if (timed) {
+                selection += t1 - t0;
+                expansion += System.nanoTime() - t1;
+            }
+        } while (n < paths.size() && budget.tryStart());
+        List<P> batch = n < paths.size() ? paths.subList(0, n) : paths;
+        long t3 = timed ? System.nanoTime() : 0;
+        tree.simulate(batch);
+        long t4 = timed ? System.nanoTime() : 0;
+        for (P path : batch) tree.backPropagate(path, virtualLoss);
+        if (timed) {
+            long t5 = System.nanoTime();
+            PhaseTimers timers = metrics.getPhaseTimers();
+            timers.add(PhaseTimers.Phase.SELECTION, selection);
+            timers.add(PhaseTimers.Phase.EXPANSION, expansion);
+            timers.add(PhaseTimers.Phase.ROLLOUT, t4 - t3);
+            timers.add(PhaseTimers.Phase.BACKPROPAGATION, t5 - t4);
+        }
+    }
+
+    /**
+     * Selection, after which the iteration (and its depth) is recorded in the metrics, which periodically sample
+     * the principal variation.
+     */
+    private <P> void select(SearchTree<G, P> tree, P path, double virtualLoss) {
+        if (metrics.iteration(tree.select(path, virtualLoss))) metrics.principalVariation(tree.principalVariation());
+    }
+
+    private void resetStatistics() {
+        metrics.newSearch();
+        synchronized (budgets) {
+            budgets.clear();
+        }
+    }
+
+    private Budget newBudget(SearchTree<G, ?> tree, long iterationLimit) {
+        Budget budget = new Budget(tree::lead, iterationLimit, System.nanoTime(), config.getTimeBudgetMillis(),
+                config.isEarlyStop(), Thread.currentThread());
+        synchronized (budgets) {
+            budgets.add(budget);
+        }
+        return budget;
+    }
+
+    /**
+     * @return a new generator: split from the seed, if there is one.
+     */
+    private RandomGenerator newRandom() {
+        if (seeds == null) return new SplittableRandom();
+        synchronized (seeds) {
+            return seeds.split();
+        }
+    }
+
+    private synchronized ForkJoinPool pool() {
+        if (pool == null) pool = new ForkJoinPool(config.getThreads());
+        return pool;
+    }
+
+    /**
+     * Submit the tasks without waiting: the caller waits in await, which (unlike ForkJoinPool.invokeAll)
+     * responds to interruption.
+     */
+    private <T> List<Future<T>> submitAll(List<Callable<T>> tasks) {
+        List<Future<T>> futures = new ArrayList<>(tasks.size());
+        for (Callable<T> task : tasks) futures.add(pool().submit(task));
+        return futures;
+    }
+
+    /**
+     * Wait for a search task. If the calling thread is interrupted, the search is stopped (so that the best move
+     * so far can still be returned), and the interrupt status is restored once the task has finished.
+     */
+    private <T> T await(Future<T> future) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return future.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    stop();
+                }
+            }
+        } catch (ExecutionException e) {
+            throw new RuntimeException("parallel search failed", e.getCause());
+        } finally {
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+    }
+}
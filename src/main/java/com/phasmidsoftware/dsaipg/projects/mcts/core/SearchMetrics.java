@@ -0,0 +1,342 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Telemetry for a Monte Carlo tree search, accumulated over all its searches (and all their threads) until reset.
+ * <p>
+ * The search records each iteration (with the depth at which selection stopped), the nodes it allocates and,
+ * every SAMPLE_INTERVAL iterations (of each thread), the principal variation (the path of most visited children
+ * from the root).
+ * If it is so configured, it also times the phases of each iteration (see PhaseTimers).
+ * The counters are striped (LongAdder), and each thread counts its own iterations towards the next sample,
+ * so recording costs a few nanoseconds per iteration, however many threads are searching.
+ * <p>
+ * A monitor (a UI, for example) polls snapshot, which may be called at any time from any thread,
+ * and compares successive snapshots for rates.
+ */
+public final class SearchMetrics {
+    /**
+     * The number of iterations between samples of the principal variation.
+     */
+    public static final int SAMPLE_INTERVAL = 1024;
+
+    /**
+     * The greatest number of moves in a principal variation.
+     */
+    public static final int PV_DEPTH = 8;
+
+    /**
+     * The depths (of selection) are counted individually up to this depth; all greater depths are counted with it.
+     */
+    public static final int MAX_DEPTH = 63;
+
+    private final PhaseTimers phaseTimers = new PhaseTimers();
+    private final LongAdder iterations = new LongAdder();
+    private final ThreadLocal<long[]> threadIterations = ThreadLocal.withInitial(() -> new long[1]); // Towards the next sample.
+    private final LongAdder nodes = new LongAdder();
+    private final LongAdder[] depths = new LongAdder[MAX_DEPTH + 1];
+    private volatile long startNanos = System.nanoTime();
+    // The following are guarded by this.
+    private List<Object> principalVariation = Collections.emptyList();
+    private boolean newSearch = true; // True if the next sample should not be compared with the previous one.
+    private long pvSamples;
+    private long pvComparisons;
+    private long pvChanges;
+    private long bestMoveChanges;
+    private long lastBestMoveChange;
+
+    public SearchMetrics() {
+        for (int d = 0; d <= MAX_DEPTH; d++) depths[d] = new LongAdder();
+    }
+
+    /**
+     * Method to record an iteration.
+     *
+     * @param depth the depth of the node at which selection stopped (the root being at depth 0).
+     * @return true if the caller should now sample the principal variation (see principalVariation): that is,
+     * every SAMPLE_INTERVAL iterations recorded by the calling thread.
+     */
+    public boolean iteration(int depth) {
+        depths[Math.min(depth, MAX_DEPTH)].increment();
+        iterations.increment();
+        return (++threadIterations.get()[0] & SAMPLE_INTERVAL - 1) == 0;
+    }
+
+    /**
+     * @param count the number of nodes allocated.
+     */
+    public void nodesAllocated(long count) {
+        nodes.add(count);
+    }
+
+    /**
+     * Method to record a sample of the principal variation, comparing it (by equals) with the previous sample.
+     *
+     * @param moves the moves of the principal variation, best move first (at most PV_DEPTH are kept).
+     */
+    public synchronized void principalVariation(List<?> moves) {
+        List<Object> pv = new ArrayList<>(moves.subList(0, Math.min(moves.size(), PV_DEPTH)));
+        if (!newSearch) {
+            pvComparisons++;
+            if (!pv.equals(principalVariation)) pvChanges++;
+            Object best = pv.isEmpty() ? null : pv.get(0);
+            Object previous = principalVariation.isEmpty() ? null : principalVariation.get(0);
+            if (best != null && !best.equals(previous)) {
+                bestMoveChanges++;
+                lastBestMoveChange = iterations.sum();
+            }
+        }
+        pvSamples++;
+        newSearch = false;
+        principalVariation = Collections.unmodifiableList(pv);
+    }
+
+    /**
+     * Record the start of a search from a new root, whose first principal variation is not compared with that of
+     * the previous search.
+     */
+    public synchronized void newSearch() {
+        newSearch = true;
+        lastBestMoveChange = iterations.sum();
+    }
+
+    /**
+     * @return the timers of the phases (which record nothing unless the search is configured to time its phases).
+     */
+    public PhaseTimers getPhaseTimers() {
+        return phaseTimers;
+    }
+
+    /**
+     * Set all the metrics back to zero, and restart the clock.
+     * The principal variation is forgotten, so that a new search does not count as a change.
+     */
+    public synchronized void reset() {
+        phaseTimers.reset();
+        iterations.reset();
+        nodes.reset();
+        for (LongAdder depth : depths) depth.reset();
+        principalVariation = Collections.emptyList();
+        newSearch = true;
+        pvSamples = 0;
+        pvComparisons = 0;
+        pvChanges = 0;
+        bestMoveChanges = 0;
+        lastBestMoveChange = 0;
+        startNanos = System.nanoTime();
+    }
+
+    /**
+     * @return a consistent copy of the metrics, as of now.
+     */
+    public synchronized Snapshot snapshot() {
+        PhaseTimers.Phase[] phases = PhaseTimers.Phase.values();
+        long[] phaseNanos = new long[phases.length];
+        long[][] phaseHistograms = new long[phases.length][];
+        for (PhaseTimers.Phase phase : phases) {
+            phaseNanos[phase.ordinal()] = phaseTimers.getNanos(phase);
+            phaseHistograms[phase.ordinal()] = phaseTimers.getHistogram(phase);
+        }
+        long[] depthCounts = new long[MAX_DEPTH + 1];
+        for (int d = 0; d <= MAX_DEPTH; d++) depthCounts[d] = depths[d].sum();
+        long n = iterations.sum();
+        return new Snapshot(System.nanoTime() - startNanos, n, nodes.sum(), depthCounts, phaseNanos, phaseHistograms,
+                principalVariation, pvSamples, pvComparisons, pvChanges, bestMoveChanges, n - lastBestMoveChange);
+    }
+
+    /**
+     * The metrics at one moment.
+     */
+    public static final class Snapshot {
+        private final long elapsedNanos;
+        private final long iterations;
+        private final long nodes;
+        private final long[] depths;
+        private final long[] phaseNanos;
+        private final long[][] phaseHistograms;
+        private final List<Object> principalVariation;
+        private final long pvSamples;
+        private final long pvComparisons;
+        private final long pvChanges;
+        private final long bestMoveChanges;
+        private final long iterationsSinceBestMoveChange;
+
+        private Snapshot(long elapsedNanos, long iterations, long nodes, long[] depths, long[] phaseNanos, long[][] phaseHistograms,
+                         List<Object> principalVariation, long pvSamples, long pvComparisons, long pvChanges, long bestMoveChanges,
+                         long iterationsSinceBestMoveChange) {
+            this.elapsedNanos = elapsedNanos;
+            this.iterations = iterations;
+            this.nodes = nodes;
+            this.depths = depths;
+            this.phaseNanos = phaseNanos;
+            this.phaseHistograms = phaseHistograms;
+            this.principalVariation = principalVariation;
+            this.pvSamples = pvSamples;
+            this.pvComparisons = pvComparisons;
+            this.pvChanges = pvChanges;
+            this.bestMoveChanges = bestMoveChanges;
+            this.iterationsSinceBestMoveChange = iterationsSinceBestMoveChange;
+        }
+
+        /**
+         * @return the time since the metrics were created or reset, in nanoseconds.
+         */
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public long getIterations() {
+            return iterations;
+        }
+
+        /**
+         * @return the number of iterations per second since the metrics were created or reset.
+         */
+        public double getIterationsPerSecond() {
+            return elapsedNanos == 0 ? 0 : iterations * 1e9 / elapsedNanos;
+        }
+
+        /**
+         * @param earlier an earlier snapshot of the same metrics (since which they have not been reset).
+         * @return the number of iterations per second between the earlier snapshot and this.
+         */
+        public double getIterationsPerSecond(Snapshot earlier) {
+            long nanos = elapsedNanos - earlier.elapsedNanos;
+            return nanos <= 0 ? 0 : (iterations - earlier.iterations) * 1e9 / nanos;
+        }
+
+        /**
+         * @return the number of nodes allocated.
+         */
+        public long getNodes() {
+            return nodes;
+        }
+
+        /**
+         * @return the number of iterations whose selection stopped at each depth (the last element counting all
+         * depths from MAX_DEPTH on).
+         */
+        public long[] getDepthHistogram() {
+            return depths.clone();
+        }
+
+        public double getMeanDepth() {
+            long count = 0;
+            long sum = 0;
+            for (int d = 0; d < depths.length; d++) {
+                count += depths[d];
+                sum += d * depths[d];
+            }
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * @return the greatest depth at which selection has stopped.
+         */
+        public int getMaxDepth() {
+            for (int d = depths.length - 1; d > 0; d--) if (depths[d] > 0) return d;
+            return 0;
+        }
+
+        /**
+         * @param phase a phase.
+         * @return the total time spent in the phase, in nanoseconds.
+         */
+        public long getPhaseNanos(PhaseTimers.Phase phase) {
+            return phaseNanos[phase.ordinal()];
+        }
+
+        /**
+         * @param phase a phase.
+         * @return the histogram of the times of the phase (see PhaseTimers).
+         */
+        public long[] getPhaseHistogram(PhaseTimers.Phase phase) {
+            return phaseHistograms[phase.ordinal()].clone();
+        }
+
+        /**
+         * @param phase    a phase.
+         * @param quantile a number between 0 and 1.
+         * @return an upper bound on the given quantile of the time of the phase, in nanoseconds (see PhaseTimers).
+         */
+        public long getPhaseQuantileNanos(PhaseTimers.Phase phase, double quantile) {
+            return PhaseTimers.quantile(phaseHistograms[phase.ordinal()], quantile);
+        }
+
+        /**
+         * @return the most recent sample of the principal variation, best move first.
+         */
+        public List<Object> getPrincipalVariation() {
+            return principalVariation;
+        }
+
+        /**
+         * @return the number of samples of the principal variation.
+         */
+        public long getPvSamples() {
+            return pvSamples;
+        }
+
+        /**
+         * @return the number of samples in which the principal variation differed from the previous sample.
+         */
+        public long getPvChanges() {
+            return pvChanges;
+        }
+
+        /**
+         * @return the fraction of samples (other than the first of each search) in which the principal variation
+         * was unchanged (one if there have been no such samples).
+         */
+        public double getPvStability() {
+            return pvComparisons == 0 ? 1 : 1 - (double) pvChanges / pvComparisons;
+        }
+
+        /**
+         * @return the number of samples in which the best move differed from the previous sample.
+         */
+        public long getBestMoveChanges() {
+            return bestMoveChanges;
+        }
+
+        /**
+         * @return the number of iterations since the best move last changed (or since the current search began,
+         * if it has not).
+         */
+        public long getIterationsSinceBestMoveChange() {
+            return iterationsSinceBestMoveChange;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder result = new StringBuilder(String.format(
+                    "iterations: %,d (%,.0f/s) | nodes: %,d | depth: mean %.1f, max %d | PV stability: %.2f (%d best-move changes, last %,d iterations ago)%n",
+                    iterations, getIterationsPerSecond(), nodes, getMeanDepth(), getMaxDepth(), getPvStability(),
+                    bestMoveChanges, iterationsSinceBestMoveChange));
+            for (PhaseTimers.Phase phase : PhaseTimers.Phase.values())
+                if (phaseNanos[phase.ordinal()] > 0)
+                    result.append(String.format("%-16s %10.3f ms  p50 <%,9d ns  p99 <%,9d ns%n", phase, phaseNanos[phase.ordinal()] / 1e6,
+                            getPhaseQuantileNanos(phase, 0.5), getPhaseQuantileNanos(phase, 0.99)));
+            if (!principalVariation.isEmpty()) result.append("PV: ").append(principalVariation).append(System.lineSeparator());
+            return result.toString();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Snapshot snapshot)) return false;
+            return elapsedNanos == snapshot.elapsedNanos && iterations == snapshot.iterations && nodes == snapshot.nodes
+                    && Arrays.equals(depths, snapshot.depths) && principalVariation.equals(snapshot.principalVariation);
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(elapsedNanos) * 31 + Long.hashCode(iterations);
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.core;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A node of the tree built by a SearchEngine, for any game.
+ * <p>
+ * The statistics (wins, visits and pending virtual losses) are updated atomically, and the children of a node are
+ * published all at once, so that several threads may share one tree (see ParallelMode.TREE).
+ * As Node requires, wins are counted in half-points: a win is worth 2 and a draw 1, to the player who moved to this node.
+ *
+ * @param <G> the type of the Game.
+ */
+public final class SearchNode<G extends Game> implements Node<G> {
+    /**
+     * The player who moved to the root (which is no player at all).
+     */
+    public static final int NO_PLAYER = Integer.MIN_VALUE;
+
+    private static final VarHandle WINS;
+    private static final VarHandle VISITS;
+    private static final VarHandle VIRTUAL_LOSSES;
+    private static final VarHandle EXPANSION_CLAIMED;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            WINS = lookup.findVarHandle(SearchNode.class, "wins", int.class);
+            VISITS = lookup.findVarHandle(SearchNode.class, "visits", int.class);
+            VIRTUAL_LOSSES = lookup.findVarHandle(SearchNode.class, "virtualLosses", int.class);
+            EXPANSION_CLAIMED = lookup.findVarHandle(SearchNode.class, "expansionClaimed", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final State<G> state;
+    private final SearchNode<G> parent;
+    private final Move<G> move; // The move that led to this state (null for the root).
+    private final int mover;    // The player who made that move.
+    private volatile List<SearchNode<G>> children = Collections.emptyList();
+    private volatile int wins;
+    private volatile int visits;
+    private volatile int virtualLosses; // The number of threads currently descending through this node.
+    private volatile int expansionClaimed;
+
+    /**
+     * Constructor for a root node.
+     *
+     * @param state the state at the root.
+     */
+    public SearchNode(State<G> state) {
+        this(state, null, null);
+    }
+
+    /**
+     * @param state  the state of this node.
+     * @param parent the parent (null for the root).
+     * @param move   the move which leads from parent to this node (null for the root).
+     */
+    public SearchNode(State<G> state, SearchNode<G> parent, Move<G> move) {
+        this.state = state;
+        this.parent = parent;
+        this.move = move;
+        this.mover = parent == null ? NO_PLAYER : parent.state.player();
+    }
+
+    @Override
+    public boolean isLeaf() {
+        return state.isTerminal();
+    }
+
+    @Override
+    public State<G> state() {
+        return state;
+    }
+
+    @Override
+    public boolean white() {
+        return state.player() == state.game().opener();
+    }
+
+    @Override
+    public Collection<Node<G>> children() {
+        return Collections.unmodifiableList(children);
+    }
+
+    /**
+     * @return the children of this node (an unmodifiable snapshot).
+     */
+    public List<SearchNode<G>> getChildren() {
+        return children;
+    }
+
+    /**
+     * Recompute the statistics of this node as the sums of those of its children.
+     */
+    @Override
+    public void backPropagate() {
+        int w = 0;
+        int v = 0;
+        for (SearchNode<G> child : children) {
+            w += child.wins;
+            v += child.visits;
+        }
+        wins = w;
+        visits = v;
+    }
+
+    @Override
+    public synchronized void addChild(State<G> state, Move<G> move) {
+        List<SearchNode<G>> result = new ArrayList<>(children);
+        result.add(new SearchNode<>(state, this, move));
+        children = Collections.unmodifiableList(result);
+    }
+
+    @Override
+    public int wins() {
+        return wins;
+    }
+
+    @Override
+    public int playouts() {
+        return visits;
+    }
+
+    public SearchNode<G> getParent() {
+        return parent;
+    }
+
+    public Move<G> getMove() {
+        return move;
+    }
+
+    /**
+     * @return the player who moved to this node (NO_PLAYER for the root).
+     */
+    public int getMover() {
+        return mover;
+    }
+
+    public int getVirtualLosses() {
+        return virtualLosses;
+    }
+
+    /**
+     * Claim the right to expand this node: this yields true exactly once per node.
+     *
+     * @return true if the caller should expand this node (and then call publish).
+     */
+    boolean claimExpansion() {
+        return EXPANSION_CLAIMED.compareAndSet(this, 0, 1);
+    }
+
+    /**
+     * Add all the children of this node at once, so that concurrent readers never see a partial expansion.
+     *
+     * @param newChildren the children.
+     */
+    void publish(List<SearchNode<G>> newChildren) {
+        children = Collections.unmodifiableList(newChildren);
+    }
+
+    /**
+     * Record the result of a playout which passed through this node.
+     *
+     * @param winner the winner of the playout (or Playout.DRAW).
+     */
+    void update(int winner) {
+        VISITS.getAndAdd(this, 1);
+        int points = winner == Playout.DRAW ? 1 : winner == mover ? 2 : 0;
+        if (points > 0) WINS.getAndAdd(this, points);
+    }
+
+    /**
+     * Record that a thread is descending through this node.
+     */
+    void addVirtualLoss() {
+        VIRTUAL_LOSSES.getAndAdd(this, 1);
+    }
+
+    /**
+     * Record that a thread which called addVirtualLoss has backpropagated its result.
+     */
+    void removeVirtualLoss() {
+        VIRTUAL_LOSSES.getAndAdd(this, -1);
+    }
+
+    /**
+     * Method to select the child with the highest score under the given policy, where each thread currently
+     * descending through a node counts as virtualLoss additional lost playouts of that node.
+     *
+     * @param policy      the selection policy.
+     * @param virtualLoss the number of lost playouts charged for each pending visit.
+     * @return the selected child (null if there are none).
+     */
+    SearchNode<G> select(SelectionPolicy policy, double virtualLoss) {
+        List<SearchNode<G>> snapshot = children;
+        double logParentVisits = Math.log(visits + virtualLoss * virtualLosses + 1);
+        SearchNode<G> selected = null;
+        double best = Double.NEGATIVE_INFINITY;
+        for (int i = 0, n = snapshot.size(); i < n; i++) {
+            SearchNode<G> child = snapshot.get(i);
+            double score = policy.score(logParentVisits, child.visits + virtualLoss * child.virtualLosses, child.wins / 2.0);
+            if (score > best || selected == null) {
+                selected = child;
+                best = score;
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * @return the most visited child (the first, if there is a tie), or null if there are none.
+     */
+    public SearchNode<G> bestChild() {
+        SearchNode<G> best = null;
+        for (SearchNode<G> child : children) if (best == null || child.visits > best.visits) best = child;
+        return best;
+    }
+
+    /**
+     * @return the number of visits by which the most visited child leads the next (see Budget).
+     */
+    int lead() {
+        int best = 0;
+        int second = 0;
+        for (SearchNode<G> child : children) {
+            int v = child.visits;
+            if (v > best) {
+                second = best;
+                best = v;
+            } else if (v > second) second = v;
+        }
+        return best - second;
+    }
+
+    @Override
+    public String toString() {
+        return "SearchNode{move=" + move + ", wins=" + wins / 2.0 + ", visits=" + visits + ", children=" + children.size() + "}";
+    }
+}
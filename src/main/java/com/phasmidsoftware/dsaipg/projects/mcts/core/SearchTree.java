@@ -0,0 +1,104 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.core;
+
+import java.util.List;
+import java.util.random.RandomGenerator;
+
+/**
+ * A tree searched by a SearchEngine, which carries out each phase of an iteration on it.
+ * <p>
+ * The engine runs the iterations (on as many threads as its configuration asks for), keeps to the Budget, times
+ * the phases and records the telemetry; the tree decides what its nodes are and how to select, expand, simulate
+ * and backpropagate. Each thread keeps what it needs for one iteration (the path from the root, the result of the
+ * playout, any scratch space) in a path of the tree's own making, which it reuses for every iteration: so the
+ * nodes of a tree may be objects (see SearchNode) or merely indices into arrays.
+ * <p>
+ * When the engine shares one tree between threads (ParallelMode.TREE), or selects several leaves before simulating
+ * them (EngineConfig.withBatchSize), it passes a positive virtual loss to each phase, and the tree must then be
+ * safe for concurrent iterations; otherwise the virtual loss is zero.
+ *
+ * @param <G> the type of the Game.
+ * @param <P> the type of the path of one iteration.
+ */
+public interface SearchTree<G extends Game, P> {
+
+    /**
+     * @param random the source of randomness for the calling thread.
+     * @return a new path, for the iterations of the calling thread.
+     */
+    P newPath(RandomGenerator random);
+
+    /**
+     * Selection: walk down from the root to the node to be expanded, replacing whatever the path held before.
+     * When virtualLoss is positive, a virtual loss is added to each node on the way.
+     *
+     * @param path        the path.
+     * @param virtualLoss the number of lost playouts charged for each pending visit.
+     * @return the depth of the node reached (the root being at depth 0).
+     */
+    int select(P path, double virtualLoss);
+
+    /**
+     * Expansion: expand the node reached by select (unless that cannot, or need not, be done) and extend the path
+     * to the node from which to simulate, adding a virtual loss to it if virtualLoss is positive.
+     *
+     * @param path        the path.
+     * @param virtualLoss the number of lost playouts charged for each pending visit.
+     * @return the number of nodes allocated.
+     */
+    int expand(P path, double virtualLoss);
+
+    /**
+     * Simulation: play out (or evaluate) the last node of the path, keeping the result in the path.
+     *
+     * @param path the path.
+     */
+    void simulate(P path);
+
+    /**
+     * Simulation of a batch of paths (see EngineConfig.withBatchSize), which by default are simulated one at a time.
+     *
+     * @param paths the paths, each of which has been expanded.
+     */
+    default void simulate(List<P> paths) {
+        for (P path : paths) simulate(path);
+    }
+
+    /**
+     * Backpropagation: record the result of the simulation in each node of the path, removing the virtual losses
+     * added by select and expand if virtualLoss is positive.
+     *
+     * @param path        the path.
+     * @param virtualLoss the virtual loss passed to select and expand.
+     */
+    void backPropagate(P path, double virtualLoss);
+
+    /**
+     * @return the number of visits by which the most visited child of the root leads the next (see Budget).
+     */
+    int lead();
+
+    /**
+     * @return the moves along the path of most visited children from the root (at most SearchMetrics.PV_DEPTH).
+     */
+    List<? extends Move<G>> principalVariation();
+
+    /**
+     * Called on each thread before each iteration (or batch of iterations), before select.
+     */
+    default void beginIteration() {
+    }
+
+    /**
+     * Called on each thread after each iteration (or batch of iterations), after backPropagate: even if the
+     * iteration failed. This is the place for any upkeep which must not overlap an iteration.
+     */
+    default void endIteration() {
+    }
+
+    /**
+     * @return true if no further iteration could change the move to be chosen (the search then ends).
+     */
+    default boolean isDecided() {
+        return false;
+    }
+}
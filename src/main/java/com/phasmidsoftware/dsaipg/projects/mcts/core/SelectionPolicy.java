@@ -0,0 +1,38 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.core;
+
+/**
+ * The policy by which a SearchEngine chooses which child of a node to descend into: the child with the highest score.
+ * Policies hold no state of their own, so one policy may be shared by any number of engines and threads.
+ */
+@FunctionalInterface
+public interface SelectionPolicy {
+
+    /**
+     * UCT (UCB1 applied to trees) with the customary exploration constant of sqrt(2).
+     */
+    SelectionPolicy UCT = uct(Math.sqrt(2));
+
+    /**
+     * Method to score a child.
+     * NOTE: the logarithm of the parent's visits is passed, rather than the visits themselves, since it is the same
+     * for every child of the parent (and it is what UCT needs).
+     *
+     * @param logParentVisits the natural logarithm of the number of visits to the parent.
+     * @param visits          the number of visits to the child (which may include virtual losses, and may be zero).
+     * @param wins            the wins of the player who moved to the child, in those visits (a draw counting one half).
+     * @return the score of the child.
+     */
+    double score(double logParentVisits, double visits, double wins);
+
+    /**
+     * Method to create a UCT policy: a child which has not been visited scores infinity.
+     *
+     * @param exploration the exploration constant.
+     * @return a SelectionPolicy.
+     */
+    static SelectionPolicy uct(double exploration) {
+        if (exploration < 0) throw new IllegalArgumentException("exploration must not be negative: " + exploration);
+        return (logParentVisits, visits, wins) -> visits == 0 ? Double.POSITIVE_INFINITY
+                : wins / visits + exploration * Math.sqrt(logParentVisits / visits);
+    }
+}
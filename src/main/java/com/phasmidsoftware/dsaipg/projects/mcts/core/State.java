@@ -13,6 +13,7 @@ import java.util.Random;
 
 /**
  * This interface defines the behavior of a State of a game (G).
+ * A State which can enumerate its moves as int codes should implement CodedState.
  *
  * @param <G> the type of game.
  */
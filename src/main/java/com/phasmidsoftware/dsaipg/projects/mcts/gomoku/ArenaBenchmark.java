@@ -0,0 +1,53 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.gomoku;
+
+/**
+ * Benchmark of the NodeArena against the tree of MCTSNode objects: for the same number of iterations, the nodes
+ * created, the time taken, and the heap retained per node (measured after garbage collection, so approximate).
+ * Usage: ArenaBenchmark [iterations [boardSize]]
+ */
+public class ArenaBenchmark {
+
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        int boardSize = args.length > 1 ? Integer.parseInt(args[1]) : 15;
+        GomokuState state = new GomokuState(boardSize);
+        int centre = boardSize / 2;
+        state.makeMove(new GomokuMove(centre, centre));
+        state.makeMove(new GomokuMove(centre, centre + 1));
+        System.out.println("=== " + boardSize + "x" + boardSize + ", " + iterations + " iterations ===");
+
+        MonteCarloTreeSearch objects = new MonteCarloTreeSearch(MCTSConfig.iterations(iterations));
+        objects.search(state, iterations); // warm-up
+        long created = objects.getNodesCreated();
+        long before = usedHeap();
+        long start = System.nanoTime();
+        MCTSNode root = objects.search(state, iterations);
+        double millis = (System.nanoTime() - start) / 1e6;
+        long nodes = objects.getNodesCreated() - created;
+        long bytes = usedHeap() - before;
+        report("MCTSNode", nodes, millis, bytes);
+        if (root.getVisits() == 0) throw new IllegalStateException(); // keep the tree reachable until measured
+
+        MonteCarloTreeSearch arena = new MonteCarloTreeSearch(MCTSConfig.iterations(iterations).withNodeArena(true));
+        arena.findNextMove(state); // warm-up (and the arena's arrays grow to size)
+        before = usedHeap();
+        start = System.nanoTime();
+        arena.findNextMove(state);
+        millis = (System.nanoTime() - start) / 1e6;
+        NodeArena nodeArena = arena.getNodeArena();
+        report("NodeArena", nodeArena.size(), millis, usedHeap() - before + nodeArena.getAllocatedBytes());
+        System.out.printf("NodeArena: %d bytes per node in the arrays, %.1f bytes per node allocated (capacity %,d)%n",
+                NodeArena.BYTES_PER_NODE, nodeArena.getBytesPerNode(), nodeArena.capacity());
+    }
+
+    private static void report(String name, long nodes, double millis, long bytes) {
+        System.out.printf("%-10s | nodes: %,10d | time: %8.1f ms | heap: %,12d bytes | %7.1f bytes per node%n",
+                name, nodes, millis, bytes, (double) bytes / nodes);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,214 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.gomoku;
+
+import com.phasmidsoftware.dsaipg.projects.mcts.core.SearchMetrics;
+import com.phasmidsoftware.dsaipg.projects.mcts.core.SearchTree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.random.RandomGenerator;
+
+/**
+ * The tree of a Monte Carlo tree search on a NodeArena (see MCTSConfig.withNodeArena), which is searched sequentially
+ * by a SearchEngine.
+ * <p>
+ * No state is kept in the tree: each iteration clones the root state once and replays the selected moves on it,
+ * then plays out from there with a PlayoutEngine. The arena (and its arrays) is reused from one search to the next.
+ */
+final class ArenaSearch implements SearchTree<GomokuGame, ArenaSearch.Path> {
+    private static final double EXPLORATION_PARAMETER = Math.sqrt(2);
+
+    private final NodeArena arena;
+    private final RolloutPolicy policy;
+    private final boolean candidates;
+    private GomokuState rootState;
+    private GomokuMove[] movesByCell = new GomokuMove[0];
+
+    /**
+     * The path of one iteration, by node index, with the state which it reaches.
+     */
+    static final class Path {
+        private final PlayoutEngine playoutEngine;
+        private GomokuState state;
+        private int[] nodes = new int[64];
+        private int depth;
+        private int[] cells = new int[0];
+        private int winner;
+
+        private Path(PlayoutEngine playoutEngine) {
+            this.playoutEngine = playoutEngine;
+        }
+
+        private void push(int node) {
+            if (depth == nodes.length) nodes = Arrays.copyOf(nodes, depth * 2);
+            nodes[depth++] = node;
+        }
+    }
+
+    /**
+     * @param initialCapacity the number of nodes for which the arena allocates space at first.
+     * @param policy          the rollout policy.
+     * @param candidates      true to expand only the candidate moves of each state, else all the empty cells.
+     */
+    ArenaSearch(int initialCapacity, RolloutPolicy policy, boolean candidates) {
+        this.arena = new NodeArena(initialCapacity);
+        this.policy = policy;
+        this.candidates = candidates;
+    }
+
+    NodeArena getArena() {
+        return arena;
+    }
+
+    /**
+     * Method to begin a new tree, from the given state, for the next search.
+     * Nodes are expanded as soon as they are reached, as in MonteCarloTreeSearch.
+     *
+     * @param rootState the state at the root (with the candidate distance to be used for expansion).
+     */
+    void newRoot(GomokuState rootState) {
+        int boardSize = rootState.getBoardSize();
+        if (movesByCell.length != boardSize * boardSize) {
+            movesByCell = new GomokuMove[boardSize * boardSize];
+            for (int i = 0; i < movesByCell.length; i++) movesByCell[i] = new GomokuMove(i / boardSize, i % boardSize);
+        }
+        this.rootState = rootState;
+        arena.newRoot();
+    }
+
+    /**
+     * @return the move to the most visited child of the root (null if the root has no children).
+     */
+    GomokuMove bestMove() {
+        int best = bestChild(NodeArena.ROOT);
+        return best < 0 ? null : movesByCell[arena.getMove(best)];
+    }
+
+    /**
+     * @return the visits to each child of the root, indexed by the cell of its move.
+     */
+    int[] rootVisits() {
+        int[] result = new int[movesByCell.length];
+        int first = arena.getFirstChild(NodeArena.ROOT);
+        for (int child = first; child < first + arena.getChildCount(NodeArena.ROOT); child++)
+            result[arena.getMove(child)] = arena.getVisits(child);
+        return result;
+    }
+
+    @Override
+    public Path newPath(RandomGenerator random) {
+        return new Path(new PlayoutEngine(policy, random));
+    }
+
+    /**
+     * Selection: replay the moves on the way down.
+     */
+    @Override
+    public int select(Path path, double virtualLoss) {
+        GomokuState state = rootState.clone();
+        path.depth = 0;
+        int node = NodeArena.ROOT;
+        path.push(node);
+        while (arena.getChildCount(node) > 0) {
+            node = selectChild(node);
+            state.makeMove(movesByCell[arena.getMove(node)]);
+            path.push(node);
+        }
+        path.state = state;
+        return path.depth - 1;
+    }
+
+    /**
+     * Expansion, and the choice of one of the new children from which to simulate.
+     */
+    @Override
+    public int expand(Path path, double virtualLoss) {
+        GomokuState state = path.state;
+        if (state.isTerminal()) return 0;
+        if (path.cells.length < state.getEmptyCount()) path.cells = new int[state.getEmptyCount()];
+        int n = candidates ? state.getCandidateCells(path.cells) : state.getLegalCells(path.cells);
+        int first = arena.addChildren(path.nodes[path.depth - 1], path.cells, n);
+        int node = first + path.playoutEngine.getRandom().nextInt(n);
+        state.makeMove(movesByCell[arena.getMove(node)]);
+        path.push(node);
+        return n;
+    }
+
+    @Override
+    public void simulate(Path path) {
+        path.winner = path.playoutEngine.play(path.state);
+    }
+
+    /**
+     * Backpropagation: the player who moved into a node alternates with depth, ending with the last mover.
+     */
+    @Override
+    public void backPropagate(Path path, double virtualLoss) {
+        int winner = path.winner;
+        int mover = GomokuState.getOpponent(path.state.getCurrentPlayer());
+        for (int i = path.depth - 1; i >= 0; i--) {
+            arena.update(path.nodes[i], winner == GomokuState.EMPTY ? 1 : winner == mover ? 2 : 0);
+            mover = GomokuState.getOpponent(mover);
+        }
+    }
+
+    /**
+     * @return the number of visits by which the most visited child of the root leads the next (for early stopping).
+     */
+    @Override
+    public int lead() {
+        int best = 0;
+        int second = 0;
+        int first = arena.getFirstChild(NodeArena.ROOT);
+        for (int i = 0; i < arena.getChildCount(NodeArena.ROOT); i++) {
+            int visits = arena.getVisits(first + i);
+            if (visits > best) {
+                second = best;
+                best = visits;
+            } else if (visits > second) second = visits;
+        }
+        return best - second;
+    }
+
+    /**
+     * @return the moves along the path of most visited children from the root (at most SearchMetrics.PV_DEPTH).
+     */
+    @Override
+    public List<GomokuMove> principalVariation() {
+        List<GomokuMove> result = new ArrayList<>();
+        for (int node = bestChild(NodeArena.ROOT); node >= 0 && result.size() < SearchMetrics.PV_DEPTH; node = bestChild(node))
+            result.add(movesByCell[arena.getMove(node)]);
+        return result;
+    }
+
+    private int selectChild(int node) {
+        int first = arena.getFirstChild(node);
+        double logParentVisits = Math.log(arena.getVisits(node) + 1);
+        int selected = first;
+        double bestValue = Double.NEGATIVE_INFINITY;
+        for (int child = first; child < first + arena.getChildCount(node); child++) {
+            double visits = arena.getVisits(child) + 1e-6;
+            double uctValue = arena.getWins(child) / visits + EXPLORATION_PARAMETER * Math.sqrt(logParentVisits / visits);
+            if (uctValue > bestValue) {
+                selected = child;
+                bestValue = uctValue;
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * @return the most visited child of node (the first, if there is a tie), or -1 if it has none.
+     */
+    private int bestChild(int node) {
+        int first = arena.getFirstChild(node);
+        int best = -1;
+        int maxVisits = -1;
+        for (int child = first; child < first + arena.getChildCount(node); child++)
+            if (arena.getVisits(child) > maxVisits) {
+                best = child;
+                maxVisits = arena.getVisits(child);
+            }
+        return best;
+    }
+}
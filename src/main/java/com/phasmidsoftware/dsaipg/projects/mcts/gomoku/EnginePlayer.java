@@ -0,0 +1,74 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.gomoku;
+
+import com.phasmidsoftware.dsaipg.projects.mcts.core.EngineConfig;
+import com.phasmidsoftware.dsaipg.projects.mcts.core.Move;
+import com.phasmidsoftware.dsaipg.projects.mcts.core.PhaseTimers;
+import com.phasmidsoftware.dsaipg.projects.mcts.core.SearchEngine;
+import com.phasmidsoftware.dsaipg.projects.mcts.core.SearchMetrics;
+
+import java.util.Collections;
+
+/**
+ * A player which chooses its moves with a SearchEngine on the engine's own tree of SearchNodes (whereas
+ * MonteCarloTreeSearch gives the engine its tree of MCTSNodes): Gomoku supplies only its candidate moves and a
+ * GomokuPlayout.
+ */
+public class EnginePlayer implements Player {
+    private final SearchEngine<GomokuGame> engine;
+    private final int candidateDistance;
+
+    /**
+     * @param config            the configuration of the search.
+     * @param policy            the rollout policy.
+     * @param candidateDistance the distance from existing stones within which a cell is expanded (zero for every empty cell).
+     */
+    public EnginePlayer(EngineConfig config, RolloutPolicy policy, int candidateDistance) {
+        if (candidateDistance < 0) throw new IllegalArgumentException("candidateDistance must not be negative: " + candidateDistance);
+        this.engine = new SearchEngine<>(config, new GomokuPlayout(policy),
+                state -> Collections.<Move<GomokuGame>>unmodifiableList(((GomokuState) state).getCandidateMoves()));
+        this.candidateDistance = candidateDistance;
+    }
+
+    /**
+     * Constructor for a player with uniform playouts which expands the cells within two of a stone.
+     *
+     * @param config the configuration of the search.
+     */
+    public EnginePlayer(EngineConfig config) {
+        this(config, RolloutPolicy.UNIFORM, GomokuState.SEARCH_CANDIDATE_DISTANCE);
+    }
+
+    @Override
+    public GomokuMove getMove(GomokuState state) {
+        return (GomokuMove) engine.findNextMove(state.withCandidateDistance(candidateDistance));
+    }
+
+    /**
+     * End the current search (if any) so that getMove returns the best move found so far.
+     */
+    public void stop() {
+        engine.stop();
+    }
+
+    /**
+     * @return the number of iterations run for the most recent move.
+     */
+    public long getIterations() {
+        return engine.getIterations();
+    }
+
+    /**
+     * @return the telemetry of all this player's searches, which may be polled while it thinks.
+     */
+    @Override
+    public SearchMetrics getMetrics() {
+        return engine.getMetrics();
+    }
+
+    /**
+     * @return the time spent in each phase of the searches (if the configuration times them).
+     */
+    public PhaseTimers getTimers() {
+        return engine.getTimers();
+    }
+}
@@ -0,0 +1,202 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.gomoku;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * The record of one game of Gomoku, for offline training: its moves, its result and, for each move which was
+ * searched for, the visits of the search to each move from the root (see MCTSPlayer.getRootVisits).
+ * <p>
+ * In a file (see GameRecordWriter), a record is an int giving the length of the rest of the record, followed by:
+ * a byte for the board size; a byte for the winner (PLAYER_ONE, PLAYER_TWO or EMPTY for a draw); a short for the
+ * number of moves; a short for the cell (row * boardSize + col) of each move; and then, for each move, its visit
+ * distribution: a varint for the number of cells with visits, and for each such cell (in increasing order) a varint
+ * for the gap since the previous such cell and a varint for its visits.
+ * A varint holds seven bits in each byte, least significant first, the top bit being set in all but the last byte.
+ */
+public final class GameRecord {
+    private final int boardSize;
+    private final int winner;
+    private final int[] moves;
+    private final int[][] cells;  // For each move, the cells with visits, in increasing order.
+    private final int[][] visits; // For each move, the visits to those cells.
+
+    /**
+     * @param boardSize the size of the board.
+     * @param winner    PLAYER_ONE, PLAYER_TWO or EMPTY (a draw, or an unfinished game).
+     * @param moves     the cells of the moves, in the order they were made.
+     * @param visits    for each move, the visits to each cell (see MCTSPlayer.getRootVisits), or null if the move
+     *                  was not searched for.
+     */
+    public GameRecord(int boardSize, int winner, int[] moves, int[][] visits) {
+        if (moves.length != visits.length) throw new IllegalArgumentException("need one visit distribution per move: " + moves.length + ", " + visits.length);
+        if (boardSize < 1 || boardSize > Byte.MAX_VALUE) throw new IllegalArgumentException("unsupported board size: " + boardSize);
+        this.boardSize = boardSize;
+        this.winner = winner;
+        this.moves = moves.clone();
+        this.cells = new int[moves.length][];
+        this.visits = new int[moves.length][];
+        for (int ply = 0; ply < moves.length; ply++) {
+            int[] counts = visits[ply] == null ? new int[0] : visits[ply];
+            int n = 0;
+            for (int count : counts) if (count > 0) n++;
+            cells[ply] = new int[n];
+            this.visits[ply] = new int[n];
+            for (int cell = 0, i = 0; cell < counts.length; cell++)
+                if (counts[cell] > 0) {
+                    cells[ply][i] = cell;
+                    this.visits[ply][i++] = counts[cell];
+                }
+        }
+    }
+
+    private GameRecord(int boardSize, int winner, int[] moves, int[][] cells, int[][] visits) {
+        this.boardSize = boardSize;
+        this.winner = winner;
+        this.moves = moves;
+        this.cells = cells;
+        this.visits = visits;
+    }
+
+    public int getBoardSize() {
+        return boardSize;
+    }
+
+    /**
+     * @return PLAYER_ONE, PLAYER_TWO or EMPTY (a draw, or an unfinished game).
+     */
+    public int getWinner() {
+        return winner;
+    }
+
+    public int getMoveCount() {
+        return moves.length;
+    }
+
+    /**
+     * @param ply the index of a move (from zero).
+     * @return the cell (row * boardSize + col) of the move.
+     */
+    public int getCell(int ply) {
+        return moves[ply];
+    }
+
+    public GomokuMove getMove(int ply) {
+        return new GomokuMove(moves[ply] / boardSize, moves[ply] % boardSize);
+    }
+
+    /**
+     * @param ply the index of a move.
+     * @return the visits to each cell (row * boardSize + col) in the search for the move (all zero if there was none).
+     */
+    public int[] getVisits(int ply) {
+        int[] result = new int[boardSize * boardSize];
+        for (int i = 0; i < cells[ply].length; i++) result[cells[ply][i]] = visits[ply][i];
+        return result;
+    }
+
+    /**
+     * @param ply the index of a move.
+     * @return the total of the visits in the search for the move (zero if there was none).
+     */
+    public int getTotalVisits(int ply) {
+        int result = 0;
+        for (int count : visits[ply]) result += count;
+        return result;
+    }
+
+    /**
+     * @param ply the number of moves to make.
+     * @return the position before move ply (after all the moves, if ply is the number of moves).
+     */
+    public GomokuState getState(int ply) {
+        GomokuState result = new GomokuState(boardSize);
+        for (int i = 0; i < ply; i++) result.makeMove(moves[i]);
+        return result;
+    }
+
+    /**
+     * @return this record as it is written to a file (including the length).
+     */
+    ByteBuffer encode() {
+        int capacity = 2 * Integer.BYTES + Short.BYTES * (1 + moves.length);
+        for (int[] moveCells : cells) capacity += 5 + 8 * moveCells.length;
+        ByteBuffer buffer = ByteBuffer.allocate(capacity);
+        buffer.putInt(0).put((byte) boardSize).put((byte) winner).putShort((short) moves.length);
+        for (int move : moves) buffer.putShort((short) move);
+        for (int ply = 0; ply < moves.length; ply++) {
+            putVarint(buffer, cells[ply].length);
+            int previous = -1;
+            for (int i = 0; i < cells[ply].length; i++) {
+                putVarint(buffer, cells[ply][i] - previous - 1);
+                putVarint(buffer, visits[ply][i]);
+                previous = cells[ply][i];
+            }
+        }
+        buffer.putInt(0, buffer.position() - Integer.BYTES);
+        return buffer.flip();
+    }
+
+    /**
+     * Method to decode the body of a record (the bytes which follow its length).
+     *
+     * @param buffer a buffer positioned at the body, which is left positioned after it.
+     * @return the record.
+     */
+    static GameRecord decode(ByteBuffer buffer) {
+        int boardSize = buffer.get();
+        int winner = buffer.get();
+        int n = Short.toUnsignedInt(buffer.getShort());
+        int[] moves = new int[n];
+        for (int ply = 0; ply < n; ply++) moves[ply] = Short.toUnsignedInt(buffer.getShort());
+        int[][] cells = new int[n][];
+        int[][] visits = new int[n][];
+        for (int ply = 0; ply < n; ply++) {
+            int k = getVarint(buffer);
+            cells[ply] = new int[k];
+            visits[ply] = new int[k];
+            int previous = -1;
+            for (int i = 0; i < k; i++) {
+                previous += getVarint(buffer) + 1;
+                cells[ply][i] = previous;
+                visits[ply][i] = getVarint(buffer);
+            }
+        }
+        return new GameRecord(boardSize, winner, moves, cells, visits);
+    }
+
+    private static void putVarint(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) (value & 0x7F | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static int getVarint(ByteBuffer buffer) {
+        int result = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buffer.get();
+            result |= (b & 0x7F) << shift;
+            if (b >= 0) return result;
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof GameRecord record)) return false;
+        return boardSize == record.boardSize && winner == record.winner && Arrays.equals(moves, record.moves)
+                && Arrays.deepEquals(cells, record.cells) && Arrays.deepEquals(visits, record.visits);
+    }
+
+    @Override
+    public int hashCode() {
+        return (boardSize * 31 + winner) * 31 + Arrays.hashCode(moves);
+    }
+
+    @Override
+    public String toString() {
+        return "GameRecord{boardSize=" + boardSize + ", winner=" + winner + ", moves=" + moves.length + "}";
+    }
+}
@@ -0,0 +1,157 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.gomoku;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A reader of a file written by GameRecordWriter, which maps the file into memory a segment (of up to a gigabyte)
+ * at a time and moves through it like a cursor: next moves to the following record, whose board size, winner and
+ * moves can then be read straight from the mapped file, without decoding the visit distributions or allocating
+ * anything; read decodes the whole record.
+ * <p>
+ * Only the records which were complete when the reader was opened are read.
+ */
+public final class GameRecordReader implements Closeable {
+    static final long SEGMENT_BYTES = 1L << 30;
+
+    private static final int MIN_BODY_BYTES = 2 + Short.BYTES;
+
+    private final FileChannel channel;
+    private final boolean ownsChannel;
+    private final long size;
+    private final long segmentBytes;
+    private ByteBuffer buffer; // The mapped segment, which begins at base.
+    private long base;
+    private long offset = GameRecordWriter.HEADER_BYTES; // The offset of the next record.
+    private int body = -1; // The position in buffer of the body of the current record (-1 if there is none).
+    private long records;
+
+    /**
+     * @param path a game record file.
+     * @throws IOException if the file cannot be read or is not a game record file.
+     */
+    public GameRecordReader(Path path) throws IOException {
+        this(path, SEGMENT_BYTES);
+    }
+
+    /**
+     * @param path         a game record file.
+     * @param segmentBytes the number of bytes to map at a time (a record longer than this is mapped whole).
+     * @throws IOException if the file cannot be read or is not a game record file.
+     */
+    GameRecordReader(Path path, long segmentBytes) throws IOException {
+        this(FileChannel.open(path, StandardOpenOption.READ), true, path, segmentBytes);
+    }
+
+    /**
+     * Constructor for a reader of a channel which belongs to the caller (and is not closed by close).
+     */
+    GameRecordReader(FileChannel channel, Path path, long segmentBytes) throws IOException {
+        this(channel, false, path, segmentBytes);
+    }
+
+    private GameRecordReader(FileChannel channel, boolean ownsChannel, Path path, long segmentBytes) throws IOException {
+        this.channel = channel;
+        this.ownsChannel = ownsChannel;
+        this.segmentBytes = segmentBytes;
+        try {
+            this.size = channel.size();
+            if (size < GameRecordWriter.HEADER_BYTES) throw new IOException("not a game record file: " + path);
+            map(0, GameRecordWriter.HEADER_BYTES);
+            if (buffer.getInt(0) != GameRecordWriter.MAGIC) throw new IOException("not a game record file: " + path);
+            if (buffer.getInt(Integer.BYTES) != GameRecordWriter.VERSION)
+                throw new IOException("unsupported game record version " + buffer.getInt(Integer.BYTES) + ": " + path);
+        } catch (IOException | RuntimeException e) {
+            if (ownsChannel) channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Method to move to the next record.
+     *
+     * @return true if there is one; false at the end of the file (or before an incomplete record).
+     * @throws IOException if the file cannot be mapped.
+     */
+    public boolean next() throws IOException {
+        body = -1;
+        if (offset + Integer.BYTES > size) return false;
+        map(offset, Integer.BYTES);
+        int length = buffer.getInt((int) (offset - base));
+        if (length < MIN_BODY_BYTES || offset + Integer.BYTES + length > size) return false;
+        map(offset, Integer.BYTES + length);
+        body = (int) (offset - base) + Integer.BYTES;
+        offset += Integer.BYTES + length;
+        records++;
+        return true;
+    }
+
+    public int getBoardSize() {
+        return buffer.get(current());
+    }
+
+    /**
+     * @return the winner of the current game: PLAYER_ONE, PLAYER_TWO or EMPTY.
+     */
+    public int getWinner() {
+        return buffer.get(current() + 1);
+    }
+
+    public int getMoveCount() {
+        return Short.toUnsignedInt(buffer.getShort(current() + 2));
+    }
+
+    /**
+     * @param ply the index of a move of the current game.
+     * @return the cell (row * boardSize + col) of the move.
+     */
+    public int getCell(int ply) {
+        if (ply < 0 || ply >= getMoveCount()) throw new IndexOutOfBoundsException("no move " + ply + " in a game of " + getMoveCount());
+        return Short.toUnsignedInt(buffer.getShort(current() + 4 + Short.BYTES * ply));
+    }
+
+    /**
+     * @return the whole of the current record, decoded.
+     */
+    public GameRecord read() {
+        return GameRecord.decode(buffer.duplicate().position(current()));
+    }
+
+    /**
+     * @return the number of records moved to so far.
+     */
+    public long getRecords() {
+        return records;
+    }
+
+    /**
+     * @return the offset in the file just after the last record moved to (just after the header, if none).
+     */
+    public long getEnd() {
+        return offset;
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer = null;
+        if (ownsChannel) channel.close();
+    }
+
+    private int current() {
+        if (body < 0) throw new IllegalStateException("no current record");
+        return body;
+    }
+
+    /**
+     * Ensure that the given bytes of the file are in the mapped segment, mapping a new segment from start if not.
+     */
+    private void map(long start, int bytes) throws IOException {
+        if (buffer != null && start >= base && start + bytes <= base + buffer.capacity()) return;
+        base = start;
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.max(bytes, Math.min(segmentBytes, size - start)));
+    }
+}
@@ -0,0 +1,89 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.gomoku;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A writer of GameRecords to an append-only file, which may be shared by any number of threads.
+ * <p>
+ * The file begins with two ints (MAGIC and VERSION) and continues with the records, one after another,
+ * each prefixed by its length (see GameRecord). Each record is written whole, so a file which was cut short
+ * (by a crash, say) has at most one incomplete record at its end: it is ignored by GameRecordReader,
+ * and cut off when the file is next opened for writing.
+ */
+public final class GameRecordWriter implements Closeable {
+    /**
+     * The first int of a game record file ("GMGR").
+     */
+    public static final int MAGIC = 0x474D4752;
+    public static final int VERSION = 1;
+
+    static final int HEADER_BYTES = 2 * Integer.BYTES;
+
+    private final FileChannel channel;
+    private long records;
+
+    /**
+     * Method to open a game record file for appending, creating it if need be.
+     *
+     * @param path the file.
+     * @throws IOException if the file cannot be written, or exists but is not a game record file.
+     */
+    public GameRecordWriter(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() == 0) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(VERSION).flip();
+                while (header.hasRemaining()) channel.write(header);
+            } else {
+                GameRecordReader reader = new GameRecordReader(channel, path, GameRecordReader.SEGMENT_BYTES);
+                while (reader.next()) ;
+                // Cut off an incomplete record, if there is one.
+                if (reader.getEnd() < channel.size()) channel.truncate(reader.getEnd());
+            }
+            channel.position(channel.size());
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        this.channel = channel;
+    }
+
+    /**
+     * Method to append a record to the file.
+     *
+     * @param record the record.
+     * @throws IOException if the record cannot be written.
+     */
+    public void write(GameRecord record) throws IOException {
+        ByteBuffer buffer = record.encode();
+        synchronized (this) {
+            while (buffer.hasRemaining()) channel.write(buffer);
+            records++;
+        }
+    }
+
+    /**
+     * @return the number of records written by this writer.
+     */
+    public synchronized long getRecords() {
+        return records;
+    }
+
+    /**
+     * @return the size of the file, in bytes.
+     * @throws IOException if the size cannot be found.
+     */
+    public synchronized long size() throws IOException {
+        return channel.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+}
@@ -1,24 +1,43 @@
 package com.phasmidsoftware.dsaipg.projects.mcts.gomoku;
 
+import com.phasmidsoftware.dsaipg.projects.mcts.core.EngineConfig;
+import com.phasmidsoftware.dsaipg.projects.mcts.core.ParallelMode;
+import com.phasmidsoftware.dsaipg.projects.mcts.core.PhaseTimers;
+import com.phasmidsoftware.dsaipg.projects.mcts.core.SearchMetrics;
+
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class GomokuAIBattle {
+    // how often the search metrics of the players are polled (ms), and how many polls the sparkline shows
+    private static final int METRICS_INTERVAL = 500;
+    private static final int METRICS_HISTORY = 120;
+
     private JFrame frame;
     private BoardPanel boardPanel;
     private JTextArea gameLog;
     private JButton startButton;
     private JButton stepButton;
     private JButton pauseButton;
+    private JCheckBox ponderCheckBox;
+    private JCheckBox phaseTimersCheckBox;
     private JComboBox<String> player1TypeCombo;
     private JComboBox<String> player2TypeCombo;
     private JSpinner iterationsSpinner1;
     private JSpinner iterationsSpinner2;
+    private JSpinner threadsSpinner1;
+    private JSpinner threadsSpinner2;
+    private JSpinner budgetSpinner1;
+    private JSpinner budgetSpinner2;
     private JLabel statusLabel;
     private JLabel statsLabel;
+    private MetricsPanel metricsPanel1;
+    private MetricsPanel metricsPanel2;
+    private Timer metricsTimer;
 
     private GomokuState gameState;
     private Player player1;
@@ -27,6 +46,10 @@ public class GomokuAIBattle {
     private boolean autoPlay;
     private Timer gameTimer;
     private int moveDelay = 500;
+    // true while a player is choosing its move on a worker thread (the EDT never waits for a search)
+    private boolean thinking;
+    // counts the games started, so that a move chosen for an abandoned game is discarded
+    private int gameNumber;
 
     // Statistics
     private AtomicInteger player1Wins = new AtomicInteger(0);
@@ -44,7 +67,7 @@ public class GomokuAIBattle {
         // this is the maain frame
         frame = new JFrame("Gomoku AI Battle");
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-        frame.setSize(900, 700);
+        frame.setSize(1150, 700);
         frame.setLayout(new BorderLayout());
 
         // game board
@@ -60,23 +83,35 @@ public class GomokuAIBattle {
 
         //defining players
         playerConfigPanel.add(new JLabel("Player 1 (Black):"));
-        player1TypeCombo = new JComboBox<>(new String[]{"MCTS", "Random"});
+        player1TypeCombo = new JComboBox<>(new String[]{"MCTS", "Random", "MCTS (shared tree)", "MCTS (threat playouts)", "SearchEngine"});
         playerConfigPanel.add(player1TypeCombo);
 
         JPanel p1IterPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
         p1IterPanel.add(new JLabel("Iterations:"));
         iterationsSpinner1 = new JSpinner(new SpinnerNumberModel(1000, 100, 100000, 100));
         p1IterPanel.add(iterationsSpinner1);
+        p1IterPanel.add(new JLabel("Threads:"));
+        threadsSpinner1 = createThreadsSpinner();
+        p1IterPanel.add(threadsSpinner1);
+        p1IterPanel.add(new JLabel("Budget (ms):"));
+        budgetSpinner1 = createBudgetSpinner();
+        p1IterPanel.add(budgetSpinner1);
         playerConfigPanel.add(p1IterPanel);
 
         playerConfigPanel.add(new JLabel("Player 2 (White):"));
-        player2TypeCombo = new JComboBox<>(new String[]{"MCTS", "Random"});
+        player2TypeCombo = new JComboBox<>(new String[]{"MCTS", "Random", "MCTS (shared tree)", "MCTS (threat playouts)", "SearchEngine"});
         playerConfigPanel.add(player2TypeCombo);
 
         JPanel p2IterPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
         p2IterPanel.add(new JLabel("Iterations:"));
         iterationsSpinner2 = new JSpinner(new SpinnerNumberModel(1000, 100, 100000, 100));
         p2IterPanel.add(iterationsSpinner2);
+        p2IterPanel.add(new JLabel("Threads:"));
+        threadsSpinner2 = createThreadsSpinner();
+        p2IterPanel.add(threadsSpinner2);
+        p2IterPanel.add(new JLabel("Budget (ms):"));
+        budgetSpinner2 = createBudgetSpinner();
+        p2IterPanel.add(budgetSpinner2);
         playerConfigPanel.add(p2IterPanel);
 
         controlPanel.add(playerConfigPanel);
@@ -112,6 +147,15 @@ public class GomokuAIBattle {
         });
         buttonPanel.add(resetStatsButton);
 
+        // each MCTS player goes on searching while the other one is thinking
+        ponderCheckBox = new JCheckBox("Ponder");
+        buttonPanel.add(ponderCheckBox);
+
+        // timing the phases of each iteration costs four clock reads per iteration, so it is off unless wanted
+        // (it takes effect from the next New Game)
+        phaseTimersCheckBox = new JCheckBox("Phase Timers");
+        buttonPanel.add(phaseTimersCheckBox);
+
         controlPanel.add(buttonPanel);
 
         //panel
@@ -151,6 +195,15 @@ public class GomokuAIBattle {
         delayPanel.add(delaySlider);
         controlPanel.add(delayPanel);
 
+        // live telemetry of each searching player (including pondering)
+        JPanel metricsPanel = new JPanel(new GridLayout(1, 2, 10, 0));
+        metricsPanel.setBorder(BorderFactory.createTitledBorder("Search Metrics"));
+        metricsPanel1 = new MetricsPanel("Player 1");
+        metricsPanel2 = new MetricsPanel("Player 2");
+        metricsPanel.add(metricsPanel1);
+        metricsPanel.add(metricsPanel2);
+        controlPanel.add(metricsPanel);
+
         frame.add(controlPanel, BorderLayout.EAST);
 
         //time
@@ -167,21 +220,48 @@ public class GomokuAIBattle {
             }
         });
 
+        metricsTimer = new Timer(METRICS_INTERVAL, e -> {
+            metricsPanel1.poll(player1);
+            metricsPanel2.poll(player2);
+        });
+        metricsTimer.start();
+
         frame.setLocationRelativeTo(null);
         frame.setVisible(true);
     }
 
+    // for "MCTS", threads > 1 selects root-parallel search; "MCTS (shared tree)" uses tree-parallel search
+    private JSpinner createThreadsSpinner() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        return new JSpinner(new SpinnerNumberModel(1, 1, Math.max(cores, 64), 1));
+    }
+
+    // a positive time budget per move replaces the iteration limit
+    private JSpinner createBudgetSpinner() {
+        return new JSpinner(new SpinnerNumberModel(0, 0, 60000, 100));
+    }
+
     private void initializePlayers() {
-        player1 = createPlayer(player1TypeCombo.getSelectedIndex(), (Integer) iterationsSpinner1.getValue());
-        player2 = createPlayer(player2TypeCombo.getSelectedIndex(), (Integer) iterationsSpinner2.getValue());
+        player1 = createPlayer(player1TypeCombo.getSelectedIndex(), (Integer) iterationsSpinner1.getValue(), (Integer) threadsSpinner1.getValue(), (Integer) budgetSpinner1.getValue());
+        player2 = createPlayer(player2TypeCombo.getSelectedIndex(), (Integer) iterationsSpinner2.getValue(), (Integer) threadsSpinner2.getValue(), (Integer) budgetSpinner2.getValue());
     }
 
-    private Player createPlayer(int playerType, int iterations) {
+    private Player createPlayer(int playerType, int iterations, int threads, int budgetMillis) {
+        boolean phaseTimers = phaseTimersCheckBox.isSelected();
+        MCTSConfig search = (budgetMillis > 0 ? MCTSConfig.timeBudget(budgetMillis) : MCTSConfig.iterations(iterations)).withPhaseTimers(phaseTimers);
         switch (playerType) {
             case 0: // this is for mcts
-                return new MCTSPlayer(iterations);
+                return new MCTSPlayer(search.withParallelism(threads > 1 ? ParallelMode.ROOT : ParallelMode.SEQUENTIAL, threads).withTreeReuse(true));
             case 1: // rand
                 return new RandomPlayer();
+            case 2: // mcts with one tree shared by all threads
+                return new MCTSPlayer(search.withParallelism(ParallelMode.TREE, threads).withTreeReuse(true));
+            case 3: // mcts with heavy playouts
+                return new MCTSPlayer(search.withParallelism(threads > 1 ? ParallelMode.ROOT : ParallelMode.SEQUENTIAL, threads)
+                        .withTreeReuse(true).withRolloutPolicy(RolloutPolicy.THREATS));
+            case 4: // the generic engine on its own tree (threads > 1 share it)
+                return new EnginePlayer((budgetMillis > 0 ? EngineConfig.timeBudget(budgetMillis) : EngineConfig.iterations(iterations))
+                        .withParallelism(threads > 1 ? ParallelMode.TREE : ParallelMode.SEQUENTIAL, threads).withPhaseTimers(phaseTimers));
             default:
                 return new RandomPlayer();
         }
@@ -194,9 +274,11 @@ public class GomokuAIBattle {
         }
 
         gameState = new GomokuState();
+        stopPlayers(player1, player2);
+        gameNumber++;
+        thinking = false;
 
-        player1 = createPlayer(player1TypeCombo.getSelectedIndex(), (Integer) iterationsSpinner1.getValue());
-        player2 = createPlayer(player2TypeCombo.getSelectedIndex(), (Integer) iterationsSpinner2.getValue());
+        initializePlayers();
 
 
         boardPanel.repaint();
@@ -208,34 +290,86 @@ public class GomokuAIBattle {
         pauseButton.setEnabled(true);
 
         gameLog.setText("");
-        logMessage("New game started: " + getPlayerDescription(player1TypeCombo.getSelectedIndex(), (Integer) iterationsSpinner1.getValue())
-                + " vs " + getPlayerDescription(player2TypeCombo.getSelectedIndex(), (Integer) iterationsSpinner2.getValue()));
+        logMessage("New game started: " + getPlayerDescription(player1TypeCombo.getSelectedIndex(), (Integer) iterationsSpinner1.getValue(), (Integer) threadsSpinner1.getValue(), (Integer) budgetSpinner1.getValue())
+                + " vs " + getPlayerDescription(player2TypeCombo.getSelectedIndex(), (Integer) iterationsSpinner2.getValue(), (Integer) threadsSpinner2.getValue(), (Integer) budgetSpinner2.getValue()));
 
         statusLabel.setText("Game started. Player 1's turn (Black).");
     }
 
-    private String getPlayerDescription(int playerType, int iterations) {
+    private String getPlayerDescription(int playerType, int iterations, int threads, int budgetMillis) {
+        String limit = budgetMillis > 0 ? "budget=" + budgetMillis + "ms" : "iter=" + iterations;
         if (playerType == 0) { //
-            return "MCTS (iter=" + iterations + ")";
-        } else {
+            return "MCTS (" + limit + (threads > 1 ? ", root-parallel x" + threads : "") + ")";
+        } else if (playerType == 2) {
+            return "MCTS (" + limit + ", tree-parallel x" + threads + ")";
+        } else if (playerType == 3) {
+            return "MCTS (" + limit + (threads > 1 ? ", root-parallel x" + threads : "") + ", threat playouts)";
+        } else if (playerType == 4) {
+            return "SearchEngine (" + limit + (threads > 1 ? ", tree-parallel x" + threads : "") + ")";
+        } else if (playerType == 1) {
             return "Random";
         }
+        throw new IllegalArgumentException("unknown player type: " + playerType);
     }
 
+    // the player chooses its move (and then starts pondering) on a worker thread; the move is made on the EDT
     private void makeNextMove() {
-        if (!gameRunning || gameState.isTerminal()) return;
+        if (!gameRunning || gameState.isTerminal() || thinking) return;
 
         int currentPlayer = gameState.getCurrentPlayer();
 
         Player activePlayer = (currentPlayer == GomokuState.PLAYER_ONE) ? player1 : player2;
         String playerName = (currentPlayer == GomokuState.PLAYER_ONE) ? "Player 1 (Black)" : "Player 2 (White)";
+        GomokuState state = gameState.clone();
+        boolean ponder = ponderCheckBox.isSelected();
+        int game = gameNumber;
 
-        GomokuMove move = activePlayer.getMove(gameState.clone());
+        thinking = true;
+        stepButton.setEnabled(false);
+        statusLabel.setText(playerName + " is thinking...");
+        new SwingWorker<GomokuMove, Void>() {
+            private String reuse = "";
 
+            @Override
+            protected GomokuMove doInBackground() {
+                GomokuMove move = activePlayer.getMove(state);
+                if (activePlayer instanceof MCTSPlayer) {
+                    MCTSPlayer mctsPlayer = (MCTSPlayer) activePlayer;
+                    reuse = " [" + mctsPlayer.getIterations() + " iterations, " + mctsPlayer.getCarriedVisits() + " visits reused"
+                            + (mctsPlayer.getPonderIterations() > 0 ? " (" + mctsPlayer.getPonderIterations() + " pondered)" : "")
+                            + (mctsPlayer.getPrunings() > 0 ? ", " + mctsPlayer.getPrunings() + " prunings, peak " + mctsPlayer.getPeakNodes() + " nodes" : "") + "]";
+                } else if (activePlayer instanceof EnginePlayer) {
+                    reuse = " [" + ((EnginePlayer) activePlayer).getIterations() + " iterations]";
+                }
+                if (ponder) {
+                    state.makeMove(move);
+                    activePlayer.ponder(state);
+                }
+                return move;
+            }
+
+            @Override
+            protected void done() {
+                if (game != gameNumber) { // a new game has been started meanwhile
+                    stopPlayers(activePlayer);
+                    return;
+                }
+                thinking = false;
+                try {
+                    applyMove(playerName, get(), reuse);
+                } catch (InterruptedException | ExecutionException e) {
+                    logMessage("ERROR: " + e.getMessage());
+                    gameRunning = false;
+                }
+            }
+        }.execute();
+    }
+
+    private void applyMove(String playerName, GomokuMove move, String reuse) {
         //make the move?
         try {
             gameState.makeMove(move);
-            logMessage(playerName + " played: (" + move.getRow() + ", " + move.getCol() + ")");
+            logMessage(playerName + " played: (" + move.getRow() + ", " + move.getCol() + ")" + reuse);
 
 
             boardPanel.repaint();
@@ -263,9 +397,11 @@ public class GomokuAIBattle {
 
                 stepButton.setEnabled(false);
                 pauseButton.setEnabled(false);
+                stopPlayers(player1, player2);
             } else {
 
-                currentPlayer = gameState.getCurrentPlayer(); // update player
+                stepButton.setEnabled(true);
+                int currentPlayer = gameState.getCurrentPlayer(); // update player
                 statusLabel.setText((currentPlayer == GomokuState.PLAYER_ONE) ?
                         "Player 1's turn (Black)" : "Player 2's turn (White)");
             }
@@ -274,6 +410,22 @@ public class GomokuAIBattle {
         }
     }
 
+    // stopping waits for the iteration in progress, so it is done off the EDT
+    private static void stopPlayers(Player... players) {
+        new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() {
+                for (Player player : players) {
+                    if (player == null) continue;
+                    if (player instanceof MCTSPlayer) ((MCTSPlayer) player).stop();
+                    if (player instanceof EnginePlayer) ((EnginePlayer) player).stop();
+                    player.stopPondering();
+                }
+                return null;
+            }
+        }.execute();
+    }
+
     private void toggleAutoPlay() {
         autoPlay = !autoPlay;
         pauseButton.setText(autoPlay ? "Pause" : "Auto Play");
@@ -369,6 +521,91 @@ public class GomokuAIBattle {
         }
     }
 
+    // the metrics of one player: a sparkline of iterations per second, with the latest figures
+    private static class MetricsPanel extends JPanel {
+        private final String title;
+        private final double[] rates = new double[METRICS_HISTORY];
+        private int count;
+        private SearchMetrics source;
+        private SearchMetrics.Snapshot previous;
+        private String[] lines;
+
+        MetricsPanel(String title) {
+            this.title = title;
+            this.lines = new String[]{title + ": no search"};
+            setFont(new Font("Monospaced", Font.PLAIN, 11));
+        }
+
+        // take a snapshot of the player's metrics (if it has any) and compare it with the previous one
+        void poll(Player player) {
+            SearchMetrics metrics = player != null ? player.getMetrics() : null;
+            if (metrics != source) { // a new player: start a new history
+                source = metrics;
+                previous = null;
+                count = 0;
+            }
+            if (metrics == null) {
+                lines = new String[]{title + ": no search"};
+                repaint();
+                return;
+            }
+            SearchMetrics.Snapshot snapshot = metrics.snapshot();
+            double rate = previous == null ? 0 : snapshot.getIterationsPerSecond(previous);
+            if (previous != null) {
+                if (count == rates.length) System.arraycopy(rates, 1, rates, 0, --count);
+                rates[count++] = rate;
+            }
+            previous = snapshot;
+            lines = new String[]{
+                    String.format("%s: %,.0f it/s (%,d in all)", title, rate, snapshot.getIterations()),
+                    String.format("depth %.1f (max %d), %,d nodes", snapshot.getMeanDepth(), snapshot.getMaxDepth(), snapshot.getNodes()),
+                    String.format("PV stability %.2f, %d best-move changes", snapshot.getPvStability(), snapshot.getBestMoveChanges()),
+                    snapshot.getIterations() > 0 && snapshot.getPhaseNanos(PhaseTimers.Phase.SELECTION) == 0 ? "phase timers off" : "p50/p99 (µs): " + phaseQuantiles(snapshot)
+            };
+            repaint();
+        }
+
+        private static String phaseQuantiles(SearchMetrics.Snapshot snapshot) {
+            StringBuilder result = new StringBuilder();
+            for (PhaseTimers.Phase phase : PhaseTimers.Phase.values())
+                result.append(String.format("%s %.1f/%.1f ", phase.name().charAt(0),
+                        snapshot.getPhaseQuantileNanos(phase, 0.5) / 1e3, snapshot.getPhaseQuantileNanos(phase, 0.99) / 1e3));
+            return result.toString().trim();
+        }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            super.paintComponent(g);
+            Graphics2D g2d = (Graphics2D) g;
+            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            int lineHeight = g2d.getFontMetrics().getHeight();
+            g2d.setColor(Color.BLACK);
+            for (int i = 0; i < lines.length; i++) g2d.drawString(lines[i], 2, (i + 1) * lineHeight);
+
+            // the sparkline fills the space below the text, scaled to the greatest rate shown
+            int top = lines.length * lineHeight + 4;
+            int height = getHeight() - top - 2;
+            if (count < 2 || height <= 0) return;
+            double max = 0;
+            for (int i = 0; i < count; i++) max = Math.max(max, rates[i]);
+            if (max == 0) max = 1;
+            double step = (getWidth() - 4) / (double) (METRICS_HISTORY - 1);
+            int[] xs = new int[count];
+            int[] ys = new int[count];
+            for (int i = 0; i < count; i++) {
+                xs[i] = 2 + (int) Math.round(i * step);
+                ys[i] = top + height - (int) Math.round(rates[i] / max * height);
+            }
+            g2d.setColor(new Color(0, 100, 180));
+            g2d.drawPolyline(xs, ys, count);
+        }
+
+        @Override
+        public Dimension getPreferredSize() {
+            return new Dimension(260, 110);
+        }
+    }
+
     public static void main(String[] args) {
         SwingUtilities.invokeLater(() -> {
             new GomokuAIBattle();
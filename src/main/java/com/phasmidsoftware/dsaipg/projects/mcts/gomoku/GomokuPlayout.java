@@ -0,0 +1,38 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.gomoku;
+
+import com.phasmidsoftware.dsaipg.projects.mcts.core.Playout;
+import com.phasmidsoftware.dsaipg.projects.mcts.core.State;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * The playout of a Gomoku game for the generic SearchEngine: the game is played out on a PlayoutEngine (one per thread,
+ * reused from one playout to the next) with a RolloutPolicy, so that no GomokuState is copied.
+ */
+public final class GomokuPlayout implements Playout<GomokuGame> {
+    private final RolloutPolicy policy;
+    private final ThreadLocal<PlayoutEngine> engines = new ThreadLocal<>();
+
+    /**
+     * @param policy the policy which chooses the moves of each playout.
+     */
+    public GomokuPlayout(RolloutPolicy policy) {
+        this.policy = policy;
+    }
+
+    @Override
+    public int play(State<GomokuGame> state, RandomGenerator random) {
+        PlayoutEngine engine = engines.get();
+        if (engine == null || engine.getRandom() != random) {
+            engine = new PlayoutEngine(policy, random);
+            engines.set(engine);
+        }
+        int winner = engine.play((GomokuState) state);
+        return winner == GomokuState.EMPTY ? DRAW : winner;
+    }
+
+    @Override
+    public String toString() {
+        return "GomokuPlayout{" + policy + "}";
+    }
+}
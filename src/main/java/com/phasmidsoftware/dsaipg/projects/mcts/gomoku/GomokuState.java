@@ -1,27 +1,98 @@
 package com.phasmidsoftware.dsaipg.projects.mcts.gomoku;
 
+import com.phasmidsoftware.dsaipg.projects.mcts.core.CodedState;
 import com.phasmidsoftware.dsaipg.projects.mcts.core.Move;
 import com.phasmidsoftware.dsaipg.projects.mcts.core.State;
 
 import java.util.*;
 
-public class GomokuState implements State<GomokuGame>, Cloneable {
+/**
+ * The state of a Gomoku game.
+ * <p>
+ * The board is held as a pair of bitboards (one per player), packed row-major into long words:
+ * cell (row, col) is bit (row * boardSize + col).
+ * The winner is determined incrementally: each move only examines the four lines through the stone just placed.
+ * The number of empty cells is tracked so that terminal detection never needs to enumerate the legal moves.
+ * A Zobrist hash of the position (see Zobrist) is also maintained incrementally.
+ * <p>
+ * The candidate moves are the empty cells within candidateDistance (in king moves) of some stone: if that distance
+ * is positive, the union of the neighbourhoods of the stones is updated with each move, so that they need never be
+ * searched for.
+ */
+public class GomokuState implements CodedState<GomokuGame>, Cloneable {
     public static final int EMPTY = 0;
     public static final int PLAYER_ONE = 1;
     public static final int PLAYER_TWO = 2;
 
-    private final int[][] board;
+    /**
+     * The number of stones in a line required to win.
+     */
+    public static final int WIN_LENGTH = 5;
+
+    /**
+     * The distance from existing stones within which a cell is a candidate move, as searches normally use it
+     * (see MCTSConfig.withCandidateDistance). A state has no candidate distance unless it is given one,
+     * so that callers which never restrict the candidates do not pay to maintain them.
+     */
+    public static final int SEARCH_CANDIDATE_DISTANCE = 2;
+
+    // Horizontal, vertical, diagonal (\) and anti-diagonal (/), as {dRow, dCol}.
+    private static final int[][] DIRECTIONS = {{0, 1}, {1, 0}, {1, 1}, {-1, 1}};
+
     private final int boardSize;
+    private final Zobrist zobrist;
+    private final long[] playerOneStones;
+    private final long[] playerTwoStones;
+    private final int candidateDistance;
+    private final Neighbourhoods neighbourhoods; // null if candidateDistance is zero.
+    private final long[] nearby; // The cells within candidateDistance of a stone (occupied or not).
     private int currentPlayer;
+    private int emptyCount;
+    private int winner;
+    private long hash;
 
     public GomokuState() {
         this(15);
     }
 
     public GomokuState(int boardSize) {
+        this(boardSize, 0);
+    }
+
+    /**
+     * @param boardSize         the size of the board.
+     * @param candidateDistance the distance from existing stones within which a cell is a candidate move
+     *                          (zero if every empty cell is a candidate).
+     */
+    public GomokuState(int boardSize, int candidateDistance) {
+        if (candidateDistance < 0) throw new IllegalArgumentException("candidateDistance must not be negative: " + candidateDistance);
         this.boardSize = boardSize;
-        this.board = new int[boardSize][boardSize];
+        this.zobrist = Zobrist.forBoardSize(boardSize);
+        int words = (boardSize * boardSize + 63) >>> 6;
+        this.playerOneStones = new long[words];
+        this.playerTwoStones = new long[words];
+        this.candidateDistance = candidateDistance;
+        this.neighbourhoods = candidateDistance > 0 ? Neighbourhoods.of(boardSize, candidateDistance) : null;
+        this.nearby = new long[words];
         this.currentPlayer = PLAYER_ONE;
+        this.emptyCount = boardSize * boardSize;
+        this.winner = EMPTY;
+    }
+
+    private GomokuState(GomokuState other, int candidateDistance) {
+        this.boardSize = other.boardSize;
+        this.zobrist = other.zobrist;
+        this.playerOneStones = other.playerOneStones.clone();
+        this.playerTwoStones = other.playerTwoStones.clone();
+        this.candidateDistance = candidateDistance;
+        this.neighbourhoods = candidateDistance == other.candidateDistance ? other.neighbourhoods
+                : candidateDistance > 0 ? Neighbourhoods.of(boardSize, candidateDistance) : null;
+        this.nearby = candidateDistance == other.candidateDistance ? other.nearby.clone() : new long[other.nearby.length];
+        if (candidateDistance != other.candidateDistance) recomputeNearby();
+        this.currentPlayer = other.currentPlayer;
+        this.emptyCount = other.emptyCount;
+        this.winner = other.winner;
+        this.hash = other.hash;
     }
 
     @Override
@@ -31,7 +102,7 @@ public class GomokuState implements State<GomokuGame>, Cloneable {
 
     @Override
     public boolean isTerminal() {
-        return checkWin() != EMPTY || getLegalMoves().isEmpty();
+        return winner != EMPTY || emptyCount == 0;
     }
 
     @Override
@@ -41,7 +112,6 @@ public class GomokuState implements State<GomokuGame>, Cloneable {
 
     @Override
     public Optional<Integer> winner() {
-        int winner = checkWin();
         return winner == EMPTY ? Optional.empty() : Optional.of(winner);
     }
 
@@ -52,7 +122,7 @@ public class GomokuState implements State<GomokuGame>, Cloneable {
 
     @Override
     public Collection<Move<GomokuGame>> moves(int player) {
-        return new ArrayList<>(getLegalMoves()); // GomokuMove implements Move<GomokuGame>
+        return Collections.unmodifiableList(getLegalMoves()); // GomokuMove implements Move<GomokuGame>
     }
 
     @Override
@@ -62,25 +132,115 @@ public class GomokuState implements State<GomokuGame>, Cloneable {
         return next;
     }
 
+    /**
+     * The code of a move is the index of its cell: row * boardSize + col.
+     */
+    @Override
+    public int maxMoves() {
+        return boardSize * boardSize;
+    }
+
+    @Override
+    public int moveCodes(int player, int[] codes) {
+        return getLegalCells(codes);
+    }
+
+    @Override
+    public Move<GomokuGame> move(int code) {
+        return new GomokuMove(code / boardSize, code % boardSize);
+    }
+
+    @Override
+    public GomokuState next(int code) {
+        GomokuState next = this.clone();
+        next.makeMove(code);
+        return next;
+    }
+
     // ====== GAME LOGIC ======
 
+    /**
+     * Method to yield the empty cells of this state, in row-major order.
+     *
+     * @return a new list of moves.
+     */
     public List<GomokuMove> getLegalMoves() {
-        List<GomokuMove> legalMoves = new ArrayList<>();
-        for (int i = 0; i < boardSize; i++) {
-            for (int j = 0; j < boardSize; j++) {
-                if (board[i][j] == EMPTY) {
-                    legalMoves.add(new GomokuMove(i, j));
-                }
+        List<GomokuMove> legalMoves = new ArrayList<>(emptyCount);
+        for (int w = 0; w < playerOneStones.length; w++) {
+            long empty = ~(playerOneStones[w] | playerTwoStones[w]) & wordMask(w);
+            while (empty != 0) {
+                int index = (w << 6) + Long.numberOfTrailingZeros(empty);
+                legalMoves.add(new GomokuMove(index / boardSize, index % boardSize));
+                empty &= empty - 1;
             }
         }
         return legalMoves;
     }
 
+    /**
+     * Method to yield the empty cells of this state, in row-major order, without allocating (see getLegalMoves).
+     *
+     * @param cells an array of at least getEmptyCount() elements, set to the indices (row * boardSize + col) of the cells.
+     * @return the number of cells.
+     */
+    public int getLegalCells(int[] cells) {
+        int n = 0;
+        for (int w = 0; w < playerOneStones.length; w++) {
+            long empty = ~(playerOneStones[w] | playerTwoStones[w]) & wordMask(w);
+            while (empty != 0) {
+                cells[n++] = (w << 6) + Long.numberOfTrailingZeros(empty);
+                empty &= empty - 1;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Method to write this board into a primitive array, without allocating (see LeafEvaluator).
+     *
+     * @param cells  an array of at least offset + boardSize * boardSize elements.
+     * @param offset the index of the element for cell (0, 0); cell (row, col) is written at offset + row * boardSize + col,
+     *               as PLAYER_ONE, PLAYER_TWO or EMPTY.
+     */
+    public void getCells(byte[] cells, int offset) {
+        Arrays.fill(cells, offset, offset + boardSize * boardSize, (byte) EMPTY);
+        for (int w = 0; w < playerOneStones.length; w++) {
+            for (long one = playerOneStones[w]; one != 0; one &= one - 1)
+                cells[offset + (w << 6) + Long.numberOfTrailingZeros(one)] = PLAYER_ONE;
+            for (long two = playerTwoStones[w]; two != 0; two &= two - 1)
+                cells[offset + (w << 6) + Long.numberOfTrailingZeros(two)] = PLAYER_TWO;
+        }
+    }
+
     public void makeMove(GomokuMove move) {
-        if (board[move.getRow()][move.getCol()] != EMPTY) {
+        int row = move.getRow();
+        int col = move.getCol();
+        if (!onBoard(row, col)) {
+            throw new IllegalArgumentException("Invalid move! Position is off the board: " + move);
+        }
+        makeMove(row * boardSize + col);
+    }
+
+    /**
+     * Method to play the current player's stone on the cell with the given index (row * boardSize + col).
+     *
+     * @param index the index of an empty cell.
+     */
+    public void makeMove(int index) {
+        if (index < 0 || index >= boardSize * boardSize) {
+            throw new IllegalArgumentException("Invalid move! Position is off the board: " + index);
+        }
+        int row = index / boardSize;
+        int col = index % boardSize;
+        if (occupied(index)) {
             throw new IllegalArgumentException("Invalid move! Position already occupied.");
         }
-        board[move.getRow()][move.getCol()] = currentPlayer;
+        long[] stones = stonesOf(currentPlayer);
+        stones[index >>> 6] |= 1L << index;
+        emptyCount--;
+        hash ^= zobrist.stone(currentPlayer, index) ^ zobrist.sideToMove();
+        if (neighbourhoods != null) or(nearby, neighbourhoods.mask(index));
+        if (winner == EMPTY && completesLine(stones, row, col)) winner = currentPlayer;
         currentPlayer = getOpponent(currentPlayer);
     }
 
@@ -88,48 +248,195 @@ public class GomokuState implements State<GomokuGame>, Cloneable {
         return player == PLAYER_ONE ? PLAYER_TWO : PLAYER_ONE;
     }
 
+    /**
+     * Method to yield the winner of this state.
+     * NOTE: the winner is maintained as moves are made, so this is a constant-time operation.
+     *
+     * @return PLAYER_ONE, PLAYER_TWO or EMPTY (no winner yet, or a draw).
+     */
     public int checkWin() {
-        for (int i = 0; i < boardSize; i++) {
-            for (int j = 0; j < boardSize; j++) {
-                int player = board[i][j];
-                if (player == EMPTY) continue;
+        return winner;
+    }
 
-                // Horizontal
-                if (j <= boardSize - 5 && allEqual(player, i, j, 0, 1)) return player;
+    /**
+     * Method to get the occupant of a cell.
+     *
+     * @param row the row.
+     * @param col the column.
+     * @return PLAYER_ONE, PLAYER_TWO or EMPTY.
+     */
+    public int getCell(int row, int col) {
+        int index = row * boardSize + col;
+        if (isSet(playerOneStones, index)) return PLAYER_ONE;
+        if (isSet(playerTwoStones, index)) return PLAYER_TWO;
+        return EMPTY;
+    }
+
+    /**
+     * Method to place (or remove) a stone without changing the player to move.
+     * This is intended for setting up positions: the winner is recomputed from scratch.
+     *
+     * @param row    the row.
+     * @param col    the column.
+     * @param player PLAYER_ONE, PLAYER_TWO or EMPTY.
+     */
+    public void setCell(int row, int col, int player) {
+        int index = row * boardSize + col;
+        long bit = 1L << index;
+        int previous = getCell(row, col);
+        if (previous != EMPTY) {
+            emptyCount++;
+            hash ^= zobrist.stone(previous, index);
+        }
+        playerOneStones[index >>> 6] &= ~bit;
+        playerTwoStones[index >>> 6] &= ~bit;
+        if (player != EMPTY) {
+            stonesOf(player)[index >>> 6] |= bit;
+            emptyCount--;
+            hash ^= zobrist.stone(player, index);
+        }
+        recomputeNearby();
+        winner = scanForWinner();
+    }
 
-                // Vertical
-                if (i <= boardSize - 5 && allEqual(player, i, j, 1, 0)) return player;
+    /**
+     * @return the Zobrist hash of this position (including the player to move).
+     */
+    public long getHash() {
+        return hash;
+    }
 
-                // Diagonal (\)
-                if (i <= boardSize - 5 && j <= boardSize - 5 && allEqual(player, i, j, 1, 1)) return player;
+    /**
+     * Method to compute the hash of the state which would follow the given move, without making it.
+     *
+     * @param move a legal move for the current player.
+     * @return the Zobrist hash of the resulting position.
+     */
+    public long hashAfter(GomokuMove move) {
+        return hash ^ zobrist.stone(currentPlayer, move.getRow() * boardSize + move.getCol()) ^ zobrist.sideToMove();
+    }
 
-                // Anti-diagonal (/)
-                if (i >= 4 && j <= boardSize - 5 && allEqual(player, i, j, -1, 1)) return player;
+    /**
+     * Method to yield the candidate moves: the empty cells within candidateDistance of a stone, in row-major order.
+     * On an empty board, the only candidate is the centre. If candidateDistance is zero, this is getLegalMoves.
+     *
+     * @return a new list of moves.
+     */
+    public List<GomokuMove> getCandidateMoves() {
+        if (candidateDistance == 0) return getLegalMoves();
+        List<GomokuMove> candidates = new ArrayList<>();
+        if (emptyCount == boardSize * boardSize) {
+            candidates.add(new GomokuMove(boardSize / 2, boardSize / 2));
+            return candidates;
+        }
+        for (int w = 0; w < nearby.length; w++) {
+            long bits = nearby[w] & ~(playerOneStones[w] | playerTwoStones[w]);
+            while (bits != 0) {
+                int index = (w << 6) + Long.numberOfTrailingZeros(bits);
+                candidates.add(new GomokuMove(index / boardSize, index % boardSize));
+                bits &= bits - 1;
             }
         }
-        return EMPTY;
+        return candidates;
     }
 
-    private boolean allEqual(int player, int startRow, int startCol, int dRow, int dCol) {
-        for (int k = 1; k < 5; k++) {
-            if (board[startRow + k * dRow][startCol + k * dCol] != player) {
-                return false;
+    /**
+     * Method to yield the candidate moves as cell indices (row * boardSize + col), without allocating (see getCandidateMoves).
+     *
+     * @param cells an array of at least getEmptyCount() elements, set to the indices of the candidate cells.
+     * @return the number of cells.
+     */
+    public int getCandidateCells(int[] cells) {
+        if (candidateDistance == 0) return getLegalCells(cells);
+        if (emptyCount == boardSize * boardSize) {
+            cells[0] = (boardSize / 2) * boardSize + boardSize / 2;
+            return 1;
+        }
+        int n = 0;
+        for (int w = 0; w < nearby.length; w++) {
+            long bits = nearby[w] & ~(playerOneStones[w] | playerTwoStones[w]);
+            while (bits != 0) {
+                cells[n++] = (w << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
             }
         }
-        return true;
+        return n;
+    }
+
+    /**
+     * @param move a cell.
+     * @return the number of stones (of either player) on the eight cells around the given cell.
+     */
+    public int adjacentStones(GomokuMove move) {
+        long[] mask = Neighbourhoods.of(boardSize, 1).mask(move.getRow() * boardSize + move.getCol());
+        int count = 0;
+        for (int w = 0; w < mask.length; w++) count += Long.bitCount(mask[w] & (playerOneStones[w] | playerTwoStones[w]));
+        return count;
+    }
+
+    public int getCandidateDistance() {
+        return candidateDistance;
+    }
+
+    /**
+     * @param candidateDistance the candidate distance for the copy.
+     * @return a copy of this state which generates candidate moves within the given distance.
+     */
+    public GomokuState withCandidateDistance(int candidateDistance) {
+        if (candidateDistance < 0) throw new IllegalArgumentException("candidateDistance must not be negative: " + candidateDistance);
+        return new GomokuState(this, candidateDistance);
+    }
+
+    /**
+     * Method to copy this position into a scratch board (see PlayoutEngine).
+     *
+     * @param cells   an array of at least boardSize * boardSize cells, set to PLAYER_ONE, PLAYER_TWO or EMPTY.
+     * @param empties an array of at least getEmptyCount() elements, set to the indices of the empty cells.
+     * @return the number of empty cells.
+     */
+    int copyTo(byte[] cells, int[] empties) {
+        int n = 0;
+        for (int w = 0; w < playerOneStones.length; w++) {
+            int base = w << 6;
+            int end = Math.min(64, boardSize * boardSize - base);
+            long one = playerOneStones[w];
+            long two = playerTwoStones[w];
+            for (int b = 0; b < end; b++) {
+                long bit = 1L << b;
+                if ((one & bit) != 0) cells[base + b] = PLAYER_ONE;
+                else if ((two & bit) != 0) cells[base + b] = PLAYER_TWO;
+                else {
+                    cells[base + b] = EMPTY;
+                    empties[n++] = base + b;
+                }
+            }
+        }
+        return n;
+    }
+
+    /**
+     * @return the number of empty cells remaining.
+     */
+    public int getEmptyCount() {
+        return emptyCount;
     }
 
     @Override
     public GomokuState clone() {
-        GomokuState cloneState = new GomokuState(this.boardSize);
-        for (int i = 0; i < boardSize; i++) {
-            System.arraycopy(this.board[i], 0, cloneState.board[i], 0, boardSize);
-        }
-        cloneState.currentPlayer = this.currentPlayer;
-        return cloneState;
+        return new GomokuState(this, candidateDistance);
     }
 
+    /**
+     * Method to yield the board as a matrix.
+     * NOTE: this is a snapshot: changes to the result do not affect this state (use setCell for that).
+     *
+     * @return a new boardSize x boardSize matrix of PLAYER_ONE, PLAYER_TWO and EMPTY.
+     */
     public int[][] getBoard() {
+        int[][] board = new int[boardSize][boardSize];
+        for (int i = 0; i < boardSize; i++)
+            for (int j = 0; j < boardSize; j++)
+                board[i][j] = getCell(i, j);
         return board;
     }
 
@@ -141,15 +448,108 @@ public class GomokuState implements State<GomokuGame>, Cloneable {
         return currentPlayer;
     }
 
+    /**
+     * Two states are equal if they have the same stones and the same player to move.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof GomokuState)) return false;
+        GomokuState that = (GomokuState) o;
+        return boardSize == that.boardSize && currentPlayer == that.currentPlayer && hash == that.hash
+                && Arrays.equals(playerOneStones, that.playerOneStones) && Arrays.equals(playerTwoStones, that.playerTwoStones);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(hash);
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
-        for (int[] row : board) {
-            for (int cell : row) {
+        for (int i = 0; i < boardSize; i++) {
+            for (int j = 0; j < boardSize; j++) {
+                int cell = getCell(i, j);
                 sb.append(cell == EMPTY ? "." : (cell == PLAYER_ONE ? "X" : "O")).append(" ");
             }
             sb.append("\n");
         }
         return sb.toString();
     }
+
+    /**
+     * Determine whether the stone at (row, col) lies on a line of at least WIN_LENGTH stones.
+     */
+    private boolean completesLine(long[] stones, int row, int col) {
+        for (int[] d : DIRECTIONS) {
+            int run = 1 + countRun(stones, row, col, d[0], d[1]) + countRun(stones, row, col, -d[0], -d[1]);
+            if (run >= WIN_LENGTH) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Count the consecutive stones beyond (row, col) in direction (dRow, dCol), stopping at WIN_LENGTH - 1.
+     */
+    private int countRun(long[] stones, int row, int col, int dRow, int dCol) {
+        int count = 0;
+        int r = row + dRow;
+        int c = col + dCol;
+        while (count < WIN_LENGTH - 1 && onBoard(r, c) && isSet(stones, r * boardSize + c)) {
+            count++;
+            r += dRow;
+            c += dCol;
+        }
+        return count;
+    }
+
+    private int scanForWinner() {
+        for (int i = 0; i < boardSize; i++)
+            for (int j = 0; j < boardSize; j++) {
+                int player = getCell(i, j);
+                if (player != EMPTY && completesLine(stonesOf(player), i, j)) return player;
+            }
+        return EMPTY;
+    }
+
+    private void recomputeNearby() {
+        Arrays.fill(nearby, 0L);
+        if (neighbourhoods == null) return;
+        for (int w = 0; w < nearby.length; w++) {
+            long stones = playerOneStones[w] | playerTwoStones[w];
+            while (stones != 0) {
+                or(nearby, neighbourhoods.mask((w << 6) + Long.numberOfTrailingZeros(stones)));
+                stones &= stones - 1;
+            }
+        }
+    }
+
+    private static void or(long[] target, long[] mask) {
+        for (int w = 0; w < target.length; w++) target[w] |= mask[w];
+    }
+
+    private long[] stonesOf(int player) {
+        return player == PLAYER_ONE ? playerOneStones : playerTwoStones;
+    }
+
+    private boolean occupied(int index) {
+        return isSet(playerOneStones, index) || isSet(playerTwoStones, index);
+    }
+
+    private boolean onBoard(int row, int col) {
+        return row >= 0 && row < boardSize && col >= 0 && col < boardSize;
+    }
+
+    /**
+     * @return the mask of the bits of word w which correspond to cells of the board.
+     */
+    private long wordMask(int w) {
+        int cellsInWord = boardSize * boardSize - (w << 6);
+        return cellsInWord >= 64 ? -1L : (1L << cellsInWord) - 1;
+    }
+
+    private static boolean isSet(long[] stones, int index) {
+        return (stones[index >>> 6] & (1L << index)) != 0;
+    }
 }
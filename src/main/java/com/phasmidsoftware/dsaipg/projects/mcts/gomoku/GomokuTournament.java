@@ -0,0 +1,423 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.gomoku;
+
+import com.phasmidsoftware.dsaipg.projects.mcts.core.EngineConfig;
+import com.phasmidsoftware.dsaipg.util.FileData;
+import com.phasmidsoftware.dsaipg.util.FileHandlerImpl_CSV;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.LongFunction;
+
+/**
+ * A headless match between two players, A and B, whose games are played concurrently on a thread pool.
+ * <p>
+ * The games come in pairs: both games of a pair start from the same random opening and give each player the same
+ * seed, but A has black in the first and white in the second. Every seed is derived from the seed of the match and
+ * the number of the pair, so a game is the same whichever thread plays it, and any game can be replayed alone
+ * (see playGame), provided that the players are deterministic for a given seed (e.g. RandomPlayer, or an MCTSPlayer
+ * whose configuration is sequential, with an iteration limit and MCTSConfig.withSeed).
+ * <p>
+ * The result gives A's wins, draws and losses, the Elo difference (A minus B) with a 95% confidence interval, and
+ * the moves per second of each player; it can be written as a row of a CSV file.
+ * Usage: GomokuTournament [games [threads [playerA [playerB [boardSize [seed [csvFile]]]]]]],
+ * where a player is random, mcts:iterations, threats:iterations, rave:iterations, tss:iterations (with a ThreatSpaceSearch)
+ * or engine:iterations (with the generic SearchEngine).
+ */
+public class GomokuTournament {
+    /**
+     * The normal quantile for a two-sided 95% confidence interval.
+     */
+    static final double Z_95 = 1.959963984540054;
+
+    // The radius of the central square in which the opening stones are placed.
+    private static final int OPENING_RADIUS = 2;
+
+    private final String nameA;
+    private final LongFunction<Player> playerA;
+    private final String nameB;
+    private final LongFunction<Player> playerB;
+    private final int boardSize;
+    private final int openingMoves;
+    private final long seed;
+
+    /**
+     * @param nameA        the name of player A (for the results).
+     * @param playerA      creates player A for a game, given its seed (a new player for each game).
+     * @param nameB        the name of player B.
+     * @param playerB      creates player B for a game, given its seed.
+     * @param boardSize    the size of the board.
+     * @param openingMoves the number of random stones placed (alternately black and white) before the players take over.
+     * @param seed         the seed of the match.
+     */
+    public GomokuTournament(String nameA, LongFunction<Player> playerA, String nameB, LongFunction<Player> playerB,
+                            int boardSize, int openingMoves, long seed) {
+        if (openingMoves < 0) throw new IllegalArgumentException("openingMoves must not be negative: " + openingMoves);
+        this.nameA = nameA;
+        this.playerA = playerA;
+        this.nameB = nameB;
+        this.playerB = playerB;
+        this.boardSize = boardSize;
+        this.openingMoves = openingMoves;
+        this.seed = seed;
+    }
+
+    /**
+     * Method to play the match.
+     *
+     * @param games   the number of games (an odd number leaves the last opening played with A as black only).
+     * @param threads the number of games to be played at once.
+     * @return the result.
+     */
+    public Result run(int games, int threads) {
+        if (games < 1) throw new IllegalArgumentException("games must be positive: " + games);
+        if (threads < 1) throw new IllegalArgumentException("threads must be positive: " + threads);
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Game>> futures = new ArrayList<>(games);
+            for (int i = 0; i < games; i++) {
+                int number = i;
+                futures.add(pool.submit(() -> playGame(number)));
+            }
+            List<Game> results = new ArrayList<>(games);
+            for (Future<Game> future : futures) results.add(future.get());
+            return new Result(this, results, System.nanoTime() - start);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("tournament interrupted", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("tournament game failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Method to play one game of the match (on the calling thread).
+     *
+     * @param number the number of the game (from zero): A has black in the even-numbered games.
+     * @return the game.
+     */
+    public Game playGame(int number) {
+        SplittableRandom random = new SplittableRandom(pairSeed(number / 2));
+        SplittableRandom opening = random.split();
+        Player a = playerA.apply(random.nextLong());
+        Player b = playerB.apply(random.nextLong());
+        boolean blackA = number % 2 == 0;
+        GomokuState state = new GomokuState(boardSize);
+        playOpening(state, opening);
+        int movesA = 0, movesB = 0;
+        long nanosA = 0, nanosB = 0;
+        while (!state.isTerminal()) {
+            boolean aToMove = (state.getCurrentPlayer() == GomokuState.PLAYER_ONE) == blackA;
+            long before = System.nanoTime();
+            GomokuMove move = (aToMove ? a : b).getMove(state);
+            long elapsed = System.nanoTime() - before;
+            state.makeMove(move);
+            if (aToMove) {
+                movesA++;
+                nanosA += elapsed;
+            } else {
+                movesB++;
+                nanosB += elapsed;
+            }
+        }
+        a.stopPondering();
+        b.stopPondering();
+        int winner = state.checkWin();
+        int scoreA = winner == GomokuState.EMPTY ? 1 : (winner == GomokuState.PLAYER_ONE) == blackA ? 2 : 0;
+        return new Game(number, blackA, scoreA, movesA, nanosA, movesB, nanosB);
+    }
+
+    /**
+     * Place the opening stones on empty cells of the central square, chosen at random.
+     */
+    private void playOpening(GomokuState state, SplittableRandom random) {
+        int centre = boardSize / 2;
+        List<GomokuMove> cells = new ArrayList<>();
+        for (GomokuMove move : state.getLegalMoves())
+            if (Math.abs(move.getRow() - centre) <= OPENING_RADIUS && Math.abs(move.getCol() - centre) <= OPENING_RADIUS)
+                cells.add(move);
+        for (int i = 0; i < openingMoves && i < cells.size() && !state.isTerminal(); i++) {
+            Collections.swap(cells, i, i + random.nextInt(cells.size() - i));
+            state.makeMove(cells.get(i));
+        }
+    }
+
+    /**
+     * @return the seed of the given pair of games, which depends only on the seed of the match and the pair.
+     */
+    private long pairSeed(int pair) {
+        return new SplittableRandom(seed ^ (pair * 0x9E3779B97F4A7C15L)).nextLong();
+    }
+
+    /**
+     * @param score the expected score of one player against another (from 0 to 1).
+     * @return the corresponding difference in Elo rating (infinite if the score is 0 or 1).
+     */
+    static double elo(double score) {
+        if (score <= 0) return Double.NEGATIVE_INFINITY;
+        if (score >= 1) return Double.POSITIVE_INFINITY;
+        return -400 * Math.log10(1 / score - 1);
+    }
+
+    /**
+     * One game of a match, from the point of view of player A.
+     */
+    public static final class Game {
+        private final int number;
+        private final boolean blackA;
+        private final int halfPointsA;
+        private final int movesA;
+        private final long nanosA;
+        private final int movesB;
+        private final long nanosB;
+
+        Game(int number, boolean blackA, int halfPointsA, int movesA, long nanosA, int movesB, long nanosB) {
+            this.number = number;
+            this.blackA = blackA;
+            this.halfPointsA = halfPointsA;
+            this.movesA = movesA;
+            this.nanosA = nanosA;
+            this.movesB = movesB;
+            this.nanosB = nanosB;
+        }
+
+        public int getNumber() {
+            return number;
+        }
+
+        public boolean isBlackA() {
+            return blackA;
+        }
+
+        /**
+         * @return 1 if A won, 0.5 for a draw and 0 if A lost.
+         */
+        public double getScoreA() {
+            return halfPointsA / 2.0;
+        }
+
+        /**
+         * @return the number of moves made by A and by B (not counting the opening).
+         */
+        public int getMoves() {
+            return movesA + movesB;
+        }
+
+        @Override
+        public String toString() {
+            return "Game " + number + ": A " + (blackA ? "black" : "white") + ", " + (halfPointsA == 2 ? "won" : halfPointsA == 1 ? "drew" : "lost")
+                    + " in " + getMoves() + " moves";
+        }
+    }
+
+    /**
+     * The result of a match, from the point of view of player A.
+     */
+    public static final class Result implements FileData {
+        /**
+         * The header of a CSV file of results (see toFile).
+         */
+        public static final String HEADER = "playerA,playerB,boardSize,openingMoves,seed,games,wins,draws,losses,score,elo,eloLow,eloHigh,"
+                + "movesPerSecondA,movesPerSecondB,seconds\n";
+
+        private final String nameA;
+        private final String nameB;
+        private final int boardSize;
+        private final int openingMoves;
+        private final long seed;
+        private final List<Game> games;
+        private final int wins;
+        private final int draws;
+        private final int losses;
+        private final long movesA;
+        private final long nanosA;
+        private final long movesB;
+        private final long nanosB;
+        private final long elapsedNanos;
+
+        Result(GomokuTournament match, List<Game> games, long elapsedNanos) {
+            this.nameA = match.nameA;
+            this.nameB = match.nameB;
+            this.boardSize = match.boardSize;
+            this.openingMoves = match.openingMoves;
+            this.seed = match.seed;
+            this.games = Collections.unmodifiableList(games);
+            this.elapsedNanos = elapsedNanos;
+            int w = 0, d = 0, l = 0;
+            long mA = 0, nA = 0, mB = 0, nB = 0;
+            for (Game game : games) {
+                if (game.halfPointsA == 2) w++;
+                else if (game.halfPointsA == 1) d++;
+                else l++;
+                mA += game.movesA;
+                nA += game.nanosA;
+                mB += game.movesB;
+                nB += game.nanosB;
+            }
+            wins = w;
+            draws = d;
+            losses = l;
+            movesA = mA;
+            nanosA = nA;
+            movesB = mB;
+            nanosB = nB;
+        }
+
+        /**
+         * @return the games, in order of number.
+         */
+        public List<Game> getGames() {
+            return games;
+        }
+
+        public int getWins() {
+            return wins;
+        }
+
+        public int getDraws() {
+            return draws;
+        }
+
+        public int getLosses() {
+            return losses;
+        }
+
+        /**
+         * @return A's mean score per game (a draw counting one half).
+         */
+        public double getScore() {
+            return (wins + 0.5 * draws) / games.size();
+        }
+
+        /**
+         * @return the Elo difference implied by the score (A minus B).
+         */
+        public double getElo() {
+            return elo(getScore());
+        }
+
+        /**
+         * @return the lower end of the 95% confidence interval for the Elo difference.
+         */
+        public double getEloLow() {
+            return elo(wilson(-1));
+        }
+
+        /**
+         * @return the upper end of the 95% confidence interval for the Elo difference.
+         */
+        public double getEloHigh() {
+            return elo(wilson(1));
+        }
+
+        /**
+         * The Wilson score interval for the score, which (unlike the normal approximation) is not empty when
+         * every game has the same result. It takes the variance of a game to be s(1 - s), as if there were no draws,
+         * which is at least the variance with draws, so the interval is if anything too wide.
+         *
+         * @param sign -1 for the lower end, 1 for the upper end.
+         * @return an end of the interval.
+         */
+        double wilson(int sign) {
+            int n = games.size();
+            double s = getScore();
+            if (s == (sign > 0 ? 1 : 0)) return s; // exactly, rather than to within rounding
+            double z2 = Z_95 * Z_95 / n;
+            return (s + z2 / 2 + sign * Z_95 * Math.sqrt(s * (1 - s) / n + z2 / (4 * n))) / (1 + z2);
+        }
+
+        /**
+         * @return the moves made by A per second of A's thinking time.
+         */
+        public double getMovesPerSecondA() {
+            return nanosA == 0 ? 0 : movesA * 1e9 / nanosA;
+        }
+
+        /**
+         * @return the moves made by B per second of B's thinking time.
+         */
+        public double getMovesPerSecondB() {
+            return nanosB == 0 ? 0 : movesB * 1e9 / nanosB;
+        }
+
+        /**
+         * @return the wall-clock time of the match, in seconds.
+         */
+        public double getSeconds() {
+            return elapsedNanos / 1e9;
+        }
+
+        @Override
+        public String toFile() {
+            return String.format(Locale.ROOT, "%s,%s,%d,%d,%d,%d,%d,%d,%d,%.4f,%.1f,%.1f,%.1f,%.2f,%.2f,%.1f\n",
+                    nameA, nameB, boardSize, openingMoves, seed, games.size(), wins, draws, losses, getScore(),
+                    getElo(), getEloLow(), getEloHigh(), getMovesPerSecondA(), getMovesPerSecondB(), getSeconds());
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%s vs %s: %d games, +%d =%d -%d (score %.1f%%), Elo %+.0f [%+.0f, %+.0f], %.1f vs %.1f moves/s, %.1f s",
+                    nameA, nameB, games.size(), wins, draws, losses, 100 * getScore(), getElo(), getEloLow(), getEloHigh(),
+                    getMovesPerSecondA(), getMovesPerSecondB(), getSeconds());
+        }
+    }
+
+    /**
+     * @param spec random, mcts:iterations, threats:iterations, rave:iterations, tss:iterations or engine:iterations
+     *             (an EnginePlayer, with the generic SearchEngine).
+     * @return a factory of players with the given specification, each seeded for its game.
+     */
+    static LongFunction<Player> player(String spec) {
+        String[] parts = spec.split(":");
+        if (parts[0].equals("random")) return RandomPlayer::new;
+        if (parts.length != 2) throw new IllegalArgumentException("unknown player: " + spec);
+        if (parts[0].equals("engine")) {
+            EngineConfig engine = EngineConfig.iterations(Integer.parseInt(parts[1]));
+            return seed -> new EnginePlayer(engine.withSeed(seed));
+        }
+        MCTSConfig config = MCTSConfig.iterations(Integer.parseInt(parts[1])).withCandidateDistance(2).withTreeReuse(true);
+        switch (parts[0]) {
+            case "mcts":
+                break;
+            case "threats":
+                config = config.withRolloutPolicy(RolloutPolicy.THREATS);
+                break;
+            case "rave":
+                config = config.withRave(1000);
+                break;
+            case "tss":
+                config = config.withThreatSearch(ThreatSpaceSearch.DEFAULT_NODE_LIMIT);
+                break;
+            default:
+                throw new IllegalArgumentException("unknown player: " + spec);
+        }
+        MCTSConfig base = config;
+        return seed -> new MCTSPlayer(base.withSeed(seed));
+    }
+
+    public static void main(String[] args) {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        String specA = args.length > 2 ? args[2] : "mcts:1000";
+        String specB = args.length > 3 ? args[3] : "random";
+        int boardSize = args.length > 4 ? Integer.parseInt(args[4]) : 15;
+        long seed = args.length > 5 ? Long.parseLong(args[5]) : 1;
+        String csvFile = args.length > 6 ? args[6] : "GomokuTournament.csv";
+        System.out.println("=== " + specA + " vs " + specB + ": " + games + " games on " + boardSize + "x" + boardSize
+                + ", " + threads + " at once, seed " + seed + " ===");
+        GomokuTournament match = new GomokuTournament(specA, player(specA), specB, player(specB), boardSize, 2, seed);
+        Result result = match.run(games, threads);
+        System.out.println(result);
+        if (new FileHandlerImpl_CSV<Result>().writecsv(Result.HEADER, csvFile, List.of(result)))
+            System.out.println("Results written to " + csvFile);
+    }
+}
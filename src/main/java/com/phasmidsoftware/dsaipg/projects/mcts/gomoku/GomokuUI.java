@@ -14,6 +14,8 @@ public class GomokuUI {
     private Player player2;
     private boolean gameOver;
     private boolean humanTurn;
+    // counts the games started, so that a move chosen for an abandoned game is discarded
+    private int gameNumber;
 
     public GomokuUI(Player aiPlayer) {
         gameState = new GomokuState();
@@ -69,15 +71,26 @@ public class GomokuUI {
                     if (!gameOver) {
                         humanTurn = false;
                         statusLabel.setText("AI is thinking...");
+                        // the search (and then the pondering on the human's time) runs on a copy, off the EDT
+                        GomokuState state = gameState.clone();
+                        int game = gameNumber;
 
                         SwingWorker<GomokuMove, Void> worker = new SwingWorker<>() {
                             @Override
                             protected GomokuMove doInBackground() {
-                                return player2.getMove(gameState);
+                                GomokuMove aiMove = player2.getMove(state);
+                                state.makeMove(aiMove);
+                                // there is nothing to ponder once the AI's move has ended the game
+                                if (!state.isTerminal()) player2.ponder(state);
+                                return aiMove;
                             }
 
                             @Override
                             protected void done() {
+                                if (game != gameNumber) { // the game has been restarted meanwhile
+                                    stopPondering();
+                                    return;
+                                }
                                 try {
                                     GomokuMove aiMove = get();
                                     makeMove(aiMove);
@@ -107,6 +120,8 @@ public class GomokuUI {
 
         if (gameState.isTerminal()) {
             gameOver = true;
+            // the human's move may have ended the game while the AI was pondering
+            stopPondering();
             int winner = gameState.checkWin();
             if (winner == GomokuState.EMPTY) {
                 statusLabel.setText("Game over: It's a draw!");
@@ -119,6 +134,8 @@ public class GomokuUI {
     }
 
     private void restartGame() {
+        stopPondering();
+        gameNumber++;
         gameState = new GomokuState();
         gameOver = false;
         humanTurn = true;
@@ -127,6 +144,19 @@ public class GomokuUI {
     }
 
 
+    // stopping waits for the iteration in progress, so it is done off the EDT
+    private void stopPondering() {
+        Player player = player2;
+        new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() {
+                if (player instanceof MCTSPlayer) ((MCTSPlayer) player).stop();
+                player.stopPondering();
+                return null;
+            }
+        }.execute();
+    }
+
     private class BoardPanel extends JPanel {
         @Override
         protected void paintComponent(Graphics g) {
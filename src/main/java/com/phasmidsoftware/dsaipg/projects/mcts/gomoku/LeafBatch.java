@@ -0,0 +1,79 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.gomoku;
+
+import java.util.Arrays;
+
+/**
+ * The leaves collected by one pass of a batched MonteCarloTreeSearch (see MCTSConfig.withLeafEvaluator),
+ * together with the primitive arrays in which their positions are passed to the LeafEvaluator.
+ * Each search thread reuses its own LeafBatch from one pass to the next.
+ */
+final class LeafBatch {
+    private final int[] positions; // For each leaf, its index among the positions evaluated (or, if it is terminal, -1 - the winner).
+    private final int[] players;
+    private final double[] values;
+    private byte[] cells = new byte[0];
+    private int boardSize;
+    private int leaves;
+    private int count; // The number of positions to be evaluated.
+
+    /**
+     * @param capacity the greatest number of leaves in a batch.
+     */
+    LeafBatch(int capacity) {
+        this.positions = new int[capacity];
+        this.players = new int[capacity];
+        this.values = new double[capacity];
+    }
+
+    void clear() {
+        leaves = 0;
+        count = 0;
+    }
+
+    int size() {
+        return leaves;
+    }
+
+    /**
+     * @param state the state of a leaf (which is copied, so it may change after this call).
+     */
+    void add(GomokuState state) {
+        int leaf = leaves++;
+        if (state.isTerminal()) {
+            positions[leaf] = -1 - state.checkWin();
+            return;
+        }
+        boardSize = state.getBoardSize();
+        int area = boardSize * boardSize;
+        if (cells.length < (count + 1) * area) cells = Arrays.copyOf(cells, positions.length * area);
+        state.getCells(cells, count * area);
+        players[count] = state.getCurrentPlayer();
+        positions[leaf] = count++;
+    }
+
+    /**
+     * Evaluate the positions of all the leaves which are not terminal, in one call.
+     *
+     * @param evaluator the evaluator.
+     */
+    void evaluate(LeafEvaluator evaluator) {
+        if (count == 0) return;
+        evaluator.evaluate(boardSize, cells, players, count, values);
+    }
+
+    /**
+     * Method to yield the result of a leaf (after evaluate) for one of the players.
+     *
+     * @param leaf   the index of the leaf in this batch.
+     * @param player a player.
+     * @return 1 for a win, 0.5 for a draw and 0 for a loss, or the evaluator's estimate.
+     */
+    double result(int leaf, int player) {
+        int position = positions[leaf];
+        if (position < 0) {
+            int winner = -1 - position;
+            return winner == GomokuState.EMPTY ? 0.5 : winner == player ? 1.0 : 0.0;
+        }
+        return player == players[position] ? values[position] : 1 - values[position];
+    }
+}
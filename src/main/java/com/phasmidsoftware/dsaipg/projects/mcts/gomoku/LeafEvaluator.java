@@ -0,0 +1,29 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.gomoku;
+
+/**
+ * A static evaluator of positions, which a MonteCarloTreeSearch may use in place of playouts
+ * (see MCTSConfig.withLeafEvaluator).
+ * The positions come in batches, as primitive arrays, so that an evaluator whose cost is largely per call
+ * (a network on an accelerator, or work shared between threads) can spread that cost over the whole batch.
+ * An evaluator may be called by several search threads at once, each with its own arrays.
+ */
+public interface LeafEvaluator {
+
+    /**
+     * Stones in lines of five cells are weighted by their number (see PatternEvaluator).
+     */
+    LeafEvaluator PATTERNS = new PatternEvaluator();
+
+    /**
+     * Method to evaluate a batch of positions, none of which is terminal.
+     *
+     * @param boardSize the size of the boards.
+     * @param cells     the boards, one after another, each of boardSize * boardSize cells in row-major order
+     *                  (PLAYER_ONE, PLAYER_TWO or EMPTY: see GomokuState.getCells).
+     * @param players   the player to move in each position.
+     * @param count     the number of positions.
+     * @param values    the array in which to put, for each position, the expected result for the player to move:
+     *                  between 0 (a certain loss) and 1 (a certain win), a draw being worth 0.5.
+     */
+    void evaluate(int boardSize, byte[] cells, int[] players, int count, double[] values);
+}
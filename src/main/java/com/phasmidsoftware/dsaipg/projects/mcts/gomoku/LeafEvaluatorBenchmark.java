@@ -0,0 +1,54 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.gomoku;
+
+/**
+ * Benchmark of batched leaf evaluation (see MCTSConfig.withLeafEvaluator): first the iterations per second with
+ * playouts and with the PatternEvaluator at several batch sizes; then the same for an evaluator which costs a fixed
+ * time per call on top of the patterns (standing in for the dispatch to an accelerator), where batching pays;
+ * and finally a match of the PatternEvaluator, batched, against uniform playouts, at the same time per move.
+ * Usage: LeafEvaluatorBenchmark [iterations [games [millis]]]
+ */
+public class LeafEvaluatorBenchmark {
+    private static final int[] BATCH_SIZES = {1, 4, 16, 64};
+    private static final long CALL_NANOS = 50_000;
+
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        int games = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int millis = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+        GomokuState state = ParallelSearchBenchmark.openingPosition();
+        MCTSConfig base = MCTSConfig.iterations(iterations).withCandidateDistance(GomokuState.SEARCH_CANDIDATE_DISTANCE);
+
+        System.out.println("=== Iterations per second (" + iterations + " iterations per move) ===");
+        System.out.printf("%-28s %,10.0f%n", "uniform playouts", ParallelSearchBenchmark.iterationsPerSecond(base, state, 5));
+        LeafEvaluator parallel = new PatternEvaluator(16);
+        LeafEvaluator dispatched = withCallCost(LeafEvaluator.PATTERNS, CALL_NANOS);
+        for (LeafEvaluator evaluator : new LeafEvaluator[]{LeafEvaluator.PATTERNS, parallel, dispatched})
+            for (int batchSize : BATCH_SIZES)
+                System.out.printf("%-22s K=%-3d %,10.0f%n", evaluator, batchSize,
+                        ParallelSearchBenchmark.iterationsPerSecond(base.withLeafEvaluator(evaluator, batchSize), state, 5));
+
+        System.out.println("=== patterns (K=16) vs uniform playouts: " + games + " games at " + millis + " ms per move ===");
+        MCTSConfig timed = MCTSConfig.timeBudget(millis).withCandidateDistance(GomokuState.SEARCH_CANDIDATE_DISTANCE);
+        GomokuTournament match = new GomokuTournament("patterns", seed -> new MCTSPlayer(timed.withLeafEvaluator(LeafEvaluator.PATTERNS, 16).withSeed(seed)),
+                "playouts", seed -> new MCTSPlayer(timed.withSeed(seed)), 15, 2, 1);
+        System.out.println(match.run(games, 1));
+    }
+
+    /**
+     * @return an evaluator which spins for the given time on each call, then delegates to the given evaluator.
+     */
+    private static LeafEvaluator withCallCost(LeafEvaluator evaluator, long nanos) {
+        return new LeafEvaluator() {
+            public void evaluate(int boardSize, byte[] cells, int[] players, int count, double[] values) {
+                long end = System.nanoTime() + nanos;
+                while (System.nanoTime() < end) Thread.onSpinWait();
+                evaluator.evaluate(boardSize, cells, players, count, values);
+            }
+
+            @Override
+            public String toString() {
+                return evaluator + "+" + nanos / 1000 + "us/call";
+            }
+        };
+    }
+}
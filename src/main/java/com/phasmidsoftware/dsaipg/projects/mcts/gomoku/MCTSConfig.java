@@ -0,0 +1,506 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.gomoku;
+
+import com.phasmidsoftware.dsaipg.projects.mcts.core.ParallelMode;
+
+/**
+ * Immutable settings for a MonteCarloTreeSearch.
+ * Start from iterations(n) and refine with the "with" methods, each of which yields a new MCTSConfig.
+ */
+public final class MCTSConfig {
+    private final int iterationLimit;
+    private final ParallelMode parallelMode;
+    private final int threads;
+    private final double virtualLoss;
+    private final int transpositionTableSize;
+    private final boolean treeReuse;
+    private final long timeBudgetMillis;
+    private final boolean earlyStop;
+    private final int candidateDistance;
+    private final double wideningCoefficient;
+    private final double wideningExponent;
+    private final RolloutPolicy rolloutPolicy;
+    private final double raveEquivalence;
+    private final boolean nodeArena;
+    private final long nodeBudget;
+    private final long seed;
+    private final int threatSearchNodes;
+    private final boolean phaseTimers;
+    private final LeafEvaluator leafEvaluator;
+    private final int batchSize;
+    private final boolean solver;
+
+    /**
+     * The default virtual loss for ParallelMode.TREE, in lost playouts per pending visit.
+     */
+    public static final double DEFAULT_VIRTUAL_LOSS = 1.0;
+
+    /**
+     * Method to create a sequential configuration.
+     *
+     * @param iterationLimit the number of iterations per search (per thread, when searching in parallel).
+     * @return a new MCTSConfig.
+     */
+    public static MCTSConfig iterations(int iterationLimit) {
+        if (iterationLimit < 1) throw new IllegalArgumentException("iterationLimit must be positive: " + iterationLimit);
+        Builder result = new Builder();
+        result.iterationLimit = iterationLimit;
+        return result.build();
+    }
+
+    /**
+     * Method to create a sequential configuration which searches for as long as the given wall-clock budget allows
+     * (but stops sooner if the best move can no longer be overtaken).
+     *
+     * @param millis the time allowed for each search, in milliseconds.
+     * @return a new MCTSConfig.
+     */
+    public static MCTSConfig timeBudget(long millis) {
+        return iterations(Integer.MAX_VALUE).withTimeBudget(millis).withEarlyStop(true);
+    }
+
+    /**
+     * Method to yield a copy of this configuration which searches using the given number of threads.
+     *
+     * @param mode    the parallel mode.
+     * @param threads the number of threads (ignored for SEQUENTIAL).
+     * @return a new MCTSConfig.
+     */
+    public MCTSConfig withParallelism(ParallelMode mode, int threads) {
+        if (threads < 1) throw new IllegalArgumentException("threads must be positive: " + threads);
+        Builder result = new Builder(this);
+        result.parallelMode = mode;
+        result.threads = mode == ParallelMode.SEQUENTIAL ? 1 : threads;
+        return result.build();
+    }
+
+    /**
+     * Method to yield a copy of this configuration with the given virtual loss
+     * (used only by ParallelMode.TREE and by batches of leaves: see withLeafEvaluator).
+     *
+     * @param virtualLoss the number of lost playouts charged to a node for each thread (or leaf of the batch)
+     *                    currently below it.
+     * @return a new MCTSConfig.
+     */
+    public MCTSConfig withVirtualLoss(double virtualLoss) {
+        if (virtualLoss < 0) throw new IllegalArgumentException("virtualLoss must not be negative: " + virtualLoss);
+        Builder result = new Builder(this);
+        result.virtualLoss = virtualLoss;
+        return result.build();
+    }
+
+    /**
+     * Method to yield a copy of this configuration which shares nodes between transpositions
+     * (the same position reached by different move orders), using a TranspositionTable of the given size.
+     *
+     * @param size the maximum number of entries in the table of each tree (zero disables the table).
+     * @return a new MCTSConfig.
+     */
+    public MCTSConfig withTranspositionTable(int size) {
+        if (size < 0) throw new IllegalArgumentException("transposition table size must not be negative: " + size);
+        Builder result = new Builder(this);
+        result.transpositionTableSize = size;
+        return result.build();
+    }
+
+    /**
+     * Method to yield a copy of this configuration which keeps the subtree under the move played (and the
+     * opponent's reply) from one call of findNextMove to the next. Not supported by ParallelMode.ROOT.
+     *
+     * @param treeReuse true to reuse the tree.
+     * @return a new MCTSConfig.
+     */
+    public MCTSConfig withTreeReuse(boolean treeReuse) {
+        Builder result = new Builder(this);
+        result.treeReuse = treeReuse;
+        return result.build();
+    }
+
+    /**
+     * Method to yield a copy of this configuration with a wall-clock budget for each search.
+     * The search ends at the deadline or the iteration limit, whichever comes first.
+     *
+     * @param millis the time allowed for each search, in milliseconds (zero for no limit).
+     * @return a new MCTSConfig.
+     */
+    public MCTSConfig withTimeBudget(long millis) {
+        if (millis < 0) throw new IllegalArgumentException("time budget must not be negative: " + millis);
+        Builder result = new Builder(this);
+        result.timeBudgetMillis = millis;
+        return result.build();
+    }
+
+    /**
+     * Method to yield a copy of this configuration which stops searching as soon as the most visited move
+     * could not be overtaken by the second-most visited move in the iterations (or time) remaining.
+     *
+     * @param earlyStop true to stop early.
+     * @return a new MCTSConfig.
+     */
+    public MCTSConfig withEarlyStop(boolean earlyStop) {
+        Builder result = new Builder(this);
+        result.earlyStop = earlyStop;
+        return result.build();
+    }
+
+    /**
+     * Method to yield a copy of this configuration which only expands moves within the given distance
+     * (in king moves) of the stones already on the board (see GomokuState.getCandidateMoves).
+     *
+     * @param distance the candidate distance (zero to consider every empty cell).
+     * @return a new MCTSConfig.
+     */
+    public MCTSConfig withCandidateDistance(int distance) {
+        if (distance < 0) throw new IllegalArgumentException("candidate distance must not be negative: " + distance);
+        Builder result = new Builder(this);
+        result.candidateDistance = distance;
+        return result.build();
+    }
+
+    /**
+     * Method to yield a copy of this configuration with progressive widening: a node with n visits may have
+     * at most max(1, ceil(coefficient * n^exponent)) children, added in order of the number of adjacent stones.
+     *
+     * @param coefficient the widening coefficient (zero to expand every move at once).
+     * @param exponent    the widening exponent, between 0 and 1.
+     * @return a new MCTSConfig.
+     */
+    public MCTSConfig withProgressiveWidening(double coefficient, double exponent) {
+        if (coefficient < 0) throw new IllegalArgumentException("widening coefficient must not be negative: " + coefficient);
+        if (exponent < 0 || exponent > 1) throw new IllegalArgumentException("widening exponent must be between 0 and 1: " + exponent);
+        Builder result = new Builder(this);
+        result.wideningCoefficient = coefficient;
+        result.wideningExponent = exponent;
+        return result.build();
+    }
+
+    /**
+     * Method to yield a copy of this configuration which plays out simulations with the given policy.
+     *
+     * @param policy the rollout policy (RolloutPolicy.UNIFORM by default).
+     * @return a new MCTSConfig.
+     */
+    public MCTSConfig withRolloutPolicy(RolloutPolicy policy) {
+        if (policy == null) throw new IllegalArgumentException("rollout policy must not be null");
+        Builder result = new Builder(this);
+        result.rolloutPolicy = policy;
+        return result.build();
+    }
+
+    /**
+     * Method to yield a copy of this configuration which keeps all-moves-as-first statistics for each child and
+     * blends them into selection (RAVE): see MCTSNode.selectChild(double, double).
+     *
+     * @param equivalence the number of visits at which a child's own statistics and its AMAF statistics carry
+     *                    roughly equal weight (zero to disable RAVE).
+     * @return a new MCTSConfig.
+     */
+    public MCTSConfig withRave(double equivalence) {
+        if (equivalence < 0) throw new IllegalArgumentException("RAVE equivalence must not be negative: " + equivalence);
+        Builder result = new Builder(this);
+        result.raveEquivalence = equivalence;
+        return result.build();
+    }
+
+    /**
+     * Method to yield a copy of this configuration which searches on a NodeArena: the tree is held in primitive
+     * arrays, with no state per node, and the arena is reused from one move to the next.
+     * The arena search is sequential: it cannot be combined with parallelism, a transposition table, tree reuse,
+     * progressive widening, RAVE or a node budget (see MonteCarloTreeSearch).
+     *
+     * @param nodeArena true to search on a NodeArena.
+     * @return a new MCTSConfig.
+     */
+    public MCTSConfig withNodeArena(boolean nodeArena) {
+        Builder result = new Builder(this);
+        result.nodeArena = nodeArena;
+        return result.build();
+    }
+
+    /**
+     * Method to yield a copy of this configuration which limits the number of nodes in the search tree:
+     * when the limit is reached, the least-visited subtrees are collapsed into leaves (see NodeBudget).
+     * With ParallelMode.ROOT, the limit is shared equally between the trees.
+     *
+     * @param maxNodes the maximum number of nodes (zero for no limit).
+     * @return a new MCTSConfig.
+     */
+    public MCTSConfig withNodeBudget(long maxNodes) {
+        if (maxNodes < 0) throw new IllegalArgumentException("node budget must not be negative: " + maxNodes);
+        Builder result = new Builder(this);
+        result.nodeBudget = maxNodes;
+        return result.build();
+    }
+
+    /**
+     * Method to yield a copy of this configuration whose random choices (in expansion and in the playouts) are
+     * drawn from generators seeded by the given value, rather than from ThreadLocalRandom.
+     * A sequential search with an iteration limit (and without pondering) then chooses the same moves every time.
+     *
+     * @param seed the seed (zero for none).
+     * @return a new MCTSConfig.
+     */
+    public MCTSConfig withSeed(long seed) {
+        Builder result = new Builder(this);
+        result.seed = seed;
+        return result.build();
+    }
+
+    /**
+     * Method to yield a copy of this configuration which, before each search, looks for a forced win or a forced
+     * block with a ThreatSpaceSearch, and plays it at once if there is one.
+     *
+     * @param nodeLimit the node limit of each threat-space search (zero for none at all).
+     * @return a new MCTSConfig.
+     */
+    public MCTSConfig withThreatSearch(int nodeLimit) {
+        if (nodeLimit < 0) throw new IllegalArgumentException("threat search node limit must not be negative: " + nodeLimit);
+        Builder result = new Builder(this);
+        result.threatSearchNodes = nodeLimit;
+        return result.build();
+    }
+
+    /**
+     * Method to yield a copy of this configuration which times each phase of each iteration
+     * (see MonteCarloTreeSearch.getMetrics), at the cost of four calls to System.nanoTime per iteration.
+     *
+     * @param phaseTimers true to time the phases.
+     * @return a new MCTSConfig.
+     */
+    public MCTSConfig withPhaseTimers(boolean phaseTimers) {
+        Builder result = new Builder(this);
+        result.phaseTimers = phaseTimers;
+        return result.build();
+    }
+
+    /**
+     * Method to yield a copy of this configuration which evaluates leaves statically instead of playing them out.
+     * Each pass selects up to batchSize leaves (kept apart by virtual loss, see withVirtualLoss), evaluates them
+     * in one call of the evaluator, and then backpropagates them all; each leaf counts as one iteration.
+     *
+     * @param evaluator the evaluator (null to play out as usual).
+     * @param batchSize the greatest number of leaves in a batch (one for no batching).
+     * @return a new MCTSConfig.
+     */
+    public MCTSConfig withLeafEvaluator(LeafEvaluator evaluator, int batchSize) {
+        if (batchSize < 1) throw new IllegalArgumentException("batch size must be positive: " + batchSize);
+        Builder result = new Builder(this);
+        result.leafEvaluator = evaluator;
+        result.batchSize = evaluator == null ? 0 : batchSize;
+        return result.build();
+    }
+
+    /**
+     * Method to yield a copy of this configuration which proves game-theoretic values in the tree (MCTS-Solver):
+     * a node whose move wins at once is a proven win; a node with a child which is a proven win for the opponent
+     * is a proven loss; and a node all of whose children are proven losses for the opponent is a proven win.
+     * Proven children are no longer selected, the search ends as soon as the root is proven, and a proven winning
+     * move is always chosen (a proven losing one only if there is nothing else).
+     * A node is proven a win by its children only once they cover every legal move: so, with candidate moves
+     * (see withCandidateDistance), only the first two kinds of proof are made, and every proof is a real one.
+     *
+     * @param solver true to prove values.
+     * @return a new MCTSConfig.
+     */
+    public MCTSConfig withSolver(boolean solver) {
+        Builder result = new Builder(this);
+        result.solver = solver;
+        return result.build();
+    }
+
+    public int getIterationLimit() {
+        return iterationLimit;
+    }
+
+    public ParallelMode getParallelMode() {
+        return parallelMode;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public double getVirtualLoss() {
+        return virtualLoss;
+    }
+
+    /**
+     * @return the size of the transposition table of each tree, or zero if there is none.
+     */
+    public int getTranspositionTableSize() {
+        return transpositionTableSize;
+    }
+
+    public boolean isTreeReuse() {
+        return treeReuse;
+    }
+
+    /**
+     * @return the wall-clock budget for each search, in milliseconds (zero if there is none).
+     */
+    public long getTimeBudgetMillis() {
+        return timeBudgetMillis;
+    }
+
+    public boolean isEarlyStop() {
+        return earlyStop;
+    }
+
+    /**
+     * @return the candidate distance (zero if every empty cell is considered).
+     */
+    public int getCandidateDistance() {
+        return candidateDistance;
+    }
+
+    /**
+     * @return the progressive widening coefficient (zero if progressive widening is off).
+     */
+    public double getWideningCoefficient() {
+        return wideningCoefficient;
+    }
+
+    public double getWideningExponent() {
+        return wideningExponent;
+    }
+
+    public RolloutPolicy getRolloutPolicy() {
+        return rolloutPolicy;
+    }
+
+    public double getRaveEquivalence() {
+        return raveEquivalence;
+    }
+
+    public boolean isNodeArena() {
+        return nodeArena;
+    }
+
+    public long getNodeBudget() {
+        return nodeBudget;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getThreatSearchNodes() {
+        return threatSearchNodes;
+    }
+
+    public boolean isPhaseTimers() {
+        return phaseTimers;
+    }
+
+    /**
+     * @return the evaluator of leaves (null if leaves are played out).
+     */
+    public LeafEvaluator getLeafEvaluator() {
+        return leafEvaluator;
+    }
+
+    /**
+     * @return the greatest number of leaves evaluated together (zero if leaves are played out).
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public boolean isSolver() {
+        return solver;
+    }
+
+    @Override
+    public String toString() {
+        return "MCTSConfig{iterations=" + iterationLimit + ", mode=" + parallelMode + ", threads=" + threads + ", virtualLoss=" + virtualLoss
+                + ", transpositionTable=" + transpositionTableSize + ", treeReuse=" + treeReuse
+                + ", timeBudget=" + timeBudgetMillis + "ms, earlyStop=" + earlyStop + ", candidateDistance=" + candidateDistance
+                + ", widening=" + wideningCoefficient + "*n^" + wideningExponent + ", rollout=" + rolloutPolicy + ", rave=" + raveEquivalence + ", nodeArena=" + nodeArena + ", nodeBudget=" + nodeBudget + ", seed=" + seed + ", threatSearch=" + threatSearchNodes + ", phaseTimers=" + phaseTimers + ", evaluator=" + leafEvaluator + ", batch=" + batchSize + ", solver=" + solver + "}";
+    }
+
+    private MCTSConfig(Builder builder) {
+        this.iterationLimit = builder.iterationLimit;
+        this.parallelMode = builder.parallelMode;
+        this.threads = builder.threads;
+        this.virtualLoss = builder.virtualLoss;
+        this.transpositionTableSize = builder.transpositionTableSize;
+        this.treeReuse = builder.treeReuse;
+        this.timeBudgetMillis = builder.timeBudgetMillis;
+        this.earlyStop = builder.earlyStop;
+        this.candidateDistance = builder.candidateDistance;
+        this.wideningCoefficient = builder.wideningCoefficient;
+        this.wideningExponent = builder.wideningExponent;
+        this.rolloutPolicy = builder.rolloutPolicy;
+        this.raveEquivalence = builder.raveEquivalence;
+        this.nodeArena = builder.nodeArena;
+        this.nodeBudget = builder.nodeBudget;
+        this.seed = builder.seed;
+        this.threatSearchNodes = builder.threatSearchNodes;
+        this.phaseTimers = builder.phaseTimers;
+        this.leafEvaluator = builder.leafEvaluator;
+        this.batchSize = builder.batchSize;
+        this.solver = builder.solver;
+    }
+
+    /**
+     * The mutable settings from which each new MCTSConfig is built, so that every field of MCTSConfig can be final
+     * (and so safely published to the threads of a search).
+     */
+    private static final class Builder {
+        private int iterationLimit;
+        private ParallelMode parallelMode;
+        private int threads;
+        private double virtualLoss;
+        private int transpositionTableSize;
+        private boolean treeReuse;
+        private long timeBudgetMillis;
+        private boolean earlyStop;
+        private int candidateDistance;
+        private double wideningCoefficient;
+        private double wideningExponent;
+        private RolloutPolicy rolloutPolicy;
+        private double raveEquivalence;
+        private boolean nodeArena;
+        private long nodeBudget;
+        private long seed;
+        private int threatSearchNodes;
+        private boolean phaseTimers;
+        private LeafEvaluator leafEvaluator;
+        private int batchSize;
+        private boolean solver;
+
+        Builder() {
+            this.parallelMode = ParallelMode.SEQUENTIAL;
+            this.threads = 1;
+            this.virtualLoss = DEFAULT_VIRTUAL_LOSS;
+            this.rolloutPolicy = RolloutPolicy.UNIFORM;
+        }
+
+        Builder(MCTSConfig config) {
+            this.iterationLimit = config.iterationLimit;
+            this.parallelMode = config.parallelMode;
+            this.threads = config.threads;
+            this.virtualLoss = config.virtualLoss;
+            this.transpositionTableSize = config.transpositionTableSize;
+            this.treeReuse = config.treeReuse;
+            this.timeBudgetMillis = config.timeBudgetMillis;
+            this.earlyStop = config.earlyStop;
+            this.candidateDistance = config.candidateDistance;
+            this.wideningCoefficient = config.wideningCoefficient;
+            this.wideningExponent = config.wideningExponent;
+            this.rolloutPolicy = config.rolloutPolicy;
+            this.raveEquivalence = config.raveEquivalence;
+            this.nodeArena = config.nodeArena;
+            this.nodeBudget = config.nodeBudget;
+            this.seed = config.seed;
+            this.threatSearchNodes = config.threatSearchNodes;
+            this.phaseTimers = config.phaseTimers;
+            this.leafEvaluator = config.leafEvaluator;
+            this.batchSize = config.batchSize;
+            this.solver = config.solver;
+        }
+
+        MCTSConfig build() {
+            return new MCTSConfig(this);
+        }
+    }
+}
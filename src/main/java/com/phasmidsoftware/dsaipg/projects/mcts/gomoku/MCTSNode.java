@@ -1,23 +1,69 @@
 package com.phasmidsoftware.dsaipg.projects.mcts.gomoku;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Random;
+import java.util.function.Supplier;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
 
 /**
- *
+ * A node of the tree built by MonteCarloTreeSearch.
+ * <p>
+ * The statistics (wins, visits and pending virtual losses) are updated atomically, and children are published
+ * all at once, so that several threads may share one tree (see ParallelMode.TREE).
  */
 public class MCTSNode {
     private GomokuState state;
     private MCTSNode parent;
-    private List<MCTSNode> children;
-    private double wins;
-    private int visits;
+    private final List<MCTSNode> children;
+    private volatile double wins;
+    private volatile int visits;
+    private volatile int virtualLosses; // The number of threads currently descending through this node.
+    private volatile int expansionClaimed;
+    private List<GomokuMove> pendingMoves; // For progressive widening: the moves in the order they are to be added.
+    private volatile int movesClaimed;
+    private volatile int movesAvailable = -1; // -1 until pendingMoves has been generated.
     private GomokuMove move; // The move that led to this state.
     private int playerNo;    // The player who made the move to get here.
+    // For RAVE (null unless enabled): by child slot, the cell (row * boardSize + col) of the move to that child, and
+    // its all-moves-as-first statistics packed as (visits << 32 | half-points won by the player to move here).
+    private volatile int[] raveMoves;
+    private volatile long[] raveStats;
+    // For the solver: the game-theoretic value of this node for playerNo, once proven (see prove).
+    private volatile int proof = UNPROVEN;
+
+    /**
+     * The values of getProof: the player who moved here can force a win (PROVEN_WIN) or cannot avoid a loss
+     * (PROVEN_LOSS), or neither is known (UNPROVEN).
+     */
+    public static final int PROVEN_LOSS = -1;
+    public static final int UNPROVEN = 0;
+    public static final int PROVEN_WIN = 1;
 
     private static final double EXPLORATION_PARAMETER = Math.sqrt(2);
 
+    private static final VarHandle WINS;
+    private static final VarHandle VISITS;
+    private static final VarHandle VIRTUAL_LOSSES;
+    private static final VarHandle EXPANSION_CLAIMED;
+    private static final VarHandle RAVE_STATS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            WINS = lookup.findVarHandle(MCTSNode.class, "wins", double.class);
+            VISITS = lookup.findVarHandle(MCTSNode.class, "visits", int.class);
+            VIRTUAL_LOSSES = lookup.findVarHandle(MCTSNode.class, "virtualLosses", int.class);
+            EXPANSION_CLAIMED = lookup.findVarHandle(MCTSNode.class, "expansionClaimed", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
     /**
      *
      * @param state
@@ -28,7 +74,7 @@ public class MCTSNode {
         this.state = state;
         this.parent = parent;
         this.move = move;
-        this.children = new ArrayList<>();
+        this.children = new CopyOnWriteArrayList<>();
         this.visits = 0;
         this.wins = 0.0;
 
@@ -75,13 +121,63 @@ public class MCTSNode {
      * @return
      */
     public boolean isFullyExpanded() {
-        return children.size() == state.getLegalMoves().size();
+        return children.size() == state.getEmptyCount();
     }
 
     public boolean isTerminalNode() {
         return state.isTerminal();
     }
 
+    /**
+     * @return PROVEN_WIN, PROVEN_LOSS or UNPROVEN, for the player who moved here (see prove).
+     */
+    public int getProof() {
+        return proof;
+    }
+
+    public boolean isProven() {
+        return proof != UNPROVEN;
+    }
+
+    /**
+     * Method for the solver (see MCTSConfig.withSolver) to prove the value of this node, if it can, from its state
+     * and the proofs of its children: the move here has just won; or the opponent has a child which is a proven win;
+     * or every legal move of the opponent has been expanded and each child is a proven loss. A draw is never proven.
+     * So, where only candidate moves are expanded (see GomokuState.getCandidateMoves), a node is never proven a win
+     * by its children (unless the candidates are every empty cell): a move outside them might yet defend.
+     * A proof, once made, never changes, so this method is safe to call concurrently.
+     *
+     * @return true if this node is (now) proven.
+     */
+    public boolean prove() {
+        if (proof != UNPROVEN) return true;
+        if (state.isTerminal()) {
+            if (state.checkWin() == playerNo) proof = PROVEN_WIN;
+            return proof != UNPROVEN;
+        }
+        boolean allLost = isExpansionComplete() && children.size() == state.getEmptyCount();
+        for (MCTSNode child : children) {
+            int childProof = child.proof;
+            if (childProof == PROVEN_WIN) {
+                proof = PROVEN_LOSS;
+                return true;
+            }
+            if (childProof != PROVEN_LOSS) allLost = false;
+        }
+        if (allLost) proof = PROVEN_WIN;
+        return allLost;
+    }
+
+    /**
+     * @return true if every child which will ever be added to this node has been (whether at once or, with
+     * progressive widening, bit by bit).
+     */
+    private boolean isExpansionComplete() {
+        int available = movesAvailable;
+        if (available >= 0) return movesClaimed == available && children.size() == available;
+        return expansionClaimed != 0 && !children.isEmpty();
+    }
+
     /**
      *
      * Returns the list of moves that have not been tried (i.e., not in one of the child nodes).
@@ -96,9 +192,21 @@ public class MCTSNode {
         return possibleMoves;
     }
 
+    /**
+     * @return a child chosen at random (or null if there are none, which can happen if the node has just been
+     * collapsed by another thread).
+     */
     public MCTSNode getRandomChild() {
-        Random rand = new Random();
-        return children.get(rand.nextInt(children.size()));
+        return getRandomChild(ThreadLocalRandom.current());
+    }
+
+    /**
+     * @param random the source of randomness.
+     * @return a child chosen at random (or null if there are none).
+     */
+    public MCTSNode getRandomChild(RandomGenerator random) {
+        Object[] snapshot = children.toArray();
+        return snapshot.length == 0 ? null : (MCTSNode) snapshot[random.nextInt(snapshot.length)];
     }
 
     /**
@@ -106,47 +214,267 @@ public class MCTSNode {
      * Uses the UCT formula to select the next child node for exploration.
      */
     public MCTSNode selectChild() {
+        return selectChild(0);
+    }
+
+    /**
+     * Uses the UCT formula to select the next child node for exploration, where each thread currently
+     * descending through a node counts as virtualLoss additional lost playouts of that node.
+     * This steers concurrent threads into different parts of a shared tree.
+     *
+     * @param virtualLoss the number of lost playouts charged for each pending visit.
+     * @return the selected child.
+     */
+    public MCTSNode selectChild(double virtualLoss) {
+        return selectChild(virtualLoss, 0);
+    }
+
+    /**
+     * Uses the UCT formula, with virtual loss, to select the next child node for exploration.
+     * Proven children (see prove) are never selected: there is nothing more to learn about them.
+     * If raveEquivalence is positive, the win rate of each child is blended with its all-moves-as-first win rate
+     * using the weight beta = sqrt(k / (3n + k)), where k is raveEquivalence and n the child's visits:
+     * so AMAF statistics dominate while a child has few visits of its own and fade away as it gains more.
+     *
+     * @param virtualLoss     the number of lost playouts charged for each pending visit.
+     * @param raveEquivalence the RAVE equivalence parameter k (zero for plain UCT).
+     * @return the selected child (null if every child is proven).
+     */
+    public MCTSNode selectChild(double virtualLoss, double raveEquivalence) {
         MCTSNode selected = null;
         double bestValue = Double.NEGATIVE_INFINITY;
+        double parentVisits = this.visits + virtualLoss * this.virtualLosses;
+        long[] stats = raveEquivalence > 0 ? raveStats : null;
+        int slot = 0;
         for (MCTSNode child : children) {
-            double uctValue = child.wins / (child.visits + 1e-6)
-                    + EXPLORATION_PARAMETER * Math.sqrt(Math.log(this.visits + 1) / (child.visits + 1e-6));
+            if (child.proof != UNPROVEN) {
+                slot++;
+                continue;
+            }
+            double childVisits = child.visits + virtualLoss * child.virtualLosses;
+            double value = child.wins / (childVisits + 1e-6);
+            if (stats != null && slot < stats.length) {
+                long packed = stats[slot];
+                int amafVisits = (int) (packed >>> 32);
+                if (amafVisits > 0) {
+                    double beta = Math.sqrt(raveEquivalence / (3 * childVisits + raveEquivalence));
+                    value = (1 - beta) * value + beta * (int) packed / (2.0 * amafVisits);
+                }
+            }
+            double uctValue = value + EXPLORATION_PARAMETER * Math.sqrt(Math.log(parentVisits + 1) / (childVisits + 1e-6));
             if (uctValue > bestValue) {
                 selected = child;
                 bestValue = uctValue;
             }
+            slot++;
         }
         return selected;
     }
 
+    /**
+     * Make this node the root of its tree (when the tree is reused for the next move),
+     * so that its former ancestors may be garbage-collected.
+     */
+    public void makeRoot() {
+        this.parent = null;
+        this.move = null;
+    }
+
+    /**
+     * Change the parent of a node which is shared by transposition (the player who moved is the same for every parent).
+     *
+     * @param parent the new parent.
+     * @param move   the move which leads from parent to this node.
+     */
+    void setParent(MCTSNode parent, GomokuMove move) {
+        this.parent = parent;
+        this.move = move;
+    }
+
     public void addChild(MCTSNode child) {
         this.children.add(child);
     }
 
+    /**
+     * Add all the given children at once, so that concurrent readers never see a partial expansion.
+     *
+     * @param newChildren the children to add.
+     */
+    public void addChildren(List<MCTSNode> newChildren) {
+        this.children.addAll(newChildren);
+    }
+
+    /**
+     * Add all the given children at once, and keep all-moves-as-first statistics for them (see updateRave).
+     * The statistics arrays are copied to grow them, so an update racing with a later addition may be lost:
+     * they are only estimates, so this is tolerated rather than paying for a lock on every update.
+     *
+     * @param newChildren the children to add.
+     * @param moves       the moves which lead from this node to each of newChildren (in the same order).
+     */
+    public synchronized void addChildren(List<MCTSNode> newChildren, List<GomokuMove> moves) {
+        int[] oldMoves = raveMoves == null ? new int[0] : raveMoves;
+        int n = oldMoves.length;
+        int[] newMoves = Arrays.copyOf(oldMoves, n + moves.size());
+        for (int i = 0; i < moves.size(); i++) newMoves[n + i] = moves.get(i).getRow() * state.getBoardSize() + moves.get(i).getCol();
+        raveStats = raveStats == null ? new long[newMoves.length] : Arrays.copyOf(raveStats, newMoves.length);
+        raveMoves = newMoves;
+        this.children.addAll(newChildren);
+    }
+
+    /**
+     * Update the all-moves-as-first statistics of this node's children after a playout: each child whose cell
+     * was taken, by the player to move here, at some point after this node counts the playout as one of its own.
+     * In Gomoku a cell is never vacated, so those are just the cells which that player holds at the end.
+     *
+     * @param board  the playout board, holding the final position.
+     * @param winner the winner of the playout (EMPTY for a draw).
+     */
+    public void updateRave(PlayoutEngine board, int winner) {
+        int[] moves = raveMoves;
+        long[] stats = raveStats;
+        if (moves == null) return;
+        int player = state.getCurrentPlayer();
+        long increment = 1L << 32 | (winner == GomokuState.EMPTY ? 1 : winner == player ? 2 : 0);
+        for (int slot = Math.min(moves.length, stats.length) - 1; slot >= 0; slot--)
+            if (board.getCell(moves[slot]) == player) RAVE_STATS.getAndAdd(stats, slot, increment);
+    }
+
+    /**
+     * @param slot the index of a child.
+     * @return the number of playouts counted by that child's all-moves-as-first statistics.
+     */
+    public int getRaveVisits(int slot) {
+        long[] stats = raveStats;
+        return stats == null || slot >= stats.length ? 0 : (int) (stats[slot] >>> 32);
+    }
+
+    /**
+     * @param slot the index of a child.
+     * @return the wins (a draw counting one half) of the player to move here in the playouts counted by getRaveVisits(slot).
+     */
+    public double getRaveWins(int slot) {
+        long[] stats = raveStats;
+        return stats == null || slot >= stats.length ? 0 : (int) stats[slot] / 2.0;
+    }
+
+    /**
+     * Turn this node back into a leaf (see NodeBudget): its children are dropped, but its own statistics (and proof)
+     * are kept, and it may be expanded again.
+     */
+    public synchronized void collapse() {
+        children.clear();
+        raveMoves = null;
+        raveStats = null;
+        pendingMoves = null;
+        movesClaimed = 0;
+        movesAvailable = -1;
+        expansionClaimed = 0;
+    }
+
+    /**
+     * Claim the right to expand this node: this yields true exactly once per node.
+     *
+     * @return true if the caller should expand this node.
+     */
+    public boolean claimExpansion() {
+        return EXPANSION_CLAIMED.compareAndSet(this, 0, 1);
+    }
+
+    /**
+     * Method for progressive widening: claim the next untried moves, so that (counting those claimed before)
+     * no more than allowedChildren moves are claimed in all.
+     *
+     * @param allowedChildren the number of children this node may now have.
+     * @param generator       yields all the moves, in the order they should be added (called only once per node).
+     * @return the moves which the caller should now add as children (possibly none).
+     */
+    public synchronized List<GomokuMove> claimMoves(int allowedChildren, Supplier<List<GomokuMove>> generator) {
+        if (movesAvailable < 0) {
+            pendingMoves = generator.get();
+            movesAvailable = pendingMoves.size();
+        }
+        int n = Math.min(allowedChildren, movesAvailable) - movesClaimed;
+        if (n <= 0) return new ArrayList<>();
+        List<GomokuMove> result = new ArrayList<>(pendingMoves.subList(movesClaimed, movesClaimed + n));
+        movesClaimed += n;
+        if (movesClaimed == movesAvailable) pendingMoves = null; // no longer needed.
+        return result;
+    }
+
+    /**
+     * @param allowedChildren the number of children this node may now have.
+     * @return true if claimMoves might yield a move (without synchronizing).
+     */
+    public boolean canWiden(int allowedChildren) {
+        int claimed = movesClaimed;
+        return claimed < allowedChildren && (movesAvailable < 0 || claimed < movesAvailable);
+    }
+
     /**
      *
      * Update the statistics for this node.
      */
     public void updateStats(double result) {
-        visits++;
-        wins += result;
+        VISITS.getAndAdd(this, 1);
+        WINS.getAndAdd(this, result);
+    }
+
+    /**
+     * Record that a thread is descending through this node (see selectChild(double)).
+     */
+    public void addVirtualLoss() {
+        VIRTUAL_LOSSES.getAndAdd(this, 1);
+    }
+
+    /**
+     * Record that a thread which called addVirtualLoss has backpropagated its result.
+     */
+    public void removeVirtualLoss() {
+        VIRTUAL_LOSSES.getAndAdd(this, -1);
+    }
+
+    public int getVirtualLosses() {
+        return virtualLosses;
     }
 
     /**
-     * Returns the child node that has been visited the most.
+     * Returns the child node that has been visited the most: except that a child which is a proven win is always
+     * preferred, and a child which is a proven loss is passed over unless every child is.
      * @param node
      * @return
      */
     public static MCTSNode bestChild(MCTSNode node) {
         MCTSNode best = null;
+        boolean bestLost = true;
         int maxVisits = -1;
         for (MCTSNode child : node.children) {
-            if (child.visits > maxVisits) {
+            int childProof = child.proof;
+            if (childProof == PROVEN_WIN) return child;
+            boolean lost = childProof == PROVEN_LOSS;
+            if (lost && !bestLost) continue;
+            if (child.visits > maxVisits || bestLost && !lost) {
                 best = child;
+                bestLost = lost;
                 maxVisits = child.visits;
             }
         }
         return best;
     }
-}
 
+    /**
+     * @return the number of visits by which the most visited child leads the next (see Budget).
+     */
+    public int lead() {
+        int best = 0;
+        int second = 0;
+        for (MCTSNode child : children) {
+            int v = child.visits;
+            if (v > best) {
+                second = best;
+                best = v;
+            } else if (v > second) second = v;
+        }
+        return best - second;
+    }
+}
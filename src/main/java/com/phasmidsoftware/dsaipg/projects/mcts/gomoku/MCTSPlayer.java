@@ -1,22 +1,188 @@
 package com.phasmidsoftware.dsaipg.projects.mcts.gomoku;
 
+import com.phasmidsoftware.dsaipg.projects.mcts.core.ParallelMode;
+import com.phasmidsoftware.dsaipg.projects.mcts.core.SearchMetrics;
+
+import java.nio.file.Path;
+
 /**
- *
+ * A player which chooses its moves by Monte Carlo tree search.
+ * The convenience constructors keep the search tree from one move to the next (see MCTSConfig.withTreeReuse).
+ * A player may also be given an OpeningBook, which it consults before searching; the book is opened when first needed.
  */
 public class MCTSPlayer implements Player {
     private MonteCarloTreeSearch mcts;
+    private final Path bookPath; // null if there is no book.
+    private OpeningBook book;
+    private long bookMoves;
+    private boolean lastBookMove;
 
     /**
      *
      * @param iterations
      */
     public MCTSPlayer(int iterations) {
-        mcts = new MonteCarloTreeSearch(iterations);
+        this(MCTSConfig.iterations(iterations).withTreeReuse(true));
+    }
+
+    /**
+     * Constructor for a root-parallel player (sequential if threads is 1).
+     *
+     * @param iterations the iterations per tree.
+     * @param threads    the number of trees to be built in parallel.
+     */
+    public MCTSPlayer(int iterations, int threads) {
+        this(MCTSConfig.iterations(iterations).withParallelism(threads > 1 ? ParallelMode.ROOT : ParallelMode.SEQUENTIAL, threads).withTreeReuse(true));
+    }
+
+    public MCTSPlayer(MCTSConfig config) {
+        this(config, null);
+    }
+
+    /**
+     * Constructor for a player which plays from an opening book while it can, and searches otherwise.
+     *
+     * @param config   the configuration of the search.
+     * @param bookPath an opening book file (see OpeningBook), or null.
+     */
+    public MCTSPlayer(MCTSConfig config, Path bookPath) {
+        mcts = new MonteCarloTreeSearch(config);
+        this.bookPath = bookPath;
+    }
+
+    /**
+     * Method to create a player which spends at most the given time on each move (less, when the best move is clear).
+     *
+     * @param millis  the time budget per move, in milliseconds.
+     * @param threads the number of threads sharing one tree (sequential if 1).
+     * @return a new MCTSPlayer which reuses its tree.
+     */
+    public static MCTSPlayer timeBudget(long millis, int threads) {
+        return new MCTSPlayer(MCTSConfig.timeBudget(millis)
+                .withParallelism(threads > 1 ? ParallelMode.TREE : ParallelMode.SEQUENTIAL, threads).withTreeReuse(true));
     }
 
     @Override
     public GomokuMove getMove(GomokuState state) {
+        GomokuMove move = bookMove(state);
+        lastBookMove = move != null;
+        if (lastBookMove) {
+            bookMoves++;
+            return move;
+        }
         return mcts.findNextMove(state);
     }
-}
 
+    /**
+     * @return true if the most recent move came from the opening book.
+     */
+    public boolean isBookMove() {
+        return lastBookMove;
+    }
+
+    /**
+     * @return the number of moves this player has taken from the opening book.
+     */
+    public long getBookMoves() {
+        return bookMoves;
+    }
+
+    /**
+     * Ponder on the opponent's time (see MonteCarloTreeSearch.startPondering); this does nothing unless the player reuses its tree.
+     */
+    @Override
+    public void ponder(GomokuState state) {
+        mcts.startPondering(state);
+    }
+
+    @Override
+    public void stopPondering() {
+        mcts.stopPondering();
+    }
+
+    /**
+     * @return the number of iterations run by the most recent pondering (on the opponent's time before the most recent move).
+     */
+    public long getPonderIterations() {
+        return mcts.getPonderIterations();
+    }
+
+    /**
+     * End the current search (if any) so that getMove returns the best move found so far.
+     */
+    public void stop() {
+        mcts.stop();
+    }
+
+    /**
+     * @return the number of iterations run for the most recent move.
+     */
+    public long getIterations() {
+        return mcts.getIterations();
+    }
+
+    /**
+     * @return the telemetry of all this player's searches (including pondering), which may be polled while it thinks.
+     */
+    @Override
+    public SearchMetrics getMetrics() {
+        return mcts.getMetrics();
+    }
+
+    /**
+     * @return the visits to each move (by cell, row * boardSize + col) in the search for the most recent move,
+     * or null if it was not searched for (a book move, or a forced win or block).
+     */
+    public int[] getRootVisits() {
+        return lastBookMove ? null : mcts.getRootVisits();
+    }
+
+    /**
+     * @return the number of root visits carried over from the previous move into the most recent search.
+     */
+    public int getCarriedVisits() {
+        return mcts.getCarriedVisits();
+    }
+
+    /**
+     * @return the number of times the tree was pruned to fit the node budget during the most recent move.
+     */
+    public long getPrunings() {
+        return mcts.getPrunings();
+    }
+
+    /**
+     * @return the kind of forced move made without a search for the most recent move (null if there was a search).
+     */
+    public ThreatSpaceSearch.Shortcut getShortcut() {
+        return mcts.getShortcut();
+    }
+
+    /**
+     * @return the number of moves made without a search, as forced wins or blocks, by this player.
+     */
+    public long getShortcutCount() {
+        return mcts.getShortcutCount();
+    }
+
+    /**
+     * @param kind a kind of shortcut.
+     * @return the number of moves of that kind made without a search by this player.
+     */
+    public long getShortcutCount(ThreatSpaceSearch.Shortcut kind) {
+        return mcts.getShortcutCount(kind);
+    }
+
+    /**
+     * @return the greatest number of nodes in the tree during the most recent move (zero without a node budget).
+     */
+    public long getPeakNodes() {
+        return mcts.getPeakNodes();
+    }
+
+    private GomokuMove bookMove(GomokuState state) {
+        if (bookPath == null) return null;
+        if (book == null) book = OpeningBook.open(bookPath);
+        return book.lookup(state);
+    }
+}
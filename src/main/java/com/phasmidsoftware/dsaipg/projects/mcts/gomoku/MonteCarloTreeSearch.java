@@ -1,107 +1,896 @@
 package com.phasmidsoftware.dsaipg.projects.mcts.gomoku;
 
+import com.phasmidsoftware.dsaipg.projects.mcts.core.EngineConfig;
+import com.phasmidsoftware.dsaipg.projects.mcts.core.ParallelMode;
+import com.phasmidsoftware.dsaipg.projects.mcts.core.SearchEngine;
+import com.phasmidsoftware.dsaipg.projects.mcts.core.SearchMetrics;
+import com.phasmidsoftware.dsaipg.projects.mcts.core.SearchTree;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.Random;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.random.RandomGenerator;
 
 /**
- *
+ * Monte Carlo tree search for Gomoku, run by a SearchEngine on a tree of MCTSNodes (or, if so configured, on a
+ * NodeArena: see ArenaSearch).
+ * <p>
+ * The engine runs the iterations, on as many threads as the configuration asks for, and keeps to the budget;
+ * the tree (see Tree) adds what Gomoku needs: candidate moves, transpositions, progressive widening, RAVE, the node
+ * budget, the solver and leaf evaluation. Around the search, this class reuses the tree from one move to the next,
+ * ponders on the opponent's time, and plays forced moves found by a ThreatSpaceSearch without searching at all.
  */
 public class MonteCarloTreeSearch {
-    private int iterationLimit;
+    // The number of nodes for which a NodeArena allocates space at first (it grows as needed).
+    private static final int ARENA_INITIAL_CAPACITY = 1 << 16;
+
+    /**
+     * The node budget for pondering when the configuration sets none (pondering has no iteration limit or deadline).
+     */
+    static final long PONDER_NODE_BUDGET = 500_000;
+
+    private final MCTSConfig config;
+    private final SearchEngine<GomokuGame> engine;
+
+    // Statistics of the most recent call to findNextMove (summed over all trees).
+    private final AtomicLong nodesCreated = new AtomicLong();
+    private long transpositionProbes;
+    private long transpositionHits;
+    private long iterations;
+    private long prunings;
+    private long nodesPruned;
+    private long peakNodes;
+    private int carriedVisits;
+    private boolean stoppedEarly;
+    private boolean solved;
+    private int[] rootVisits;
+
+    // The subtree kept between moves when the configuration asks for tree reuse.
+    private MCTSNode retainedRoot;
+    private TranspositionTable retainedTable;
+
+    // The solver tried before each search, if the configuration asks for one, and the number of moves it has decided.
+    private final ThreatSpaceSearch threatSearch;
+    private final AtomicLongArray shortcuts = new AtomicLongArray(ThreatSpaceSearch.Shortcut.values().length);
+    private volatile ThreatSpaceSearch.Shortcut lastShortcut;
+
+    // The tree searched when the configuration asks for a NodeArena (created on first use, then reused).
+    private ArenaSearch arenaSearch;
+
+    // The background search on the opponent's time (see startPondering).
+    private Thread ponderThread;
+    private volatile long ponderIterations;
+
+    // The PlayoutEngine of simulateRandomPlayout and backPropagate (created on first use, then reused).
+    private PlayoutEngine playoutEngine;
 
     public MonteCarloTreeSearch(int iterationLimit) {
-        this.iterationLimit = iterationLimit;
+        this(MCTSConfig.iterations(iterationLimit));
+    }
+
+    public MonteCarloTreeSearch(MCTSConfig config) {
+        if (config.isNodeArena() && (config.getThreads() > 1 || config.getTranspositionTableSize() > 0 || config.isTreeReuse()
+                || config.getWideningCoefficient() > 0 || config.getRaveEquivalence() > 0 || config.getNodeBudget() > 0 || config.isSolver()))
+            throw new IllegalArgumentException("a node arena search is sequential, without transpositions, tree reuse, widening, RAVE, a node budget or the solver: " + config);
+        if (config.getLeafEvaluator() != null && (config.isNodeArena() || config.getRaveEquivalence() > 0))
+            throw new IllegalArgumentException("a leaf evaluator needs a search without a node arena or RAVE (which plays out): " + config);
+        this.config = config;
+        this.engine = new SearchEngine<>(engineConfig(config));
+        this.threatSearch = config.getThreatSearchNodes() > 0 ? new ThreatSpaceSearch(config.getThreatSearchNodes()) : null;
     }
 
     /**
+     * @return the configuration of the engine: the limits, parallelism, seed, timers and batch size of the search.
+     */
+    private static EngineConfig engineConfig(MCTSConfig config) {
+        EngineConfig result = EngineConfig.iterations(config.getIterationLimit()).withTimeBudget(config.getTimeBudgetMillis())
+                .withEarlyStop(config.isEarlyStop()).withParallelism(config.getParallelMode(), config.getThreads())
+                .withVirtualLoss(config.getVirtualLoss()).withSeed(config.getSeed()).withPhaseTimers(config.isPhaseTimers());
+        return config.getLeafEvaluator() != null ? result.withBatchSize(config.getBatchSize()) : result;
+    }
+
+    public MCTSConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Method to search for the best move from the given state, within the limits set by the configuration.
+     * If the calling thread is interrupted, or stop is called, the search ends promptly and the best move
+     * found so far is returned (the interrupt status is left set).
      *
-     * @param rootState
-     * @return
+     * @param rootState the state from which to move (not modified).
+     * @return the most visited move.
      */
     public GomokuMove findNextMove(GomokuState rootState) {
-        MCTSNode rootNode = new MCTSNode(rootState, null, null);
-        for (int i = 0; i < iterationLimit; i++) {
-            // 1. Selection: Select a promising node.
-            MCTSNode promisingNode = selectPromisingNode(rootNode);
-
-            // 2. Expansion: Expand the node if it is not terminal.
-            if (!promisingNode.getState().isTerminal()) {
-                expandNode(promisingNode);
+        stopPondering();
+        nodesCreated.set(0);
+        transpositionProbes = 0;
+        transpositionHits = 0;
+        iterations = 0;
+        prunings = 0;
+        nodesPruned = 0;
+        peakNodes = 0;
+        carriedVisits = 0;
+        stoppedEarly = false;
+        solved = false;
+        lastShortcut = null;
+        rootVisits = null;
+        if (threatSearch != null) {
+            GomokuMove move = threatSearch.findShortcut(rootState);
+            if (move != null) {
+                lastShortcut = threatSearch.getShortcut();
+                shortcuts.incrementAndGet(lastShortcut.ordinal());
+                return move;
             }
-            // 3. Simulation: Choose one random child (or the node itself if no children).
-            MCTSNode nodeToExplore = promisingNode;
-            if (!promisingNode.getChildren().isEmpty()) {
-                nodeToExplore = promisingNode.getRandomChild();
+        }
+        if (config.isNodeArena())
+            return findNextMoveInArena(rootState);
+        if (config.getParallelMode() == ParallelMode.ROOT && config.getThreads() > 1)
+            return findNextMoveRootParallel(rootState);
+        if (!config.isTreeReuse()) {
+            MCTSNode rootNode = search(rootState, config.getIterationLimit());
+            rootVisits = visitsByCell(rootNode);
+            return moveTo(rootNode, MCTSNode.bestChild(rootNode));
+        }
+        MCTSNode rootNode = advanceTo(rootState);
+        carriedVisits = rootNode.getVisits();
+        search(new Tree(rootNode, retainedTable, newNodeBudget(rootNode, config.getNodeBudget())), config.getIterationLimit());
+        rootVisits = visitsByCell(rootNode);
+        MCTSNode best = MCTSNode.bestChild(rootNode);
+        // Only the subtree under our move can be useful for the next search: let the rest go now.
+        retainedRoot = best;
+        return moveTo(rootNode, best);
+    }
+
+    /**
+     * @return the arena which holds the tree of the most recent call to findNextMove
+     * (null unless the configuration asks for a NodeArena).
+     */
+    public NodeArena getNodeArena() {
+        return arenaSearch == null ? null : arenaSearch.getArena();
+    }
+
+    /**
+     * Method to go on searching from the given state, on a background thread, while the opponent decides on a move.
+     * When the opponent's reply is then passed to findNextMove, the pondering stops and the subtree under that reply,
+     * which has grown meanwhile, becomes the root (so it shows up in getCarriedVisits).
+     * Pondering needs tree reuse and a single tree (not root parallelism). It runs on one thread, so as to leave
+     * the others to the opponent, until findNextMove or stopPondering is called; the configured node budget
+     * (or PONDER_NODE_BUDGET, if none) bounds the tree.
+     *
+     * @param state the state after our move, with the opponent to move (not modified).
+     * @return true if pondering has started; false if the configuration does not allow it or the game is over.
+     */
+    public synchronized boolean startPondering(GomokuState state) {
+        stopPondering();
+        if (!canPonder() || state.isTerminal()) return false;
+        MCTSNode rootNode = advanceTo(state);
+        TranspositionTable table = retainedTable;
+        NodeBudget nodes = newNodeBudget(rootNode, config.getNodeBudget() > 0 ? config.getNodeBudget() : PONDER_NODE_BUDGET);
+        ponderIterations = 0;
+        ponderThread = new Thread(() -> ponder(rootNode, table, nodes), "mcts-ponder");
+        ponderThread.setDaemon(true);
+        ponderThread.start();
+        return true;
+    }
+
+    /**
+     * End the pondering (if any), waiting for the iteration in progress to finish.
+     * If the calling thread is interrupted meanwhile, the interrupt status is restored once the pondering has ended.
+     */
+    public synchronized void stopPondering() {
+        Thread thread = ponderThread;
+        if (thread == null) return;
+        ponderThread = null;
+        thread.interrupt();
+        boolean interrupted = false;
+        while (true) {
+            try {
+                thread.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
             }
-            int playoutResult = simulateRandomPlayout(nodeToExplore);
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
 
-            // 4. Backpropagation: Propagate the simulation result up the tree.
-            backPropagate(nodeToExplore, playoutResult);
+    /**
+     * @return true if a background search started by startPondering is still running.
+     */
+    public synchronized boolean isPondering() {
+        return ponderThread != null && ponderThread.isAlive();
+    }
+
+    /**
+     * @return the number of iterations run by the current (or most recent) pondering.
+     */
+    public long getPonderIterations() {
+        return ponderIterations;
+    }
+
+    /**
+     * End the search in progress (if any) as soon as possible: findNextMove will return the best move so far.
+     * This method may be called from any thread.
+     */
+    public void stop() {
+        engine.stop();
+    }
+
+    /**
+     * @return the number of iterations run by the most recent call to findNextMove (over all trees).
+     */
+    public long getIterations() {
+        return iterations;
+    }
+
+    /**
+     * @return the telemetry of all the searches since this MonteCarloTreeSearch was created (or the metrics were reset),
+     * which may be polled from any thread while a search is running.
+     */
+    public SearchMetrics getMetrics() {
+        return engine.getMetrics();
+    }
+
+    /**
+     * @return the number of visits to each move from the root in the most recent call to findNextMove
+     * (summed over all trees), indexed by cell (row * boardSize + col); or null if that move was not searched for
+     * (see getShortcut).
+     */
+    public int[] getRootVisits() {
+        return rootVisits == null ? null : rootVisits.clone();
+    }
+
+    /**
+     * @return true if the most recent call to findNextMove ended because the best move could no longer be overtaken.
+     */
+    public boolean isStoppedEarly() {
+        return stoppedEarly;
+    }
+
+    /**
+     * @return true if the most recent call to findNextMove ended because the root was proven a win or a loss
+     * (see MCTSConfig.withSolver).
+     */
+    public boolean isSolved() {
+        return solved;
+    }
+
+    /**
+     * @return the number of visits already made to the root when the most recent call to findNextMove began
+     * (always zero unless the configuration asks for tree reuse).
+     */
+    public int getCarriedVisits() {
+        return carriedVisits;
+    }
+
+    /**
+     * @return the number of times the tree (or a tree) was pruned to fit the node budget in the most recent call to
+     * findNextMove (always zero unless the configuration sets a node budget).
+     */
+    public long getPrunings() {
+        return prunings;
+    }
+
+    /**
+     * @return the number of nodes removed by pruning in the most recent call to findNextMove (over all trees).
+     */
+    public long getNodesPruned() {
+        return nodesPruned;
+    }
+
+    /**
+     * @return the greatest number of nodes in the tree during the most recent call to findNextMove (summed over all
+     * trees, and including any nodes carried over from the previous move); zero unless the configuration sets a node budget.
+     */
+    public long getPeakNodes() {
+        return peakNodes;
+    }
+
+    /**
+     * @return the kind of move played by the most recent call to findNextMove without a search, because the
+     * ThreatSpaceSearch found it to be a forced win or a forced block (null if there was a search).
+     */
+    public ThreatSpaceSearch.Shortcut getShortcut() {
+        return lastShortcut;
+    }
+
+    /**
+     * @param kind a kind of shortcut.
+     * @return the number of moves of that kind played without a search since this MonteCarloTreeSearch was created.
+     */
+    public long getShortcutCount(ThreatSpaceSearch.Shortcut kind) {
+        return shortcuts.get(kind.ordinal());
+    }
+
+    /**
+     * @return the number of moves played without a search since this MonteCarloTreeSearch was created.
+     */
+    public long getShortcutCount() {
+        long result = 0;
+        for (int i = 0; i < shortcuts.length(); i++) result += shortcuts.get(i);
+        return result;
+    }
+
+    /**
+     * @return the number of nodes created by the most recent call to findNextMove (over all trees).
+     */
+    public long getNodesCreated() {
+        return nodesCreated.get();
+    }
+
+    /**
+     * @return the proportion of transposition table probes in the most recent call to findNextMove which found
+     * an existing node (zero if there is no table).
+     */
+    public double getTranspositionHitRate() {
+        return transpositionProbes == 0 ? 0.0 : (double) transpositionHits / transpositionProbes;
+    }
+
+    /**
+     * Method to yield the move which leads from parent to child.
+     * NOTE: when nodes are shared by transposition, the child's own move may be relative to a different parent.
+     *
+     * @param parent a node.
+     * @param child  one of its children.
+     * @return the move.
+     */
+    static GomokuMove moveTo(MCTSNode parent, MCTSNode child) {
+        if (child.getParent() == parent) return child.getMove();
+        GomokuState before = parent.getState();
+        GomokuState after = child.getState();
+        for (GomokuMove move : before.getLegalMoves())
+            if (after.getCell(move.getRow(), move.getCol()) != GomokuState.EMPTY) return move;
+        throw new IllegalArgumentException("not a child of parent: " + child.getMove());
+    }
+
+    /**
+     * Build a tree from the given state by running the given number of iterations: with ParallelMode.TREE,
+     * the given number per thread, all on the one tree; otherwise on this thread.
+     *
+     * @param rootState  the state at the root of the tree.
+     * @param iterations the maximum number of select/expand/simulate/backpropagate iterations (per thread).
+     * @return the root node of the tree.
+     */
+    MCTSNode search(GomokuState rootState, int iterations) {
+        MCTSNode rootNode = new MCTSNode(withCandidates(rootState), null, null);
+        search(new Tree(rootNode, newTable(), newNodeBudget(rootNode, config.getNodeBudget())), iterations);
+        return rootNode;
+    }
+
+    private void search(Tree tree, int iterations) {
+        engine.search(tree, iterations);
+        recordStatistics(engine.getIterations(), engine.isStoppedEarly());
+        recordStatistics(tree);
+    }
+
+    /**
+     * The tree of MCTSNodes which the engine searches, with the features of the configuration which are particular
+     * to Gomoku. Its methods are safe to call concurrently, so several threads may share it (see ParallelMode.TREE).
+     * <p>
+     * The path from the root is recorded, and the result is backpropagated along it, because with a transposition
+     * table a node may have more than one parent. With a node budget, each iteration is kept apart from pruning
+     * (see NodeBudget.beginIteration), and the tree is pruned after an iteration if it has outgrown the budget.
+     * With a LeafEvaluator, the leaves are evaluated (in batches, see EngineConfig.withBatchSize) rather than played out.
+     */
+    private final class Tree implements SearchTree<GomokuGame, Path> {
+        private final MCTSNode root;
+        private final TranspositionTable table; // null if there is none.
+        private final NodeBudget nodes; // null if there is none.
+
+        Tree(MCTSNode root, TranspositionTable table, NodeBudget nodes) {
+            this.root = root;
+            this.table = table;
+            this.nodes = nodes;
+        }
+
+        @Override
+        public Path newPath(RandomGenerator random) {
+            return new Path(new PlayoutEngine(config.getRolloutPolicy(), random));
+        }
+
+        @Override
+        public int select(Path path, double virtualLoss) {
+            path.nodes.clear();
+            selectPromisingNode(root, virtualLoss, path.nodes);
+            return path.nodes.size() - 1;
+        }
+
+        /**
+         * Expand the node if it is not terminal (and no other thread has done so); then choose one random new child
+         * (else any child, or the node itself if it has no children).
+         */
+        @Override
+        public int expand(Path path, double virtualLoss) {
+            MCTSNode node = path.leaf();
+            List<MCTSNode> added = path.added;
+            added.clear();
+            int created = node.getState().isTerminal() ? 0 : expandNode(node, table, nodes, added);
+            RandomGenerator random = path.playoutEngine.getRandom();
+            MCTSNode child = added.isEmpty() ? node.getRandomChild(random) : added.get(random.nextInt(added.size()));
+            if (child != null) {
+                if (virtualLoss > 0) child.addVirtualLoss();
+                path.nodes.add(child);
+            }
+            return created;
         }
-        MCTSNode bestChild = MCTSNode.bestChild(rootNode);
-        return bestChild.getMove();
+
+        /**
+         * Play out from the leaf on this thread's PlayoutEngine, with the configured RolloutPolicy, so that the
+         * leaf's state is not copied (or, with a LeafEvaluator, evaluate it).
+         */
+        @Override
+        public void simulate(Path path) {
+            if (config.getLeafEvaluator() != null) simulate(List.of(path));
+            else path.setWinner(path.playoutEngine.play(path.leaf().getState()));
+        }
+
+        /**
+         * With a LeafEvaluator, evaluate the leaves all at once; otherwise play each out.
+         */
+        @Override
+        public void simulate(List<Path> paths) {
+            if (config.getLeafEvaluator() == null) {
+                SearchTree.super.simulate(paths);
+                return;
+            }
+            LeafBatch batch = paths.get(0).batch();
+            batch.clear();
+            for (Path path : paths) batch.add(path.leaf().getState());
+            batch.evaluate(config.getLeafEvaluator());
+            for (int i = 0; i < paths.size(); i++) paths.get(i).setResult(batch.result(i, GomokuState.PLAYER_ONE), GomokuState.PLAYER_ONE);
+        }
+
+        /**
+         * Record the result in each node of the path (and, for RAVE, in the siblings of the path), then prove what
+         * can now be proven if the configuration asks for the solver.
+         */
+        @Override
+        public void backPropagate(Path path, double virtualLoss) {
+            List<MCTSNode> visited = path.nodes;
+            for (int i = visited.size() - 1; i >= 0; i--) {
+                MCTSNode node = visited.get(i);
+                if (virtualLoss > 0) node.removeVirtualLoss();
+                node.updateStats(path.result(node.getPlayerNo()));
+            }
+            if (config.isSolver()) prove(visited);
+            if (isRave() && !path.leaf().isTerminalNode())
+                for (MCTSNode node : visited) node.updateRave(path.playoutEngine, path.winner);
+        }
+
+        @Override
+        public int lead() {
+            return root.lead();
+        }
+
+        @Override
+        public List<GomokuMove> principalVariation() {
+            return MonteCarloTreeSearch.principalVariation(root);
+        }
+
+        @Override
+        public void beginIteration() {
+            if (nodes != null) nodes.beginIteration();
+        }
+
+        @Override
+        public void endIteration() {
+            if (nodes == null) return;
+            nodes.endIteration();
+            if (nodes.isExceeded()) prune(root, table, nodes);
+        }
+
+        /**
+         * With the solver, the search ends once the root is proven, since no further iteration can change the move.
+         */
+        @Override
+        public boolean isDecided() {
+            return config.isSolver() && root.isProven();
+        }
+    }
+
+    /**
+     * The path of one iteration of a Tree, from the root, and the result of its simulation;
+     * with this thread's PlayoutEngine and (when the leaves are evaluated) LeafBatch.
+     */
+    private final class Path {
+        private final PlayoutEngine playoutEngine;
+        private final List<MCTSNode> nodes = new ArrayList<>();
+        private final List<MCTSNode> added = new ArrayList<>(); // Scratch space for expand.
+        private LeafBatch batch;
+        private int winner; // The winner of the playout (EMPTY for a draw), if the leaf was played out.
+        private double result; // The result for player.
+        private int player;
+
+        private Path(PlayoutEngine playoutEngine) {
+            this.playoutEngine = playoutEngine;
+        }
+
+        private MCTSNode leaf() {
+            return nodes.get(nodes.size() - 1);
+        }
+
+        private LeafBatch batch() {
+            if (batch == null) batch = new LeafBatch(config.getBatchSize());
+            return batch;
+        }
+
+        private void setWinner(int winner) {
+            this.winner = winner;
+            setResult(winner == GomokuState.EMPTY ? 0.5 : 1.0, winner);
+        }
+
+        private void setResult(double result, int player) {
+            this.result = result;
+            this.player = player;
+        }
+
+        /**
+         * @return the result to be recorded in a node to which the given player moved: 1 for a win, 0.5 for a draw
+         * and 0 for a loss, or an evaluator's estimate.
+         */
+        private double result(int player) {
+            return player == this.player ? result : 1 - result;
+        }
+    }
+
+    /**
+     * For the solver: prove what can now be proven along the path, from the leaf up, stopping at the first node
+     * which cannot be proven (since the nodes above it can only have been affected through it).
+     */
+    private static void prove(List<MCTSNode> path) {
+        for (int i = path.size() - 1; i >= 0; i--)
+            if (!path.get(i).prove()) return;
+    }
+
+    /**
+     * @return the moves along the path of most visited children from the root (at most SearchMetrics.PV_DEPTH).
+     */
+    private static List<GomokuMove> principalVariation(MCTSNode rootNode) {
+        List<GomokuMove> result = new ArrayList<>();
+        MCTSNode node = rootNode;
+        while (result.size() < SearchMetrics.PV_DEPTH && !node.getChildren().isEmpty()) {
+            MCTSNode child = MCTSNode.bestChild(node);
+            if (child == null) break;
+            result.add(moveTo(node, child));
+            node = child;
+        }
+        return result;
+    }
+
+    /**
+     * @return the given state, or a copy which generates candidate moves at the configured distance.
+     */
+    private GomokuState withCandidates(GomokuState state) {
+        int distance = config.getCandidateDistance();
+        return distance == 0 || state.getCandidateDistance() == distance ? state : state.withCandidateDistance(distance);
+    }
+
+    /**
+     * @return the moves to be expanded from state: the candidate moves, if so configured, else all legal moves.
+     */
+    private List<GomokuMove> movesToExpand(GomokuState state) {
+        return config.getCandidateDistance() > 0 ? state.getCandidateMoves() : state.getLegalMoves();
+    }
+
+    /**
+     * @return the moves to be expanded from state, those next to the most stones first (for progressive widening).
+     */
+    private List<GomokuMove> orderedMovesToExpand(GomokuState state) {
+        List<GomokuMove> moves = movesToExpand(state);
+        Map<GomokuMove, Integer> adjacent = new HashMap<>();
+        for (GomokuMove move : moves) adjacent.put(move, state.adjacentStones(move));
+        moves.sort(Comparator.comparing(adjacent::get, Comparator.reverseOrder()));
+        return moves;
+    }
+
+    /**
+     * @return the number of children which node may have, under progressive widening.
+     */
+    private int allowedChildren(MCTSNode node) {
+        return Math.max(1, (int) Math.ceil(config.getWideningCoefficient() * Math.pow(node.getVisits(), config.getWideningExponent())));
+    }
+
+    private boolean isWidening() {
+        return config.getWideningCoefficient() > 0;
+    }
+
+    private boolean isRave() {
+        return config.getRaveEquivalence() > 0;
+    }
+
+    private boolean canPonder() {
+        return config.isTreeReuse() && !(config.getParallelMode() == ParallelMode.ROOT && config.getThreads() > 1);
+    }
+
+    /**
+     * The body of the pondering thread: iterate on the retained tree until the thread is interrupted.
+     * Nothing is recorded in the statistics of findNextMove except the nodes created.
+     */
+    private void ponder(MCTSNode rootNode, TranspositionTable table, NodeBudget nodes) {
+        engine.ponder(new Tree(rootNode, table, nodes), n -> ponderIterations = n);
     }
 
     /**
-     * Walk down the tree by selecting children with best UCT until a leaf is reached.
+     * Method to find the root for a search from the given state, reusing the retained subtree if the state
+     * is the retained root itself or lies up to two plies below it (our move, then the opponent's reply).
+     * The new root is detached from its old parent, and the transposition table (if any) is rebuilt from the
+     * subtree, so that everything else can be garbage-collected.
+     *
+     * @param state the state to be searched.
+     * @return the root node.
+     */
+    private MCTSNode advanceTo(GomokuState state) {
+        MCTSNode found = retainedRoot == null ? null : findDescendant(retainedRoot, state);
+        if (found == null) {
+            retainedRoot = new MCTSNode(withCandidates(state.clone()), null, null);
+            retainedTable = newTable();
+            return retainedRoot;
+        }
+        found.makeRoot();
+        retainedRoot = found;
+        if (retainedTable != null) rebuildTable(found, retainedTable);
+        return found;
+    }
+
+    /**
+     * @return the node at or below node whose state equals the given state, or null if there is none within two plies.
+     */
+    private static MCTSNode findDescendant(MCTSNode node, GomokuState state) {
+        int depth = node.getState().getEmptyCount() - state.getEmptyCount();
+        if (depth == 0) return node.getState().equals(state) ? node : null;
+        if (depth < 0 || depth > 2) return null;
+        for (MCTSNode child : node.getChildren()) {
+            MCTSNode result = findDescendant(child, state);
+            if (result != null) return result;
+        }
+        return null;
+    }
+
+    /**
+     * Refill the transposition table from the subtree under root, breadth first.
+     * Any node whose parent lies outside the subtree is given a parent within it.
+     */
+    private static void rebuildTable(MCTSNode root, TranspositionTable table) {
+        table.clear();
+        Set<MCTSNode> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        Queue<MCTSNode> queue = new ArrayDeque<>();
+        visited.add(root);
+        queue.add(root);
+        while (!queue.isEmpty()) {
+            MCTSNode node = queue.remove();
+            for (MCTSNode child : node.getChildren())
+                if (visited.add(child)) {
+                    if (!visited.contains(child.getParent())) child.setParent(node, moveTo(node, child));
+                    table.putIfAbsent(child.getState().getHash(), child);
+                    queue.add(child);
+                }
+        }
+    }
+
+    private TranspositionTable newTable() {
+        int size = config.getTranspositionTableSize();
+        return size > 0 ? new TranspositionTable(size) : null;
+    }
+
+    /**
+     * Create the node budget for the tree under rootNode (or null if the configuration sets no limit).
+     */
+    private static NodeBudget newNodeBudget(MCTSNode rootNode, long maxNodes) {
+        return maxNodes > 0 ? new NodeBudget(maxNodes, rootNode) : null;
+    }
+
+    /**
+     * Prune the tree under rootNode to fit its node budget; the transposition table (if any) is refilled from
+     * the nodes which remain, so that it does not keep the others alive, before any other thread can probe it.
+     */
+    private static void prune(MCTSNode rootNode, TranspositionTable table, NodeBudget nodes) {
+        nodes.prune(rootNode, table == null ? null : () -> rebuildTable(rootNode, table));
+    }
+
+    private void recordStatistics(long iterations, boolean stoppedEarly) {
+        this.iterations += iterations;
+        if (stoppedEarly) this.stoppedEarly = true;
+    }
+
+    private void recordStatistics(Tree tree) {
+        if (tree.isDecided()) solved = true;
+        NodeBudget nodes = tree.nodes;
+        if (nodes != null) {
+            prunings += nodes.getPrunings();
+            nodesPruned += nodes.getNodesPruned();
+            peakNodes += nodes.getPeakNodes();
+        }
+        TranspositionTable table = tree.table;
+        if (table == null) return;
+        transpositionProbes += table.getProbes();
+        transpositionHits += table.getHits();
+    }
+
+    private GomokuMove findNextMoveInArena(GomokuState rootState) {
+        if (arenaSearch == null)
+            arenaSearch = new ArenaSearch(ARENA_INITIAL_CAPACITY, config.getRolloutPolicy(), config.getCandidateDistance() > 0);
+        ArenaSearch search = arenaSearch;
+        search.newRoot(withCandidates(rootState));
+        engine.search(search);
+        recordStatistics(engine.getIterations(), engine.isStoppedEarly());
+        rootVisits = search.rootVisits();
+        nodesCreated.set(search.getArena().size());
+        return search.bestMove();
+    }
+
+    /**
+     * Root parallelism: build one independent tree per thread, each with the full iteration limit,
+     * then choose the move with the greatest total number of root visits across all the trees
+     * (unless, with the solver, some tree has proven a move to win).
+     */
+    private GomokuMove findNextMoveRootParallel(GomokuState rootState) {
+        List<Tree> trees = new ArrayList<>();
+        for (int t = 0; t < config.getThreads(); t++) {
+            MCTSNode treeRoot = new MCTSNode(withCandidates(rootState.clone()), null, null);
+            // The node budget is shared equally between the trees.
+            trees.add(new Tree(treeRoot, newTable(), newNodeBudget(treeRoot, (config.getNodeBudget() + config.getThreads() - 1) / config.getThreads())));
+        }
+        engine.searchEach(trees);
+        recordStatistics(engine.getIterations(), engine.isStoppedEarly());
+        Map<GomokuMove, Integer> visits = new HashMap<>();
+        GomokuMove provenWin = null;
+        for (Tree tree : trees) {
+            recordStatistics(tree);
+            MCTSNode root = tree.root;
+            for (MCTSNode child : root.getChildren()) {
+                visits.merge(moveTo(root, child), child.getVisits(), Integer::sum);
+                if (child.getProof() == MCTSNode.PROVEN_WIN) provenWin = moveTo(root, child);
+            }
+        }
+        int boardSize = rootState.getBoardSize();
+        rootVisits = new int[boardSize * boardSize];
+        for (Map.Entry<GomokuMove, Integer> entry : visits.entrySet())
+            rootVisits[entry.getKey().getRow() * boardSize + entry.getKey().getCol()] = entry.getValue();
+        return provenWin != null ? provenWin : mostVisited(visits);
+    }
+
+    /**
+     * @return the visits to each child of rootNode, indexed by the cell of the move to it.
+     */
+    private static int[] visitsByCell(MCTSNode rootNode) {
+        int boardSize = rootNode.getState().getBoardSize();
+        int[] result = new int[boardSize * boardSize];
+        for (MCTSNode child : rootNode.getChildren()) {
+            GomokuMove move = moveTo(rootNode, child);
+            result[move.getRow() * boardSize + move.getCol()] += child.getVisits();
+        }
+        return result;
+    }
+
+    /**
+     * @param visits the merged visit counts.
+     * @return the move with the most visits (ties are broken arbitrarily).
+     */
+    static GomokuMove mostVisited(Map<GomokuMove, Integer> visits) {
+        GomokuMove best = null;
+        int maxVisits = -1;
+        for (Map.Entry<GomokuMove, Integer> entry : visits.entrySet()) {
+            if (entry.getValue() > maxVisits) {
+                best = entry.getKey();
+                maxVisits = entry.getValue();
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Walk down the tree by selecting children with best UCT until a leaf is reached
+     * (or, with progressive widening, a node which may now have another child).
+     * When virtualLoss is positive, a virtual loss is added to each node on the path.
      * @param rootNode
+     * @param virtualLoss
+     * @param path        the list to which the nodes on the path (including the root) are added.
      * @return
      */
-    private MCTSNode selectPromisingNode(MCTSNode rootNode) {
+    private MCTSNode selectPromisingNode(MCTSNode rootNode, double virtualLoss, List<MCTSNode> path) {
         MCTSNode node = rootNode;
+        if (virtualLoss > 0) node.addVirtualLoss();
+        path.add(node);
         while (!node.getChildren().isEmpty()) {
-            node = node.selectChild();
+            if (isWidening() && !node.isTerminalNode() && node.canWiden(allowedChildren(node))) break;
+            MCTSNode child = node.selectChild(virtualLoss, config.getRaveEquivalence());
+            if (child == null) break; // the node has just been collapsed (see NodeBudget), or every child is proven.
+            node = child;
+            if (virtualLoss > 0) node.addVirtualLoss();
+            path.add(node);
         }
         return node;
     }
 
     /**
-     * Expand the node by generating all possible moves from its state.
+     * Expand the node by generating all possible moves from its state, as Tree.expand does (without a transposition
+     * table or node budget). The children are published together, and only the first caller for a given node does any work.
      * @param node
      */
     private void expandNode(MCTSNode node) {
-        List<GomokuMove> possibleMoves = node.getUntriedMoves();
+        expandNode(node, null, null, new ArrayList<>());
+    }
+
+    /**
+     * Expand the node, reusing any child position which is already in the transposition table.
+     * The hash of each child is computed before its state is cloned, so a hit costs neither a state nor a node.
+     * With progressive widening, only as many children are added as the node's visits allow.
+     *
+     * @param added the list to which the children added by this call are added.
+     * @return the number of nodes created.
+     */
+    private int expandNode(MCTSNode node, TranspositionTable table, NodeBudget nodes, List<MCTSNode> added) {
+        GomokuState state = node.getState();
+        List<GomokuMove> possibleMoves;
+        if (isWidening())
+            possibleMoves = node.claimMoves(allowedChildren(node), () -> orderedMovesToExpand(state));
+        else if (node.claimExpansion())
+            possibleMoves = movesToExpand(state);
+        else
+            return 0;
+        int created = 0;
         for (GomokuMove move : possibleMoves) {
-            GomokuState newState = node.getState().clone();
-            newState.makeMove(move);
-            MCTSNode childNode = new MCTSNode(newState, node, move);
-            node.addChild(childNode);
+            long hash = state.hashAfter(move);
+            MCTSNode child = table != null ? table.get(hash) : null;
+            if (child == null) {
+                GomokuState newState = state.clone();
+                newState.makeMove(move);
+                child = new MCTSNode(newState, node, move);
+                created++;
+                if (table != null) child = table.putIfAbsent(hash, child);
+            }
+            added.add(child);
         }
+        if (isRave()) node.addChildren(added, possibleMoves);
+        else node.addChildren(added);
+        nodesCreated.addAndGet(created);
+        if (nodes != null) nodes.added(created);
+        return created;
     }
 
     /**
-     * Simulate a random playout from the given node until the game reaches a terminal state.
-     * Returns the winning player (or EMPTY for a draw).
+     * Simulate a random playout from the given node until the game reaches a terminal state, with the configured
+     * RolloutPolicy, as an iteration of a Tree does. Returns the winning player (or EMPTY for a draw).
      * @param node
      * @return
      */
     private int simulateRandomPlayout(MCTSNode node) {
-        GomokuState tempState = node.getState().clone();
-        while (!tempState.isTerminal()) {
-            List<GomokuMove> legalMoves = tempState.getLegalMoves();
-            GomokuMove randomMove = legalMoves.get(new Random().nextInt(legalMoves.size()));
-            tempState.makeMove(randomMove);
-        }
-        return tempState.checkWin();
+        Path path = pathTo(node);
+        new Tree(path.nodes.get(0), null, null).simulate(path);
+        return path.winner;
     }
 
     /**
-     * Backpropagate the simulation result. For a win, we add 1.0 to nodes corresponding to the winning
-     * player; in case of a draw, 0.5 is added.
+     * Backpropagate the simulation result, as an iteration of a Tree does. For a win, we add 1.0 to nodes
+     * corresponding to the winning player; in case of a draw, 0.5 is added.
      * @param node
      * @param winner
      */
     private void backPropagate(MCTSNode node, int winner) {
-        MCTSNode tempNode = node;
-        while (tempNode != null) {
-            if (winner == GomokuState.EMPTY) {
-                tempNode.updateStats(0.5);
-            } else if (tempNode.getPlayerNo() == winner) {
-                tempNode.updateStats(1.0);
-            } else {
-                tempNode.updateStats(0.0);
-            }
-            tempNode = tempNode.getParent();
-        }
+        Path path = pathTo(node);
+        path.setWinner(winner);
+        new Tree(path.nodes.get(0), null, null).backPropagate(path, 0);
+    }
+
+    /**
+     * @return the Path from the root of node's tree down to node, on the PlayoutEngine of this search
+     * (outside of the engine's iterations).
+     */
+    private Path pathTo(MCTSNode node) {
+        if (playoutEngine == null) playoutEngine = new PlayoutEngine(config.getRolloutPolicy(), null);
+        Path path = new Path(playoutEngine);
+        for (MCTSNode n = node; n != null; n = n.getParent()) path.nodes.add(n);
+        Collections.reverse(path.nodes);
+        return path;
     }
 }
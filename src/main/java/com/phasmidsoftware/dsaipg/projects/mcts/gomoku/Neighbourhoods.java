@@ -0,0 +1,47 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.gomoku;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Bitboard masks (in the layout of GomokuState) of the cells within a given distance of each cell.
+ * Distance is measured in king moves, so the neighbourhood of an interior cell at distance d is a square of
+ * side 2d + 1. The masks are computed once per board size and distance, and shared.
+ */
+final class Neighbourhoods {
+    private static final Map<Long, Neighbourhoods> cache = new ConcurrentHashMap<>();
+
+    private final long[][] masks;
+
+    /**
+     * @param boardSize the size of the board.
+     * @param distance  the distance (at least 1).
+     * @return the (shared) neighbourhood masks.
+     */
+    static Neighbourhoods of(int boardSize, int distance) {
+        return cache.computeIfAbsent((long) boardSize << 32 | distance, k -> new Neighbourhoods(boardSize, distance));
+    }
+
+    /**
+     * @param index a cell index (row * boardSize + col).
+     * @return the mask of the cells within distance of index (including index itself). NOTE: not to be modified.
+     */
+    long[] mask(int index) {
+        return masks[index];
+    }
+
+    private Neighbourhoods(int boardSize, int distance) {
+        int cells = boardSize * boardSize;
+        int words = (cells + 63) >>> 6;
+        masks = new long[cells][words];
+        for (int row = 0; row < boardSize; row++)
+            for (int col = 0; col < boardSize; col++) {
+                long[] mask = masks[row * boardSize + col];
+                for (int r = Math.max(0, row - distance); r <= Math.min(boardSize - 1, row + distance); r++)
+                    for (int c = Math.max(0, col - distance); c <= Math.min(boardSize - 1, col + distance); c++) {
+                        int index = r * boardSize + c;
+                        mask[index >>> 6] |= 1L << index;
+                    }
+            }
+    }
+}
@@ -0,0 +1,177 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.gomoku;
+
+import java.util.Arrays;
+
+/**
+ * A search tree held as parallel primitive arrays (a struct of arrays), in which a node is just an int index.
+ * <p>
+ * A node stores only the move which leads to it (as a cell index, row * boardSize + col), its statistics,
+ * its parent and its children: the children of a node are allocated together, so they are identified by the
+ * index of the first and their number. There is no state per node: the state of a node is rebuilt by
+ * replaying the moves from the root (see ArenaSearch). So the tree costs BYTES_PER_NODE bytes per node,
+ * and the garbage collector sees a handful of arrays however large it grows.
+ * <p>
+ * An arena is reusable: clear forgets the tree but keeps the arrays for the next one.
+ * An arena is not thread-safe.
+ */
+public final class NodeArena {
+    /**
+     * The bytes per node of the arrays: parent, first child, visits and wins (4 each),
+     * number of children and move (2 each).
+     */
+    public static final int BYTES_PER_NODE = 4 + 4 + 4 + 4 + 2 + 2;
+
+    /**
+     * The index of the root, once newRoot has been called.
+     */
+    public static final int ROOT = 0;
+
+    private static final int NONE = -1;
+
+    private int[] parents;
+    private int[] firstChildren;
+    private short[] childCounts;
+    private short[] moves;
+    private int[] visits;
+    private int[] halfPoints; // The wins of the player who made the move, with a draw counting one.
+    private int size;
+
+    /**
+     * @param initialCapacity the number of nodes for which to allocate space at first (the arena grows as needed).
+     */
+    public NodeArena(int initialCapacity) {
+        if (initialCapacity < 1) throw new IllegalArgumentException("capacity must be positive: " + initialCapacity);
+        parents = new int[initialCapacity];
+        firstChildren = new int[initialCapacity];
+        childCounts = new short[initialCapacity];
+        moves = new short[initialCapacity];
+        visits = new int[initialCapacity];
+        halfPoints = new int[initialCapacity];
+    }
+
+    /**
+     * Forget the current tree (if any), keeping the arrays.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Method to start a new tree: the arena is cleared and a root (with no move) is allocated.
+     *
+     * @return ROOT.
+     */
+    public int newRoot() {
+        clear();
+        allocate(NONE, NONE);
+        return ROOT;
+    }
+
+    /**
+     * Method to add the children of a leaf.
+     *
+     * @param parent a node without children.
+     * @param cells  the cell indices of the moves to the new children.
+     * @param count  the number of cells to use.
+     * @return the index of the first new child (the others follow it).
+     */
+    public int addChildren(int parent, int[] cells, int count) {
+        if (childCounts[parent] != 0) throw new IllegalStateException("node " + parent + " already has children");
+        if (count > Short.MAX_VALUE) throw new IllegalArgumentException("too many children: " + count);
+        int first = size;
+        for (int i = 0; i < count; i++) allocate(parent, cells[i]);
+        firstChildren[parent] = first;
+        childCounts[parent] = (short) count;
+        return first;
+    }
+
+    /**
+     * Record the result of a playout through the given node.
+     *
+     * @param node       a node.
+     * @param halfPoints 2 for a win, 1 for a draw and 0 for a loss, for the player who made the move to node.
+     */
+    public void update(int node, int halfPoints) {
+        visits[node]++;
+        this.halfPoints[node] += halfPoints;
+    }
+
+    public int getParent(int node) {
+        return parents[node];
+    }
+
+    public int getFirstChild(int node) {
+        return firstChildren[node];
+    }
+
+    public int getChildCount(int node) {
+        return childCounts[node];
+    }
+
+    /**
+     * @return the cell index of the move which leads to node (-1 for the root).
+     */
+    public int getMove(int node) {
+        return moves[node];
+    }
+
+    public int getVisits(int node) {
+        return visits[node];
+    }
+
+    /**
+     * @return the wins of the player who made the move to node (a draw counting one half).
+     */
+    public double getWins(int node) {
+        return halfPoints[node] / 2.0;
+    }
+
+    /**
+     * @return the number of nodes in the current tree.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the number of nodes for which space is currently allocated.
+     */
+    public int capacity() {
+        return parents.length;
+    }
+
+    /**
+     * @return the bytes allocated for the arrays, which are retained by clear.
+     */
+    public long getAllocatedBytes() {
+        return (long) capacity() * BYTES_PER_NODE;
+    }
+
+    /**
+     * @return the bytes per node of the current tree, counting all the allocated space.
+     */
+    public double getBytesPerNode() {
+        return size == 0 ? 0 : (double) getAllocatedBytes() / size;
+    }
+
+    private void allocate(int parent, int cell) {
+        if (size == capacity()) grow();
+        parents[size] = parent;
+        firstChildren[size] = NONE;
+        childCounts[size] = 0;
+        moves[size] = (short) cell;
+        visits[size] = 0;
+        halfPoints[size] = 0;
+        size++;
+    }
+
+    private void grow() {
+        int capacity = capacity() * 2;
+        parents = Arrays.copyOf(parents, capacity);
+        firstChildren = Arrays.copyOf(firstChildren, capacity);
+        childCounts = Arrays.copyOf(childCounts, capacity);
+        moves = Arrays.copyOf(moves, capacity);
+        visits = Arrays.copyOf(visits, capacity);
+        halfPoints = Arrays.copyOf(halfPoints, capacity);
+    }
+}
@@ -0,0 +1,244 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.gomoku;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * The limit on the number of nodes in one search tree (see MCTSConfig.withNodeBudget).
+ * <p>
+ * The nodes created are counted as they are added. Once there are more than the budget allows, prune collapses
+ * the least-visited subtrees back into leaves until the tree is down to PRUNE_TARGET of the budget. A collapsed
+ * node keeps its own visits and wins (which already aggregate those of its subtree), so its value is not lost:
+ * only the detail below it, which is regrown if the search comes back that way.
+ * A node budget may be shared by all the threads working on a tree. Each iteration is then bracketed by
+ * beginIteration and endIteration, and pruning waits until no iteration is in progress (and holds off any new one),
+ * so that no thread is ever part way through expanding, or backing up through, a subtree which is being collapsed.
+ */
+final class NodeBudget {
+    /**
+     * Pruning collapses subtrees until the tree is no bigger than this fraction of the budget,
+     * so that it is not needed again for a while.
+     */
+    static final double PRUNE_TARGET = 0.75;
+
+    private final long maxNodes;
+    private final AtomicLong nodes;
+    private final AtomicLong peak;
+    private final AtomicLong prunings = new AtomicLong();
+    private final AtomicLong nodesPruned = new AtomicLong();
+    // The size at which to prune next: above maxNodes if the last pruning could not get down to the target.
+    private volatile long pruneAt;
+    // Held (shared) by each iteration in progress, and (exclusively) while pruning.
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * @param maxNodes the maximum number of nodes in the tree (at least 1).
+     * @param root     the root of the tree, which may already have descendants.
+     */
+    NodeBudget(long maxNodes, MCTSNode root) {
+        this.maxNodes = maxNodes;
+        long size = count(root);
+        this.nodes = new AtomicLong(size);
+        this.peak = new AtomicLong(size);
+        this.pruneAt = maxNodes;
+    }
+
+    /**
+     * Record that nodes have been added to the tree.
+     *
+     * @param n the number of nodes added.
+     */
+    void added(int n) {
+        long size = nodes.addAndGet(n);
+        if (size > peak.get()) peak.accumulateAndGet(size, Math::max);
+    }
+
+    /**
+     * @return true if the tree has outgrown the budget (and should be pruned).
+     */
+    boolean isExceeded() {
+        return nodes.get() > pruneAt;
+    }
+
+    /**
+     * Method to be called by a thread before each iteration on the tree: the iteration may not overlap a pruning.
+     * The same thread must not prune until it has called endIteration.
+     */
+    void beginIteration() {
+        lock.readLock().lock();
+    }
+
+    /**
+     * Method to be called by a thread after each iteration on the tree (see beginIteration).
+     */
+    void endIteration() {
+        lock.readLock().unlock();
+    }
+
+    boolean prune(MCTSNode root) {
+        return prune(root, null);
+    }
+
+    /**
+     * Collapse the least-visited subtrees of the tree under root (but never root itself) into leaves,
+     * until the tree is down to PRUNE_TARGET of the budget (or only root and its children remain).
+     * This waits until no other thread is part way through an iteration (see beginIteration).
+     * If another thread is already pruning, this waits for it to finish, and then prunes only if it must.
+     *
+     * @param root     the root of the tree.
+     * @param onPruned an action to run if the tree was pruned, before any iteration may resume (or null):
+     *                 rebuilding the transposition table, for instance.
+     * @return true if the tree was pruned.
+     */
+    boolean prune(MCTSNode root, Runnable onPruned) {
+        lock.writeLock().lock();
+        try {
+            if (!collapseLeastVisited(root)) return false;
+            if (onPruned != null) onPruned.run();
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private boolean collapseLeastVisited(MCTSNode root) {
+        if (!isExceeded()) return false;
+        long target = (long) (maxNodes * PRUNE_TARGET);
+        Tree tree = new Tree(root);
+        // The threshold is the least number of visits such that collapsing every topmost internal node
+        // with no more visits than that frees enough nodes (which is monotonic in the threshold).
+        int[] thresholds = tree.internalVisits();
+        long excess = tree.size() - target;
+        if (excess <= 0 || thresholds.length == 0) {
+            pruneAt = Math.max(maxNodes, tree.size() + maxNodes - target);
+            return false;
+        }
+        int lo = 0;
+        int hi = thresholds.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (tree.collapse(thresholds[mid], false) >= excess) hi = mid;
+            else lo = mid + 1;
+        }
+        long freed = tree.collapse(thresholds[lo], true);
+        nodesPruned.addAndGet(freed);
+        prunings.incrementAndGet();
+        long size = nodes.addAndGet(-freed);
+        pruneAt = Math.max(maxNodes, size + maxNodes - target);
+        return true;
+    }
+
+    /**
+     * @return the number of nodes in the tree (as counted, between prunings).
+     */
+    long getNodes() {
+        return nodes.get();
+    }
+
+    /**
+     * @return the greatest number of nodes the tree has had.
+     */
+    long getPeakNodes() {
+        return peak.get();
+    }
+
+    /**
+     * @return the number of times the tree has been pruned.
+     */
+    long getPrunings() {
+        return prunings.get();
+    }
+
+    /**
+     * @return the total number of nodes removed by pruning.
+     */
+    long getNodesPruned() {
+        return nodesPruned.get();
+    }
+
+    /**
+     * @return the number of nodes reachable from root, including root (a leaf shared by transposition is counted once for each parent).
+     */
+    static long count(MCTSNode root) {
+        return new Tree(root).size();
+    }
+
+    /**
+     * A snapshot of the internal nodes of a tree, as a spanning tree: with transpositions a node may have several
+     * parents, but it belongs to the subtree of the first one found. Leaves, which are most of the nodes, are
+     * only counted.
+     */
+    private static final class Tree {
+        private final MCTSNode root;
+        private final List<MCTSNode> preOrder = new ArrayList<>(); // The internal nodes.
+        // The internal children of each internal node whose subtree they belong to, as they were when the snapshot was taken.
+        private final Map<MCTSNode, List<MCTSNode>> ownedChildren = new IdentityHashMap<>();
+        private final Map<MCTSNode, Long> sizes = new IdentityHashMap<>();
+        private long size;
+
+        Tree(MCTSNode root) {
+            this.root = root;
+            Map<MCTSNode, Integer> leaves = new IdentityHashMap<>(); // The number of leaf children of each internal node.
+            Deque<MCTSNode> stack = new ArrayDeque<>();
+            stack.push(root);
+            ownedChildren.put(root, new ArrayList<>());
+            while (!stack.isEmpty()) {
+                MCTSNode node = stack.pop();
+                preOrder.add(node);
+                List<MCTSNode> owned = ownedChildren.get(node);
+                int leafCount = 0;
+                for (MCTSNode child : node.getChildren())
+                    if (child.getChildren().isEmpty()) leafCount++;
+                    else if (!ownedChildren.containsKey(child)) {
+                        ownedChildren.put(child, new ArrayList<>());
+                        owned.add(child);
+                        stack.push(child);
+                    }
+                leaves.put(node, leafCount);
+            }
+            for (int i = preOrder.size() - 1; i >= 0; i--) {
+                MCTSNode node = preOrder.get(i);
+                long subtree = 1 + leaves.get(node);
+                for (MCTSNode child : ownedChildren.get(node)) subtree += sizes.get(child);
+                sizes.put(node, subtree);
+            }
+            size = sizes.get(root);
+        }
+
+        long size() {
+            return size;
+        }
+
+        /**
+         * @return the distinct visit counts of the internal nodes other than root, in increasing order.
+         */
+        int[] internalVisits() {
+            return preOrder.stream().filter(node -> node != root).mapToInt(MCTSNode::getVisits).distinct().sorted().toArray();
+        }
+
+        /**
+         * Collapse (or, if apply is false, only count) the topmost internal nodes with at most threshold visits.
+         *
+         * @return the number of nodes which are (or would be) removed.
+         */
+        long collapse(int threshold, boolean apply) {
+            long freed = 0;
+            Deque<MCTSNode> stack = new ArrayDeque<>(ownedChildren.get(root));
+            while (!stack.isEmpty()) {
+                MCTSNode node = stack.pop();
+                if (node.getVisits() <= threshold) {
+                    freed += sizes.get(node) - 1;
+                    if (apply) node.collapse();
+                } else stack.addAll(ownedChildren.get(node));
+            }
+            return freed;
+        }
+    }
+}
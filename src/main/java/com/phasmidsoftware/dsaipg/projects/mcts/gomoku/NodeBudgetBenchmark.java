@@ -0,0 +1,36 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.gomoku;
+
+/**
+ * Benchmark of the node budget: one long search with and without a limit on the nodes in the tree, reporting the
+ * peak node count, the prunings, the heap in use at the end (after garbage collection, so approximate), the time
+ * taken and the move chosen.
+ * Usage: NodeBudgetBenchmark [iterations [maxNodes [boardSize]]]
+ */
+public class NodeBudgetBenchmark {
+
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 4000;
+        long maxNodes = args.length > 1 ? Long.parseLong(args[1]) : 100_000;
+        int boardSize = args.length > 2 ? Integer.parseInt(args[2]) : 15;
+        GomokuState state = new GomokuState(boardSize);
+        int centre = boardSize / 2;
+        state.makeMove(new GomokuMove(centre, centre));
+        state.makeMove(new GomokuMove(centre, centre + 1));
+        System.out.println("=== " + boardSize + "x" + boardSize + ", " + iterations + " iterations ===");
+        for (long budget : new long[]{maxNodes, 0}) {
+            MonteCarloTreeSearch mcts = new MonteCarloTreeSearch(MCTSConfig.iterations(iterations).withNodeBudget(budget));
+            long start = System.nanoTime();
+            GomokuMove move = mcts.findNextMove(state);
+            double millis = (System.nanoTime() - start) / 1e6;
+            System.out.printf("budget %,9d | created: %,10d | peak: %,10d | prunings: %4d | pruned: %,10d | heap: %,6d MB | time: %7.1f ms | move %s%n",
+                    budget, mcts.getNodesCreated(), mcts.getPeakNodes(), mcts.getPrunings(), mcts.getNodesPruned(),
+                    usedHeap() >> 20, millis, move);
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,363 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.gomoku;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A book of opening moves for Gomoku, held in a compact binary file which is memory-mapped rather than read.
+ * <p>
+ * A position and its seven images under the symmetries of the square (rotations and reflections) share one entry:
+ * the key of a position is the least of the Zobrist hashes of its eight images (see Zobrist), and the move is stored
+ * as it applies to the image with that hash. A lookup hashes the eight images of the position, probes the table
+ * with the least, and maps the move back onto the board as it stands.
+ * <p>
+ * The file is an open-addressing hash table (with linear probing, never more than half full), so that a lookup
+ * costs a few probes of the mapped file however big the book is. It begins with a header of six ints
+ * (MAGIC, VERSION, boardSize, maxStones, capacity, size) and continues with capacity slots, each a long key
+ * and an int which is one more than the cell (row * boardSize + col) of the move, zero for an empty slot.
+ * Books are built offline, from long searches, by a Builder (see main).
+ * Usage: OpeningBook [file [boardSize [plies [iterations]]]]
+ */
+public final class OpeningBook {
+    /**
+     * The first int of an opening book file ("GMOB").
+     */
+    public static final int MAGIC = 0x474D4F42;
+    public static final int VERSION = 1;
+
+    private static final int HEADER_BYTES = 6 * Integer.BYTES;
+    private static final int SLOT_BYTES = Long.BYTES + Integer.BYTES;
+    private static final Map<Path, OpeningBook> cache = new ConcurrentHashMap<>();
+
+    private final ByteBuffer table;
+    private final Symmetries symmetries;
+    private final int maxStones;
+    private final int mask;
+    private final int size;
+
+    /**
+     * Method to open an opening book, mapping its file into memory.
+     * A book is only mapped once, however many players open it.
+     *
+     * @param path the book file.
+     * @return the (shared) OpeningBook.
+     * @throws UncheckedIOException if the file cannot be read or is not an opening book.
+     */
+    public static OpeningBook open(Path path) {
+        return cache.computeIfAbsent(path.toAbsolutePath().normalize(), p -> {
+            try {
+                return load(p);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Method to map an opening book file into memory (without sharing it: see open).
+     *
+     * @param path the book file.
+     * @return a new OpeningBook.
+     * @throws IOException if the file cannot be read or is not an opening book.
+     */
+    public static OpeningBook load(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) throw new IOException("not an opening book: " + path);
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt(0) != MAGIC) throw new IOException("not an opening book: " + path);
+            if (buffer.getInt(4) != VERSION)
+                throw new IOException("unsupported opening book version " + buffer.getInt(4) + ": " + path);
+            int capacity = buffer.getInt(16);
+            if (Integer.bitCount(capacity) != 1 || channel.size() != HEADER_BYTES + (long) capacity * SLOT_BYTES)
+                throw new IOException("corrupt opening book: " + path);
+            return new OpeningBook(buffer, buffer.getInt(8), buffer.getInt(12), capacity, buffer.getInt(20));
+        }
+    }
+
+    private OpeningBook(ByteBuffer buffer, int boardSize, int maxStones, int capacity, int size) {
+        this.table = buffer.position(HEADER_BYTES).slice();
+        this.symmetries = Symmetries.of(boardSize);
+        this.maxStones = maxStones;
+        this.mask = capacity - 1;
+        this.size = size;
+    }
+
+    /**
+     * Method to look up the book move for a position.
+     *
+     * @param state a position (of the same board size as the book).
+     * @return the book move, or null if the position is not in the book (or the board is the wrong size).
+     */
+    public GomokuMove lookup(GomokuState state) {
+        int boardSize = symmetries.boardSize;
+        if (state.getBoardSize() != boardSize || state.isTerminal()) return null;
+        if (boardSize * boardSize - state.getEmptyCount() > maxStones) return null;
+        byte[] cells = new byte[boardSize * boardSize];
+        state.copyTo(cells, new int[cells.length]);
+        long[] hashes = symmetries.hashes(cells, state.getCurrentPlayer());
+        int image = Symmetries.least(hashes);
+        int cell = find(hashes[image]);
+        if (cell < 0) return null;
+        int index = symmetries.inverse(image, cell);
+        // A collision of keys could yield an occupied cell.
+        if (cells[index] != GomokuState.EMPTY) return null;
+        return new GomokuMove(index / boardSize, index % boardSize);
+    }
+
+    /**
+     * @return the number of positions in the book (counting the images of a position once).
+     */
+    public int size() {
+        return size;
+    }
+
+    public int getBoardSize() {
+        return symmetries.boardSize;
+    }
+
+    /**
+     * @return the greatest number of stones in a position in the book.
+     */
+    public int getMaxStones() {
+        return maxStones;
+    }
+
+    /**
+     * @return the cell stored with key, or -1 if there is none.
+     */
+    private int find(long key) {
+        for (int slot = Symmetries.slot(key, mask); ; slot = (slot + 1) & mask) {
+            int offset = slot * SLOT_BYTES;
+            int cell = table.getInt(offset + Long.BYTES) - 1;
+            if (cell < 0) return -1;
+            if (table.getLong(offset) == key) return cell;
+        }
+    }
+
+    /**
+     * A builder of opening books: positions are added with their moves (or found by searching), and the book is then written.
+     */
+    public static final class Builder {
+        private final Symmetries symmetries;
+        private final Map<Long, Integer> entries = new HashMap<>();
+        private int maxStones;
+
+        /**
+         * @param boardSize the size of the board.
+         */
+        public Builder(int boardSize) {
+            this.symmetries = Symmetries.of(boardSize);
+        }
+
+        /**
+         * Method to add a position to the book (replacing the move for it, or for any of its images, if there is one).
+         *
+         * @param state a position, which is not terminal.
+         * @param move  the move to play in that position.
+         * @return this Builder.
+         */
+        public Builder add(GomokuState state, GomokuMove move) {
+            int boardSize = symmetries.boardSize;
+            if (state.getBoardSize() != boardSize)
+                throw new IllegalArgumentException("the book is for a board of size " + boardSize + ": " + state.getBoardSize());
+            byte[] cells = cells(state);
+            int index = move.getRow() * boardSize + move.getCol();
+            if (cells[index] != GomokuState.EMPTY) throw new IllegalArgumentException("the cell is occupied: " + move);
+            long[] hashes = symmetries.hashes(cells, state.getCurrentPlayer());
+            int image = Symmetries.least(hashes);
+            entries.put(hashes[image], symmetries.image(image, index));
+            maxStones = Math.max(maxStones, boardSize * boardSize - state.getEmptyCount());
+            return this;
+        }
+
+        /**
+         * Method to fill the book by searching every position with fewer than the given number of stones which can be
+         * reached by following the book, against any reply adjacent to a stone already played. That is done once for
+         * each player: the positions in which that player is to move are searched, and only the book move is followed
+         * from them; every adjacent reply is followed from the others. Each position (up to symmetry) is searched once,
+         * from scratch, with the given configuration: the number of searches grows roughly tenfold with every two plies.
+         *
+         * @param plies  the number of stones after which the book ends.
+         * @param config the configuration for the searches (which should be long).
+         * @return this Builder.
+         */
+        public Builder generate(int plies, MCTSConfig config) {
+            follow(GomokuState.PLAYER_ONE, plies, config);
+            follow(GomokuState.PLAYER_TWO, plies, config);
+            return this;
+        }
+
+        private void follow(int player, int plies, MCTSConfig config) {
+            Set<Long> seen = new HashSet<>();
+            List<GomokuState> frontier = List.of(new GomokuState(symmetries.boardSize));
+            for (int ply = 0; ply < plies && !frontier.isEmpty(); ply++) {
+                List<GomokuState> next = new ArrayList<>();
+                for (GomokuState state : frontier) {
+                    Collection<GomokuMove> moves;
+                    if (state.getCurrentPlayer() == player) {
+                        GomokuMove best = new MonteCarloTreeSearch(config).findNextMove(state);
+                        add(state, best);
+                        moves = List.of(best);
+                    } else moves = state.withCandidateDistance(1).getCandidateMoves();
+                    if (ply + 1 == plies) continue;
+                    for (GomokuMove move : moves) {
+                        GomokuState child = state.clone();
+                        child.makeMove(move);
+                        if (!child.isTerminal() && seen.add(key(child))) next.add(child);
+                    }
+                }
+                frontier = next;
+            }
+        }
+
+        /**
+         * @return the number of positions in the book so far.
+         */
+        public int size() {
+            return entries.size();
+        }
+
+        /**
+         * Method to write the book to a file (which is replaced if it exists).
+         *
+         * @param path the file.
+         * @throws IOException if the file cannot be written.
+         */
+        public void write(Path path) throws IOException {
+            int capacity = Integer.highestOneBit(Math.max(1, entries.size()) * 2 - 1) << 1;
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + capacity * SLOT_BYTES);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(symmetries.boardSize).putInt(maxStones).putInt(capacity).putInt(entries.size());
+            int mask = capacity - 1;
+            for (Map.Entry<Long, Integer> entry : entries.entrySet()) {
+                int slot = Symmetries.slot(entry.getKey(), mask);
+                while (buffer.getInt(HEADER_BYTES + slot * SLOT_BYTES + Long.BYTES) != 0) slot = (slot + 1) & mask;
+                buffer.putLong(HEADER_BYTES + slot * SLOT_BYTES, entry.getKey());
+                buffer.putInt(HEADER_BYTES + slot * SLOT_BYTES + Long.BYTES, entry.getValue() + 1);
+            }
+            buffer.rewind();
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (buffer.hasRemaining()) channel.write(buffer);
+            }
+            cache.remove(path.toAbsolutePath().normalize());
+        }
+
+        private long key(GomokuState state) {
+            long[] hashes = symmetries.hashes(cells(state), state.getCurrentPlayer());
+            return hashes[Symmetries.least(hashes)];
+        }
+
+        private byte[] cells(GomokuState state) {
+            byte[] cells = new byte[symmetries.boardSize * symmetries.boardSize];
+            state.copyTo(cells, new int[cells.length]);
+            return cells;
+        }
+    }
+
+    /**
+     * The eight symmetries of a board of a given size, as permutations of its cells.
+     */
+    static final class Symmetries {
+        private static final Map<Integer, Symmetries> cache = new ConcurrentHashMap<>();
+
+        private final int boardSize;
+        private final Zobrist zobrist;
+        private final int[][] images; // images[s][cell] is where symmetry s takes cell.
+        private final int[][] inverses;
+
+        static Symmetries of(int boardSize) {
+            return cache.computeIfAbsent(boardSize, Symmetries::new);
+        }
+
+        private Symmetries(int boardSize) {
+            this.boardSize = boardSize;
+            this.zobrist = Zobrist.forBoardSize(boardSize);
+            int cells = boardSize * boardSize;
+            int m = boardSize - 1;
+            images = new int[8][cells];
+            inverses = new int[8][cells];
+            for (int row = 0; row < boardSize; row++)
+                for (int col = 0; col < boardSize; col++) {
+                    int[][] rowCols = {{row, col}, {col, m - row}, {m - row, m - col}, {m - col, row},
+                            {row, m - col}, {col, row}, {m - row, col}, {m - col, m - row}};
+                    for (int s = 0; s < 8; s++) {
+                        int image = rowCols[s][0] * boardSize + rowCols[s][1];
+                        images[s][row * boardSize + col] = image;
+                        inverses[s][image] = row * boardSize + col;
+                    }
+                }
+        }
+
+        /**
+         * @return the Zobrist hashes of the eight images of the position with the given cells and player to move.
+         */
+        long[] hashes(byte[] cells, int player) {
+            long[] hashes = new long[8];
+            if (player == GomokuState.PLAYER_TWO) Arrays.fill(hashes, zobrist.sideToMove());
+            for (int cell = 0; cell < cells.length; cell++)
+                if (cells[cell] != GomokuState.EMPTY)
+                    for (int s = 0; s < 8; s++) hashes[s] ^= zobrist.stone(cells[cell], images[s][cell]);
+            return hashes;
+        }
+
+        int image(int symmetry, int cell) {
+            return images[symmetry][cell];
+        }
+
+        int inverse(int symmetry, int cell) {
+            return inverses[symmetry][cell];
+        }
+
+        /**
+         * @return the index of the least hash (the first, if there are several: they are images of one position).
+         */
+        static int least(long[] hashes) {
+            int least = 0;
+            for (int s = 1; s < hashes.length; s++) if (hashes[s] < hashes[least]) least = s;
+            return least;
+        }
+
+        static int slot(long key, int mask) {
+            return (int) (key ^ (key >>> 32)) & mask;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path path = Path.of(args.length > 0 ? args[0] : "gomoku.book");
+        int boardSize = args.length > 1 ? Integer.parseInt(args[1]) : 15;
+        int plies = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        int iterations = args.length > 3 ? Integer.parseInt(args[3]) : 20_000;
+        System.out.println("=== Building an opening book of " + plies + " plies on " + boardSize + "x" + boardSize
+                + " at " + iterations + " iterations per position ===");
+        long start = System.nanoTime();
+        Builder builder = new Builder(boardSize).generate(plies, MCTSConfig.iterations(iterations).withCandidateDistance(2));
+        builder.write(path);
+        System.out.printf("%d positions written to %s in %.1f s%n", builder.size(), path, (System.nanoTime() - start) / 1e9);
+        start = System.nanoTime();
+        OpeningBook book = load(path);
+        System.out.printf("Loaded in %.3f ms%n", (System.nanoTime() - start) / 1e6);
+        // The positions of random games which follow the book until they leave it.
+        Random random = new Random(0);
+        List<GomokuState> positions = new ArrayList<>();
+        for (int game = 0; game < 1000; game++) {
+            GomokuState state = new GomokuState(boardSize);
+            for (GomokuMove move; (move = book.lookup(state)) != null && !state.isTerminal(); ) {
+                positions.add(state.clone());
+                state.makeMove(move);
+                List<GomokuMove> replies = state.withCandidateDistance(1).getCandidateMoves();
+                state.makeMove(replies.get(random.nextInt(replies.size())));
+            }
+            positions.add(state);
+        }
+        int hits = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < 100; i++)
+            for (GomokuState state : positions) if (book.lookup(state) != null) hits++;
+        System.out.printf("%d lookups (%d hits) at %.0f ns each%n", 100 * positions.size(), hits, (System.nanoTime() - start) / (100.0 * positions.size()));
+    }
+}
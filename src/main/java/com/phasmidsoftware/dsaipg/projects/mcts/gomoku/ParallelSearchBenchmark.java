@@ -0,0 +1,55 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.gomoku;
+
+import com.phasmidsoftware.dsaipg.projects.mcts.core.ParallelMode;
+
+/**
+ * Benchmark of MonteCarloTreeSearch throughput (iterations per second) against the number of threads,
+ * for both root-parallel and tree-parallel search, relative to the single-threaded search.
+ * Usage: ParallelSearchBenchmark [iterationsPerThread [runs]]
+ */
+public class ParallelSearchBenchmark {
+
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int cores = Runtime.getRuntime().availableProcessors();
+        int maxThreads = Math.max(2, cores);
+        GomokuState state = openingPosition();
+
+        System.out.println("=== Parallel MCTS: iterations per second (" + cores + " cores, " + iterations + " iterations per thread) ===");
+        double baseline = iterationsPerSecond(MCTSConfig.iterations(iterations), state, runs);
+        System.out.printf("%-10s threads: %3d | iterations/sec: %,12.0f | speedup: %5.2f%n", ParallelMode.SEQUENTIAL, 1, baseline, 1.0);
+        for (ParallelMode mode : new ParallelMode[]{ParallelMode.ROOT, ParallelMode.TREE})
+            for (int threads = 2; threads <= maxThreads; threads = threads < maxThreads && threads * 2 > maxThreads ? maxThreads : threads * 2) {
+                double rate = iterationsPerSecond(MCTSConfig.iterations(iterations).withParallelism(mode, threads), state, runs);
+                System.out.printf("%-10s threads: %3d | iterations/sec: %,12.0f | speedup: %5.2f%n", mode, threads, rate, rate / baseline);
+            }
+    }
+
+    /**
+     * Method to measure the throughput of a configuration (after one warm-up search).
+     *
+     * @param config the configuration.
+     * @param state  the root state.
+     * @param runs   the number of timed searches.
+     * @return the total number of iterations (over all trees) per second.
+     */
+    static double iterationsPerSecond(MCTSConfig config, GomokuState state, int runs) {
+        MonteCarloTreeSearch mcts = new MonteCarloTreeSearch(config);
+        mcts.findNextMove(state.clone());
+        long start = System.nanoTime();
+        for (int i = 0; i < runs; i++) mcts.findNextMove(state.clone());
+        double seconds = (System.nanoTime() - start) / 1e9;
+        return (double) runs * config.getIterationLimit() * config.getThreads() / seconds;
+    }
+
+    /**
+     * @return a 15x15 position a few moves into the game.
+     */
+    static GomokuState openingPosition() {
+        GomokuState state = new GomokuState(15);
+        int[][] moves = {{7, 7}, {7, 8}, {8, 8}, {6, 6}, {8, 6}, {6, 8}};
+        for (int[] move : moves) state.makeMove(new GomokuMove(move[0], move[1]));
+        return state;
+    }
+}
@@ -0,0 +1,147 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.gomoku;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * A LeafEvaluator which weights every window of five cells in a line (across, down and along both diagonals)
+ * by the number of stones in it, if they are all of one colour: a window with k stones of the player to move
+ * scores OWN[k], and one with k stones of the opponent scores -OPPONENT[k].
+ * Fours are scored by what they force, since they decide the game in at most two moves:
+ * a four of the player to move is a win next move; and fours of the opponent's which need two different cells
+ * to be blocked are a loss. A four of the opponent's which can still be blocked scores -BLOCKABLE_FOUR:
+ * the player to move must block it, and so loses the tempo, but nothing more.
+ * The total score s becomes a value by the logistic function 1 / (1 + exp(-s / SCALE)).
+ * <p>
+ * A batch at least as large as the parallel threshold is shared among the threads of the common ForkJoinPool.
+ */
+public final class PatternEvaluator implements LeafEvaluator {
+    private static final int LENGTH = 5;
+    private static final double[] OWN = {0, 1, 6, 40};
+    private static final double[] OPPONENT = {0, 1, 5, 30};
+    private static final double BLOCKABLE_FOUR = 50;
+    // The score of a position whose outcome is forced: its value is 1 (or 0) to double precision.
+    private static final double FORCED = 1e4;
+    private static final double SCALE = 50;
+
+    private final int parallelThreshold;
+    private volatile Lines lines = new Lines(0, new int[0][]);
+
+    /**
+     * Constructor for an evaluator which evaluates every batch on the calling thread.
+     */
+    public PatternEvaluator() {
+        this(0);
+    }
+
+    /**
+     * @param parallelThreshold the smallest batch to be evaluated in parallel (zero for none).
+     */
+    public PatternEvaluator(int parallelThreshold) {
+        if (parallelThreshold < 0) throw new IllegalArgumentException("parallel threshold must not be negative: " + parallelThreshold);
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    @Override
+    public void evaluate(int boardSize, byte[] cells, int[] players, int count, double[] values) {
+        int[][] lines = linesFor(boardSize);
+        int area = boardSize * boardSize;
+        if (parallelThreshold > 0 && count >= parallelThreshold)
+            IntStream.range(0, count).parallel().forEach(i -> values[i] = value(score(lines, cells, i * area, players[i])));
+        else
+            for (int i = 0; i < count; i++) values[i] = value(score(lines, cells, i * area, players[i]));
+    }
+
+    /**
+     * Method to score one board for the player to move (see PatternEvaluator).
+     *
+     * @param lines  the lines of the board, as cell indices.
+     * @param cells  the boards.
+     * @param offset the index of the first cell of the board.
+     * @param player the player to move.
+     * @return the score: FORCED for a win next move, -FORCED for a loss which cannot be prevented.
+     */
+    static double score(int[][] lines, byte[] cells, int offset, int player) {
+        double result = 0;
+        int block = -1; // The cell at which the opponent's fours (so far) can all be blocked.
+        boolean lost = false;
+        for (int[] line : lines) {
+            int own = 0;
+            int other = 0;
+            for (int i = 0; i < line.length; i++) {
+                int cell = cells[offset + line[i]];
+                if (cell == player) own++;
+                else if (cell != GomokuState.EMPTY) other++;
+                if (i >= LENGTH) {
+                    int leaving = cells[offset + line[i - LENGTH]];
+                    if (leaving == player) own--;
+                    else if (leaving != GomokuState.EMPTY) other--;
+                }
+                if (i >= LENGTH - 1) {
+                    if (other == 0) {
+                        if (own == LENGTH - 1) return FORCED;
+                        result += OWN[own];
+                    } else if (own == 0) {
+                        if (other == LENGTH - 1) {
+                            int gap = emptyCell(line, i, cells, offset);
+                            if (block < 0) block = gap;
+                            else if (gap != block) lost = true;
+                            result -= BLOCKABLE_FOUR;
+                        } else result -= OPPONENT[other];
+                    }
+                }
+            }
+        }
+        return lost ? -FORCED : result;
+    }
+
+    /**
+     * @return the (only) empty cell of the window of line which ends at index end.
+     */
+    private static int emptyCell(int[] line, int end, byte[] cells, int offset) {
+        for (int i = end - LENGTH + 1; i <= end; i++)
+            if (cells[offset + line[i]] == GomokuState.EMPTY) return line[i];
+        throw new IllegalStateException("no empty cell in a four");
+    }
+
+    /**
+     * @return the value (between 0 and 1) of the given score.
+     */
+    static double value(double score) {
+        return 1 / (1 + Math.exp(-score / SCALE));
+    }
+
+    /**
+     * @return the lines (of at least five cells) of a board of the given size, as arrays of cell indices.
+     */
+    int[][] linesFor(int boardSize) {
+        Lines cached = lines;
+        if (cached.boardSize == boardSize) return cached.lines;
+        List<int[]> result = new ArrayList<>();
+        int[][] directions = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+        for (int[] direction : directions)
+            for (int row = 0; row < boardSize; row++)
+                for (int col = 0; col < boardSize; col++) {
+                    // Each line starts at the cell whose predecessor is off the board.
+                    int previousRow = row - direction[0];
+                    int previousCol = col - direction[1];
+                    if (previousRow >= 0 && previousCol >= 0 && previousCol < boardSize) continue;
+                    List<Integer> line = new ArrayList<>();
+                    for (int r = row, c = col; r < boardSize && c >= 0 && c < boardSize; r += direction[0], c += direction[1])
+                        line.add(r * boardSize + c);
+                    if (line.size() >= LENGTH) result.add(line.stream().mapToInt(Integer::intValue).toArray());
+                }
+        int[][] array = result.toArray(new int[0][]);
+        lines = new Lines(boardSize, array);
+        return array;
+    }
+
+    @Override
+    public String toString() {
+        return parallelThreshold > 0 ? "patterns(parallel from " + parallelThreshold + ")" : "patterns";
+    }
+
+    private record Lines(int boardSize, int[][] lines) {
+    }
+}
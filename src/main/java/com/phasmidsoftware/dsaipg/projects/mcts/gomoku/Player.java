@@ -1,5 +1,32 @@
 package com.phasmidsoftware.dsaipg.projects.mcts.gomoku;
 
+import com.phasmidsoftware.dsaipg.projects.mcts.core.SearchMetrics;
+
 public interface Player {
     GomokuMove getMove(GomokuState state);
+
+    /**
+     * Method to think, in the background, about the given state while the opponent is to move.
+     * This must return promptly; the next call to getMove (or stopPondering) ends the thinking.
+     * By default, a player does not ponder.
+     *
+     * @param state the state after this player's move (not modified).
+     */
+    default void ponder(GomokuState state) {
+    }
+
+    /**
+     * End any thinking started by ponder.
+     */
+    default void stopPondering() {
+    }
+
+    /**
+     * By default, a player does not search, and has no metrics.
+     *
+     * @return the telemetry of this player's searches, which may be polled while it thinks (or null).
+     */
+    default SearchMetrics getMetrics() {
+        return null;
+    }
 }
@@ -0,0 +1,55 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.gomoku;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Benchmark of random playouts per second: the original approach (clone the state, then list the legal moves
+ * and make a move on the state at every step) against PlayoutEngine.
+ * Usage: PlayoutBenchmark [seconds [boardSize]]
+ */
+public class PlayoutBenchmark {
+
+    public static void main(String[] args) {
+        double seconds = args.length > 0 ? Double.parseDouble(args[0]) : 2;
+        int boardSize = args.length > 1 ? Integer.parseInt(args[1]) : 15;
+        GomokuState empty = new GomokuState(boardSize);
+        PlayoutEngine engine = new PlayoutEngine();
+        System.out.println("=== Random playouts per second from an empty " + boardSize + "x" + boardSize + " board ===");
+        for (int pass = 0; pass < 2; pass++) { // the first pass is a warm-up
+            double before = playoutsPerSecond(() -> legacyPlayout(empty), seconds);
+            double after = playoutsPerSecond(() -> engine.play(empty), seconds);
+            if (pass == 1)
+                System.out.printf("clone + getLegalMoves: %,12.0f | PlayoutEngine: %,12.0f | speedup: %5.1f%n", before, after, after / before);
+        }
+    }
+
+    /**
+     * The playout as MonteCarloTreeSearch used to do it.
+     */
+    static int legacyPlayout(GomokuState state) {
+        GomokuState tempState = state.clone();
+        while (!tempState.isTerminal()) {
+            List<GomokuMove> legalMoves = tempState.getLegalMoves();
+            GomokuMove randomMove = legalMoves.get(new Random().nextInt(legalMoves.size()));
+            tempState.makeMove(randomMove);
+        }
+        return tempState.checkWin();
+    }
+
+    private static double playoutsPerSecond(Playout playout, double seconds) {
+        long start = System.nanoTime();
+        long end = start + (long) (seconds * 1e9);
+        long count = 0;
+        long now;
+        do {
+            playout.play();
+            count++;
+        } while ((now = System.nanoTime()) < end);
+        return count / ((now - start) / 1e9);
+    }
+
+    private interface Playout {
+        int play();
+    }
+}
@@ -0,0 +1,311 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.gomoku;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
+
+/**
+ * Plays games to the end, for the simulation step of MonteCarloTreeSearch, choosing moves with a RolloutPolicy.
+ * <p>
+ * The game is played on a scratch board which is reused from one playout to the next: the empty cells are kept
+ * in an int array from which each chosen cell is removed by swapping in the last one, and only the lines through
+ * the stone just placed are examined for a win. So a playout allocates nothing once the engine has been sized.
+ * <p>
+ * If the policy needs them, the engine also keeps, for each player, the sets of empty cells at which a stone would
+ * make a five (FIVE), an open four (OPEN_FOUR), or a four or open three (THREE). These are updated incrementally:
+ * a stone can only change the patterns of the cells within five places of it along its four lines.
+ * <p>
+ * An engine is not thread-safe: each thread should have its own.
+ */
+public class PlayoutEngine {
+    public static final int THREE = 1;
+    public static final int OPEN_FOUR = 2;
+    public static final int FIVE = 3;
+
+    // Horizontal, vertical, diagonal (\) and anti-diagonal (/), as {dRow, dCol}.
+    private static final int[][] DIRECTIONS = {{0, 1}, {1, 0}, {1, 1}, {-1, 1}};
+    // The furthest a stone can be from a cell and still change the cell's pattern: a run of four, then its end.
+    private static final int REACH = GomokuState.WIN_LENGTH;
+
+    private final RolloutPolicy policy;
+    private final RandomGenerator random;
+    private int boardSize;
+    private byte[] cells = new byte[0];
+    private int[] empties = new int[0];
+    private int[] emptyPositions = new int[0];
+    private int emptyCount;
+
+    // Threat patterns, indexed by [player - 1][cell * 4 + direction] and [player - 1][cell], and the sets by [player - 1][level].
+    private final byte[][] lineLevels = new byte[2][];
+    private final byte[][] levels = new byte[2][];
+    private final CellSet[][] threats = new CellSet[2][FIVE + 1];
+
+    /**
+     * Constructor for an engine which plays uniformly random moves, using ThreadLocalRandom.
+     */
+    public PlayoutEngine() {
+        this(RolloutPolicy.UNIFORM, null);
+    }
+
+    /**
+     * Constructor for an engine which plays uniformly random moves.
+     *
+     * @param random the source of randomness (or null to use ThreadLocalRandom).
+     */
+    public PlayoutEngine(RandomGenerator random) {
+        this(RolloutPolicy.UNIFORM, random);
+    }
+
+    /**
+     * @param policy the rollout policy.
+     * @param random the source of randomness (or null to use ThreadLocalRandom).
+     */
+    public PlayoutEngine(RolloutPolicy policy, RandomGenerator random) {
+        this.policy = policy;
+        this.random = random;
+    }
+
+    /**
+     * Method to play a game from the given state (which is not changed).
+     * Unless the state is already terminal, the final position is left on the board (see getCell) until the next call.
+     *
+     * @param state the starting position.
+     * @return the winner: PLAYER_ONE, PLAYER_TWO or EMPTY (for a draw).
+     */
+    public int play(GomokuState state) {
+        if (state.isTerminal()) return state.checkWin();
+        load(state);
+        boolean tracking = policy.needsThreats();
+        RandomGenerator rng = getRandom();
+        int player = state.getCurrentPlayer();
+        while (emptyCount > 0) {
+            int index = policy.selectMove(this, player, rng);
+            place(index, player);
+            if (completesLine(index, player)) return player;
+            if (tracking) updateThreats(index);
+            player = GomokuState.getOpponent(player);
+        }
+        return GomokuState.EMPTY;
+    }
+
+    /**
+     * @return the source of randomness for the playouts (ThreadLocalRandom for the calling thread, if none was given).
+     */
+    public RandomGenerator getRandom() {
+        return random != null ? random : ThreadLocalRandom.current();
+    }
+
+    public int getBoardSize() {
+        return boardSize;
+    }
+
+    /**
+     * @param index a cell index (row * boardSize + col).
+     * @return PLAYER_ONE, PLAYER_TWO or EMPTY.
+     */
+    public int getCell(int index) {
+        return cells[index];
+    }
+
+    public int getEmptyCount() {
+        return emptyCount;
+    }
+
+    /**
+     * @param i an index less than getEmptyCount().
+     * @return the index of the i-th empty cell (in no particular order).
+     */
+    public int getEmpty(int i) {
+        return empties[i];
+    }
+
+    /**
+     * @param player PLAYER_ONE or PLAYER_TWO.
+     * @param level  THREE, OPEN_FOUR or FIVE.
+     * @return the number of empty cells where a stone of player would make the given pattern (and no better).
+     */
+    public int getThreatCount(int player, int level) {
+        return threats[player - 1][level].size;
+    }
+
+    /**
+     * @param player PLAYER_ONE or PLAYER_TWO.
+     * @param level  THREE, OPEN_FOUR or FIVE.
+     * @param random the source of randomness.
+     * @return one of the cells counted by getThreatCount(player, level), chosen at random.
+     */
+    public int getThreat(int player, int level, RandomGenerator random) {
+        CellSet set = threats[player - 1][level];
+        return set.members[random.nextInt(set.size)];
+    }
+
+    /**
+     * @param player PLAYER_ONE or PLAYER_TWO.
+     * @param index  an empty cell.
+     * @return the best pattern (zero, THREE, OPEN_FOUR or FIVE) which a stone of player would make at index.
+     */
+    public int getThreatLevel(int player, int index) {
+        return levels[player - 1][index];
+    }
+
+    /**
+     * Set up the scratch board (and, if the policy needs them, the threat sets) from the given state.
+     */
+    void load(GomokuState state) {
+        resize(state.getBoardSize());
+        emptyCount = state.copyTo(cells, empties);
+        for (int i = 0; i < emptyCount; i++) emptyPositions[empties[i]] = i;
+        if (policy.needsThreats()) initializeThreats();
+    }
+
+    private void resize(int size) {
+        if (size == boardSize) return;
+        boardSize = size;
+        int n = size * size;
+        cells = new byte[n];
+        empties = new int[n];
+        emptyPositions = new int[n];
+        for (int p = 0; p < 2; p++) {
+            lineLevels[p] = new byte[n * DIRECTIONS.length];
+            levels[p] = new byte[n];
+            for (int level = THREE; level <= FIVE; level++) threats[p][level] = new CellSet(n);
+        }
+    }
+
+    private void place(int index, int player) {
+        int i = emptyPositions[index];
+        int last = empties[--emptyCount];
+        empties[i] = last;
+        emptyPositions[last] = i;
+        cells[index] = (byte) player;
+    }
+
+    private void initializeThreats() {
+        for (int p = 0; p < 2; p++) {
+            Arrays.fill(levels[p], (byte) 0);
+            for (int level = THREE; level <= FIVE; level++) threats[p][level].clear();
+        }
+        for (int i = 0; i < emptyCount; i++) {
+            int index = empties[i];
+            for (int player = GomokuState.PLAYER_ONE; player <= GomokuState.PLAYER_TWO; player++) {
+                for (int d = 0; d < DIRECTIONS.length; d++)
+                    lineLevels[player - 1][index * DIRECTIONS.length + d] = (byte) lineLevel(player, index, d);
+                setLevel(player, index, maxLineLevel(player, index));
+            }
+        }
+    }
+
+    /**
+     * Update the patterns after a stone has been placed at index.
+     */
+    private void updateThreats(int index) {
+        setLevel(GomokuState.PLAYER_ONE, index, 0);
+        setLevel(GomokuState.PLAYER_TWO, index, 0);
+        int row = index / boardSize;
+        int col = index % boardSize;
+        for (int d = 0; d < DIRECTIONS.length; d++)
+            for (int k = -REACH; k <= REACH; k++) {
+                int r = row + k * DIRECTIONS[d][0];
+                int c = col + k * DIRECTIONS[d][1];
+                if (k == 0 || !onBoard(r, c)) continue;
+                int cell = r * boardSize + c;
+                if (cells[cell] != GomokuState.EMPTY) continue;
+                for (int player = GomokuState.PLAYER_ONE; player <= GomokuState.PLAYER_TWO; player++) {
+                    lineLevels[player - 1][cell * DIRECTIONS.length + d] = (byte) lineLevel(player, cell, d);
+                    setLevel(player, cell, maxLineLevel(player, cell));
+                }
+            }
+    }
+
+    private int maxLineLevel(int player, int index) {
+        byte[] lines = lineLevels[player - 1];
+        int base = index * DIRECTIONS.length;
+        return Math.max(Math.max(lines[base], lines[base + 1]), Math.max(lines[base + 2], lines[base + 3]));
+    }
+
+    private void setLevel(int player, int index, int level) {
+        int old = levels[player - 1][index];
+        if (old == level) return;
+        if (old > 0) threats[player - 1][old].remove(index);
+        if (level > 0) threats[player - 1][level].add(index);
+        levels[player - 1][index] = (byte) level;
+    }
+
+    /**
+     * @return the pattern which a stone of player at the (empty) cell index would make along direction d.
+     */
+    private int lineLevel(int player, int index, int d) {
+        int row = index / boardSize;
+        int col = index % boardSize;
+        int dRow = DIRECTIONS[d][0];
+        int dCol = DIRECTIONS[d][1];
+        int forward = countRun(row, col, dRow, dCol, player);
+        int backward = countRun(row, col, -dRow, -dCol, player);
+        int length = 1 + forward + backward;
+        if (length >= GomokuState.WIN_LENGTH) return FIVE;
+        if (length < GomokuState.WIN_LENGTH - 2) return 0;
+        int open = (isEmpty(row + (forward + 1) * dRow, col + (forward + 1) * dCol) ? 1 : 0)
+                + (isEmpty(row - (backward + 1) * dRow, col - (backward + 1) * dCol) ? 1 : 0);
+        if (length == GomokuState.WIN_LENGTH - 1) return open == 2 ? OPEN_FOUR : open == 1 ? THREE : 0;
+        return open == 2 ? THREE : 0;
+    }
+
+    private boolean completesLine(int index, int player) {
+        int row = index / boardSize;
+        int col = index % boardSize;
+        for (int[] d : DIRECTIONS)
+            if (1 + countRun(row, col, d[0], d[1], player) + countRun(row, col, -d[0], -d[1], player) >= GomokuState.WIN_LENGTH)
+                return true;
+        return false;
+    }
+
+    private int countRun(int row, int col, int dRow, int dCol, int player) {
+        int count = 0;
+        int r = row + dRow;
+        int c = col + dCol;
+        while (count < GomokuState.WIN_LENGTH - 1 && onBoard(r, c) && cells[r * boardSize + c] == player) {
+            count++;
+            r += dRow;
+            c += dCol;
+        }
+        return count;
+    }
+
+    private boolean isEmpty(int row, int col) {
+        return onBoard(row, col) && cells[row * boardSize + col] == GomokuState.EMPTY;
+    }
+
+    private boolean onBoard(int row, int col) {
+        return row >= 0 && row < boardSize && col >= 0 && col < boardSize;
+    }
+
+    /**
+     * A set of cell indices with constant-time add, remove and random choice.
+     */
+    private static final class CellSet {
+        private final int[] members;
+        private final int[] positions;
+        private int size;
+
+        CellSet(int capacity) {
+            members = new int[capacity];
+            positions = new int[capacity];
+        }
+
+        void add(int index) {
+            positions[index] = size;
+            members[size++] = index;
+        }
+
+        void remove(int index) {
+            int i = positions[index];
+            int last = members[--size];
+            members[i] = last;
+            positions[last] = i;
+        }
+
+        void clear() {
+            size = 0;
+        }
+    }
+}
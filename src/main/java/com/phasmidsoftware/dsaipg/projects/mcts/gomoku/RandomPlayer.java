@@ -13,6 +13,13 @@ public class RandomPlayer implements Player {
         random = new Random();
     }
 
+    /**
+     * @param seed the seed for the choice of moves (so that a game can be replayed).
+     */
+    public RandomPlayer(long seed) {
+        random = new Random(seed);
+    }
+
     @Override
     public GomokuMove getMove(GomokuState state) {
         List<GomokuMove> legalMoves = state.getLegalMoves();
@@ -0,0 +1,41 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.gomoku;
+
+/**
+ * Benchmark of RAVE: a match between an MCTSPlayer which blends all-moves-as-first statistics into selection and
+ * one which uses plain UCT, each given the same number of iterations per move (colours alternate).
+ * Usage: RaveBenchmark [games [iterations [equivalence [boardSize]]]]
+ */
+public class RaveBenchmark {
+
+    public static void main(String[] args) {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        double equivalence = args.length > 2 ? Double.parseDouble(args[2]) : 1000;
+        int boardSize = args.length > 3 ? Integer.parseInt(args[3]) : 15;
+        System.out.println("=== RAVE (k=" + equivalence + ") vs UCT: " + games + " games on " + boardSize + "x" + boardSize
+                + " at " + iterations + " iterations per move ===");
+        int wins = 0, losses = 0, draws = 0;
+        long start = System.nanoTime();
+        for (int game = 0; game < games; game++) {
+            MCTSConfig config = MCTSConfig.iterations(iterations).withCandidateDistance(2).withTreeReuse(true);
+            Player rave = new MCTSPlayer(config.withRave(equivalence));
+            Player uct = new MCTSPlayer(config);
+            boolean raveFirst = game % 2 == 0;
+            int winner = play(new GomokuState(boardSize), raveFirst ? rave : uct, raveFirst ? uct : rave);
+            int raveColour = raveFirst ? GomokuState.PLAYER_ONE : GomokuState.PLAYER_TWO;
+            if (winner == GomokuState.EMPTY) draws++;
+            else if (winner == raveColour) wins++;
+            else losses++;
+            System.out.printf("game %2d: RAVE %s, %s%n", game + 1, raveFirst ? "first" : "second",
+                    winner == GomokuState.EMPTY ? "draw" : winner == raveColour ? "won" : "lost");
+        }
+        System.out.printf("RAVE won %d, lost %d, drew %d (score %.1f%%) in %.1f s%n",
+                wins, losses, draws, 100.0 * (wins + 0.5 * draws) / games, (System.nanoTime() - start) / 1e9);
+    }
+
+    private static int play(GomokuState state, Player first, Player second) {
+        while (!state.isTerminal())
+            state.makeMove((state.getCurrentPlayer() == GomokuState.PLAYER_ONE ? first : second).getMove(state));
+        return state.checkWin();
+    }
+}
@@ -0,0 +1,37 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.gomoku;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * The policy which chooses the moves of a playout (see PlayoutEngine).
+ * Policies hold no state of their own, so one policy may be shared by any number of engines and threads.
+ */
+public interface RolloutPolicy {
+
+    /**
+     * Every move is chosen uniformly at random from the empty cells.
+     */
+    RolloutPolicy UNIFORM = new UniformRolloutPolicy();
+
+    /**
+     * Wins are taken and blocked, and moves which make (or stop) open threes and fours are preferred.
+     */
+    RolloutPolicy THREATS = new ThreatRolloutPolicy();
+
+    /**
+     * Method to choose the next move of a playout.
+     *
+     * @param board  the playout board.
+     * @param player the player to move.
+     * @param random the source of randomness.
+     * @return the index (row * boardSize + col) of an empty cell.
+     */
+    int selectMove(PlayoutEngine board, int player, RandomGenerator random);
+
+    /**
+     * @return true if this policy uses the threat sets of the PlayoutEngine, which take time to maintain.
+     */
+    default boolean needsThreats() {
+        return false;
+    }
+}
@@ -0,0 +1,59 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.gomoku;
+
+/**
+ * Benchmark of the rollout policies: playouts per second from an empty board, then a match between an MCTSPlayer
+ * with threat-aware playouts and one with uniform playouts, each given the same time per move (colours alternate).
+ * Usage: RolloutPolicyBenchmark [games [millisPerMove [boardSize]]]
+ */
+public class RolloutPolicyBenchmark {
+
+    public static void main(String[] args) {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        long millis = args.length > 1 ? Long.parseLong(args[1]) : 200;
+        int boardSize = args.length > 2 ? Integer.parseInt(args[2]) : 15;
+        GomokuState empty = new GomokuState(boardSize);
+        RolloutPolicy[] policies = {RolloutPolicy.UNIFORM, RolloutPolicy.THREATS};
+
+        System.out.println("=== Playouts per second from an empty " + boardSize + "x" + boardSize + " board ===");
+        for (RolloutPolicy policy : policies) {
+            PlayoutEngine engine = new PlayoutEngine(policy, null);
+            playoutsPerSecond(engine, empty, 1); // warm-up
+            System.out.printf("%-8s %,12.0f%n", policy, playoutsPerSecond(engine, empty, 2));
+        }
+
+        System.out.println("=== threats vs uniform: " + games + " games at " + millis + "ms per move ===");
+        int wins = 0, losses = 0, draws = 0;
+        for (int game = 0; game < games; game++) {
+            MCTSConfig config = MCTSConfig.timeBudget(millis).withTreeReuse(true);
+            Player threats = new MCTSPlayer(config.withRolloutPolicy(RolloutPolicy.THREATS));
+            Player uniform = new MCTSPlayer(config);
+            boolean threatsFirst = game % 2 == 0;
+            int winner = play(new GomokuState(boardSize), threatsFirst ? threats : uniform, threatsFirst ? uniform : threats);
+            int threatsColour = threatsFirst ? GomokuState.PLAYER_ONE : GomokuState.PLAYER_TWO;
+            if (winner == GomokuState.EMPTY) draws++;
+            else if (winner == threatsColour) wins++;
+            else losses++;
+            System.out.printf("game %2d: threats %s, %s%n", game + 1, threatsFirst ? "first" : "second",
+                    winner == GomokuState.EMPTY ? "draw" : winner == threatsColour ? "won" : "lost");
+        }
+        System.out.printf("threats won %d, lost %d, drew %d (score %.1f%%)%n", wins, losses, draws, 100.0 * (wins + 0.5 * draws) / games);
+    }
+
+    private static int play(GomokuState state, Player first, Player second) {
+        while (!state.isTerminal())
+            state.makeMove((state.getCurrentPlayer() == GomokuState.PLAYER_ONE ? first : second).getMove(state));
+        return state.checkWin();
+    }
+
+    private static double playoutsPerSecond(PlayoutEngine engine, GomokuState state, double seconds) {
+        long start = System.nanoTime();
+        long end = start + (long) (seconds * 1e9);
+        long count = 0;
+        long now;
+        do {
+            engine.play(state);
+            count++;
+        } while ((now = System.nanoTime()) < end);
+        return count / ((now - start) / 1e9);
+    }
+}
@@ -0,0 +1,61 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.gomoku;
+
+import com.phasmidsoftware.dsaipg.projects.mcts.core.EngineConfig;
+import com.phasmidsoftware.dsaipg.projects.mcts.core.ParallelMode;
+
+/**
+ * Benchmark of Gomoku on the SearchEngine's own tree of SearchNodes (see EnginePlayer) against the tree of MCTSNodes
+ * which MonteCarloTreeSearch gives the same engine, with the same settings (uniform playouts, candidate moves within two of a stone, no tree reuse): first the iterations per
+ * second, sequentially and tree-parallel, and then a match at the same number of iterations per move
+ * (see GomokuTournament), with the time taken by each phase of the generic engine.
+ * Usage: SearchEngineBenchmark [iterations [games [threads]]]
+ */
+public class SearchEngineBenchmark {
+
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int games = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Math.max(2, Runtime.getRuntime().availableProcessors());
+        GomokuState state = ParallelSearchBenchmark.openingPosition();
+        int distance = GomokuState.SEARCH_CANDIDATE_DISTANCE;
+
+        System.out.println("=== Iterations per second (" + iterations + " iterations per thread) ===");
+        for (ParallelMode mode : new ParallelMode[]{ParallelMode.SEQUENTIAL, ParallelMode.TREE}) {
+            int n = mode == ParallelMode.SEQUENTIAL ? 1 : threads;
+            double mcts = ParallelSearchBenchmark.iterationsPerSecond(MCTSConfig.iterations(iterations).withCandidateDistance(distance)
+                    .withParallelism(mode, n), state, 5);
+            double engine = iterationsPerSecond(EngineConfig.iterations(iterations).withParallelism(mode, n), state, 5);
+            System.out.printf("%-10s threads: %3d | MonteCarloTreeSearch: %,10.0f | SearchEngine: %,10.0f | ratio: %5.2f%n",
+                    mode, n, mcts, engine, engine / mcts);
+        }
+
+        System.out.println("=== SearchEngine vs MonteCarloTreeSearch: " + games + " games at " + iterations + " iterations per move ===");
+        EngineConfig engineConfig = EngineConfig.iterations(iterations).withPhaseTimers(true);
+        EnginePlayer[] last = new EnginePlayer[1];
+        GomokuTournament match = new GomokuTournament("engine", seed -> last[0] = new EnginePlayer(engineConfig.withSeed(seed)),
+                "mcts", seed -> new MCTSPlayer(MCTSConfig.iterations(iterations).withCandidateDistance(distance).withSeed(seed)), 15, 2, 1);
+        System.out.println(match.run(games, 1));
+        System.out.println("Phases of the last game's searches:");
+        System.out.print(last[0].getTimers());
+    }
+
+    /**
+     * Method to measure the throughput of the generic engine (after one warm-up search).
+     *
+     * @param config the configuration.
+     * @param state  the root state.
+     * @param runs   the number of timed searches.
+     * @return the total number of iterations (over all threads) per second.
+     */
+    static double iterationsPerSecond(EngineConfig config, GomokuState state, int runs) {
+        EnginePlayer player = new EnginePlayer(config);
+        player.getMove(state.clone());
+        long start = System.nanoTime();
+        long iterations = 0;
+        for (int i = 0; i < runs; i++) {
+            player.getMove(state.clone());
+            iterations += player.getIterations();
+        }
+        return iterations / ((System.nanoTime() - start) / 1e9);
+    }
+}
@@ -0,0 +1,188 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.gomoku;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Headless self-play for generating training data: games of MCTSPlayer against itself, played on several threads
+ * at once and appended to a game record file (see GameRecordWriter) as each one ends.
+ * Each game begins with a few random stones near the centre (as in GomokuTournament), so that the games differ,
+ * and its players are seeded from the seed of the game, so that it can be played again from that seed.
+ * Usage: SelfPlay [file [games [threads [iterations [boardSize]]]]]
+ */
+public class SelfPlay {
+    // The radius of the central square in which the opening stones are placed.
+    private static final int OPENING_RADIUS = 2;
+
+    private final MCTSConfig config;
+    private final int boardSize;
+    private final int openingMoves;
+
+    /**
+     * @param config       the configuration of both players (each game is played on one thread, so it should
+     *                     normally be sequential).
+     * @param boardSize    the size of the board.
+     * @param openingMoves the number of random stones placed (alternately black and white) before the players take over.
+     */
+    public SelfPlay(MCTSConfig config, int boardSize, int openingMoves) {
+        if (openingMoves < 0) throw new IllegalArgumentException("openingMoves must not be negative: " + openingMoves);
+        this.config = config;
+        this.boardSize = boardSize;
+        this.openingMoves = openingMoves;
+    }
+
+    /**
+     * Method to play one game.
+     *
+     * @param seed the seed of the game.
+     * @return the record of the game (with no visits for the opening stones).
+     */
+    public GameRecord play(long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        GomokuState state = new GomokuState(boardSize);
+        List<Integer> moves = new ArrayList<>();
+        List<int[]> visits = new ArrayList<>();
+        for (int cell : openingCells(random)) {
+            if (state.isTerminal()) break;
+            state.makeMove(cell);
+            moves.add(cell);
+            visits.add(null);
+        }
+        // A seed of zero would mean no seed at all (see MCTSConfig.withSeed).
+        MCTSPlayer black = new MCTSPlayer(config.withSeed(random.nextLong() | 1));
+        MCTSPlayer white = new MCTSPlayer(config.withSeed(random.nextLong() | 1));
+        while (!state.isTerminal()) {
+            MCTSPlayer player = state.getCurrentPlayer() == GomokuState.PLAYER_ONE ? black : white;
+            GomokuMove move = player.getMove(state);
+            int cell = move.getRow() * boardSize + move.getCol();
+            state.makeMove(cell);
+            moves.add(cell);
+            visits.add(player.getRootVisits());
+        }
+        return new GameRecord(boardSize, state.checkWin(), moves.stream().mapToInt(Integer::intValue).toArray(), visits.toArray(new int[0][]));
+    }
+
+    /**
+     * Method to play games on several threads, appending each to the writer as it ends (in no particular order).
+     *
+     * @param games   the number of games.
+     * @param threads the number of threads.
+     * @param seed    the seed from which the seed of each game is derived.
+     * @param writer  the writer.
+     * @return the number of games written.
+     * @throws IOException if a game cannot be written (the other threads then stop after their current games).
+     */
+    public int generate(int games, int threads, long seed, GameRecordWriter writer) throws IOException {
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger written = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++)
+                futures.add(executor.submit(() -> {
+                    for (int game; (game = next.getAndIncrement()) < games; ) {
+                        writer.write(play(gameSeed(seed, game)));
+                        written.incrementAndGet();
+                    }
+                    return null;
+                }));
+            for (Future<Void> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    next.set(games);
+                    if (e.getCause() instanceof IOException cause) throw cause;
+                    throw new RuntimeException("self-play failed", e.getCause());
+                } catch (InterruptedException e) {
+                    next.set(games);
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+        return written.get();
+    }
+
+    /**
+     * @return the seed of the given game, which depends only on the seed of the run and the game.
+     */
+    static long gameSeed(long seed, int game) {
+        return new SplittableRandom(seed ^ (game * 0x9E3779B97F4A7C15L)).nextLong();
+    }
+
+    /**
+     * @return openingMoves distinct cells of the central square, chosen at random.
+     */
+    private List<Integer> openingCells(SplittableRandom random) {
+        int centre = boardSize / 2;
+        List<Integer> cells = new ArrayList<>();
+        for (int row = centre - OPENING_RADIUS; row <= centre + OPENING_RADIUS; row++)
+            for (int col = centre - OPENING_RADIUS; col <= centre + OPENING_RADIUS; col++)
+                if (row >= 0 && row < boardSize && col >= 0 && col < boardSize) cells.add(row * boardSize + col);
+        int n = Math.min(openingMoves, cells.size());
+        for (int i = 0; i < n; i++) Collections.swap(cells, i, i + random.nextInt(cells.size() - i));
+        return cells.subList(0, n);
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path path = Path.of(args.length > 0 ? args[0] : "selfplay.gmr");
+        int games = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        int iterations = args.length > 3 ? Integer.parseInt(args[3]) : 500;
+        int boardSize = args.length > 4 ? Integer.parseInt(args[4]) : 15;
+        SelfPlay selfPlay = new SelfPlay(MCTSConfig.iterations(iterations).withCandidateDistance(GomokuState.SEARCH_CANDIDATE_DISTANCE)
+                .withTreeReuse(true), boardSize, 2);
+        System.out.println("=== Self-play: " + games + " games on " + boardSize + "x" + boardSize + " at " + iterations
+                + " iterations per move, " + threads + " threads ===");
+        long start = System.nanoTime();
+        long before;
+        long after;
+        try (GameRecordWriter writer = new GameRecordWriter(path)) {
+            before = writer.size();
+            int written = selfPlay.generate(games, threads, System.nanoTime(), writer);
+            after = writer.size();
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%d games appended to %s in %.1f s (%.2f games/s, %,.0f bytes/game)%n",
+                    written, path, seconds, written / seconds, (after - before) / (double) Math.max(1, written));
+        }
+
+        // Scan the whole file: first the moves alone, then decoding every record.
+        try (GameRecordReader reader = new GameRecordReader(path)) {
+            start = System.nanoTime();
+            long moves = 0;
+            int[] wins = new int[3];
+            while (reader.next()) {
+                for (int ply = 0; ply < reader.getMoveCount(); ply++) moves += reader.getCell(ply) >= 0 ? 1 : 0;
+                wins[reader.getWinner()]++;
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("Scanned %,d games (%,d moves; black %d, white %d, drawn %d) in %.3f s: %,.0f MB/s%n",
+                    reader.getRecords(), moves, wins[GomokuState.PLAYER_ONE], wins[GomokuState.PLAYER_TWO], wins[GomokuState.EMPTY],
+                    seconds, after / 1e6 / seconds);
+        }
+        try (GameRecordReader reader = new GameRecordReader(path)) {
+            start = System.nanoTime();
+            long visits = 0;
+            while (reader.next()) {
+                GameRecord record = reader.read();
+                for (int ply = 0; ply < record.getMoveCount(); ply++) visits += record.getTotalVisits(ply);
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("Decoded %,d games (%,d visits) in %.3f s: %,.0f MB/s%n", reader.getRecords(), visits, seconds, after / 1e6 / seconds);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.gomoku;
+
+/**
+ * Benchmark of the solver (see MCTSConfig.withSolver): first, the iterations and time spent on a few endgame
+ * positions on a 9x9 board, whose outcome is already decided, with and without the solver (every empty cell being
+ * expanded, since only then can the solver prove that every move loses); then a match between an MCTSPlayer with the
+ * solver and one without, each given a twenty-fifth of the iterations per move (see GomokuTournament).
+ * Usage: SolverBenchmark [iterations [games [boardSize [threads]]]]
+ */
+public class SolverBenchmark {
+    // The endgames are played on a small board, since a proof that every move loses must expand every empty cell.
+    private static final int ENDGAME_SIZE = 9;
+
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 50000;
+        int games = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int boardSize = args.length > 2 ? Integer.parseInt(args[2]) : 15;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        int size = ENDGAME_SIZE;
+        int c = size / 2;
+        System.out.println("=== MCTS with and without the solver: endgames on " + size + "x" + size + " at " + iterations + " iterations ===");
+        // Black to move, with four in a row: (c, c + 2) wins.
+        endgame("win in 1", position(size, new int[][]{{c, c - 2}, {c, c - 1}, {c, c}, {c, c + 1}},
+                new int[][]{{c - 3, c - 3}, {c + 3, c + 3}, {c - 3, c + 3}, {c + 3, c - 3}}), iterations);
+        // White to move, against an open four: every move loses.
+        endgame("lost in 2", position(size, new int[][]{{c, c - 2}, {c, c - 1}, {c, c}, {c, c + 1}},
+                new int[][]{{c - 3, c - 3}, {c + 3, c + 3}, {c - 3, c + 3}}), iterations);
+        // Black to move: extending the open three to an open four wins.
+        endgame("win in 3", position(size, new int[][]{{c, c - 1}, {c, c}, {c, c + 1}},
+                new int[][]{{c - 3, c - 3}, {c + 3, c + 3}, {c - 3, c + 3}}), iterations);
+
+        int perMove = Math.max(1, iterations / 25);
+        System.out.println("=== MCTS with the solver vs MCTS: " + games + " games on " + boardSize + "x" + boardSize
+                + " at " + perMove + " iterations per move ===");
+        MCTSConfig config = MCTSConfig.iterations(perMove).withCandidateDistance(2).withTreeReuse(true);
+        GomokuTournament match = new GomokuTournament("solver", seed -> new MCTSPlayer(config.withSolver(true).withSeed(seed)),
+                "mcts", seed -> new MCTSPlayer(config.withSeed(seed)), boardSize, 2, 1);
+        System.out.println(match.run(games, threads));
+    }
+
+    private static void endgame(String name, GomokuState state, int iterations) {
+        for (boolean solver : new boolean[]{false, true}) {
+            MonteCarloTreeSearch mcts = new MonteCarloTreeSearch(MCTSConfig.iterations(iterations).withCandidateDistance(0).withSolver(solver).withSeed(1));
+            long start = System.nanoTime();
+            GomokuMove move = mcts.findNextMove(state);
+            double millis = (System.nanoTime() - start) / 1e6;
+            System.out.printf("%-9s %-14s move=%-8s iterations=%6d solved=%-5b %8.1f ms%n",
+                    name, solver ? "solver" : "plain", move, mcts.getIterations(), mcts.isSolved(), millis);
+        }
+    }
+
+    /**
+     * @return the position after the given stones, Black's and White's alternately (Black may have one more).
+     */
+    private static GomokuState position(int boardSize, int[][] black, int[][] white) {
+        GomokuState state = new GomokuState(boardSize);
+        for (int i = 0; i < black.length; i++) {
+            state.makeMove(new GomokuMove(black[i][0], black[i][1]));
+            if (i < white.length) state.makeMove(new GomokuMove(white[i][0], white[i][1]));
+        }
+        return state;
+    }
+}
@@ -0,0 +1,42 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.gomoku;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * A heavy rollout policy based on the line patterns which each empty cell would make (see PlayoutEngine).
+ * In order of priority, it: completes a five; blocks the opponent's five; makes an open four; blocks the
+ * opponent's open four; and (with probability THREE_PROBABILITY) makes or blocks an open three or a four.
+ * Otherwise it plays uniformly at random.
+ */
+public class ThreatRolloutPolicy implements RolloutPolicy {
+
+    /**
+     * The probability of preferring a cell which makes (or blocks) an open three or a four, when there is one.
+     */
+    public static final double THREE_PROBABILITY = 0.5;
+
+    @Override
+    public int selectMove(PlayoutEngine board, int player, RandomGenerator random) {
+        int opponent = GomokuState.getOpponent(player);
+        for (int level = PlayoutEngine.FIVE; level >= PlayoutEngine.OPEN_FOUR; level--) {
+            if (board.getThreatCount(player, level) > 0) return board.getThreat(player, level, random);
+            if (board.getThreatCount(opponent, level) > 0) return board.getThreat(opponent, level, random);
+        }
+        int own = board.getThreatCount(player, PlayoutEngine.THREE);
+        int theirs = board.getThreatCount(opponent, PlayoutEngine.THREE);
+        if (own + theirs > 0 && random.nextDouble() < THREE_PROBABILITY)
+            return random.nextInt(own + theirs) < own ? board.getThreat(player, PlayoutEngine.THREE, random)
+                    : board.getThreat(opponent, PlayoutEngine.THREE, random);
+        return board.getEmpty(random.nextInt(board.getEmptyCount()));
+    }
+
+    @Override
+    public boolean needsThreats() {
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "threats";
+    }
+}
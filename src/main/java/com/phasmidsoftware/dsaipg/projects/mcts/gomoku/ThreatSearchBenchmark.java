@@ -0,0 +1,39 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.gomoku;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Benchmark of the ThreatSpaceSearch shortcut: a match between an MCTSPlayer which looks for forced wins and blocks
+ * before each search and one which does not, each given the same number of iterations per move
+ * (see GomokuTournament), followed by the number of moves of each kind which were played without a search.
+ * Usage: ThreatSearchBenchmark [games [iterations [nodeLimit [boardSize [threads]]]]]
+ */
+public class ThreatSearchBenchmark {
+
+    public static void main(String[] args) {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int nodeLimit = args.length > 2 ? Integer.parseInt(args[2]) : ThreatSpaceSearch.DEFAULT_NODE_LIMIT;
+        int boardSize = args.length > 3 ? Integer.parseInt(args[3]) : 15;
+        int threads = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+        System.out.println("=== MCTS with threat-space search (" + nodeLimit + " nodes) vs MCTS: " + games + " games on "
+                + boardSize + "x" + boardSize + " at " + iterations + " iterations per move ===");
+        MCTSConfig config = MCTSConfig.iterations(iterations).withCandidateDistance(2).withTreeReuse(true);
+        Queue<MCTSPlayer> players = new ConcurrentLinkedQueue<>();
+        GomokuTournament match = new GomokuTournament("tss", seed -> {
+            MCTSPlayer player = new MCTSPlayer(config.withThreatSearch(nodeLimit).withSeed(seed));
+            players.add(player);
+            return player;
+        }, "mcts", seed -> new MCTSPlayer(config.withSeed(seed)), boardSize, 2, 1);
+        System.out.println(match.run(games, threads));
+        long[] counts = new long[ThreatSpaceSearch.Shortcut.values().length];
+        for (MCTSPlayer player : players)
+            for (ThreatSpaceSearch.Shortcut kind : ThreatSpaceSearch.Shortcut.values())
+                counts[kind.ordinal()] += player.getShortcutCount(kind);
+        StringBuilder line = new StringBuilder("Moves made without a search:");
+        for (ThreatSpaceSearch.Shortcut kind : ThreatSpaceSearch.Shortcut.values())
+            line.append(' ').append(kind).append('=').append(counts[kind.ordinal()]);
+        System.out.println(line);
+    }
+}
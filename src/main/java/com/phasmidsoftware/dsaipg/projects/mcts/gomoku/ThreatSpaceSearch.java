@@ -0,0 +1,496 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.gomoku;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Threat-space search for Gomoku: a solver for the forced wins which random playouts are apt to miss.
+ * <p>
+ * A VCF (victory by continuous fours) is a sequence of fours, each of which the opponent must block at the one cell
+ * which would complete it, ending in a five or in a double (or open) four. A VCT (victory by continuous threats)
+ * may also use threes: a move which threatens to make an open four next. The opponent may answer a three at any
+ * cell which stops every such open four, or with a four of its own; a three is only played if the opponent has no
+ * VCF at that point.
+ * <p>
+ * A VCF found is a proof. A VCT found is a proof except against an opponent who ignores a three in order to set up
+ * a VCF of its own one move later, which is not considered.
+ * <p>
+ * The board is held as the windows of WIN_LENGTH cells in a line, with the number of stones of each player in each
+ * window kept up to date as stones are placed and removed: a cell is a five (for a player) if it is the empty cell
+ * of a window holding four of that player's stones and none of the opponent's, and a four if it is one of the two
+ * empty cells of a window holding three. Each search is limited to a number of nodes (positions examined); a search
+ * which reaches the limit finds nothing.
+ * <p>
+ * A ThreatSpaceSearch is reusable but not thread-safe.
+ */
+public final class ThreatSpaceSearch {
+    /**
+     * The kinds of move which findShortcut can prove (or find to be forced).
+     */
+    public enum Shortcut {
+        /**
+         * A move which makes five.
+         */
+        FIVE,
+        /**
+         * The block of a cell at which the opponent would make five.
+         */
+        BLOCK_FIVE,
+        /**
+         * The first move of a VCF.
+         */
+        VCF,
+        /**
+         * The first move of a VCT.
+         */
+        VCT,
+        /**
+         * The only move found which stops the opponent's VCF.
+         */
+        BLOCK_VCF
+    }
+
+    /**
+     * The greatest number of moves by the attacker in a VCT (there is no limit for a VCF but the nodes).
+     */
+    public static final int MAX_VCT_DEPTH = 8;
+
+    /**
+     * A node limit which keeps each call to findShortcut to some tens of milliseconds on a 15x15 board.
+     */
+    public static final int DEFAULT_NODE_LIMIT = 10_000;
+
+    private static final int[][] DIRECTIONS = {{0, 1}, {1, 0}, {1, 1}, {-1, 1}};
+    private static final int LENGTH = GomokuState.WIN_LENGTH;
+
+    private final int nodeLimit;
+    private int boardSize = -1;
+    private byte[] cells = new byte[0];
+    private int[] empties = new int[0];
+    private int[][] windows = new int[0][];   // The cells of each window.
+    private int[][] windowsOf = new int[0][]; // The windows containing each cell.
+    private byte[][] counts = new byte[3][];  // The stones of each player (1 or 2) in each window.
+    private int[] marks = new int[0];          // For removing duplicates when collecting cells.
+    private int stamp;
+
+    private int nodes;
+    private long totalNodes;
+    private boolean limitReached;
+    private int move;
+    private Shortcut shortcut;
+    private final List<Integer> line = new ArrayList<>(); // The cells of the most recent VCF found.
+
+    /**
+     * @param nodeLimit the number of nodes allowed to each search (at least 1).
+     */
+    public ThreatSpaceSearch(int nodeLimit) {
+        if (nodeLimit < 1) throw new IllegalArgumentException("nodeLimit must be positive: " + nodeLimit);
+        this.nodeLimit = nodeLimit;
+    }
+
+    /**
+     * Method to look for a move which need not be searched, for the player to move: in order, a five, the block of
+     * the opponent's five, the first move of a VCF, the first move of a VCT, and the only defence against the
+     * opponent's VCF. Each of the three searches is given the node limit.
+     * <p>
+     * The defence against a VCF is forced only among the moves which are not fours: a four, then another move,
+     * might also defend, so this is not claimed if any four of ours (with its forced reply) stops the VCF.
+     *
+     * @param state the position (not modified).
+     * @return the move (and getShortcut tells what kind it is), or null if there is none.
+     */
+    public GomokuMove findShortcut(GomokuState state) {
+        shortcut = null;
+        totalNodes = 0;
+        nodes = 0;
+        if (state.isTerminal()) return null;
+        load(state);
+        int me = state.getCurrentPlayer();
+        int opponent = GomokuState.getOpponent(me);
+        int[] buffer = new int[cells.length];
+        if (collect(me, LENGTH - 1, buffer) > 0) return found(Shortcut.FIVE, buffer[0]);
+        if (collect(opponent, LENGTH - 1, buffer) > 0) return found(Shortcut.BLOCK_FIVE, buffer[0]);
+        if (startSearch() && vcf(me, true)) return found(Shortcut.VCF, move);
+        if (startSearch() && vct(me, MAX_VCT_DEPTH, true)) return found(Shortcut.VCT, move);
+        startSearch();
+        line.clear();
+        if (vcf(opponent, false)) {
+            int defence = onlyDefence(me, opponent);
+            if (defence >= 0) return found(Shortcut.BLOCK_VCF, defence);
+        }
+        return null;
+    }
+
+    /**
+     * @param state the position (not modified).
+     * @return the first move of a VCF for the player to move, or null if none is found.
+     */
+    public GomokuMove findVcf(GomokuState state) {
+        totalNodes = 0;
+        nodes = 0;
+        if (state.isTerminal()) return null;
+        load(state);
+        startSearch();
+        return vcf(state.getCurrentPlayer(), true) ? toMove(move) : null;
+    }
+
+    /**
+     * @param state the position (not modified).
+     * @return the first move of a VCT (which may be a VCF) for the player to move, or null if none is found.
+     */
+    public GomokuMove findVct(GomokuState state) {
+        totalNodes = 0;
+        nodes = 0;
+        if (state.isTerminal()) return null;
+        load(state);
+        startSearch();
+        return vct(state.getCurrentPlayer(), MAX_VCT_DEPTH, true) ? toMove(move) : null;
+    }
+
+    /**
+     * @return the kind of move returned by the most recent call to findShortcut (null if it returned null).
+     */
+    public Shortcut getShortcut() {
+        return shortcut;
+    }
+
+    /**
+     * @return the number of nodes examined by the most recent call (over all its searches).
+     */
+    public long getNodes() {
+        return totalNodes + nodes;
+    }
+
+    /**
+     * @return true if the most recent search ended at the node limit.
+     */
+    public boolean isLimitReached() {
+        return limitReached;
+    }
+
+    private GomokuMove found(Shortcut kind, int cell) {
+        shortcut = kind;
+        return toMove(cell);
+    }
+
+    private GomokuMove toMove(int cell) {
+        return new GomokuMove(cell / boardSize, cell % boardSize);
+    }
+
+    /**
+     * Begin a new search, with the full node limit.
+     *
+     * @return true.
+     */
+    private boolean startSearch() {
+        totalNodes += nodes;
+        nodes = 0;
+        limitReached = false;
+        return true;
+    }
+
+    /**
+     * @return false if the node limit has been reached (so that the search should give up).
+     */
+    private boolean visit() {
+        if (++nodes <= nodeLimit) return true;
+        limitReached = true;
+        return false;
+    }
+
+    /**
+     * Search for a VCF by the attacker, who is to move.
+     * If root is true, the first move is saved; the cells of the line are added to line.
+     */
+    private boolean vcf(int attacker, boolean root) {
+        if (!visit()) return false;
+        int defender = GomokuState.getOpponent(attacker);
+        int[] buffer = new int[cells.length];
+        if (collect(attacker, LENGTH - 1, buffer) > 0) return win(root, buffer[0]);
+        int blocks = collect(defender, LENGTH - 1, buffer);
+        if (blocks >= 2) return false;
+        // A four is only any use if it also blocks the defender's five (if any).
+        int n = blocks == 1 ? 1 : collect(attacker, LENGTH - 2, buffer);
+        int[] completions = new int[2 * LENGTH];
+        for (int i = 0; i < n; i++) {
+            int c = buffer[i];
+            place(c, attacker);
+            int k = completions(c, attacker, completions);
+            boolean won = k >= 2;
+            if (k == 1) {
+                place(completions[0], defender);
+                won = vcf(attacker, false);
+                remove(completions[0]);
+            }
+            remove(c);
+            if (won) {
+                for (int j = 0; j < k; j++) line.add(completions[j]);
+                return win(root, c);
+            }
+            if (limitReached) return false;
+        }
+        return false;
+    }
+
+    /**
+     * Search for a VCT by the attacker, who is to move, using at most depth more moves.
+     */
+    private boolean vct(int attacker, int depth, boolean root) {
+        if (!visit()) return false;
+        int defender = GomokuState.getOpponent(attacker);
+        int[] buffer = new int[cells.length];
+        if (collect(attacker, LENGTH - 1, buffer) > 0) return win(root, buffer[0]);
+        int blocks = collect(defender, LENGTH - 1, buffer);
+        if (blocks >= 2 || depth == 0) return false;
+        int n = blocks;
+        if (blocks == 0) {
+            // The fours first, then the cells which might make threes.
+            n = collect(attacker, LENGTH - 2, buffer);
+            n += collect(attacker, LENGTH - 3, buffer, n);
+        }
+        int[] completions = new int[2 * LENGTH];
+        for (int i = 0; i < n; i++) {
+            int c = buffer[i];
+            place(c, attacker);
+            int k = completions(c, attacker, completions);
+            boolean won;
+            if (k >= 2) won = true;
+            else if (k == 1) {
+                place(completions[0], defender);
+                won = vct(attacker, depth - 1, false);
+                remove(completions[0]);
+            } else won = threatens(attacker, depth);
+            remove(c);
+            if (won) return win(root, c);
+            if (limitReached) return false;
+        }
+        return false;
+    }
+
+    /**
+     * Method to determine whether the attacker, having just moved (without making a four), wins against every
+     * defence: the defender is to move, and the attacker threatens to make an open four.
+     */
+    private boolean threatens(int attacker, int depth) {
+        int defender = GomokuState.getOpponent(attacker);
+        int[] threats = new int[cells.length];
+        int n = winningMoves(attacker, threats);
+        if (n == 0) return false;
+        // The defender may ignore the threat if it has a VCF (or if we cannot tell).
+        if (vcf(defender, false) || limitReached) return false;
+        int[] defences = new int[cells.length];
+        int m = 0;
+        int[] scratch = new int[cells.length];
+        // Any defence must occupy an empty cell of a window in which a threat would make a four.
+        stamp++;
+        for (int i = 0; i < n; i++)
+            for (int w : windowsOf[threats[i]])
+                if (counts[attacker][w] == LENGTH - 2 && counts[defender][w] == 0)
+                    for (int cell : windows[w])
+                        if (cells[cell] == GomokuState.EMPTY && marks[cell] != stamp) {
+                            marks[cell] = stamp;
+                            defences[m++] = cell;
+                        }
+        int stopping = 0;
+        for (int i = 0; i < m; i++) {
+            place(defences[i], defender);
+            if (winningMoves(attacker, scratch) == 0) defences[stopping++] = defences[i];
+            remove(defences[i]);
+        }
+        // The defender may also counter with a four.
+        m = stopping + collect(defender, LENGTH - 2, defences, stopping);
+        for (int i = 0; i < m; i++) {
+            place(defences[i], defender);
+            boolean won = vct(attacker, depth - 1, false);
+            remove(defences[i]);
+            if (!won) return false;
+        }
+        return true;
+    }
+
+    /**
+     * With the opponent having a VCF (whose cells are in line), find the only move of ours, other than a four,
+     * which stops it. All the candidates share one node limit, and a move left undecided counts as a defence.
+     *
+     * @return the defence, or -1 if there is none, more than one, or a four of ours which defends.
+     */
+    private int onlyDefence(int me, int opponent) {
+        int[] buffer = new int[cells.length];
+        // Only a stone in a window through a cell of the VCF can change it.
+        int n = 0;
+        stamp++;
+        for (int cell : line)
+            for (int w : windowsOf[cell])
+                for (int c : windows[w])
+                    if (cells[c] == GomokuState.EMPTY && marks[c] != stamp) {
+                        marks[c] = stamp;
+                        buffer[n++] = c;
+                    }
+        int defence = -1;
+        startSearch();
+        for (int i = 0; i < n; i++) {
+            place(buffer[i], me);
+            boolean stops = !vcf(opponent, false);
+            remove(buffer[i]);
+            if (stops) {
+                if (defence >= 0) return -1;
+                defence = buffer[i];
+            }
+        }
+        int[] fours = new int[cells.length];
+        int[] completions = new int[2 * LENGTH];
+        int m = collect(me, LENGTH - 2, fours);
+        for (int i = 0; i < m; i++) {
+            place(fours[i], me);
+            int k = completions(fours[i], me, completions);
+            boolean stops = k != 1;
+            if (k == 1) {
+                place(completions[0], opponent);
+                stops = !vcf(opponent, false);
+                remove(completions[0]);
+            }
+            remove(fours[i]);
+            if (stops && fours[i] != defence) return -1;
+        }
+        return defence;
+    }
+
+    private boolean win(boolean root, int cell) {
+        line.add(cell);
+        if (root) move = cell;
+        return true;
+    }
+
+    /**
+     * Collect the distinct empty cells of the windows which hold the given number of the player's stones
+     * and none of the opponent's.
+     *
+     * @return the number of cells collected into out.
+     */
+    private int collect(int player, int stones, int[] out) {
+        return collect(player, stones, out, 0);
+    }
+
+    /**
+     * As collect(player, stones, out), but appending from out[start], and leaving out those already there.
+     *
+     * @return the number of cells added.
+     */
+    private int collect(int player, int stones, int[] out, int start) {
+        int opponent = GomokuState.getOpponent(player);
+        stamp++;
+        for (int i = 0; i < start; i++) marks[out[i]] = stamp;
+        int n = start;
+        byte[] mine = counts[player];
+        byte[] theirs = counts[opponent];
+        for (int w = 0; w < windows.length; w++)
+            if (mine[w] == stones && theirs[w] == 0)
+                for (int cell : windows[w])
+                    if (cells[cell] == GomokuState.EMPTY && marks[cell] != stamp) {
+                        marks[cell] = stamp;
+                        out[n++] = cell;
+                    }
+        return n - start;
+    }
+
+    /**
+     * @return the number of distinct cells at which the player, having just played at cell, would make five
+     * (each in a window through cell), which are put in out.
+     */
+    private int completions(int cell, int player, int[] out) {
+        int opponent = GomokuState.getOpponent(player);
+        int n = 0;
+        for (int w : windowsOf[cell])
+            if (counts[player][w] == LENGTH - 1 && counts[opponent][w] == 0)
+                for (int c : windows[w])
+                    if (cells[c] == GomokuState.EMPTY && !contains(out, n, c)) out[n++] = c;
+        return n;
+    }
+
+    /**
+     * Collect the cells at which the player would make an open four, or two fours at once: a threat which cannot
+     * be met by one block.
+     *
+     * @return the number of cells put in out.
+     */
+    private int winningMoves(int player, int[] out) {
+        int opponent = GomokuState.getOpponent(player);
+        int[] candidates = new int[cells.length];
+        int n = collect(player, LENGTH - 2, candidates);
+        int m = 0;
+        for (int i = 0; i < n; i++) {
+            int e = candidates[i];
+            int first = -1;
+            boolean winning = false;
+            for (int w : windowsOf[e]) {
+                if (counts[player][w] != LENGTH - 2 || counts[opponent][w] != 0) continue;
+                for (int c : windows[w])
+                    if (c != e && cells[c] == GomokuState.EMPTY) {
+                        if (first < 0) first = c;
+                        else if (c != first) winning = true;
+                    }
+                if (winning) break;
+            }
+            if (winning) out[m++] = e;
+        }
+        return m;
+    }
+
+    private static boolean contains(int[] xs, int n, int x) {
+        for (int i = 0; i < n; i++) if (xs[i] == x) return true;
+        return false;
+    }
+
+    private void place(int cell, int player) {
+        cells[cell] = (byte) player;
+        for (int w : windowsOf[cell]) counts[player][w]++;
+    }
+
+    private void remove(int cell) {
+        int player = cells[cell];
+        cells[cell] = GomokuState.EMPTY;
+        for (int w : windowsOf[cell]) counts[player][w]--;
+    }
+
+    /**
+     * Copy the position onto the board, building the windows if the board size has changed.
+     */
+    private void load(GomokuState state) {
+        int size = state.getBoardSize();
+        if (size != boardSize) build(size);
+        state.copyTo(cells, empties);
+        for (int player = GomokuState.PLAYER_ONE; player <= GomokuState.PLAYER_TWO; player++)
+            for (int w = 0; w < windows.length; w++) {
+                int count = 0;
+                for (int cell : windows[w]) if (cells[cell] == player) count++;
+                counts[player][w] = (byte) count;
+            }
+        line.clear();
+    }
+
+    private void build(int size) {
+        boardSize = size;
+        cells = new byte[size * size];
+        empties = new int[size * size];
+        marks = new int[size * size];
+        List<int[]> all = new ArrayList<>();
+        for (int[] d : DIRECTIONS)
+            for (int row = 0; row < size; row++)
+                for (int col = 0; col < size; col++) {
+                    int endRow = row + (LENGTH - 1) * d[0];
+                    int endCol = col + (LENGTH - 1) * d[1];
+                    if (endRow < 0 || endRow >= size || endCol < 0 || endCol >= size) continue;
+                    int[] window = new int[LENGTH];
+                    for (int i = 0; i < LENGTH; i++) window[i] = (row + i * d[0]) * size + col + i * d[1];
+                    all.add(window);
+                }
+        windows = all.toArray(new int[0][]);
+        int[] sizes = new int[size * size];
+        for (int[] window : windows) for (int cell : window) sizes[cell]++;
+        windowsOf = new int[size * size][];
+        for (int cell = 0; cell < windowsOf.length; cell++) windowsOf[cell] = new int[sizes[cell]];
+        int[] filled = new int[size * size];
+        for (int w = 0; w < windows.length; w++) for (int cell : windows[w]) windowsOf[cell][filled[cell]++] = w;
+        counts = new byte[3][windows.length];
+    }
+}
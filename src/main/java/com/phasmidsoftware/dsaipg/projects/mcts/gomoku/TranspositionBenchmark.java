@@ -0,0 +1,41 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.gomoku;
+
+/**
+ * Benchmark of the transposition table: nodes created per search (a proxy for memory) and table hit rate,
+ * then a match between a player with the table and one without, at the same number of iterations.
+ * Usage: TranspositionBenchmark [iterations [games [boardSize]]]
+ */
+public class TranspositionBenchmark {
+
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int games = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int boardSize = args.length > 2 ? Integer.parseInt(args[2]) : 9;
+        MCTSConfig plain = MCTSConfig.iterations(iterations);
+        MCTSConfig shared = plain.withTranspositionTable(1 << 20);
+
+        System.out.println("=== Transposition table: nodes per search (" + iterations + " iterations) ===");
+        GomokuState state = ParallelSearchBenchmark.openingPosition();
+        for (MCTSConfig config : new MCTSConfig[]{plain, shared}) {
+            MonteCarloTreeSearch mcts = new MonteCarloTreeSearch(config);
+            mcts.findNextMove(state.clone());
+            System.out.printf("table: %8d | nodes: %,10d | hit rate: %5.1f%%%n",
+                    config.getTranspositionTableSize(), mcts.getNodesCreated(), 100 * mcts.getTranspositionHitRate());
+        }
+
+        System.out.println("=== Transposition table vs none: " + games + " games on " + boardSize + "x" + boardSize + " ===");
+        int wins = 0, losses = 0, draws = 0;
+        for (int i = 0; i < games; i++) {
+            // alternate colours so that the first-move advantage cancels out
+            boolean tableFirst = i % 2 == 0;
+            Player withTable = new MCTSPlayer(shared);
+            Player without = new MCTSPlayer(plain);
+            int winner = tableFirst ? new GomokuGame(withTable, without, boardSize).play() : new GomokuGame(without, withTable, boardSize).play();
+            int tablePlayer = tableFirst ? GomokuState.PLAYER_ONE : GomokuState.PLAYER_TWO;
+            if (winner == GomokuState.EMPTY) draws++;
+            else if (winner == tablePlayer) wins++;
+            else losses++;
+        }
+        System.out.printf("with table: %d wins, %d losses, %d draws (score %.1f%%)%n", wins, losses, draws, 100.0 * (wins + 0.5 * draws) / games);
+    }
+}
@@ -0,0 +1,128 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.gomoku;
+
+import java.util.Arrays;
+
+/**
+ * A bounded table of MCTSNodes keyed by Zobrist hash, so that a position reached by different move orders
+ * is represented by a single node (and so shares its statistics).
+ * <p>
+ * The table is set-associative: each key maps to a bucket of WAYS slots. When a bucket is full, the node with
+ * the fewest visits is evicted (it remains in the tree, but can no longer be shared).
+ * All methods are synchronized so that the table may be used by a tree-parallel search.
+ */
+public class TranspositionTable {
+    private static final int WAYS = 4;
+
+    private final long[] keys;
+    private final MCTSNode[] nodes;
+    private final int bucketMask;
+
+    private long probes;
+    private long hits;
+    private long stores;
+    private long replacements;
+
+    /**
+     * @param capacity the maximum number of entries (rounded up to a power of two, and at least WAYS).
+     */
+    public TranspositionTable(int capacity) {
+        int required = Math.max(1, (capacity + WAYS - 1) / WAYS);
+        int buckets = required == 1 ? 1 : Integer.highestOneBit(required - 1) << 1;
+        this.bucketMask = buckets - 1;
+        this.keys = new long[buckets * WAYS];
+        this.nodes = new MCTSNode[buckets * WAYS];
+    }
+
+    /**
+     * Method to find the node for the given hash.
+     *
+     * @param key a Zobrist hash.
+     * @return the node, or null if it is not (or no longer) in the table.
+     */
+    public synchronized MCTSNode get(long key) {
+        probes++;
+        int base = bucket(key);
+        for (int i = base; i < base + WAYS; i++)
+            if (nodes[i] != null && keys[i] == key) {
+                hits++;
+                return nodes[i];
+            }
+        return null;
+    }
+
+    /**
+     * Method to store a node, unless another node already has the same key.
+     *
+     * @param key  the Zobrist hash of the node's state.
+     * @param node the node.
+     * @return the node now associated with key (the existing node, if there was one).
+     */
+    public synchronized MCTSNode putIfAbsent(long key, MCTSNode node) {
+        int base = bucket(key);
+        int victim = base;
+        for (int i = base; i < base + WAYS; i++) {
+            if (nodes[i] == null) {
+                victim = i;
+                break;
+            }
+            if (keys[i] == key) return nodes[i];
+            if (nodes[i].getVisits() < nodes[victim].getVisits()) victim = i;
+        }
+        if (nodes[victim] != null) replacements++;
+        stores++;
+        keys[victim] = key;
+        nodes[victim] = node;
+        return node;
+    }
+
+    public synchronized void clear() {
+        Arrays.fill(nodes, null);
+        probes = hits = stores = replacements = 0;
+    }
+
+    /**
+     * @return the maximum number of entries.
+     */
+    public int capacity() {
+        return nodes.length;
+    }
+
+    public synchronized int size() {
+        int result = 0;
+        for (MCTSNode node : nodes) if (node != null) result++;
+        return result;
+    }
+
+    public synchronized long getProbes() {
+        return probes;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getStores() {
+        return stores;
+    }
+
+    public synchronized long getReplacements() {
+        return replacements;
+    }
+
+    /**
+     * @return the proportion of probes which found a node (zero if there have been no probes).
+     */
+    public synchronized double getHitRate() {
+        return probes == 0 ? 0.0 : (double) hits / probes;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("TranspositionTable{capacity=%d, probes=%d, hits=%d (%.1f%%), stores=%d, replacements=%d}",
+                capacity(), probes, hits, 100 * getHitRate(), stores, replacements);
+    }
+
+    private int bucket(long key) {
+        return ((int) (key ^ (key >>> 32)) & bucketMask) * WAYS;
+    }
+}
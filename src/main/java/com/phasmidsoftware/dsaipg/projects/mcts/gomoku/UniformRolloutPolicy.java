@@ -0,0 +1,19 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.gomoku;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * The light rollout policy: every empty cell is equally likely.
+ */
+public class UniformRolloutPolicy implements RolloutPolicy {
+
+    @Override
+    public int selectMove(PlayoutEngine board, int player, RandomGenerator random) {
+        return board.getEmpty(random.nextInt(board.getEmptyCount()));
+    }
+
+    @Override
+    public String toString() {
+        return "uniform";
+    }
+}
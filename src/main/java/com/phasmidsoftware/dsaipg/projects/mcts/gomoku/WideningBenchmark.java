@@ -0,0 +1,60 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.gomoku;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Benchmark of candidate-move generation and progressive widening on a large board: for each configuration,
+ * the nodes created by one search (a proxy for memory), the time taken, and the depth of the principal variation.
+ * Usage: WideningBenchmark [iterations [boardSize]]
+ */
+public class WideningBenchmark {
+
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int boardSize = args.length > 1 ? Integer.parseInt(args[1]) : 19;
+        GomokuState state = new GomokuState(boardSize);
+        int centre = boardSize / 2;
+        int[][] moves = {{0, 0}, {0, 1}, {1, 1}, {-1, -1}, {1, -1}, {-1, 1}};
+        for (int[] move : moves) state.makeMove(new GomokuMove(centre + move[0], centre + move[1]));
+
+        MCTSConfig all = MCTSConfig.iterations(iterations);
+        MCTSConfig[] configs = {all, all.withCandidateDistance(2), all.withCandidateDistance(2).withProgressiveWidening(2, 0.5)};
+        String[] names = {"all empty cells", "candidates (distance 2)", "candidates + widening"};
+        System.out.println("=== " + boardSize + "x" + boardSize + ", " + iterations + " iterations ===");
+        for (int i = 0; i < configs.length; i++) {
+            MonteCarloTreeSearch mcts = new MonteCarloTreeSearch(configs[i]);
+            mcts.findNextMove(state.clone()); // warm-up
+            long start = System.nanoTime();
+            MCTSNode root = mcts.search(state.clone(), iterations);
+            double millis = (System.nanoTime() - start) / 1e6;
+            System.out.printf("%-24s | nodes: %,10d | time: %8.1f ms | root children: %4d | principal variation depth: %3d%n",
+                    names[i], size(root), millis, root.getChildren().size(), depth(root));
+        }
+    }
+
+    /**
+     * @return the number of nodes in the tree under root.
+     */
+    private static long size(MCTSNode root) {
+        long count = 0;
+        Deque<MCTSNode> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            MCTSNode node = stack.pop();
+            count++;
+            for (MCTSNode child : node.getChildren()) stack.push(child);
+        }
+        return count;
+    }
+
+    /**
+     * @return the number of moves along the path of most-visited children.
+     */
+    private static int depth(MCTSNode node) {
+        int depth = 0;
+        for (MCTSNode child = MCTSNode.bestChild(node); child != null && child.getVisits() > 1; child = MCTSNode.bestChild(child))
+            depth++;
+        return depth;
+    }
+}
@@ -0,0 +1,55 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.gomoku;
+
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Zobrist keys for a Gomoku board of a given size.
+ * The hash of a position is the exclusive-or of the keys of its stones, together with the side-to-move key
+ * when PLAYER_TWO is to move. The keys are generated from a fixed seed, so hashes are reproducible between runs.
+ */
+public final class Zobrist {
+    private static final Map<Integer, Zobrist> cache = new ConcurrentHashMap<>();
+    private static final long SEED = 0x5DEECE66DL;
+
+    private final long[] playerOneKeys;
+    private final long[] playerTwoKeys;
+    private final long sideToMoveKey;
+
+    /**
+     * @param boardSize the size of the board.
+     * @return the (shared) Zobrist keys for that board size.
+     */
+    public static Zobrist forBoardSize(int boardSize) {
+        return cache.computeIfAbsent(boardSize, Zobrist::new);
+    }
+
+    /**
+     * @param player PLAYER_ONE or PLAYER_TWO.
+     * @param index  the cell index (row * boardSize + col).
+     * @return the key for a stone of player at index.
+     */
+    public long stone(int player, int index) {
+        return player == GomokuState.PLAYER_ONE ? playerOneKeys[index] : playerTwoKeys[index];
+    }
+
+    /**
+     * @return the key which is toggled by every move.
+     */
+    public long sideToMove() {
+        return sideToMoveKey;
+    }
+
+    private Zobrist(int boardSize) {
+        SplittableRandom random = new SplittableRandom(SEED + boardSize);
+        int cells = boardSize * boardSize;
+        playerOneKeys = new long[cells];
+        playerTwoKeys = new long[cells];
+        for (int i = 0; i < cells; i++) {
+            playerOneKeys[i] = random.nextLong();
+            playerTwoKeys[i] = random.nextLong();
+        }
+        sideToMoveKey = random.nextLong();
+    }
+}
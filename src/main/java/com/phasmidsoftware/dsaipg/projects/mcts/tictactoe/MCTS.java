@@ -1,170 +1,144 @@
 package com.phasmidsoftware.dsaipg.projects.mcts.tictactoe;
 
+import com.phasmidsoftware.dsaipg.projects.mcts.core.EngineConfig;
+import com.phasmidsoftware.dsaipg.projects.mcts.core.Move;
 import com.phasmidsoftware.dsaipg.projects.mcts.core.Node;
+import com.phasmidsoftware.dsaipg.projects.mcts.core.PhaseTimers;
+import com.phasmidsoftware.dsaipg.projects.mcts.core.Playout;
+import com.phasmidsoftware.dsaipg.projects.mcts.core.SearchEngine;
+import com.phasmidsoftware.dsaipg.projects.mcts.core.SelectionPolicy;
 import com.phasmidsoftware.dsaipg.projects.mcts.core.State;
-import com.phasmidsoftware.dsaipg.projects.mcts.core.Move;
 
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
+/**
+ * Self-play of TicTacToe by Monte Carlo tree search, using the generic SearchEngine with uniformly random playouts.
+ * By default, only one of the moves which lead to equivalent positions (see Position.distinctMoveCodes) is expanded,
+ * just as a TicTacToeNode created by withSymmetries merges them into one child.
+ */
 public class MCTS {
 
     private static final int    NUM_SIMULATIONS = 5000;
     private static final double UCT_CONST       = 1.414;
 
     private final Node<TicTacToe> root;
+    private final SearchEngine<TicTacToe> engine;
+    private long simulations;
 
-    // Helpers to measure each phase
-    private static class PhaseTimer {
-        private long lastStart;
-        private long lastDuration;
-        private long totalDuration;
-
-        void start() { lastStart = System.nanoTime(); }
-        void stop()  { lastDuration = System.nanoTime() - lastStart; }
-        void reset() { lastDuration = 0; }
-        void accumulate() { totalDuration += lastDuration; }
-        double totalMillis() { return totalDuration / 1_000_000.0; }
+    public MCTS(Node<TicTacToe> root) {
+        this(root, EngineConfig.iterations(NUM_SIMULATIONS));
     }
 
-    private final PhaseTimer selectTimer   = new PhaseTimer();
-    private final PhaseTimer expandTimer   = new PhaseTimer();
-    private final PhaseTimer rolloutTimer  = new PhaseTimer();
-    private final PhaseTimer backpropTimer = new PhaseTimer();
-    private final PhaseTimer totalTimer    = new PhaseTimer();
+    /**
+     * @param root   the node from which to play.
+     * @param config the configuration of each search (the selection policy is replaced by UCT with UCT_CONST).
+     */
+    public MCTS(Node<TicTacToe> root, EngineConfig config) {
+        this(root, config, true);
+    }
 
-    public MCTS(Node<TicTacToe> root) {
+    /**
+     * @param root       the node from which to play.
+     * @param config     the configuration of each search (the selection policy is replaced by UCT with UCT_CONST).
+     * @param symmetries true to expand only one of the moves which lead to equivalent positions.
+     */
+    public MCTS(Node<TicTacToe> root, EngineConfig config, boolean symmetries) {
         this.root = root;
+        EngineConfig uct = config.withSelectionPolicy(SelectionPolicy.uct(UCT_CONST));
+        this.engine = symmetries ? new SearchEngine<>(uct, Playout.uniform(), MCTS::distinctMoves) : new SearchEngine<>(uct, Playout.uniform());
     }
 
     public static void main(String[] args) {
-        MCTS engine = new MCTS(new TicTacToeNode(new TicTacToe().start()));
+        MCTS engine = new MCTS(TicTacToeNode.withSymmetries(new TicTacToe().start()), EngineConfig.iterations(NUM_SIMULATIONS).withPhaseTimers(true));
         engine.run();
     }
 
-    /** Run the game until terminal, printing the board each move. */
-    public void run() {
-        System.out.println("MCTS starting...");
-        System.out.println(render(root.state()));
+    /**
+     * Run the game until terminal, printing the board each move.
+     *
+     * @return the final state.
+     */
+    public State<TicTacToe> run() {
+        return run(false);
+    }
+
+    /**
+     * Run the game until terminal.
+     *
+     * @param quiet true to print nothing; false to print the board after each move and then the phase timings
+     *              (if the configuration asks for phase timers).
+     * @return the final state.
+     */
+    public State<TicTacToe> run(boolean quiet) {
+        if (!quiet) {
+            System.out.println("MCTS starting...");
+            System.out.println(render(root.state()));
+        }
         Node<TicTacToe> node = root;
         while (!node.state().isTerminal()) {
             node = iterate(node);
-            System.out.println(render(node.state()));
+            if (!quiet) System.out.println(render(node.state()));
         }
-        System.out.println("Game complete\n=== Phase Timing (ms) ===");
-        System.out.printf(" Selection:   %.3f%n", selectTimer.totalMillis());
-        System.out.printf(" Expansion:   %.3f%n", expandTimer.totalMillis());
-        System.out.printf(" Rollout:     %.3f%n", rolloutTimer.totalMillis());
-        System.out.printf(" Backprop:    %.3f%n", backpropTimer.totalMillis());
-        System.out.printf(" Overall:     %.3f%n", totalTimer.totalMillis());
+        if (quiet) return node.state();
+        System.out.println("Game complete");
+        PhaseTimers timers = engine.getTimers();
+        if (timers.getCount(PhaseTimers.Phase.SELECTION) == 0) return node.state();
+        System.out.println("=== Phase Timing (ms) ===");
+        System.out.printf(" Selection:   %.3f%n", timers.getMillis(PhaseTimers.Phase.SELECTION));
+        System.out.printf(" Expansion:   %.3f%n", timers.getMillis(PhaseTimers.Phase.EXPANSION));
+        System.out.printf(" Rollout:     %.3f%n", timers.getMillis(PhaseTimers.Phase.ROLLOUT));
+        System.out.printf(" Backprop:    %.3f%n", timers.getMillis(PhaseTimers.Phase.BACKPROPAGATION));
+        System.out.printf(" Overall:     %.3f%n", timers.getTotalMillis());
+        return node.state();
     }
 
     /**
-     * Perform NUM_SIMULATIONS of Select→Expand→Rollout→Backpropagate,
-     * accumulate timings, then return the child with highest visits.
+     * @return the time spent in each phase of the searches so far.
      */
-    private Node<TicTacToe> iterate(Node<TicTacToe> rootNode) {
-        // reset per‐iteration timers
-        selectTimer.reset();   expandTimer.reset();
-        rolloutTimer.reset();  backpropTimer.reset();
-        totalTimer.reset();
-
-        totalTimer.start();
-        for (int i = 0; i < NUM_SIMULATIONS; i++) {
-            selectTimer.start();
-            Node<TicTacToe> leaf = selectLeaf(rootNode);
-            selectTimer.stop();
-
-            expandTimer.start();
-            Node<TicTacToe> next = expandNode(leaf);
-            expandTimer.stop();
-
-            rolloutTimer.start();
-            int result = rollout(next);
-            rolloutTimer.stop();
-
-            backpropTimer.start();
-            backpropagate(next, result);
-            backpropTimer.stop();
-        }
-        totalTimer.stop();
-
-        // accumulate into overall timers
-        selectTimer.accumulate();
-        expandTimer.accumulate();
-        rolloutTimer.accumulate();
-        backpropTimer.accumulate();
-        totalTimer.accumulate();
-
-        // pick the most‐visited child
-        return Collections.max(
-                rootNode.children(),
-                Comparator.comparing(Node::playouts)
-        );
+    public PhaseTimers getTimers() {
+        return engine.getTimers();
     }
 
     /**
-     * UCT‐style select: unvisited first, then highest UCT value.
+     * Method to search from the given state (with NUM_SIMULATIONS iterations, by default).
+     *
+     * @param state a state which is not terminal.
+     * @return the most visited move.
      */
-    private Node<TicTacToe> selectLeaf(Node<TicTacToe> start) {
-        Node<TicTacToe> node = start;
-        while (!node.isLeaf()) {
-            List<Node<TicTacToe>> kids = (List<Node<TicTacToe>>) node.children();
-            if (kids.isEmpty()) return node;
-            // first unvisited
-            for (Node<TicTacToe> c : kids) {
-                if (c.playouts() == 0) return c;
-            }
-            // pull out the parent‐visit count into a final local
-            final int parentPlays = node.playouts();
-            node = Collections.max(
-                    kids,
-                    Comparator.comparing(c -> uctValue(c, parentPlays))
-            );
-        }
-        return node;
-    }
-
-    private double uctValue(Node<TicTacToe> child, int parentPlayouts) {
-        double winRate = child.wins() / (double) child.playouts();
-        return winRate + UCT_CONST * Math.sqrt(Math.log(parentPlayouts) / child.playouts());
+    public Move<TicTacToe> findNextMove(State<TicTacToe> state) {
+        Move<TicTacToe> result = engine.findNextMove(state);
+        simulations += engine.getIterations();
+        return result;
     }
 
-    /** Expand all children on first call, otherwise pick one at random. */
-    private Node<TicTacToe> expandNode(Node<TicTacToe> leaf) {
-        if (leaf.isLeaf()) return leaf;
-        if (leaf.children().isEmpty()) {
-            ((TicTacToeNode) leaf).expandAll();
-            if (leaf.children().isEmpty()) return leaf;
-        }
-        List<Node<TicTacToe>> kids = (List<Node<TicTacToe>>) leaf.children();
-        return kids.get(leaf.state().random().nextInt(kids.size()));
+    /**
+     * @return the number of simulations (iterations) run by all the searches so far.
+     */
+    public long getSimulations() {
+        return simulations;
     }
 
-    /** Random playout: +1 win, 0 draw, -1 loss for the leaf’s player. */
-    private int rollout(Node<TicTacToe> at) {
-        State<TicTacToe> st = at.state();
-        int pl = st.player();
-        while (!st.isTerminal()) {
-            Move<TicTacToe> m = st.chooseMove(st.player());
-            st = st.next(m);
-        }
-        return st.winner()
-                .map(w -> w == pl ? +1 : -1)
-                .orElse(0);
+    /**
+     * Search from the given node (with NUM_SIMULATIONS iterations, by default), then return the child with the most visits.
+     */
+    private Node<TicTacToe> iterate(Node<TicTacToe> rootNode) {
+        Node<TicTacToe> result = engine.search(rootNode.state()).bestChild();
+        simulations += engine.getIterations();
+        return result;
     }
 
-    /** Backpropagate the +1/0/-1 result, flipping sign by player turn. */
-    private void backpropagate(Node<TicTacToe> node, int score) {
-        int origin = node.state().player();
-        TicTacToeNode cur = (TicTacToeNode) node;
-        while (cur != null) {
-            cur.incrementPlayouts();
-            int cp = cur.state().player();
-            cur.addWins(cp == origin ? score : -score);
-            cur = cur.getParent();
-        }
+    /**
+     * @return the moves from the given state, less any which lead to a position equivalent to that of an earlier move.
+     */
+    private static Collection<Move<TicTacToe>> distinctMoves(State<TicTacToe> state) {
+        int player = state.player();
+        int[] codes = new int[9];
+        int n = ((TicTacToe.TicTacToeState) state).position().distinctMoveCodes(player, codes);
+        List<Move<TicTacToe>> result = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) result.add(new TicTacToe.TicTacToeMove(player, codes[i] / 3, codes[i] % 3));
+        return result;
     }
 
     /** Neatly render the board replacing digits with X/O/_ */
@@ -175,4 +149,4 @@ public class MCTS {
                 .replace("0",  "O")
                 .replace(",",  " ");
     }
-}
\ No newline at end of file
+}
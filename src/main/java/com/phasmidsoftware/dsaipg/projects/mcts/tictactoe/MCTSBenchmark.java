@@ -0,0 +1,43 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.tictactoe;
+
+import com.phasmidsoftware.dsaipg.projects.mcts.core.EngineConfig;
+
+/**
+ * Benchmark of MCTS.run() self-play: simulations per second, with and without the pruning of symmetric moves,
+ * and the number of games drawn (perfect play always draws).
+ * Usage: MCTSBenchmark [games [simulationsPerMove]]
+ */
+public class MCTSBenchmark {
+
+    public static void main(String[] args) {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        int simulations = args.length > 1 ? Integer.parseInt(args[1]) : 5000;
+        System.out.println("=== TicTacToe MCTS self-play (" + games + " games, " + simulations + " simulations per move) ===");
+        selfPlay(1, simulations, false); // warm-up
+        selfPlay(1, simulations, true);
+        for (boolean symmetries : new boolean[]{false, true}) {
+            long start = System.nanoTime();
+            long[] result = selfPlay(games, simulations, symmetries);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("symmetries: %-5s | simulations/sec: %,12.0f | ms/game: %8.1f | draws: %d/%d%n",
+                    symmetries, result[0] / seconds, seconds * 1000 / games, result[1], games);
+        }
+    }
+
+    /**
+     * Method to play games of MCTS against itself (without printing the boards).
+     *
+     * @return the total number of simulations and the number of games drawn.
+     */
+    static long[] selfPlay(int games, int simulations, boolean symmetries) {
+        long total = 0;
+        int draws = 0;
+        for (int g = 0; g < games; g++) {
+            TicTacToeNode root = new TicTacToeNode(new TicTacToe().start());
+            MCTS mcts = new MCTS(root, EngineConfig.iterations(simulations), symmetries);
+            draws += mcts.run(true).winner().isEmpty() ? 1 : 0;
+            total += mcts.getSimulations();
+        }
+        return new long[]{total, draws};
+    }
+}
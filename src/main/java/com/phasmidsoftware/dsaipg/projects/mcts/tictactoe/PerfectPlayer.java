@@ -0,0 +1,65 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.tictactoe;
+
+import com.phasmidsoftware.dsaipg.projects.mcts.core.EngineConfig;
+import com.phasmidsoftware.dsaipg.projects.mcts.core.Move;
+import com.phasmidsoftware.dsaipg.projects.mcts.core.State;
+
+/**
+ * A TicTacToe player which never makes a mistake: each move is looked up in the Solver's table.
+ * The main program compares its latency, and the accuracy of MCTS, against perfect play.
+ */
+public class PerfectPlayer {
+
+    public static void main(String[] args) {
+        long start = System.nanoTime();
+        Solver solver = Solver.solve();
+        System.out.printf("Solved %,d reachable positions in %.1f ms; the game is a %s%n", solver.size(),
+                (System.nanoTime() - start) / 1e6, solver.value(new TicTacToe().start()) == Solver.DRAW ? "draw" : "win");
+
+        PerfectPlayer player = new PerfectPlayer(solver);
+        TicTacToe game = new TicTacToe();
+        for (int run = 0; run < 2; run++) { // the first run is a warm-up
+            int moves = 0;
+            start = System.nanoTime();
+            for (int g = 0; g < 100_000; g++)
+                for (State<TicTacToe> state = game.start(); !state.isTerminal(); moves++)
+                    state = state.next(player.getMove(state));
+            if (run > 0) System.out.printf("PerfectPlayer: %.0f ns/move (including the move itself)%n", (System.nanoTime() - start) / (double) moves);
+        }
+
+        for (int simulations : new int[]{100, 500, 1000, 5000}) {
+            MCTS mcts = new MCTS(new TicTacToeNode(game.start()), EngineConfig.iterations(simulations));
+            mcts.findNextMove(game.start()); // warm-up
+            long before = mcts.getSimulations();
+            start = System.nanoTime();
+            double rate = solver.mistakeRate(mcts::findNextMove);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("MCTS %,5d simulations/move: mistakes in %5.1f%% of positions, %,8.0f us/move%n",
+                    simulations, 100 * rate, seconds * 1e6 * simulations / (mcts.getSimulations() - before));
+        }
+    }
+
+    /**
+     * Constructor which uses the shared Solver.
+     */
+    public PerfectPlayer() {
+        this(Solver.getInstance());
+    }
+
+    /**
+     * @param solver the solution of the game.
+     */
+    public PerfectPlayer(Solver solver) {
+        this.solver = solver;
+    }
+
+    /**
+     * @param state a state which is not terminal.
+     * @return a move which wins as soon as possible, or else draws, or else loses as late as possible.
+     */
+    public Move<TicTacToe> getMove(State<TicTacToe> state) {
+        return solver.bestMove(state);
+    }
+
+    private final Solver solver;
+}
@@ -5,13 +5,16 @@
 package com.phasmidsoftware.dsaipg.projects.mcts.tictactoe;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 
 /**
  * This class represents the board of the Tic-tac-toe game.
  * It is a 3x3 matrix of 0s, 1s, and -1s for O, X, and . respectively.
+ * <p>
+ * The board is held in 18 bits: bit (3 * x + y) is set if X is on cell (x, y), and bit (9 + 3 * x + y) if O is.
+ * A line of three is detected by comparing a player's nine bits against the eight winning masks,
+ * and the eight symmetries of the board (see reflect and rotate) are applied by table lookup.
  */
 public class Position {
 
@@ -23,18 +26,16 @@ public class Position {
      * @return a Position.
      */
     static Position parsePosition(final String grid, final int last) {
-        int[][] matrix = new int[gridSize][gridSize];
-        int count = 0;
+        int bits = 0;
         String[] rows = grid.split("\\n", gridSize);
         for (int i = 0; i < gridSize; i++) {
             String[] cells = rows[i].split(" ", gridSize);
             for (int j = 0; j < gridSize; j++) {
                 int cell = parseCell(cells[j].trim());
-                if (cell >= 0) count++;
-                matrix[i][j] = cell;
+                if (cell >= 0) bits |= bit(cell, i * gridSize + j);
             }
         }
-        return new Position(matrix, count, last);
+        return new Position(bits, last);
     }
 
     /**
@@ -62,12 +63,8 @@ public class Position {
     public Position move(int player, int x, int y) {
         if (full()) throw new RuntimeException("Position is full");
         if (player == last) throw new RuntimeException("consecutive moves by same player: " + player);
-        int[][] matrix = copyGrid();
-        if (matrix[x][y] < 0) {
-            matrix[x][y]=player;
-            System.out.println(new Position(matrix, count+1, player).render() );
-            return new Position(matrix, count+1, player);
-        }
+        int cell = x * gridSize + y;
+        if ((occupied() & 1 << cell) == 0) return new Position(bits | bit(player, cell), player);
         throw new RuntimeException("Position is occupied: " + x + ", " + y);
     }
 
@@ -79,14 +76,52 @@ public class Position {
     public List<int[]> moves(int player) {
         if (player == last) throw new RuntimeException("consecutive moves by same player: " + player);
         List<int[]> result = new ArrayList<>();
-        for (int i = 0; i < gridSize; i++)
-            for (int j = 0; j < gridSize; j++)
-                if (grid[i][j] < 0){
-                    result.add(new int[]{i, j});
-                }
+        for (int empty = ~occupied() & CELLS; empty != 0; empty &= empty - 1) {
+            int cell = Integer.numberOfTrailingZeros(empty);
+            result.add(new int[]{cell / gridSize, cell % gridSize});
+        }
         return result;
     }
 
+    /**
+     * Method to write the codes (x * 3 + y) of all the possible moves available on this Position into an array,
+     * in the same order as moves(player).
+     *
+     * @param player the player to move.
+     * @param codes  an array of at least 9 elements.
+     * @return the number of codes written.
+     */
+    public int moveCodes(int player, int[] codes) {
+        if (player == last) throw new RuntimeException("consecutive moves by same player: " + player);
+        int n = 0;
+        for (int empty = ~occupied() & CELLS; empty != 0; empty &= empty - 1)
+            codes[n++] = Integer.numberOfTrailingZeros(empty);
+        return n;
+    }
+
+    /**
+     * Method to write the codes of the possible moves, as moveCodes does, but leaving out any move which leads to
+     * a Position equivalent (see canonical) to that of an earlier move: so that symmetric moves are expanded only once.
+     *
+     * @param player the player to move.
+     * @param codes  an array of at least 9 elements.
+     * @return the number of codes written.
+     */
+    public int distinctMoveCodes(int player, int[] codes) {
+        int[] keys = new int[gridSize * gridSize];
+        int n = 0;
+        for (int i = 0, m = moveCodes(player, codes); i < m; i++) {
+            int key = move(player, codes[i] / gridSize, codes[i] % gridSize).canonicalKey();
+            boolean seen = false;
+            for (int k = 0; k < n && !seen; k++) seen = keys[k] == key;
+            if (!seen) {
+                keys[n] = key;
+                codes[n++] = codes[i];
+            }
+        }
+        return n;
+    }
+
     /**
      * Method to yield a copy of this Position but reflected.
      *
@@ -94,18 +129,11 @@ public class Position {
      * @return a new Position.
      */
     public Position reflect(int axis) {
-        int[][] matrix = copyGrid();
-        switch (axis) {
-            case 0:
-                for (int j = 0; j < gridSize; j++) swap(matrix, 0, j, 2, j); // middle row
-                break;
-            case 1:
-                for (int i = 0; i < gridSize; i++) swap(matrix, i, 0, i, 2); // middle column
-                break;
-            default:
-                throw new RuntimeException("reflect not implemented for " + axis);
-        }
-        return new Position(matrix, count, last);
+        return switch (axis) {
+            case 0 -> transform(REFLECT_ROWS); // middle row
+            case 1 -> transform(REFLECT_COLUMNS); // middle column
+            default -> throw new RuntimeException("reflect not implemented for " + axis);
+        };
     }
 
     /**
@@ -113,11 +141,39 @@ public class Position {
      * @return a new Position which is rotated from this.
      */
     public Position rotate() {
-        int[][] matrix = new int[gridSize][gridSize];
-        for (int i = 0; i < gridSize; i++)
-            for (int j = 0; j < gridSize; j++)
-                matrix[i][j] = grid[j][gridSize - i - 1];
-        return new Position(matrix, count, last);
+        return transform(ROTATE);
+    }
+
+    /**
+     * Method to yield the canonical form of this Position: of the eight Positions which can be reached from it by
+     * rotate and reflect, the one with the smallest encoding.
+     * Two Positions are equivalent under symmetry if, and only if, they have the same canonical form,
+     * so they have the same value to the player to move.
+     *
+     * @return a Position equivalent to this one (possibly this one).
+     */
+    public Position canonical() {
+        int key = canonicalKey();
+        return key == bits ? this : new Position(key, last);
+    }
+
+    /**
+     * @return the encoding of the canonical form of this Position (see canonical), as an 18-bit int.
+     */
+    public int canonicalKey() {
+        int x = bits & CELLS;
+        int o = bits >>> 9;
+        int result = bits;
+        for (int[] symmetry : SYMMETRIES) result = Math.min(result, symmetry[x] | symmetry[o] << 9);
+        return result;
+    }
+
+    /**
+     * @return the number of this Position in base 3 (cell (x, y) being digit 3 * x + y, with 0 for empty,
+     * 1 for X and 2 for O): a dense index between 0 and 3^9 - 1.
+     */
+    public int code() {
+        return TERNARY[bits & CELLS] + 2 * TERNARY[bits >>> 9];
     }
 
     /**
@@ -126,7 +182,7 @@ public class Position {
      * @return an Optional Integer.
      */
     public Optional<Integer> winner() {
-        if (count > 4 && threeInARow()) return Optional.of(last);
+        if (count() > 4 && threeInARow()) return Optional.of(last);
         return Optional.empty();
     }
 
@@ -136,30 +192,7 @@ public class Position {
      * @return true if there are three cells in a line that are the same and equal to the last player.
      */
     boolean threeInARow() {
-        for(int i=0;i<gridSize;i++){
-            int[] row=projectRow(i);
-            int[] col=projectCol(i);
-            if(row[0]==row[1] && row[1]==row[2] && row[1]!=-1){
-                System.out.println("Winner row:"+i);
-                return true;
-            }
-            if(col[0]==col[1] && col[1]==col[2] && col[2]!=-1) {
-                System.out.println("Winner column:"+i);
-                return true;
-            }
-        }
-        int[] diag1=projectDiag(true);
-        int[] diag2=projectDiag(false);
-        if(diag1[0]==diag1[1] && diag1[1]==diag1[2] && diag1[1]!=-1){
-            System.out.println("Winner 1st diagonal:");
-            return true;
-        }
-        if(diag2[0]==diag2[1] && diag2[1]==diag2[2] && diag2[1]!=-1){
-            System.out.println("Winner 2nd diagonal:");
-            return true;
-        }
-        return false;
-        // END SOLUTION
+        return hasLine(bits & CELLS) || hasLine(bits >>> 9);
     }
 
     /**
@@ -169,7 +202,10 @@ public class Position {
      * @return an array of three ints.
      */
     int[] projectRow(int i) {
-        return grid[i];
+        int[] result = new int[gridSize];
+        for (int j = 0; j < gridSize; j++)
+            result[j] = cell(i, j);
+        return result;
     }
 
     /**
@@ -181,7 +217,7 @@ public class Position {
     int[] projectCol(int j) {
         int[] result = new int[gridSize];
         for (int i = 0; i < gridSize; i++)
-            result[i] = grid[i][j];
+            result[i] = cell(i, j);
         return result;
     }
 
@@ -195,7 +231,7 @@ public class Position {
         int[] result = new int[gridSize];
         for (int j = 0; j < gridSize; j++) {
             int i = b ? j : gridSize - j - 1;
-            result[j] = grid[i][j];
+            result[j] = cell(i, j);
         }
         return result;
     }
@@ -204,7 +240,7 @@ public class Position {
      * @return true if this Position has 9 elements.
      */
     boolean full() {
-        return count == 9;
+        return occupied() == CELLS;
     }
 
     /**
@@ -216,7 +252,7 @@ public class Position {
         StringBuilder sb = new StringBuilder();
         for (int i = 0; i < gridSize; i++) {
             for (int j = 0; j < gridSize; j++) {
-                sb.append(render(grid[i][j]));
+                sb.append(render(cell(i, j)));
                 if (j < gridSize - 1) sb.append(' ');
             }
             if (i < gridSize - 1) sb.append('\n');
@@ -229,7 +265,7 @@ public class Position {
         StringBuilder sb = new StringBuilder();
         for (int i = 0; i < gridSize; i++) {
             for (int j = 0; j < gridSize; j++) {
-                sb.append(grid[i][j]);
+                sb.append(cell(i, j));
                 if (j < gridSize - 1) sb.append(',');
             }
             if (i < gridSize - 1) sb.append('\n');
@@ -241,26 +277,54 @@ public class Position {
     public boolean equals(Object o) {
         if (this == o) return true;
         if (!(o instanceof Position position)) return false;
-        return Arrays.deepEquals(grid, position.grid);
+        return bits == position.bits;
     }
 
     @Override
     public int hashCode() {
-        return Arrays.deepHashCode(grid);
+        return Integer.hashCode(bits);
     }
 
-    Position(int[][] grid, int count, int last) {
-        this.grid = grid;
-        this.count = count;
+    Position(int bits, int last) {
+        this.bits = bits;
         this.last = last;
-        xxx = new int[]{last, last, last};
     }
 
-    private int[][] copyGrid() {
-        int[][] result = new int[gridSize][gridSize];
-        for (int i = 0; i < gridSize; i++)
-            result[i] = Arrays.copyOf(grid[i], gridSize);
-        return result;
+    /**
+     * @return the number of stones on the board.
+     */
+    private int count() {
+        return Integer.bitCount(bits);
+    }
+
+    /**
+     * @return the cells which are occupied by either player, as nine bits.
+     */
+    private int occupied() {
+        return (bits | bits >>> 9) & CELLS;
+    }
+
+    /**
+     * @return the player on cell (i, j), or -1 if it is empty.
+     */
+    private int cell(int i, int j) {
+        int cell = i * gridSize + j;
+        if ((bits & bit(1, cell)) != 0) return 1;
+        if ((bits & bit(0, cell)) != 0) return 0;
+        return -1;
+    }
+
+    private Position transform(int[] symmetry) {
+        return new Position(symmetry[bits & CELLS] | symmetry[bits >>> 9] << 9, last);
+    }
+
+    private static int bit(int player, int cell) {
+        return 1 << (player == 1 ? cell : cell + 9);
+    }
+
+    private static boolean hasLine(int stones) {
+        for (int line : LINES) if ((stones & line) == line) return true;
+        return false;
     }
 
     private char render(int x) {
@@ -272,21 +336,59 @@ public class Position {
     }
 
     /**
-     * @param matrix the matrix to be operated on.
-     * @param i1     first row.
-     * @param j1     first column.
-     * @param i2     second row.
-     * @param j2     second column.
+     * Method to tabulate a symmetry of the board, as a map from one player's nine bits to the transformed bits.
+     *
+     * @param source the cell which each cell is taken from.
+     * @return an array of 512 ints.
      */
-    private void swap(int[][] matrix, int i1, int j1, int i2, int j2) {
-        int temp = matrix[i1][j1];
-        matrix[i1][j1] = matrix[i2][j2];
-        matrix[i2][j2] = temp;
+    private static int[] tabulate(int[] source) {
+        int[] result = new int[1 << 9];
+        for (int stones = 0; stones < result.length; stones++)
+            for (int cell = 0; cell < 9; cell++)
+                if ((stones & 1 << source[cell]) != 0) result[stones] |= 1 << cell;
+        return result;
+    }
+
+    private static int[] compose(int[] first, int[] second) {
+        int[] result = new int[first.length];
+        for (int stones = 0; stones < result.length; stones++) result[stones] = second[first[stones]];
+        return result;
     }
 
-    private final int[][] grid;
+    private final int bits;
     final int last;
-    private final int count;
     private final static int gridSize = 3;
-    private final int[] xxx;
-}
\ No newline at end of file
+    private final static int CELLS = 0x1FF;
+
+    // The rows, columns and diagonals, as nine-bit masks.
+    private final static int[] LINES = {0x007, 0x038, 0x1C0, 0x049, 0x092, 0x124, 0x111, 0x054};
+
+    // Cell (i, j) takes the stone from (j, 2 - i); from (2 - i, j); from (i, 2 - j).
+    private final static int[] ROTATE = tabulate(new int[]{2, 5, 8, 1, 4, 7, 0, 3, 6});
+    private final static int[] REFLECT_ROWS = tabulate(new int[]{6, 7, 8, 3, 4, 5, 0, 1, 2});
+    private final static int[] REFLECT_COLUMNS = tabulate(new int[]{2, 1, 0, 5, 4, 3, 8, 7, 6});
+
+    // The value in base 3 of each set of cells, with a digit of 1 for each cell in the set.
+    private final static int[] TERNARY = new int[CELLS + 1];
+    private final static int[] POWERS_OF_THREE = {1, 3, 9, 27, 81, 243, 729, 2187, 6561};
+
+    // The seven symmetries other than the identity: three rotations, then a reflection followed by each of four rotations.
+    private final static int[][] SYMMETRIES = new int[7][];
+
+    static {
+        for (int stones = 1; stones <= CELLS; stones++) {
+            int cell = Integer.numberOfTrailingZeros(stones);
+            TERNARY[stones] = TERNARY[stones & stones - 1] + POWERS_OF_THREE[cell];
+        }
+        int[] rotation = ROTATE;
+        for (int k = 0; k < 3; k++) {
+            SYMMETRIES[k] = rotation;
+            rotation = compose(rotation, ROTATE);
+        }
+        int[] reflection = REFLECT_COLUMNS;
+        for (int k = 3; k < 7; k++) {
+            SYMMETRIES[k] = reflection;
+            reflection = compose(reflection, ROTATE);
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.tictactoe;
+
+import com.phasmidsoftware.dsaipg.projects.mcts.core.Move;
+import com.phasmidsoftware.dsaipg.projects.mcts.core.Oracle;
+import com.phasmidsoftware.dsaipg.projects.mcts.core.State;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+/**
+ * Perfect play for TicTacToe, by retrograde analysis of every reachable Position.
+ * <p>
+ * The reachable positions are enumerated once, layer by layer (a layer being all the positions with the same number
+ * of stones), and then solved from the last layer back to the first: each position depends only on the layer after it,
+ * so the positions of a layer are solved in parallel.
+ * The score and best move of each position are stored in dense tables indexed by Position.code.
+ * A score is positive for a win (for the player to move), negative for a loss and zero for a draw, and its magnitude
+ * is 10 less the number of plies to the end, so that the best move wins soonest or loses latest.
+ */
+public final class Solver implements Oracle<TicTacToe> {
+
+    /**
+     * @return the solution, which is computed on first use.
+     */
+    public static Solver getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Method to solve TicTacToe.
+     *
+     * @return a new Solver.
+     */
+    public static Solver solve() {
+        return new Solver();
+    }
+
+    @Override
+    public int value(State<TicTacToe> state) {
+        return value(position(state));
+    }
+
+    @Override
+    public Move<TicTacToe> bestMove(State<TicTacToe> state) {
+        int code = bestMove(position(state));
+        if (code < 0) throw new IllegalArgumentException("no move from a terminal state: " + state);
+        return new TicTacToe.TicTacToeMove(state.player(), code / 3, code % 3);
+    }
+
+    /**
+     * @param position a reachable position.
+     * @return WIN, DRAW or LOSS, for the player to move.
+     */
+    public int value(Position position) {
+        return Integer.signum(score(position));
+    }
+
+    /**
+     * @param position a reachable position.
+     * @return the score of the position, for the player to move (see Solver).
+     */
+    public int score(Position position) {
+        return scores[index(position)];
+    }
+
+    /**
+     * @param position a reachable position.
+     * @return the code (x * 3 + y) of the best move from the position, or -1 if it is terminal.
+     */
+    public int bestMove(Position position) {
+        return moves[index(position)];
+    }
+
+    /**
+     * Method to determine whether a move is a mistake: that is, whether it gives away some of the value of the position.
+     * A move which wins, but less quickly than it might, is not a mistake.
+     *
+     * @param position a reachable position which is not terminal.
+     * @param code     the code (x * 3 + y) of a move from the position.
+     * @return true if the value after the move (to the player who made it) is less than the value before it.
+     */
+    public boolean isMistake(Position position, int code) {
+        Position next = position.move(player(position), code / 3, code % 3);
+        return -value(next) < value(position);
+    }
+
+    /**
+     * Method to measure how far a player is from perfect play: the fraction of the positions in which it makes a mistake
+     * (see isMistake), over all the reachable positions which are not terminal, counting equivalent positions
+     * (see Position.canonical) only once.
+     *
+     * @param player a function which chooses a move from a state.
+     * @return a number between 0 (perfect play) and 1.
+     */
+    public double mistakeRate(Function<State<TicTacToe>, Move<TicTacToe>> player) {
+        TicTacToe game = new TicTacToe();
+        Set<Integer> canonical = new HashSet<>();
+        int decisions = 0;
+        int mistakes = 0;
+        for (Position position : positions) {
+            if (moves[position.code()] < 0 || !canonical.add(position.canonicalKey())) continue;
+            decisions++;
+            TicTacToe.TicTacToeMove move = (TicTacToe.TicTacToeMove) player.apply(game.new TicTacToeState(position));
+            int[] xy = move.move();
+            if (isMistake(position, xy[0] * 3 + xy[1])) mistakes++;
+        }
+        return (double) mistakes / decisions;
+    }
+
+    /**
+     * @return all the reachable positions, in order of the number of stones.
+     */
+    public List<Position> positions() {
+        return Collections.unmodifiableList(positions);
+    }
+
+    /**
+     * @return the number of reachable positions.
+     */
+    public int size() {
+        return positions.size();
+    }
+
+    private Solver() {
+        List<List<Position>> layers = new ArrayList<>();
+        layers.add(List.of(TicTacToe.startingPosition()));
+        boolean[] seen = new boolean[CODES];
+        for (int stones = 0; stones < 9; stones++) {
+            List<Position> next = new ArrayList<>();
+            for (Position position : layers.get(stones)) {
+                if (position.winner().isPresent()) continue;
+                int player = player(position);
+                int[] codes = new int[9];
+                for (int i = 0, n = position.moveCodes(player, codes); i < n; i++) {
+                    Position child = position.move(player, codes[i] / 3, codes[i] % 3);
+                    if (!seen[child.code()]) {
+                        seen[child.code()] = true;
+                        next.add(child);
+                    }
+                }
+            }
+            layers.add(next);
+        }
+        for (List<Position> layer : layers) positions.addAll(layer);
+        Arrays.fill(moves, (byte) UNREACHED);
+        for (int stones = 9; stones >= 0; stones--) {
+            List<Position> layer = layers.get(stones);
+            IntStream.range(0, layer.size()).parallel().forEach(i -> solve(layer.get(i)));
+        }
+    }
+
+    /**
+     * Method to solve a position, all of whose successors have been solved.
+     */
+    private void solve(Position position) {
+        int index = position.code();
+        if (position.winner().isPresent()) {
+            scores[index] = -10;
+            moves[index] = -1;
+            return;
+        }
+        if (position.full()) {
+            scores[index] = 0;
+            moves[index] = -1;
+            return;
+        }
+        int player = player(position);
+        int[] codes = new int[9];
+        int best = Integer.MIN_VALUE;
+        int bestMove = -1;
+        for (int i = 0, n = position.moveCodes(player, codes); i < n; i++) {
+            int s = scores[position.move(player, codes[i] / 3, codes[i] % 3).code()];
+            int score = s > 0 ? -(s - 1) : s < 0 ? -(s + 1) : 0;
+            if (score > best) {
+                best = score;
+                bestMove = codes[i];
+            }
+        }
+        scores[index] = (byte) best;
+        moves[index] = (byte) bestMove;
+    }
+
+    private int index(Position position) {
+        int index = position.code();
+        if (moves[index] == UNREACHED) throw new IllegalArgumentException("position is not reachable:\n" + position.render());
+        return index;
+    }
+
+    private static Position position(State<TicTacToe> state) {
+        return ((TicTacToe.TicTacToeState) state).position();
+    }
+
+    /**
+     * @return the player to move from the given position (X moves first).
+     */
+    private static int player(Position position) {
+        return position.last == TicTacToe.X ? TicTacToe.O : TicTacToe.X;
+    }
+
+    private static final class Holder {
+        private static final Solver INSTANCE = solve();
+    }
+
+    private static final int CODES = 19683; // 3^9
+    private static final int UNREACHED = -2;
+
+    private final List<Position> positions = new ArrayList<>();
+    private final byte[] scores = new byte[CODES];
+    private final byte[] moves = new byte[CODES];
+}
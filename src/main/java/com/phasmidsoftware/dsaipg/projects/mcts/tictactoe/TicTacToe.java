@@ -4,6 +4,7 @@
 
 package com.phasmidsoftware.dsaipg.projects.mcts.tictactoe;
 
+import com.phasmidsoftware.dsaipg.projects.mcts.core.CodedState;
 import com.phasmidsoftware.dsaipg.projects.mcts.core.Game;
 import com.phasmidsoftware.dsaipg.projects.mcts.core.Move;
 import com.phasmidsoftware.dsaipg.projects.mcts.core.State;
@@ -67,9 +68,9 @@ public class TicTacToe implements Game<TicTacToe> {
     /**
      * Get the starting state for this game.
      *
-     * @return a State of TicTacToe.
+     * @return a State of TicTacToe (whose moves have codes).
      */
-    public State<TicTacToe> start() {
+    public CodedState<TicTacToe> start() {
         return new TicTacToeState();
     }
 
@@ -139,7 +140,7 @@ public class TicTacToe implements Game<TicTacToe> {
     /**
      * Inner class to define a State of TicTacToe.
      */
-    class TicTacToeState implements State<TicTacToe> {
+    class TicTacToeState implements CodedState<TicTacToe> {
         /**
          * Method to yield the game of which this is a State.
          *
@@ -216,6 +217,29 @@ public class TicTacToe implements Game<TicTacToe> {
             return new TicTacToeState(position.move(move.player(), ints[0], ints[1]));
         }
 
+        /**
+         * The code of a move is x * 3 + y.
+         */
+        @Override
+        public int maxMoves() {
+            return 9;
+        }
+
+        @Override
+        public int moveCodes(int player, int[] codes) {
+            return position.moveCodes(player, codes);
+        }
+
+        @Override
+        public Move<TicTacToe> move(int code) {
+            return new TicTacToeMove(player(), code / 3, code % 3);
+        }
+
+        @Override
+        public TicTacToeState next(int code) {
+            return new TicTacToeState(position.move(player(), code / 3, code % 3));
+        }
+
         /**
          * Is the game over?
          *
@@ -11,6 +11,9 @@ import java.util.*;
  * A full‐featured node for MCTS in TicTacToe,
  * implementing all abstract methods of Node<G>
  * and providing parent links + per-node stats.
+ * <p>
+ * In a tree rooted by withSymmetries, moves which lead to positions equivalent under symmetry (see Position.canonical)
+ * are merged into one child: only the first of them is added.
  */
 public class TicTacToeNode implements Node<TicTacToe> {
 
@@ -20,6 +23,7 @@ public class TicTacToeNode implements Node<TicTacToe> {
     private int                             wins;
     private final Move<TicTacToe>         move;
     private int                             playouts;
+    private final boolean                   symmetries;
 
     /** Root‐node ctor. */
     public TicTacToeNode(State<TicTacToe> state) {
@@ -28,9 +32,24 @@ public class TicTacToeNode implements Node<TicTacToe> {
 
     /** Full constructor */
     public TicTacToeNode(State<TicTacToe> state, TicTacToeNode parent, Move<TicTacToe> move) {
+        this(state, parent, move, parent != null && parent.symmetries);
+    }
+
+    /**
+     * Method to create a root node in whose tree moves to equivalent positions are merged into one child.
+     *
+     * @param state the state at the root.
+     * @return a new TicTacToeNode.
+     */
+    public static TicTacToeNode withSymmetries(State<TicTacToe> state) {
+        return new TicTacToeNode(state, null, null, true);
+    }
+
+    private TicTacToeNode(State<TicTacToe> state, TicTacToeNode parent, Move<TicTacToe> move, boolean symmetries) {
         this.state  = state;
         this.parent = parent;
         this.move   = move;
+        this.symmetries = symmetries;
         initializeNodeData();
     }
 
@@ -46,6 +65,24 @@ public class TicTacToeNode implements Node<TicTacToe> {
         }
     }
 
+    /**
+     * @return true if moves to equivalent positions are merged into one child (see withSymmetries).
+     */
+    public boolean symmetries() {
+        return symmetries;
+    }
+
+    private boolean hasEquivalentChild(State<TicTacToe> st) {
+        if (!symmetries) return false;
+        int key = key(st);
+        for (Node<TicTacToe> c : children) if (key(c.state()) == key) return true;
+        return false;
+    }
+
+    private static int key(State<TicTacToe> state) {
+        return ((TicTacToe.TicTacToeState) state).position().canonicalKey();
+    }
+
     // --- Node<TicTacToe> interface methods ---
 
     @Override public boolean isLeaf()                { return state.isTerminal(); }
@@ -54,7 +91,7 @@ public class TicTacToeNode implements Node<TicTacToe> {
     @Override public Collection<Node<TicTacToe>> children() { return children; }
     @Override
     public void addChild(State<TicTacToe> st, Move<TicTacToe> move) {
-        children.add(new TicTacToeNode(st, this, move));
+        if (!hasEquivalentChild(st)) children.add(new TicTacToeNode(st, this, move));
     }
     @Override
     public void backPropagate() {
@@ -94,7 +131,7 @@ public class TicTacToeNode implements Node<TicTacToe> {
         if (isLeaf() || !children.isEmpty()) return;
         for (Move<TicTacToe> m : state.moves(state.player())) {
             State<TicTacToe> st2 = state.next(m);
-            children.add(new TicTacToeNode(st2, this, m));
+            addChild(st2, m);
         }
         backPropagate();
     }
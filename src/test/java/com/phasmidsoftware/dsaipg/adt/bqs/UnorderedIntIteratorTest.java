@@ -0,0 +1,64 @@
+package com.phasmidsoftware.dsaipg.adt.bqs;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class UnorderedIntIteratorTest {
+
+    @Test
+    public void testEmpty() {
+        UnorderedIntIterator target = new UnorderedIntIterator(new int[0], new Random(0L));
+        assertFalse(target.hasNext());
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void testNextOnEmpty() {
+        new UnorderedIntIterator(new int[]{1, 2}, 0, new Random(0L)).nextInt();
+    }
+
+    @Test
+    public void testAllElements() {
+        int[] array = {5, 15, 25, 35, 45, 99};
+        UnorderedIntIterator target = new UnorderedIntIterator(array, 5, new Random(0L));
+        int[] result = new int[5];
+        for (int i = 0; i < 5; i++) {
+            assertTrue(target.hasNext());
+            result[i] = target.nextInt();
+        }
+        assertFalse(target.hasNext());
+        Arrays.sort(result);
+        assertArrayEquals(new int[]{5, 15, 25, 35, 45}, result);
+        // the array is permuted in place, but the element beyond n is untouched
+        assertEquals(99, array[5]);
+        Arrays.sort(array, 0, 5);
+        assertArrayEquals(new int[]{5, 15, 25, 35, 45, 99}, array);
+    }
+
+    @Test
+    public void testDeterministic() {
+        UnorderedIntIterator a = new UnorderedIntIterator(new int[]{1, 2, 3, 4, 5, 6, 7, 8}, new Random(123L));
+        UnorderedIntIterator b = new UnorderedIntIterator(new int[]{1, 2, 3, 4, 5, 6, 7, 8}, new Random(123L));
+        while (a.hasNext()) assertEquals(a.nextInt(), b.nextInt());
+        assertFalse(b.hasNext());
+    }
+
+    @Test
+    public void testReset() {
+        UnorderedIntIterator target = new UnorderedIntIterator(new int[]{1}, new Random(0L));
+        assertEquals(1, target.nextInt());
+        assertSame(target, target.reset(new int[]{7, 8}, 2));
+        int sum = 0;
+        while (target.hasNext()) sum += target.nextInt();
+        assertEquals(15, sum);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadLength() {
+        new UnorderedIntIterator(new int[2], 3, new Random(0L));
+    }
+}
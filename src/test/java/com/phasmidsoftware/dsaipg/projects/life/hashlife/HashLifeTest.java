@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2024. Robin Hillyard
+ */
+
+package com.phasmidsoftware.dsaipg.projects.life.hashlife;
+
+import com.phasmidsoftware.dsaipg.projects.life.base.LifeException;
+import com.phasmidsoftware.dsaipg.projects.life.base.Point;
+import com.phasmidsoftware.dsaipg.projects.life.library.Library;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class HashLifeTest {
+
+    @Test
+    public void testCreate() {
+        HashLife life = HashLife.create(Library.Blinker);
+        assertEquals(3, life.getPopulation());
+        assertEquals(0, life.getGeneration());
+        assertTrue(life.isAlive(0, -1));
+        assertTrue(life.isAlive(0, 1));
+        assertFalse(life.isAlive(1, 0));
+        assertFalse(life.isAlive(1L << 40, 0));
+        assertEquals(Set.of(new Point(0, -1), new Point(0, 0), new Point(0, 1)), new HashSet<>(life.getPoints()));
+        assertEquals("*\n*\n*\n", life.render());
+    }
+
+    @Test
+    public void testBlinker() {
+        HashLife life = HashLife.fromLibrary("blinker");
+        life.advance(1);
+        assertEquals(1, life.getGeneration());
+        assertEquals(Set.of(new Point(-1, 0), new Point(0, 0), new Point(1, 0)), new HashSet<>(life.getPoints()));
+        assertEquals("***\n", life.render());
+        life.advance(1);
+        assertEquals(Set.of(new Point(0, -1), new Point(0, 0), new Point(0, 1)), new HashSet<>(life.getPoints()));
+    }
+
+    @Test
+    public void testStillLifeAndDeath() {
+        HashLife block = HashLife.fromLibrary("Block");
+        Set<Point> before = new HashSet<>(block.getPoints());
+        block.advance(1000);
+        assertEquals(before, new HashSet<>(block.getPoints()));
+        HashLife blip = HashLife.fromLibrary("Blip");
+        blip.advance(1);
+        assertEquals(0, blip.getPopulation());
+        assertEquals("", blip.render());
+    }
+
+    @Test
+    public void testGliderMoves() {
+        HashLife life = HashLife.create(Library.Glider3);
+        Set<Point> start = new HashSet<>(life.getPoints());
+        // every four generations, this glider moves one cell east and one cell north
+        life.advance(4 * 1000);
+        Set<Point> expected = new HashSet<>();
+        for (Point p : start) expected.add(p.move(1000, -1000));
+        assertEquals(expected, new HashSet<>(life.getPoints()));
+    }
+
+    @Test
+    public void testAgreesWithSimpleStepping() {
+        for (String name : new String[]{"Glider1", "Loaf", "RPentomino", "Acorn", "GosperGliderGun"}) {
+            HashLife life = HashLife.fromLibrary(name);
+            Set<Point> cells = new HashSet<>(Point.points(Library.get(name)));
+            // steps of assorted sizes, so that jumps of several sizes are made from several levels
+            for (int step : new int[]{1, 1, 2, 3, 8, 5, 16, 13, 64, 7, 100}) {
+                life.advance(step);
+                for (int i = 0; i < step; i++) cells = generation(cells);
+                assertEquals(name + " at " + life.getGeneration(), cells, new HashSet<>(life.getPoints()));
+                assertEquals(cells.size(), life.getPopulation());
+            }
+        }
+    }
+
+    @Test
+    public void testJump() {
+        HashLife life = HashLife.fromLibrary("RPentomino");
+        life.jump(10);
+        assertEquals(1024, life.getGeneration());
+        HashLife stepped = HashLife.fromLibrary("RPentomino");
+        stepped.advance(1000);
+        stepped.advance(24);
+        assertEquals(new HashSet<>(stepped.getPoints()), new HashSet<>(life.getPoints()));
+    }
+
+    @Test
+    public void testBillionGenerations() {
+        // The R-pentomino settles down by generation 1103, and the acorn by generation 5206: each then consists of
+        // still lifes, oscillators and gliders travelling away for ever.
+        HashLife rPentomino = HashLife.fromLibrary("RPentomino");
+        rPentomino.advance(1_000_000_000L);
+        assertEquals(1_000_000_000L, rPentomino.getGeneration());
+        assertEquals(116, rPentomino.getPopulation());
+        HashLife acorn = HashLife.fromLibrary("Acorn");
+        acorn.advance(1_000_000_000L);
+        assertEquals(633, acorn.getPopulation());
+    }
+
+    @Test
+    public void testGliderGun() {
+        // The gun emits a glider (of five cells) every 30 generations, so its population grows by five every 30
+        // generations once its first gliders have got clear.
+        Set<Point> cells = new HashSet<>(Point.points(Library.GosperGliderGun));
+        long t0 = 1_000_000_000L % 30 + 300;
+        for (long t = 0; t < t0; t++) cells = generation(cells);
+        HashLife life = HashLife.fromLibrary("GosperGliderGun");
+        life.advance(1_000_000_000L);
+        assertEquals(cells.size() + 5 * (1_000_000_000L - t0) / 30, life.getPopulation());
+    }
+
+    @Test
+    public void testBoundedNodeTable() {
+        HashLife bounded = new HashLife(2000);
+        for (Point p : Point.points(Library.Acorn)) bounded.setAlive(p.getX(), p.getY());
+        HashLife unbounded = HashLife.fromLibrary("Acorn");
+        for (int i = 0; i < 40; i++) {
+            bounded.advance(250);
+            unbounded.advance(250);
+            assertEquals(unbounded.getPopulation(), bounded.getPopulation());
+        }
+        assertEquals(new HashSet<>(unbounded.getPoints()), new HashSet<>(bounded.getPoints()));
+        assertTrue(bounded.getCollections() > 0);
+        assertEquals(0, unbounded.getCollections());
+        assertTrue(bounded.getNodeCount() < unbounded.getNodeCount());
+    }
+
+    @Test
+    public void testCollectKeepsNodesCanonical() {
+        NodeTable table = new NodeTable(4);
+        Node alive = table.leaf(true);
+        Node dead = table.leaf(false);
+        Node a = table.join(alive, dead, dead, dead);
+        Node b = table.join(dead, alive, dead, dead);
+        Node root = table.join(a, a, a, a);
+        root.result = b;
+        Node empty = table.empty(2);
+        int size = table.size();
+        table.collect(root);
+        // b has gone, and so has the memoised result which refers to it; everything else is still canonical
+        assertEquals(size - 1, table.size());
+        assertNull(root.result);
+        assertSame(a, table.join(alive, dead, dead, dead));
+        assertSame(root, table.join(a, a, a, a));
+        assertSame(empty, table.empty(2));
+        assertEquals(1, table.getCollections());
+        assertEquals(1, table.getCollected());
+    }
+
+    @Test(expected = LifeException.class)
+    public void testNoSuchPattern() {
+        HashLife.fromLibrary("no such pattern");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeGenerations() {
+        new HashLife().advance(-1);
+    }
+
+    /**
+     * @return the next generation of the given cells, computed directly.
+     */
+    private static Set<Point> generation(Set<Point> cells) {
+        Set<Point> candidates = new HashSet<>();
+        for (Point p : cells)
+            for (int dx = -1; dx <= 1; dx++)
+                for (int dy = -1; dy <= 1; dy++) candidates.add(p.move(dx, dy));
+        Set<Point> result = new HashSet<>();
+        for (Point p : candidates) {
+            int neighbours = 0;
+            for (int dx = -1; dx <= 1; dx++)
+                for (int dy = -1; dy <= 1; dy++)
+                    if ((dx != 0 || dy != 0) && cells.contains(p.move(dx, dy))) neighbours++;
+            if (neighbours == 3 || neighbours == 2 && cells.contains(p)) result.add(p);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,105 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.core;
+
+import org.junit.Test;
+
+import java.util.function.IntSupplier;
+
+import static org.junit.Assert.*;
+
+public class BudgetTest {
+
+    private static int run(Budget budget, int max) {
+        int n = 0;
+        while (n < max && budget.tryStart()) n++;
+        return n;
+    }
+
+    private static Budget budget(IntSupplier lead, long iterationLimit, boolean earlyStop) {
+        return new Budget(lead, iterationLimit, System.nanoTime(), 0, earlyStop, Thread.currentThread());
+    }
+
+    @Test
+    public void testIterationLimit() {
+        Budget budget = budget(() -> 0, 10, false);
+        assertEquals(10, run(budget, 100));
+        assertEquals(10, budget.getIterations());
+        assertFalse(budget.tryStart());
+        assertFalse(budget.isStoppedEarly());
+    }
+
+    @Test
+    public void testIterationLimitIsShared() throws InterruptedException {
+        Budget budget = budget(() -> 0, 30_000, false);
+        int[] counts = new int[3];
+        Thread[] threads = new Thread[counts.length];
+        for (int t = 0; t < threads.length; t++) {
+            int index = t;
+            threads[t] = new Thread(() -> counts[index] = run(budget, Integer.MAX_VALUE));
+            threads[t].start();
+        }
+        for (Thread thread : threads) thread.join();
+        // no claim within the limit is lost, however the threads interleave
+        assertEquals(30_000, counts[0] + counts[1] + counts[2]);
+        assertEquals(30_000, budget.getIterations());
+    }
+
+    @Test
+    public void testStop() {
+        Budget budget = budget(() -> 0, 10, false);
+        assertTrue(budget.tryStart());
+        budget.stop();
+        assertFalse(budget.tryStart());
+        assertEquals(1, budget.getIterations());
+    }
+
+    @Test
+    public void testStopBeforeStart() {
+        // the first iteration is still allowed, so that there is a move to return
+        Budget budget = budget(() -> 0, 10, false);
+        budget.stop();
+        assertEquals(1, run(budget, 100));
+    }
+
+    @Test
+    public void testDeadline() {
+        // the deadline has already passed: only the first iteration is allowed
+        Budget budget = new Budget(() -> 0, Long.MAX_VALUE, System.nanoTime() - 10_000_000, 1, false, Thread.currentThread());
+        assertEquals(1, run(budget, 100));
+    }
+
+    @Test
+    public void testInterruption() {
+        Budget budget = budget(() -> 0, 100, false);
+        Thread.currentThread().interrupt();
+        try {
+            assertEquals(1, run(budget, 100));
+            assertTrue(Thread.currentThread().isInterrupted());
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+    @Test
+    public void testEarlyStop() {
+        // 100 iterations in all: at the 64th, the leader (70 visits ahead) cannot be caught in the 36 remaining
+        Budget budget = budget(() -> 70, 100, true);
+        assertEquals(64, run(budget, 1000));
+        assertTrue(budget.isStoppedEarly());
+    }
+
+    @Test
+    public void testNoEarlyStopWhenClose() {
+        Budget budget = budget(() -> 10, 100, true);
+        assertEquals(100, run(budget, 1000));
+        assertFalse(budget.isStoppedEarly());
+    }
+
+    @Test
+    public void testEarlyStopWithLead() {
+        Budget close = budget(() -> 36, 100, true);
+        assertEquals(100, run(close, 1000));
+        Budget clear = budget(() -> 37, 100, true);
+        assertEquals(64, run(clear, 1000));
+        assertTrue(clear.isStoppedEarly());
+    }
+}
@@ -0,0 +1,78 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class EngineConfigTest {
+
+    @Test
+    public void testIterations() {
+        EngineConfig config = EngineConfig.iterations(100);
+        assertEquals(100, config.getIterationLimit());
+        assertEquals(ParallelMode.SEQUENTIAL, config.getParallelMode());
+        assertEquals(1, config.getThreads());
+        assertEquals(EngineConfig.DEFAULT_VIRTUAL_LOSS, config.getVirtualLoss(), 0);
+        assertSame(SelectionPolicy.UCT, config.getSelectionPolicy());
+        assertEquals(0, config.getTimeBudgetMillis());
+        assertFalse(config.isEarlyStop());
+        assertFalse(config.isPhaseTimers());
+        assertEquals(0, config.getSeed());
+        assertEquals(1, config.getBatchSize());
+    }
+
+    @Test
+    public void testTimeBudget() {
+        EngineConfig config = EngineConfig.timeBudget(250);
+        assertEquals(Integer.MAX_VALUE, config.getIterationLimit());
+        assertEquals(250, config.getTimeBudgetMillis());
+        assertTrue(config.isEarlyStop());
+    }
+
+    @Test
+    public void testWith() {
+        EngineConfig config = EngineConfig.iterations(100);
+        SelectionPolicy greedy = SelectionPolicy.uct(0);
+        EngineConfig tree = config.withParallelism(ParallelMode.TREE, 4).withVirtualLoss(3).withSelectionPolicy(greedy)
+                .withSeed(7).withPhaseTimers(true);
+        assertEquals(ParallelMode.TREE, tree.getParallelMode());
+        assertEquals(4, tree.getThreads());
+        assertEquals(3, tree.getVirtualLoss(), 0);
+        assertSame(greedy, tree.getSelectionPolicy());
+        assertEquals(7, tree.getSeed());
+        assertTrue(tree.isPhaseTimers());
+        assertEquals(100, tree.getIterationLimit());
+        // the original is unchanged
+        assertEquals(ParallelMode.SEQUENTIAL, config.getParallelMode());
+        assertFalse(config.isPhaseTimers());
+        // sequential always means one thread
+        assertEquals(1, tree.withParallelism(ParallelMode.SEQUENTIAL, 8).getThreads());
+        assertTrue(tree.toString().contains("threads=4"));
+        assertEquals(16, tree.withBatchSize(16).getBatchSize());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadIterations() {
+        EngineConfig.iterations(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadThreads() {
+        EngineConfig.iterations(10).withParallelism(ParallelMode.ROOT, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadVirtualLoss() {
+        EngineConfig.iterations(10).withVirtualLoss(-1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadBatchSize() {
+        EngineConfig.iterations(10).withBatchSize(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadTimeBudget() {
+        EngineConfig.iterations(10).withTimeBudget(-1);
+    }
+}
@@ -0,0 +1,167 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SearchEngineTest {
+
+    /**
+     * A game of Nim with one pile: each player in turn takes one or two, and whoever takes the last wins.
+     * The player to move loses if (and only if) the pile is a multiple of three.
+     */
+    static final class Nim implements Game<Nim> {
+        public State<Nim> start() {
+            return new Pile(10, 0);
+        }
+
+        public int opener() {
+            return 0;
+        }
+    }
+
+    record Take(int player, int count) implements Move<Nim> {
+    }
+
+    record Pile(int left, int player) implements State<Nim> {
+        public Nim game() {
+            return new Nim();
+        }
+
+        public boolean isTerminal() {
+            return left == 0;
+        }
+
+        public Optional<Integer> winner() {
+            return left == 0 ? Optional.of(1 - player) : Optional.empty();
+        }
+
+        public Random random() {
+            return new Random(0);
+        }
+
+        public Collection<Move<Nim>> moves(int player) {
+            List<Move<Nim>> result = new ArrayList<>();
+            for (int count = 1; count <= Math.min(2, left); count++) result.add(new Take(player, count));
+            return result;
+        }
+
+        public State<Nim> next(Move<Nim> move) {
+            return new Pile(left - ((Take) move).count(), 1 - player);
+        }
+    }
+
+    private static int take(SearchEngine<Nim> engine, int left) {
+        return ((Take) engine.findNextMove(new Pile(left, 0))).count();
+    }
+
+    @Test
+    public void testFindsWinningMove() {
+        SearchEngine<Nim> engine = new SearchEngine<>(EngineConfig.iterations(2000).withSeed(1), Playout.uniform());
+        assertEquals(1, take(engine, 4));
+        assertEquals(2, take(engine, 5));
+        assertEquals(1, take(engine, 7));
+        assertEquals(2, take(engine, 2));
+        assertEquals(2000, engine.getIterations());
+    }
+
+    @Test
+    public void testTreeParallel() {
+        SearchEngine<Nim> engine = new SearchEngine<>(EngineConfig.iterations(1000).withParallelism(ParallelMode.TREE, 3), Playout.uniform());
+        assertEquals(1, take(engine, 7));
+        assertEquals(3000, engine.getIterations());
+        SearchNode<Nim> root = engine.search(new Pile(8, 0));
+        assertEquals(3000, root.playouts());
+        for (SearchNode<Nim> child : root.getChildren()) assertEquals(0, child.getVirtualLosses());
+        assertEquals(2, ((Take) root.bestChild().getMove()).count());
+    }
+
+    @Test
+    public void testRootParallel() {
+        SearchEngine<Nim> engine = new SearchEngine<>(EngineConfig.iterations(1000).withParallelism(ParallelMode.ROOT, 3), Playout.uniform());
+        assertEquals(1, take(engine, 7));
+        assertEquals(2, take(engine, 8));
+        assertEquals(3000, engine.getIterations());
+    }
+
+    @Test
+    public void testStatistics() {
+        SearchEngine<Nim> engine = new SearchEngine<>(EngineConfig.iterations(500).withSeed(2), Playout.uniform());
+        SearchNode<Nim> root = engine.search(new Pile(6, 0));
+        assertEquals(500, root.playouts());
+        assertEquals(SearchNode.NO_PLAYER, root.getMover());
+        int visits = 0;
+        for (SearchNode<Nim> child : root.getChildren()) {
+            assertEquals(0, child.getMover());
+            assertSame(root, child.getParent());
+            assertTrue(child.wins() <= 2 * child.playouts());
+            visits += child.playouts();
+        }
+        assertEquals(500, visits);
+        // continuing the search adds to the tree
+        assertSame(root, engine.search(root));
+        assertEquals(1000, root.playouts());
+        assertEquals(2, root.children().size());
+    }
+
+    @Test
+    public void testSeededSearchIsRepeatable() {
+        EngineConfig config = EngineConfig.iterations(300).withSeed(42);
+        SearchNode<Nim> a = new SearchEngine<>(config, Playout.<Nim>uniform()).search(new Pile(20, 0));
+        SearchNode<Nim> b = new SearchEngine<>(config, Playout.<Nim>uniform()).search(new Pile(20, 0));
+        for (int i = 0; i < 2; i++) {
+            assertEquals(a.getChildren().get(i).playouts(), b.getChildren().get(i).playouts());
+            assertEquals(a.getChildren().get(i).wins(), b.getChildren().get(i).wins());
+        }
+    }
+
+    @Test
+    public void testPhaseTimers() {
+        SearchEngine<Nim> timed = new SearchEngine<>(EngineConfig.iterations(200).withPhaseTimers(true), Playout.uniform());
+        timed.findNextMove(new Pile(30, 0));
+        PhaseTimers timers = timed.getTimers();
+        assertTrue(timers.getNanos(PhaseTimers.Phase.ROLLOUT) > 0);
+        assertTrue(timers.getTotalMillis() >= timers.getMillis(PhaseTimers.Phase.SELECTION));
+        timers.reset();
+        assertEquals(0, timers.getTotalMillis(), 0);
+        SearchEngine<Nim> untimed = new SearchEngine<>(EngineConfig.iterations(200), Playout.uniform());
+        untimed.findNextMove(new Pile(30, 0));
+        assertEquals(0, untimed.getTimers().getTotalMillis(), 0);
+    }
+
+    @Test
+    public void testStop() throws InterruptedException {
+        SearchEngine<Nim> engine = new SearchEngine<>(EngineConfig.timeBudget(60_000).withEarlyStop(false), Playout.uniform());
+        Thread stopper = new Thread(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException ignored) {
+            }
+            engine.stop();
+        });
+        long start = System.nanoTime();
+        stopper.start();
+        assertNotNull(engine.findNextMove(new Pile(1000, 0)));
+        assertTrue(System.nanoTime() - start < 10_000_000_000L);
+        stopper.join();
+    }
+
+    @Test
+    public void testSelectionPolicy() {
+        assertEquals(Double.POSITIVE_INFINITY, SelectionPolicy.UCT.score(Math.log(10), 0, 0), 0);
+        assertEquals(0.5 + Math.sqrt(2) * Math.sqrt(Math.log(100) / 10), SelectionPolicy.UCT.score(Math.log(100), 10, 5), 1e-9);
+        // a greedy policy plays the child with the best win rate
+        assertEquals(0.5, SelectionPolicy.uct(0).score(Math.log(100), 10, 5), 1e-9);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadExploration() {
+        SelectionPolicy.uct(-1);
+    }
+}
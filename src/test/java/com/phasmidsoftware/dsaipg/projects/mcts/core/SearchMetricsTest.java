@@ -0,0 +1,123 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.core;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class SearchMetricsTest {
+
+    @Test
+    public void testBucket() {
+        assertEquals(0, PhaseTimers.bucket(0));
+        assertEquals(1, PhaseTimers.bucket(1));
+        assertEquals(2, PhaseTimers.bucket(2));
+        assertEquals(2, PhaseTimers.bucket(3));
+        assertEquals(11, PhaseTimers.bucket(1024));
+        assertEquals(PhaseTimers.BUCKETS - 1, PhaseTimers.bucket(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testHistogramAndQuantiles() {
+        PhaseTimers timers = new PhaseTimers();
+        for (int i = 0; i < 98; i++) timers.add(PhaseTimers.Phase.ROLLOUT, 1000);
+        timers.add(PhaseTimers.Phase.ROLLOUT, 100_000);
+        timers.add(PhaseTimers.Phase.ROLLOUT, 100_000);
+        assertEquals(100, timers.getCount(PhaseTimers.Phase.ROLLOUT));
+        assertEquals(98, timers.getHistogram(PhaseTimers.Phase.ROLLOUT)[10]);
+        assertEquals(1024, timers.getQuantileNanos(PhaseTimers.Phase.ROLLOUT, 0.5));
+        assertEquals(1024, timers.getQuantileNanos(PhaseTimers.Phase.ROLLOUT, 0.98));
+        assertEquals(131072, timers.getQuantileNanos(PhaseTimers.Phase.ROLLOUT, 0.99));
+        assertEquals(0, timers.getQuantileNanos(PhaseTimers.Phase.SELECTION, 0.5));
+        timers.reset();
+        assertEquals(0, timers.getCount(PhaseTimers.Phase.ROLLOUT));
+    }
+
+    @Test
+    public void testIterationsAndDepths() {
+        SearchMetrics metrics = new SearchMetrics();
+        int samples = 0;
+        for (int i = 0; i < 3 * SearchMetrics.SAMPLE_INTERVAL; i++) if (metrics.iteration(i % 2 == 0 ? 2 : 4)) samples++;
+        metrics.iteration(1000);
+        metrics.nodesAllocated(7);
+        metrics.nodesAllocated(5);
+        assertEquals(3, samples);
+        SearchMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(3 * SearchMetrics.SAMPLE_INTERVAL + 1, snapshot.getIterations());
+        assertEquals(12, snapshot.getNodes());
+        assertEquals(SearchMetrics.MAX_DEPTH, snapshot.getMaxDepth());
+        assertEquals(1, snapshot.getDepthHistogram()[SearchMetrics.MAX_DEPTH]);
+        assertEquals(3, snapshot.getMeanDepth(), 0.05);
+        assertTrue(snapshot.getIterationsPerSecond() > 0);
+        metrics.reset();
+        assertEquals(0, metrics.snapshot().getIterations());
+        assertEquals(0, metrics.snapshot().getMeanDepth(), 0);
+    }
+
+    @Test
+    public void testSamplesPerThread() throws InterruptedException {
+        SearchMetrics metrics = new SearchMetrics();
+        AtomicInteger samples = new AtomicInteger();
+        Thread[] threads = new Thread[3];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 2 * SearchMetrics.SAMPLE_INTERVAL - 1; i++) if (metrics.iteration(1)) samples.incrementAndGet();
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) thread.join();
+        // each thread samples after its own SAMPLE_INTERVAL iterations, however they interleave
+        assertEquals(3, samples.get());
+        assertEquals(3 * (2 * SearchMetrics.SAMPLE_INTERVAL - 1), metrics.snapshot().getIterations());
+    }
+
+    @Test
+    public void testPrincipalVariation() {
+        SearchMetrics metrics = new SearchMetrics();
+        metrics.principalVariation(List.of("a", "b"));
+        metrics.principalVariation(List.of("a", "b"));
+        metrics.principalVariation(List.of("a", "c"));
+        metrics.principalVariation(List.of("d", "c"));
+        metrics.principalVariation(List.of("d", "c"));
+        SearchMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(List.of("d", "c"), snapshot.getPrincipalVariation());
+        assertEquals(5, snapshot.getPvSamples());
+        assertEquals(2, snapshot.getPvChanges());
+        assertEquals(1, snapshot.getBestMoveChanges());
+        assertEquals(0.5, snapshot.getPvStability(), 1e-9);
+        // the first sample of a new search is not compared with the last of the previous one
+        metrics.newSearch();
+        metrics.principalVariation(List.of("e"));
+        assertEquals(2, metrics.snapshot().getPvChanges());
+        assertEquals(1, metrics.snapshot().getBestMoveChanges());
+    }
+
+    @Test
+    public void testRateBetweenSnapshots() throws InterruptedException {
+        SearchMetrics metrics = new SearchMetrics();
+        SearchMetrics.Snapshot first = metrics.snapshot();
+        for (int i = 0; i < 1000; i++) metrics.iteration(1);
+        Thread.sleep(10);
+        SearchMetrics.Snapshot second = metrics.snapshot();
+        double rate = second.getIterationsPerSecond(first);
+        assertTrue(rate > 0);
+        assertTrue(rate <= 1000 / 0.01);
+        assertEquals(0, second.getIterationsPerSecond(second), 0);
+    }
+
+    @Test
+    public void testSearchEngineMetrics() {
+        SearchEngine<SearchEngineTest.Nim> engine = new SearchEngine<>(EngineConfig.iterations(3000).withSeed(3).withPhaseTimers(true), Playout.uniform());
+        engine.findNextMove(new SearchEngineTest.Pile(20, 0));
+        SearchMetrics.Snapshot snapshot = engine.getMetrics().snapshot();
+        assertEquals(3000, snapshot.getIterations());
+        assertEquals(engine.getTimers().getCount(PhaseTimers.Phase.ROLLOUT), 3000);
+        assertTrue(snapshot.getNodes() > 0);
+        assertTrue(snapshot.getMaxDepth() > 1);
+        assertEquals(2, snapshot.getPvSamples());
+        assertFalse(snapshot.getPrincipalVariation().isEmpty());
+        assertTrue(snapshot.getPhaseQuantileNanos(PhaseTimers.Phase.ROLLOUT, 0.99) > 0);
+    }
+}
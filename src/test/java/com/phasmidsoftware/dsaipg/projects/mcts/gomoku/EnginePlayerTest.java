@@ -0,0 +1,62 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.gomoku;
+
+import com.phasmidsoftware.dsaipg.projects.mcts.core.EngineConfig;
+import com.phasmidsoftware.dsaipg.projects.mcts.core.ParallelMode;
+import com.phasmidsoftware.dsaipg.projects.mcts.core.PhaseTimers;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class EnginePlayerTest {
+
+    /**
+     * Black to move, with four in a row on row 4 (open at the right).
+     */
+    private static GomokuState fourInARow() {
+        GomokuState state = new GomokuState(9);
+        for (int col = 0; col < 4; col++) {
+            state.makeMove(new GomokuMove(4, col));
+            state.makeMove(new GomokuMove(0, 2 * col));
+        }
+        return state;
+    }
+
+    @Test
+    public void testTakesTheWin() {
+        EnginePlayer player = new EnginePlayer(EngineConfig.iterations(2000).withSeed(1));
+        assertEquals(new GomokuMove(4, 4), player.getMove(fourInARow()));
+        assertEquals(2000, player.getIterations());
+    }
+
+    @Test
+    public void testMetrics() {
+        EnginePlayer player = new EnginePlayer(EngineConfig.iterations(2000).withSeed(1));
+        Player random = new RandomPlayer(1);
+        assertNull(random.getMetrics());
+        player.getMove(fourInARow());
+        assertEquals(2000, player.getMetrics().snapshot().getIterations());
+        assertTrue(player.getMetrics().snapshot().getNodes() > 0);
+    }
+
+    @Test
+    public void testTreeParallel() {
+        EnginePlayer player = new EnginePlayer(EngineConfig.iterations(1000).withParallelism(ParallelMode.TREE, 2).withPhaseTimers(true),
+                RolloutPolicy.THREATS, 1);
+        assertEquals(new GomokuMove(4, 4), player.getMove(fourInARow()));
+        assertEquals(2000, player.getIterations());
+        assertTrue(player.getTimers().getNanos(PhaseTimers.Phase.ROLLOUT) > 0);
+    }
+
+    @Test
+    public void testPlaysAGame() {
+        GomokuGame game = new GomokuGame(new EnginePlayer(EngineConfig.iterations(200).withSeed(3)), new RandomPlayer(3), 7);
+        int winner = game.play();
+        assertTrue(game.getState().isTerminal());
+        assertEquals(winner, game.getState().checkWin());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadCandidateDistance() {
+        new EnginePlayer(EngineConfig.iterations(10), RolloutPolicy.UNIFORM, -1);
+    }
+}
@@ -0,0 +1,76 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.gomoku;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class GameRecordTest {
+
+    @Test
+    public void testEncodeDecode() {
+        GameRecord record = sample();
+        ByteBuffer buffer = record.encode();
+        assertEquals(buffer.limit() - Integer.BYTES, buffer.getInt());
+        GameRecord decoded = GameRecord.decode(buffer);
+        assertFalse(buffer.hasRemaining());
+        assertEquals(record, decoded);
+        assertEquals(record.hashCode(), decoded.hashCode());
+        assertEquals(GomokuState.PLAYER_TWO, decoded.getWinner());
+        assertEquals(3, decoded.getMoveCount());
+        assertEquals(new GomokuMove(4, 4), decoded.getMove(0));
+        assertEquals(41, decoded.getCell(1));
+        assertEquals(new GomokuMove(3, 4), decoded.getMove(2));
+    }
+
+    @Test
+    public void testVisits() {
+        GameRecord record = GameRecord.decode(skipLength(sample().encode()));
+        assertArrayEquals(new int[81], record.getVisits(0));
+        assertEquals(0, record.getTotalVisits(0));
+        int[] visits = record.getVisits(1);
+        assertEquals(1, visits[0]);
+        assertEquals(300, visits[40]);
+        assertEquals(100_000, visits[80]);
+        assertEquals(100_301, record.getTotalVisits(1));
+        assertEquals(7, record.getTotalVisits(2));
+    }
+
+    @Test
+    public void testCompactness() {
+        // 4 + 4 for the length and header, and 2 per move; then, for the visits (count, then gap and visits per cell):
+        // 1; 1 + (1 + 1) + (1 + 2) + (1 + 3); and 1 + (1 + 1).
+        assertEquals(4 + 4 + 3 * 2 + 1 + 1 + 2 + 3 + 4 + 1 + 2, sample().encode().limit());
+    }
+
+    @Test
+    public void testGetState() {
+        GameRecord record = sample();
+        assertEquals(new GomokuState(9), record.getState(0));
+        GomokuState state = record.getState(2);
+        assertEquals(GomokuState.PLAYER_ONE, state.getCurrentPlayer());
+        assertEquals(81 - 2, state.getEmptyCount());
+        assertEquals(GomokuState.PLAYER_TWO, state.getCell(4, 5));
+        assertEquals(81 - 3, record.getState(3).getEmptyCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMismatchedVisits() {
+        new GameRecord(9, GomokuState.EMPTY, new int[]{40}, new int[0][]);
+    }
+
+    private static GameRecord sample() {
+        int[] second = new int[81];
+        second[0] = 1;
+        second[40] = 300;
+        second[80] = 100_000;
+        int[] third = new int[81];
+        third[41] = 7;
+        return new GameRecord(9, GomokuState.PLAYER_TWO, new int[]{40, 41, 31}, new int[][]{null, second, third});
+    }
+
+    private static ByteBuffer skipLength(ByteBuffer buffer) {
+        return buffer.position(Integer.BYTES);
+    }
+}
@@ -0,0 +1,183 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.gomoku;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class GameRecordWriterTest {
+
+    @Test
+    public void testWriteAndRead() throws IOException {
+        Path path = tempFile();
+        List<GameRecord> records = records(5);
+        try (GameRecordWriter writer = new GameRecordWriter(path)) {
+            for (GameRecord record : records) writer.write(record);
+            assertEquals(5, writer.getRecords());
+            assertEquals(Files.size(path), writer.size());
+        }
+        assertEquals(records, readAll(path, GameRecordReader.SEGMENT_BYTES));
+    }
+
+    @Test
+    public void testCursor() throws IOException {
+        Path path = tempFile();
+        try (GameRecordWriter writer = new GameRecordWriter(path)) {
+            for (GameRecord record : records(2)) writer.write(record);
+        }
+        try (GameRecordReader reader = new GameRecordReader(path)) {
+            assertTrue(reader.next());
+            assertEquals(9, reader.getBoardSize());
+            assertEquals(GomokuState.PLAYER_ONE, reader.getWinner());
+            assertEquals(1, reader.getMoveCount());
+            assertEquals(0, reader.getCell(0));
+            assertTrue(reader.next());
+            assertEquals(2, reader.getMoveCount());
+            assertEquals(1, reader.getCell(1));
+            assertFalse(reader.next());
+            assertEquals(2, reader.getRecords());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testNoCurrentRecord() throws IOException {
+        Path path = tempFile();
+        new GameRecordWriter(path).close();
+        try (GameRecordReader reader = new GameRecordReader(path)) {
+            assertFalse(reader.next());
+            reader.getMoveCount();
+        }
+    }
+
+    @Test
+    public void testAppend() throws IOException {
+        Path path = tempFile();
+        List<GameRecord> records = records(4);
+        try (GameRecordWriter writer = new GameRecordWriter(path)) {
+            writer.write(records.get(0));
+            writer.write(records.get(1));
+        }
+        try (GameRecordWriter writer = new GameRecordWriter(path)) {
+            writer.write(records.get(2));
+            writer.write(records.get(3));
+            assertEquals(2, writer.getRecords());
+        }
+        assertEquals(records, readAll(path, GameRecordReader.SEGMENT_BYTES));
+    }
+
+    @Test
+    public void testIncompleteRecord() throws IOException {
+        Path path = tempFile();
+        List<GameRecord> records = records(3);
+        try (GameRecordWriter writer = new GameRecordWriter(path)) {
+            for (GameRecord record : records) writer.write(record);
+        }
+        // cut the last record short, as a crash might
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+        assertEquals(records.subList(0, 2), readAll(path, GameRecordReader.SEGMENT_BYTES));
+        long size = Files.size(path);
+        try (GameRecordWriter writer = new GameRecordWriter(path)) {
+            assertTrue(writer.size() < size);
+            writer.write(records.get(2));
+        }
+        assertEquals(records, readAll(path, GameRecordReader.SEGMENT_BYTES));
+    }
+
+    @Test
+    public void testSmallSegments() throws IOException {
+        Path path = tempFile();
+        List<GameRecord> records = records(20);
+        try (GameRecordWriter writer = new GameRecordWriter(path)) {
+            for (GameRecord record : records) writer.write(record);
+        }
+        // segments smaller than some records, so that the reader must remap repeatedly
+        assertEquals(records, readAll(path, 64));
+        assertEquals(records, readAll(path, 7));
+    }
+
+    @Test
+    public void testConcurrentWrites() throws Exception {
+        Path path = tempFile();
+        List<GameRecord> records = records(8);
+        try (GameRecordWriter writer = new GameRecordWriter(path)) {
+            List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int first = t;
+                threads.add(new Thread(() -> {
+                    try {
+                        for (int i = first; i < records.size(); i += 4)
+                            for (int j = 0; j < 25; j++) writer.write(records.get(i));
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                }));
+            }
+            for (Thread thread : threads) thread.start();
+            for (Thread thread : threads) thread.join();
+            assertEquals(200, writer.getRecords());
+        }
+        List<GameRecord> read = readAll(path, GameRecordReader.SEGMENT_BYTES);
+        assertEquals(200, read.size());
+        for (GameRecord record : records) assertEquals(25, read.stream().filter(record::equals).count());
+    }
+
+    @Test(expected = IOException.class)
+    public void testNotAGameRecordFile() throws IOException {
+        Path path = tempFile();
+        Files.write(path, ByteBuffer.allocate(16).putInt(0x12345678).array());
+        new GameRecordWriter(path).close();
+    }
+
+    @Test(expected = IOException.class)
+    public void testUnsupportedVersion() throws IOException {
+        Path path = tempFile();
+        Files.write(path, ByteBuffer.allocate(8).putInt(GameRecordWriter.MAGIC).putInt(GameRecordWriter.VERSION + 1).array());
+        new GameRecordReader(path).close();
+    }
+
+    /**
+     * @return n records of games on a 9x9 board, game i having i + 1 moves and a visit distribution for each
+     * after the first.
+     */
+    private static List<GameRecord> records(int n) {
+        List<GameRecord> result = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            int[] moves = new int[i + 1];
+            int[][] visits = new int[i + 1][];
+            for (int ply = 0; ply <= i; ply++) {
+                moves[ply] = ply;
+                if (ply > 0) {
+                    visits[ply] = new int[81];
+                    for (int cell = ply; cell < 81; cell += 3) visits[ply][cell] = cell * (i + 1);
+                }
+            }
+            result.add(new GameRecord(9, i % 2 == 0 ? GomokuState.PLAYER_ONE : GomokuState.PLAYER_TWO, moves, visits));
+        }
+        return result;
+    }
+
+    private static List<GameRecord> readAll(Path path, long segmentBytes) throws IOException {
+        List<GameRecord> result = new ArrayList<>();
+        try (GameRecordReader reader = new GameRecordReader(path, segmentBytes)) {
+            while (reader.next()) result.add(reader.read());
+        }
+        return result;
+    }
+
+    private static Path tempFile() throws IOException {
+        Path path = Files.createTempFile("gomoku", ".gmr");
+        path.toFile().deleteOnExit();
+        Files.delete(path);
+        return path;
+    }
+}
@@ -1,9 +1,11 @@
 package com.phasmidsoftware.dsaipg.projects.mcts.gomoku;
 
+import com.phasmidsoftware.dsaipg.projects.mcts.core.CodedState;
 import com.phasmidsoftware.dsaipg.projects.mcts.core.Move;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import static org.junit.Assert.*;
@@ -67,33 +69,29 @@ public class GomokuStateTest {
 
     @Test
     public void testCheckWinHorizontal() {
-        int[][] board = state.getBoard();
-        for (int j = 0; j < 5; j++) board[0][j] = GomokuState.PLAYER_ONE;
+        for (int j = 0; j < 5; j++) state.setCell(0, j, GomokuState.PLAYER_ONE);
         assertTrue(state.isTerminal());
         assertEquals(GomokuState.PLAYER_ONE, state.checkWin());
     }
 
     @Test
     public void testCheckWinVertical() {
-        int[][] board = state.getBoard();
-        for (int i = 0; i < 5; i++) board[i][0] = GomokuState.PLAYER_ONE;
+        for (int i = 0; i < 5; i++) state.setCell(i, 0, GomokuState.PLAYER_ONE);
         assertTrue(state.isTerminal());
         assertEquals(GomokuState.PLAYER_ONE, state.checkWin());
     }
 
     @Test
     public void testCheckWinDiagonalDown() {
-        int[][] board = state.getBoard();
-        for (int k = 0; k < 5; k++) board[k][k] = GomokuState.PLAYER_ONE;
+        for (int k = 0; k < 5; k++) state.setCell(k, k, GomokuState.PLAYER_ONE);
         assertTrue(state.isTerminal());
         assertEquals(GomokuState.PLAYER_ONE, state.checkWin());
     }
 
     @Test
     public void testCheckWinDiagonalUp() {
-        int[][] board = state.getBoard();
         // positions (4,0),(3,1),(2,2),(1,3),(0,4)
-        for (int k = 0; k < 5; k++) board[4 - k][k] = GomokuState.PLAYER_TWO;
+        for (int k = 0; k < 5; k++) state.setCell(4 - k, k, GomokuState.PLAYER_TWO);
         assertTrue(state.isTerminal());
         assertEquals(GomokuState.PLAYER_TWO, state.checkWin());
     }
@@ -129,9 +127,8 @@ public class GomokuStateTest {
 
     @Test
     public void testAllEqualFails() {
-        int[][] board = state.getBoard();
-        for (int j = 0; j < 4; j++) board[0][j] = GomokuState.PLAYER_ONE;
-        board[0][4] = GomokuState.PLAYER_TWO;
+        for (int j = 0; j < 4; j++) state.setCell(0, j, GomokuState.PLAYER_ONE);
+        state.setCell(0, 4, GomokuState.PLAYER_TWO);
         assertEquals(GomokuState.EMPTY, state.checkWin()); // No win
     }
 
@@ -145,8 +142,7 @@ public class GomokuStateTest {
 
     @Test
     public void testWinnerOptional() {
-        int[][] board = state.getBoard();
-        for (int j = 0; j < 5; j++) board[0][j] = GomokuState.PLAYER_ONE;
+        for (int j = 0; j < 5; j++) state.setCell(0, j, GomokuState.PLAYER_ONE);
         assertTrue(state.winner().isPresent());
         assertEquals(Integer.valueOf(GomokuState.PLAYER_ONE), state.winner().get());
     }
@@ -173,4 +169,253 @@ public class GomokuStateTest {
         assertNotNull(state.game());
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testWinDetectedByMakeMove() {
+        GomokuState s = new GomokuState(15);
+        // X plays down the anti-diagonal from (10,3); O plays along row 0
+        for (int k = 0; k < 4; k++) {
+            s.makeMove(new GomokuMove(10 - k, 3 + k));
+            s.makeMove(new GomokuMove(0, k));
+            assertEquals(GomokuState.EMPTY, s.checkWin());
+        }
+        s.makeMove(new GomokuMove(6, 7));
+        assertTrue(s.isTerminal());
+        assertEquals(GomokuState.PLAYER_ONE, s.checkWin());
+    }
+
+    @Test
+    public void testWinCompletedInTheMiddle() {
+        GomokuState s = new GomokuState(9);
+        int[] cols = {0, 1, 3, 4};
+        for (int c : cols) {
+            s.makeMove(new GomokuMove(4, c));
+            s.makeMove(new GomokuMove(8, c));
+        }
+        assertFalse(s.isTerminal());
+        s.makeMove(new GomokuMove(4, 2));
+        assertEquals(GomokuState.PLAYER_ONE, s.checkWin());
+    }
+
+    @Test
+    public void testNoWrapAroundBetweenRows() {
+        GomokuState s = new GomokuState(7);
+        // (0,4),(0,5),(0,6) and (1,0),(1,1) are adjacent bits but not a line
+        s.setCell(0, 4, GomokuState.PLAYER_ONE);
+        s.setCell(0, 5, GomokuState.PLAYER_ONE);
+        s.setCell(0, 6, GomokuState.PLAYER_ONE);
+        s.setCell(1, 0, GomokuState.PLAYER_ONE);
+        s.setCell(1, 1, GomokuState.PLAYER_ONE);
+        assertEquals(GomokuState.EMPTY, s.checkWin());
+        assertFalse(s.isTerminal());
+    }
+
+    @Test
+    public void testEmptyCount() {
+        assertEquals(25, state.getEmptyCount());
+        state.makeMove(new GomokuMove(0, 0));
+        state.makeMove(new GomokuMove(4, 4));
+        assertEquals(23, state.getEmptyCount());
+        assertEquals(state.getLegalMoves().size(), state.getEmptyCount());
+        state.setCell(4, 4, GomokuState.EMPTY);
+        assertEquals(24, state.getEmptyCount());
+    }
+
+    @Test
+    public void testLegalMovesAcrossWordBoundary() {
+        GomokuState s = new GomokuState(19); // 361 cells: six words, the last one partial
+        s.makeMove(new GomokuMove(3, 7)); // bit 64
+        s.makeMove(new GomokuMove(18, 18)); // the last cell
+        List<GomokuMove> moves = s.getLegalMoves();
+        assertEquals(359, moves.size());
+        assertFalse(moves.contains(new GomokuMove(3, 7)));
+        assertFalse(moves.contains(new GomokuMove(18, 18)));
+        assertEquals(new GomokuMove(0, 0), moves.get(0));
+        assertEquals(new GomokuMove(18, 17), moves.get(358));
+    }
+
+    @Test
+    public void testMakeMoveOffBoard() {
+        assertThrows(IllegalArgumentException.class, () -> state.makeMove(new GomokuMove(0, 5)));
+        assertThrows(IllegalArgumentException.class, () -> state.makeMove(new GomokuMove(-1, 0)));
+    }
+
+    @Test
+    public void testGetBoardIsSnapshot() {
+        int[][] board = state.getBoard();
+        board[0][0] = GomokuState.PLAYER_ONE;
+        assertEquals(GomokuState.EMPTY, state.getCell(0, 0));
+        assertEquals(25, state.getEmptyCount());
+    }
+
+    @Test
+    public void testHashTranspositions() {
+        GomokuState a = new GomokuState(5);
+        a.makeMove(new GomokuMove(0, 0));
+        a.makeMove(new GomokuMove(1, 1));
+        a.makeMove(new GomokuMove(2, 2));
+        GomokuState b = new GomokuState(5);
+        b.makeMove(new GomokuMove(2, 2));
+        b.makeMove(new GomokuMove(1, 1));
+        b.makeMove(new GomokuMove(0, 0));
+        assertEquals(a.getHash(), b.getHash());
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+        b.setCell(1, 1, GomokuState.EMPTY);
+        assertNotEquals(a.getHash(), b.getHash());
+        assertNotEquals(a, b);
+    }
+
+    @Test
+    public void testHashIncludesPlayerToMove() {
+        GomokuState a = new GomokuState(5);
+        a.makeMove(new GomokuMove(0, 0));
+        GomokuState b = new GomokuState(5);
+        b.setCell(0, 0, GomokuState.PLAYER_ONE); // same stones, but PLAYER_ONE still to move
+        assertNotEquals(a.getHash(), b.getHash());
+        assertNotEquals(a, b);
+    }
+
+    @Test
+    public void testHashAfter() {
+        state.makeMove(new GomokuMove(2, 2));
+        GomokuMove move = new GomokuMove(3, 1);
+        long expected = state.hashAfter(move);
+        GomokuState next = state.clone();
+        next.makeMove(move);
+        assertEquals(expected, next.getHash());
+        assertEquals(state.getHash(), state.clone().getHash());
+    }
+
+    @Test
+    public void testSetCellHashRoundTrip() {
+        long empty = state.getHash();
+        state.setCell(3, 3, GomokuState.PLAYER_TWO);
+        state.setCell(3, 3, GomokuState.PLAYER_ONE);
+        state.setCell(3, 3, GomokuState.EMPTY);
+        assertEquals(empty, state.getHash());
+    }
+
+    @Test
+    public void testCandidateMovesEmptyBoard() {
+        GomokuState s = new GomokuState(15, 2);
+        assertEquals(List.of(new GomokuMove(7, 7)), s.getCandidateMoves());
+        // By default, there is no candidate distance: every empty cell is a candidate.
+        assertEquals(0, new GomokuState(15).getCandidateDistance());
+        assertEquals(225, new GomokuState(15).getCandidateMoves().size());
+    }
+
+    @Test
+    public void testCandidateMoves() {
+        GomokuState s = new GomokuState(15, 2);
+        s.makeMove(new GomokuMove(7, 7));
+        List<GomokuMove> candidates = s.getCandidateMoves();
+        assertEquals(24, candidates.size());
+        assertFalse(candidates.contains(new GomokuMove(7, 7)));
+        assertTrue(candidates.contains(new GomokuMove(5, 9)));
+        assertFalse(candidates.contains(new GomokuMove(4, 7)));
+        s.makeMove(new GomokuMove(0, 0));
+        assertEquals(24 + 8, s.getCandidateMoves().size());
+        assertEquals(8, s.withCandidateDistance(1).getCandidateMoves().size() - 3);
+    }
+
+    @Test
+    public void testCandidateMovesIncremental() {
+        GomokuState s = new GomokuState(19, 1);
+        int[][] moves = {{9, 9}, {0, 18}, {10, 10}, {18, 0}, {3, 3}, {3, 4}};
+        for (int[] move : moves) s.makeMove(new GomokuMove(move[0], move[1]));
+        GomokuState recomputed = s.withCandidateDistance(3).withCandidateDistance(1);
+        assertEquals(recomputed.getCandidateMoves(), s.getCandidateMoves());
+        assertEquals(s.clone().getCandidateMoves(), s.getCandidateMoves());
+        assertEquals(s.getLegalMoves(), s.withCandidateDistance(0).getCandidateMoves());
+    }
+
+    @Test
+    public void testCandidateMovesAfterSetCell() {
+        GomokuState s = new GomokuState(15, 2);
+        s.setCell(7, 7, GomokuState.PLAYER_ONE);
+        assertEquals(24, s.getCandidateMoves().size());
+        s.setCell(7, 7, GomokuState.EMPTY);
+        assertEquals(List.of(new GomokuMove(7, 7)), s.getCandidateMoves());
+    }
+
+    @Test
+    public void testAdjacentStones() {
+        state.makeMove(new GomokuMove(2, 2));
+        state.makeMove(new GomokuMove(1, 1));
+        state.makeMove(new GomokuMove(4, 4));
+        assertEquals(2, state.adjacentStones(new GomokuMove(1, 2)));
+        assertEquals(2, state.adjacentStones(new GomokuMove(3, 3)));
+        assertEquals(1, state.adjacentStones(new GomokuMove(0, 0)));
+        assertEquals(0, state.adjacentStones(new GomokuMove(0, 4)));
+    }
+
+    @Test
+    public void testCopyTo() {
+        GomokuState s = new GomokuState(9); // 81 cells: two words
+        s.makeMove(new GomokuMove(0, 0));
+        s.makeMove(new GomokuMove(8, 8));
+        byte[] cells = new byte[81];
+        int[] empties = new int[81];
+        Arrays.fill(cells, (byte) 7);
+        assertEquals(79, s.copyTo(cells, empties));
+        assertEquals(GomokuState.PLAYER_ONE, cells[0]);
+        assertEquals(GomokuState.PLAYER_TWO, cells[80]);
+        assertEquals(GomokuState.EMPTY, cells[40]);
+        assertEquals(1, empties[0]);
+        assertEquals(79, empties[78]);
+    }
+
+    @Test
+    public void testMoveCodes() {
+        state.makeMove(new GomokuMove(0, 0));
+        state.makeMove(new GomokuMove(2, 3));
+        assertTrue(state instanceof CodedState);
+        assertEquals(25, state.maxMoves());
+        int[] codes = new int[state.maxMoves()];
+        int n = state.moveCodes(state.player(), codes);
+        assertEquals(23, n);
+        List<GomokuMove> legal = state.getLegalMoves();
+        for (int i = 0; i < n; i++) assertEquals(legal.get(i), state.move(codes[i]));
+        GomokuState next = state.next(codes[0]);
+        assertEquals(GomokuState.PLAYER_ONE, next.getCell(0, 1));
+        assertEquals(next, state.next(state.move(codes[0])));
+        assertEquals(23, state.getEmptyCount());
+    }
+
+    @Test
+    public void testCandidateCells() {
+        GomokuState big = new GomokuState(9, 2);
+        int[] cells = new int[81];
+        assertEquals(1, big.getCandidateCells(cells));
+        assertEquals(40, cells[0]);
+        big.makeMove(new GomokuMove(4, 4));
+        big.makeMove(new GomokuMove(0, 0));
+        int n = big.getCandidateCells(cells);
+        List<GomokuMove> candidates = big.getCandidateMoves();
+        assertEquals(candidates.size(), n);
+        for (int i = 0; i < n; i++) assertEquals(candidates.get(i), new GomokuMove(cells[i] / 9, cells[i] % 9));
+        assertEquals(79, big.getLegalCells(cells));
+    }
+
+    @Test
+    public void testGetCells() {
+        GomokuState big = new GomokuState(9);
+        big.makeMove(new GomokuMove(4, 4));
+        big.makeMove(new GomokuMove(8, 8));
+        byte[] cells = new byte[2 + 81];
+        Arrays.fill(cells, (byte) 7);
+        big.getCells(cells, 2);
+        assertEquals(7, cells[0]);
+        assertEquals(GomokuState.PLAYER_ONE, cells[2 + 40]);
+        assertEquals(GomokuState.PLAYER_TWO, cells[2 + 80]);
+        int empty = 0;
+        for (int i = 2; i < cells.length; i++) if (cells[i] == GomokuState.EMPTY) empty++;
+        assertEquals(79, empty);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMakeMoveOccupiedCell() {
+        state.makeMove(7);
+        state.makeMove(7);
+    }
+}
@@ -0,0 +1,87 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.gomoku;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.function.LongFunction;
+
+import static org.junit.Assert.*;
+
+public class GomokuTournamentTest {
+    private static final LongFunction<Player> MCTS = seed -> new MCTSPlayer(MCTSConfig.iterations(200).withTreeReuse(true).withSeed(seed));
+
+    @Test
+    public void testElo() {
+        assertEquals(0, GomokuTournament.elo(0.5), 1e-9);
+        assertEquals(190.85, GomokuTournament.elo(0.75), 0.01);
+        assertEquals(-190.85, GomokuTournament.elo(0.25), 0.01);
+        assertEquals(Double.POSITIVE_INFINITY, GomokuTournament.elo(1), 0);
+        assertEquals(Double.NEGATIVE_INFINITY, GomokuTournament.elo(0), 0);
+    }
+
+    @Test
+    public void testColoursAlternate() {
+        GomokuTournament match = new GomokuTournament("A", RandomPlayer::new, "B", RandomPlayer::new, 5, 2, 1);
+        GomokuTournament.Result result = match.run(6, 2);
+        assertEquals(6, result.getGames().size());
+        for (int i = 0; i < 6; i++) {
+            assertEquals(i, result.getGames().get(i).getNumber());
+            assertEquals(i % 2 == 0, result.getGames().get(i).isBlackA());
+        }
+        assertEquals(6, result.getWins() + result.getDraws() + result.getLosses());
+    }
+
+    @Test
+    public void testGamesAreRepeatable() {
+        GomokuTournament match = new GomokuTournament("mcts", MCTS, "random", RandomPlayer::new, 7, 2, 42);
+        GomokuTournament.Result sequential = match.run(4, 1);
+        GomokuTournament.Result parallel = match.run(4, 4);
+        for (int i = 0; i < 4; i++) {
+            GomokuTournament.Game game = sequential.getGames().get(i);
+            assertEquals(game.getScoreA(), parallel.getGames().get(i).getScoreA(), 0);
+            assertEquals(game.getMoves(), parallel.getGames().get(i).getMoves());
+            GomokuTournament.Game replay = match.playGame(i);
+            assertEquals(game.getScoreA(), replay.getScoreA(), 0);
+            assertEquals(game.getMoves(), replay.getMoves());
+        }
+    }
+
+    @Test
+    public void testStrongerPlayerWins() {
+        GomokuTournament match = new GomokuTournament("mcts", MCTS, "random", RandomPlayer::new, 7, 0, 5);
+        GomokuTournament.Result result = match.run(10, 2);
+        assertTrue(result.getWins() >= 8);
+        assertTrue(result.getElo() > 0);
+        assertTrue(result.getEloLow() < result.getElo());
+        assertTrue(result.getEloHigh() >= result.getElo());
+        assertTrue(result.getMovesPerSecondA() > 0);
+        assertTrue(result.getMovesPerSecondB() > result.getMovesPerSecondA());
+    }
+
+    @Test
+    public void testConfidenceInterval() {
+        // 5 wins, 2 draws and 3 losses: score 0.6, Wilson interval [0.3127, 0.8318]
+        GomokuTournament.Result result = new GomokuTournament.Result(new GomokuTournament("A", null, "B", null, 15, 0, 0),
+                List.of(game(2), game(2), game(2), game(2), game(2), game(1), game(1), game(0), game(0), game(0)), 0);
+        assertEquals(0.6, result.getScore(), 1e-9);
+        assertEquals(0.3127, result.wilson(-1), 1e-4);
+        assertEquals(0.8318, result.wilson(1), 1e-4);
+        assertEquals(GomokuTournament.elo(0.3127), result.getEloLow(), 0.1);
+        String row = result.toFile();
+        assertEquals(GomokuTournament.Result.HEADER.split(",").length, row.split(",").length);
+        assertTrue(row.startsWith("A,B,15,0,0,10,5,2,3,0.6000,70.4,"));
+    }
+
+    @Test
+    public void testConfidenceIntervalForAClearSweep() {
+        GomokuTournament.Result result = new GomokuTournament.Result(new GomokuTournament("A", null, "B", null, 15, 0, 0),
+                List.of(game(2), game(2), game(2), game(2), game(2), game(2), game(2), game(2), game(2), game(2)), 0);
+        assertEquals(Double.POSITIVE_INFINITY, result.getElo(), 0);
+        assertTrue(result.getEloLow() > 100 && result.getEloLow() < Double.POSITIVE_INFINITY);
+        assertEquals(Double.POSITIVE_INFINITY, result.getEloHigh(), 0);
+    }
+
+    private static GomokuTournament.Game game(int halfPoints) {
+        return new GomokuTournament.Game(0, true, halfPoints, 10, 1_000_000, 10, 1_000_000);
+    }
+}
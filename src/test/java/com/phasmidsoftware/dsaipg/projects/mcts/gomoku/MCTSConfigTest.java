@@ -0,0 +1,220 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.gomoku;
+
+import com.phasmidsoftware.dsaipg.projects.mcts.core.ParallelMode;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MCTSConfigTest {
+
+    @Test
+    public void testIterations() {
+        MCTSConfig config = MCTSConfig.iterations(100);
+        assertEquals(100, config.getIterationLimit());
+        assertEquals(ParallelMode.SEQUENTIAL, config.getParallelMode());
+        assertEquals(1, config.getThreads());
+    }
+
+    @Test
+    public void testWithParallelism() {
+        MCTSConfig config = MCTSConfig.iterations(100);
+        MCTSConfig root = config.withParallelism(ParallelMode.ROOT, 8);
+        assertEquals(ParallelMode.ROOT, root.getParallelMode());
+        assertEquals(8, root.getThreads());
+        assertEquals(100, root.getIterationLimit());
+        // the original is unchanged
+        assertEquals(ParallelMode.SEQUENTIAL, config.getParallelMode());
+        // sequential always means one thread
+        assertEquals(1, root.withParallelism(ParallelMode.SEQUENTIAL, 8).getThreads());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadIterations() {
+        MCTSConfig.iterations(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadThreads() {
+        MCTSConfig.iterations(10).withParallelism(ParallelMode.ROOT, 0);
+    }
+
+    @Test
+    public void testVirtualLoss() {
+        MCTSConfig config = MCTSConfig.iterations(10);
+        assertEquals(MCTSConfig.DEFAULT_VIRTUAL_LOSS, config.getVirtualLoss(), 0.0);
+        MCTSConfig tree = config.withParallelism(ParallelMode.TREE, 4).withVirtualLoss(3);
+        assertEquals(3.0, tree.getVirtualLoss(), 0.0);
+        assertEquals(ParallelMode.TREE, tree.getParallelMode());
+        assertEquals(4, tree.getThreads());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadVirtualLoss() {
+        MCTSConfig.iterations(10).withVirtualLoss(-1);
+    }
+
+    @Test
+    public void testTranspositionTable() {
+        MCTSConfig config = MCTSConfig.iterations(10);
+        assertEquals(0, config.getTranspositionTableSize());
+        MCTSConfig tt = config.withParallelism(ParallelMode.TREE, 2).withTranspositionTable(1 << 16);
+        assertEquals(1 << 16, tt.getTranspositionTableSize());
+        assertEquals(ParallelMode.TREE, tt.getParallelMode());
+        assertEquals(0, config.getTranspositionTableSize());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadTranspositionTable() {
+        MCTSConfig.iterations(10).withTranspositionTable(-1);
+    }
+
+    @Test
+    public void testTreeReuse() {
+        MCTSConfig config = MCTSConfig.iterations(10);
+        assertFalse(config.isTreeReuse());
+        assertTrue(config.withTreeReuse(true).isTreeReuse());
+        assertFalse(config.isTreeReuse());
+    }
+
+    @Test
+    public void testTimeBudget() {
+        MCTSConfig config = MCTSConfig.timeBudget(250);
+        assertEquals(250, config.getTimeBudgetMillis());
+        assertTrue(config.isEarlyStop());
+        assertEquals(Integer.MAX_VALUE, config.getIterationLimit());
+        MCTSConfig capped = MCTSConfig.iterations(1000).withTimeBudget(50);
+        assertEquals(50, capped.getTimeBudgetMillis());
+        assertFalse(capped.isEarlyStop());
+        assertEquals(0, MCTSConfig.iterations(10).getTimeBudgetMillis());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadTimeBudget() {
+        MCTSConfig.iterations(10).withTimeBudget(-1);
+    }
+
+    @Test
+    public void testCandidatesAndWidening() {
+        MCTSConfig config = MCTSConfig.iterations(10);
+        assertEquals(0, config.getCandidateDistance());
+        assertEquals(0.0, config.getWideningCoefficient(), 0.0);
+        MCTSConfig wide = config.withCandidateDistance(2).withProgressiveWidening(2, 0.5);
+        assertEquals(2, wide.getCandidateDistance());
+        assertEquals(2.0, wide.getWideningCoefficient(), 0.0);
+        assertEquals(0.5, wide.getWideningExponent(), 0.0);
+    }
+
+    @Test
+    public void testRolloutPolicy() {
+        MCTSConfig config = MCTSConfig.iterations(10);
+        assertSame(RolloutPolicy.UNIFORM, config.getRolloutPolicy());
+        MCTSConfig heavy = config.withRolloutPolicy(RolloutPolicy.THREATS);
+        assertSame(RolloutPolicy.THREATS, heavy.getRolloutPolicy());
+        assertSame(RolloutPolicy.THREATS, heavy.withTreeReuse(true).getRolloutPolicy());
+        assertSame(RolloutPolicy.UNIFORM, config.getRolloutPolicy());
+        assertTrue(heavy.toString().contains("rollout=threats"));
+    }
+
+    @Test
+    public void testRave() {
+        MCTSConfig config = MCTSConfig.iterations(10);
+        assertEquals(0.0, config.getRaveEquivalence(), 0.0);
+        assertEquals(500.0, config.withRave(500).getRaveEquivalence(), 0.0);
+        assertTrue(config.withRave(500).toString().contains("rave=500"));
+    }
+
+    @Test
+    public void testNodeArena() {
+        MCTSConfig config = MCTSConfig.iterations(10);
+        assertFalse(config.isNodeArena());
+        assertTrue(config.withNodeArena(true).isNodeArena());
+        assertTrue(config.withNodeArena(true).toString().contains("nodeArena=true"));
+    }
+
+    @Test
+    public void testNodeBudget() {
+        MCTSConfig config = MCTSConfig.iterations(10);
+        assertEquals(0, config.getNodeBudget());
+        assertEquals(1000, config.withNodeBudget(1000).getNodeBudget());
+        assertTrue(config.withNodeBudget(1000).toString().contains("nodeBudget=1000"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadNodeBudget() {
+        MCTSConfig.iterations(10).withNodeBudget(-1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadRave() {
+        MCTSConfig.iterations(10).withRave(-1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullRolloutPolicy() {
+        MCTSConfig.iterations(10).withRolloutPolicy(null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadWideningExponent() {
+        MCTSConfig.iterations(10).withProgressiveWidening(1, 1.5);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadCandidateDistance() {
+        MCTSConfig.iterations(10).withCandidateDistance(-1);
+    }
+
+    @Test
+    public void testSeed() {
+        MCTSConfig config = MCTSConfig.iterations(10);
+        assertEquals(0, config.getSeed());
+        MCTSConfig seeded = config.withSeed(42).withTreeReuse(true);
+        assertEquals(42, seeded.getSeed());
+        assertEquals(0, config.getSeed());
+    }
+
+    @Test
+    public void testThreatSearch() {
+        MCTSConfig config = MCTSConfig.iterations(10);
+        assertEquals(0, config.getThreatSearchNodes());
+        assertEquals(5000, config.withThreatSearch(5000).withSeed(1).getThreatSearchNodes());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadThreatSearch() {
+        MCTSConfig.iterations(10).withThreatSearch(-1);
+    }
+
+    @Test
+    public void testPhaseTimers() {
+        MCTSConfig config = MCTSConfig.iterations(10);
+        assertFalse(config.isPhaseTimers());
+        assertTrue(config.withPhaseTimers(true).withSeed(1).isPhaseTimers());
+        assertTrue(config.withPhaseTimers(true).toString().contains("phaseTimers=true"));
+    }
+
+    @Test
+    public void testLeafEvaluator() {
+        MCTSConfig config = MCTSConfig.iterations(10);
+        assertNull(config.getLeafEvaluator());
+        assertEquals(0, config.getBatchSize());
+        MCTSConfig batched = config.withLeafEvaluator(LeafEvaluator.PATTERNS, 16).withSeed(1);
+        assertSame(LeafEvaluator.PATTERNS, batched.getLeafEvaluator());
+        assertEquals(16, batched.getBatchSize());
+        assertTrue(batched.toString().contains("evaluator=patterns, batch=16"));
+        assertEquals(0, batched.withLeafEvaluator(null, 16).getBatchSize());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadBatchSize() {
+        MCTSConfig.iterations(10).withLeafEvaluator(LeafEvaluator.PATTERNS, 0);
+    }
+
+    @Test
+    public void testSolver() {
+        MCTSConfig config = MCTSConfig.iterations(10);
+        assertFalse(config.isSolver());
+        assertTrue(config.withSolver(true).withSeed(1).isSolver());
+        assertTrue(config.withSolver(true).toString().contains("solver=true"));
+    }
+}
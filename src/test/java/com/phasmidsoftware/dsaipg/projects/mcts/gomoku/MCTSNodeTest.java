@@ -2,6 +2,8 @@ package com.phasmidsoftware.dsaipg.projects.mcts.gomoku;
 
 import org.junit.Before;
 import org.junit.Test;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import static org.junit.Assert.*;
 
@@ -103,4 +105,316 @@ public class MCTSNodeTest {
         c1.updateStats(0.0);
         assertEquals(c1, MCTSNode.bestChild(root));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testVirtualLossDivertsSelection() {
+        MCTSNode c1 = new MCTSNode(state2x2.clone(), root, new GomokuMove(0, 0));
+        MCTSNode c2 = new MCTSNode(state2x2.clone(), root, new GomokuMove(0, 1));
+        root.addChild(c1); root.addChild(c2);
+        for (int i = 0; i < 4; i++) root.updateStats(0.5);
+        c1.updateStats(1.0); c1.updateStats(1.0);
+        c2.updateStats(1.0); c2.updateStats(0.0);
+        assertEquals(c1, root.selectChild(1.0));
+        // two threads are currently below c1
+        c1.addVirtualLoss(); c1.addVirtualLoss();
+        assertEquals(2, c1.getVirtualLosses());
+        assertEquals(c1, root.selectChild(0.0));
+        assertEquals(c2, root.selectChild(1.0));
+        c1.removeVirtualLoss(); c1.removeVirtualLoss();
+        assertEquals(0, c1.getVirtualLosses());
+        assertEquals(c1, root.selectChild(1.0));
+    }
+
+    @Test
+    public void testClaimExpansionOnce() {
+        assertTrue(root.claimExpansion());
+        assertFalse(root.claimExpansion());
+    }
+
+    @Test
+    public void testAddChildren() {
+        MCTSNode c1 = new MCTSNode(state2x2.clone(), root, new GomokuMove(0, 0));
+        MCTSNode c2 = new MCTSNode(state2x2.clone(), root, new GomokuMove(0, 1));
+        root.addChildren(Arrays.asList(c1, c2));
+        assertEquals(Arrays.asList(c1, c2), root.getChildren());
+    }
+
+    @Test
+    public void testConcurrentUpdateStats() throws InterruptedException {
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 10000; i++) root.updateStats(0.5);
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) thread.join();
+        assertEquals(40000, root.getVisits());
+        assertEquals(20000.0, root.getWins(), 1e-6);
+    }
+
+    @Test
+    public void testMakeRoot() {
+        GomokuState state = new GomokuState(3);
+        MCTSNode root = new MCTSNode(state, null, null);
+        GomokuState next = state.clone();
+        next.makeMove(new GomokuMove(1, 1));
+        MCTSNode child = new MCTSNode(next, root, new GomokuMove(1, 1));
+        int playerNo = child.getPlayerNo();
+        child.makeRoot();
+        assertNull(child.getParent());
+        assertNull(child.getMove());
+        assertEquals(playerNo, child.getPlayerNo());
+    }
+
+    @Test
+    public void testClaimMoves() {
+        GomokuState state = new GomokuState(3);
+        MCTSNode node = new MCTSNode(state, null, null);
+        int[] generated = {0};
+        java.util.function.Supplier<List<GomokuMove>> generator = () -> {
+            generated[0]++;
+            return state.getLegalMoves();
+        };
+        assertTrue(node.canWiden(1));
+        assertEquals(List.of(new GomokuMove(0, 0)), node.claimMoves(1, generator));
+        assertFalse(node.canWiden(1));
+        assertTrue(node.claimMoves(1, generator).isEmpty());
+        assertEquals(2, node.claimMoves(3, generator).size());
+        assertEquals(6, node.claimMoves(100, generator).size());
+        assertFalse(node.canWiden(100));
+        assertTrue(node.claimMoves(100, generator).isEmpty());
+        assertEquals(1, generated[0]);
+    }
+
+    @Test
+    public void testUpdateRave() {
+        GomokuState state = new GomokuState(3);
+        MCTSNode node = new MCTSNode(state, null, null);
+        List<GomokuMove> moves = Arrays.asList(new GomokuMove(0, 0), new GomokuMove(1, 1), new GomokuMove(2, 2));
+        List<MCTSNode> children = new ArrayList<>();
+        for (GomokuMove move : moves) children.add(new MCTSNode(state.clone(), node, move));
+        node.addChildren(children, moves);
+        assertEquals(3, node.getChildren().size());
+        // the playout ended with X (to move at node) on (0, 0) and O on (1, 1)
+        GomokuState end = new GomokuState(3);
+        end.setCell(0, 0, GomokuState.PLAYER_ONE);
+        end.setCell(1, 1, GomokuState.PLAYER_TWO);
+        PlayoutEngine board = new PlayoutEngine();
+        board.load(end);
+        node.updateRave(board, GomokuState.PLAYER_ONE);
+        node.updateRave(board, GomokuState.EMPTY);
+        node.updateRave(board, GomokuState.PLAYER_TWO);
+        assertEquals(3, node.getRaveVisits(0));
+        assertEquals(1.5, node.getRaveWins(0), 1e-9);
+        assertEquals(0, node.getRaveVisits(1));
+        assertEquals(0, node.getRaveVisits(2));
+        assertEquals(0, node.getRaveVisits(3));
+    }
+
+    @Test
+    public void testRaveSteersSelection() {
+        GomokuState state = new GomokuState(3);
+        MCTSNode node = new MCTSNode(state, null, null);
+        List<GomokuMove> moves = Arrays.asList(new GomokuMove(0, 0), new GomokuMove(0, 1));
+        MCTSNode a = new MCTSNode(state.clone(), node, moves.get(0));
+        MCTSNode b = new MCTSNode(state.clone(), node, moves.get(1));
+        node.addChildren(Arrays.asList(a, b), moves);
+        node.updateStats(1.0);
+        node.updateStats(1.0);
+        a.updateStats(1.0);
+        b.updateStats(0.0);
+        // but every playout in which X took (0, 1) was won, and every one in which X took (0, 0) was lost
+        GomokuState won = new GomokuState(3);
+        won.setCell(0, 1, GomokuState.PLAYER_ONE);
+        won.setCell(0, 0, GomokuState.PLAYER_TWO);
+        GomokuState lost = new GomokuState(3);
+        lost.setCell(0, 0, GomokuState.PLAYER_ONE);
+        lost.setCell(0, 1, GomokuState.PLAYER_TWO);
+        PlayoutEngine board = new PlayoutEngine();
+        for (int i = 0; i < 10; i++) {
+            board.load(won);
+            node.updateRave(board, GomokuState.PLAYER_ONE);
+            board.load(lost);
+            node.updateRave(board, GomokuState.PLAYER_TWO);
+        }
+        assertSame(a, node.selectChild(0));
+        assertSame(b, node.selectChild(0, 100));
+    }
+
+    @Test
+    public void testCollapse() {
+        MCTSNode c1 = new MCTSNode(state2x2.clone(), root, new GomokuMove(0, 0));
+        assertTrue(root.claimExpansion());
+        root.addChildren(Arrays.asList(c1), Arrays.asList(new GomokuMove(0, 0)));
+        root.updateStats(1.0);
+        root.collapse();
+        assertTrue(root.getChildren().isEmpty());
+        assertEquals(1, root.getVisits());
+        assertEquals(0, root.getRaveVisits(0));
+        assertNull(root.getRandomChild());
+        assertTrue(root.claimExpansion());
+    }
+
+    @Test
+    public void testProveWin() {
+        // Black to move, with four in a row.
+        GomokuState state = new GomokuState(9);
+        int[][] moves = {{4, 0}, {0, 0}, {4, 1}, {0, 2}, {4, 2}, {0, 4}, {4, 3}, {8, 8}};
+        for (int[] move : moves) state.makeMove(new GomokuMove(move[0], move[1]));
+        MCTSNode node = new MCTSNode(state, null, null);
+        MCTSNode win = child(node, new GomokuMove(4, 4));
+        MCTSNode other = child(node, new GomokuMove(8, 0));
+        assertTrue(node.claimExpansion());
+        node.addChildren(Arrays.asList(other, win));
+        assertEquals(MCTSNode.UNPROVEN, node.getProof());
+        assertFalse(node.prove());
+        assertFalse(other.prove());
+        assertTrue(win.prove());
+        assertEquals(MCTSNode.PROVEN_WIN, win.getProof());
+        // White, who moved last, has lost.
+        assertTrue(node.prove());
+        assertEquals(MCTSNode.PROVEN_LOSS, node.getProof());
+        // the winning move is chosen, however few its visits, and is never selected again
+        other.updateStats(0.0);
+        other.updateStats(0.0);
+        assertSame(win, MCTSNode.bestChild(node));
+        assertSame(other, node.selectChild(0));
+        assertSame(other, node.selectChild(1, 100));
+    }
+
+    @Test
+    public void testProveLoss() {
+        // White to move, with two cells left and a four to block at each: both lose.
+        //   W W W W B
+        //   B B B B .
+        //   B B B B .
+        //   W W W W B
+        //   W B W B W
+        GomokuState state = position(5, new int[][]{{1, 0}, {1, 1}, {1, 2}, {1, 3}, {2, 0}, {2, 1}, {2, 2}, {2, 3}, {0, 4}, {3, 4}, {4, 1}, {4, 3}},
+                new int[][]{{0, 0}, {0, 1}, {0, 2}, {0, 3}, {3, 0}, {3, 1}, {3, 2}, {3, 3}, {4, 0}, {4, 2}, {4, 4}}, 0);
+        MCTSNode node = new MCTSNode(state, null, null);
+        MCTSNode left = child(node, new GomokuMove(1, 4));
+        MCTSNode right = child(node, new GomokuMove(2, 4));
+        assertTrue(node.claimExpansion());
+        node.addChildren(Arrays.asList(left, right));
+        right.updateStats(1.0);
+        MCTSNode leftWin = child(left, new GomokuMove(2, 4));
+        assertTrue(left.claimExpansion());
+        left.addChildren(List.of(leftWin));
+        assertTrue(leftWin.prove());
+        assertTrue(left.prove());
+        assertEquals(MCTSNode.PROVEN_LOSS, left.getProof());
+        // right is not yet proven, so neither is node
+        assertFalse(node.prove());
+        assertSame(right, MCTSNode.bestChild(node));
+        MCTSNode rightWin = child(right, new GomokuMove(1, 4));
+        assertTrue(right.claimExpansion());
+        right.addChildren(List.of(rightWin));
+        assertTrue(rightWin.prove());
+        assertTrue(right.prove());
+        // Black, who moved last, has won: every legal move is a child, and each is lost, so the most visited is chosen.
+        assertTrue(node.prove());
+        assertEquals(MCTSNode.PROVEN_WIN, node.getProof());
+        assertNull(node.selectChild(0));
+        assertSame(right, MCTSNode.bestChild(node));
+    }
+
+    @Test
+    public void testNoProofFromCandidatesAlone() {
+        // White to move. Black threatens to play P = (4, 5), making three fours at once (a row, a column and a
+        // diagonal, completed at (4, 4), (3, 5) and (3, 4)): White can stop that only by playing P, which is two
+        // cells from every stone, and so is not a candidate.
+        GomokuMove p = new GomokuMove(4, 5);
+        GomokuMove[] completions = {new GomokuMove(4, 4), new GomokuMove(3, 5), new GomokuMove(3, 4)};
+        GomokuState state = position(9, new int[][]{{4, 1}, {4, 2}, {4, 3}, {0, 5}, {1, 5}, {2, 5}, {0, 1}, {1, 2}, {2, 3}},
+                new int[][]{{8, 0}, {8, 4}, {8, 8}, {6, 0}, {6, 4}, {6, 8}, {7, 2}, {7, 6}}, 1);
+        List<GomokuMove> candidates = state.getCandidateMoves();
+        assertFalse(candidates.contains(p));
+        assertTrue(state.getLegalMoves().contains(p));
+        // Prove that every candidate loses: after it, Black plays P, and wins after any reply.
+        MCTSNode node = new MCTSNode(state, null, null);
+        List<MCTSNode> children = new ArrayList<>();
+        for (GomokuMove candidate : candidates) children.add(child(node, candidate));
+        assertTrue(node.claimExpansion());
+        node.addChildren(children);
+        for (MCTSNode c : children) {
+            MCTSNode fork = child(c, p);
+            assertTrue(c.claimExpansion());
+            c.addChildren(List.of(fork));
+            List<MCTSNode> replies = new ArrayList<>();
+            for (GomokuMove reply : fork.getState().getLegalMoves()) replies.add(child(fork, reply));
+            assertTrue(fork.claimExpansion());
+            fork.addChildren(replies);
+            for (MCTSNode r : replies) {
+                GomokuMove win = null;
+                for (GomokuMove completion : completions)
+                    if (win == null && r.getState().getCell(completion.getRow(), completion.getCol()) == GomokuState.EMPTY) win = completion;
+                MCTSNode w = child(r, win);
+                assertTrue(r.claimExpansion());
+                r.addChildren(List.of(w));
+                assertTrue(w.prove());
+                assertTrue(r.prove());
+            }
+            assertTrue(fork.prove());
+            assertEquals(MCTSNode.PROVEN_WIN, fork.getProof());
+            assertTrue(c.prove());
+            assertEquals(MCTSNode.PROVEN_LOSS, c.getProof());
+        }
+        // Every candidate is lost, but P is untried: Black has not proven a win.
+        assertFalse(node.prove());
+        assertEquals(MCTSNode.UNPROVEN, node.getProof());
+    }
+
+    @Test
+    public void testUnexpandedNodeIsNotProven() {
+        MCTSNode node = new MCTSNode(new GomokuState(9), null, null);
+        assertFalse(node.prove());
+        // a child which is not terminal proves nothing
+        MCTSNode c = child(node, new GomokuMove(4, 4));
+        node.addChildren(List.of(c));
+        assertFalse(node.prove());
+        // a drawn game proves nothing
+        assertFalse(new MCTSNode(fullBoard(), null, null).prove());
+    }
+
+    @Test
+    public void testLead() {
+        MCTSNode node = new MCTSNode(new GomokuState(3), null, null);
+        assertEquals(0, node.lead());
+        int[] visits = {10, 80, 5};
+        List<MCTSNode> children = new ArrayList<>();
+        for (int i = 0; i < visits.length; i++) {
+            MCTSNode c = child(node, new GomokuMove(0, i));
+            for (int v = 0; v < visits[i]; v++) c.updateStats(0.5);
+            children.add(c);
+        }
+        node.addChildren(children);
+        assertEquals(70, node.lead());
+    }
+
+    private static MCTSNode child(MCTSNode parent, GomokuMove move) {
+        GomokuState state = parent.getState().clone();
+        state.makeMove(move);
+        return new MCTSNode(state, parent, move);
+    }
+
+    /**
+     * @return the position after Black's and White's stones have been played alternately (Black first).
+     */
+    private static GomokuState position(int boardSize, int[][] black, int[][] white, int candidateDistance) {
+        GomokuState state = new GomokuState(boardSize, candidateDistance);
+        for (int i = 0; i < black.length; i++) {
+            state.makeMove(new GomokuMove(black[i][0], black[i][1]));
+            if (i < white.length) state.makeMove(new GomokuMove(white[i][0], white[i][1]));
+        }
+        return state;
+    }
+
+    private static GomokuState fullBoard() {
+        // On a 2x2 board, no one can win.
+        GomokuState state = new GomokuState(2);
+        for (int cell = 0; cell < 4; cell++) state.makeMove(cell);
+        return state;
+    }
+}
@@ -11,4 +11,52 @@ public class MCTSPlayerTest {
         GomokuMove move = player.getMove(new GomokuState(2));
         assertTrue(new GomokuState(2).getLegalMoves().contains(move));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testRootParallelPlayer() {
+        MCTSPlayer player = new MCTSPlayer(10, 2);
+        GomokuMove move = player.getMove(new GomokuState(3));
+        assertTrue(new GomokuState(3).getLegalMoves().contains(move));
+    }
+
+    @Test
+    public void testPlayerReusesTree() {
+        MCTSPlayer player = new MCTSPlayer(300);
+        GomokuState state = new GomokuState(5);
+        state.makeMove(player.getMove(state));
+        state.makeMove(state.getLegalMoves().get(0));
+        player.getMove(state);
+        assertTrue(player.getCarriedVisits() > 0);
+    }
+
+    @Test
+    public void testTimeBudgetPlayer() {
+        MCTSPlayer player = MCTSPlayer.timeBudget(50, 1);
+        GomokuState state = new GomokuState(9);
+        GomokuMove move = player.getMove(state);
+        assertTrue(state.getLegalMoves().contains(move));
+        assertTrue(player.getIterations() > 0);
+    }
+
+    @Test
+    public void testNodeBudgetPlayer() {
+        MCTSPlayer player = new MCTSPlayer(MCTSConfig.iterations(300).withNodeBudget(2000));
+        GomokuState state = new GomokuState(9);
+        assertTrue(state.getLegalMoves().contains(player.getMove(state)));
+        assertTrue(player.getPrunings() > 0);
+        assertTrue(player.getPeakNodes() >= 2000);
+    }
+
+    @Test
+    public void testPlayerPonders() throws InterruptedException {
+        MCTSPlayer player = new MCTSPlayer(200);
+        GomokuState state = new GomokuState(5);
+        state.makeMove(player.getMove(state));
+        player.ponder(state);
+        for (int i = 0; i < 1000 && player.getPonderIterations() < 1000; i++) Thread.sleep(10);
+        state.makeMove(state.getLegalMoves().get(0));
+        assertTrue(state.getLegalMoves().contains(player.getMove(state)));
+        assertTrue(player.getPonderIterations() >= 1000);
+        player.stopPondering();
+    }
+}
@@ -1,8 +1,16 @@
 package com.phasmidsoftware.dsaipg.projects.mcts.gomoku;
 
+import com.phasmidsoftware.dsaipg.projects.mcts.core.ParallelMode;
+import com.phasmidsoftware.dsaipg.projects.mcts.core.PhaseTimers;
+import com.phasmidsoftware.dsaipg.projects.mcts.core.SearchMetrics;
 import org.junit.Test;
 import static org.junit.Assert.*;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 public class MonteCarloTreeSearchTest {
     @Test
@@ -55,4 +63,678 @@ public class MonteCarloTreeSearchTest {
         assertEquals(1, node.getVisits());
         assertEquals(0.0, node.getWins(), 1e-6);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testRootParallelFindsLegalMove() {
+        GomokuState state = new GomokuState(5);
+        state.makeMove(new GomokuMove(2, 2));
+        MonteCarloTreeSearch mcts = new MonteCarloTreeSearch(MCTSConfig.iterations(50).withParallelism(ParallelMode.ROOT, 3));
+        GomokuMove move = mcts.findNextMove(state);
+        assertTrue(state.getLegalMoves().contains(move));
+        assertEquals(GomokuState.EMPTY, state.getCell(0, 0)); // the root state is not disturbed
+        assertEquals(24, state.getEmptyCount());
+    }
+
+    @Test
+    public void testRootParallelTakesImmediateWin() {
+        GomokuState state = new GomokuState(7);
+        for (int c = 0; c < 4; c++) {
+            state.makeMove(new GomokuMove(3, c)); // X: four in a row on row 3
+            state.makeMove(new GomokuMove(6, 2 * c)); // O: scattered along row 6
+        }
+        MonteCarloTreeSearch mcts = new MonteCarloTreeSearch(MCTSConfig.iterations(2000).withParallelism(ParallelMode.ROOT, 2));
+        assertEquals(new GomokuMove(3, 4), mcts.findNextMove(state));
+    }
+
+    @Test
+    public void testSearchBuildsTree() {
+        GomokuState state = new GomokuState(3);
+        MCTSNode root = new MonteCarloTreeSearch(1).search(state, 20);
+        assertEquals(20, root.getVisits());
+        assertEquals(9, root.getChildren().size());
+    }
+
+    @Test
+    public void testMostVisited() {
+        Map<GomokuMove, Integer> visits = new HashMap<>();
+        visits.merge(new GomokuMove(0, 0), 3, Integer::sum);
+        visits.merge(new GomokuMove(1, 1), 4, Integer::sum);
+        visits.merge(new GomokuMove(0, 0), 2, Integer::sum);
+        assertEquals(new GomokuMove(0, 0), MonteCarloTreeSearch.mostVisited(visits));
+    }
+
+    @Test
+    public void testTreeParallelSharesOneTree() {
+        GomokuState state = new GomokuState(5);
+        MonteCarloTreeSearch mcts = new MonteCarloTreeSearch(MCTSConfig.iterations(200).withParallelism(ParallelMode.TREE, 4));
+        MCTSNode root = mcts.search(state, 200);
+        assertEquals(800, root.getVisits());
+        assertEquals(0, root.getVirtualLosses());
+        assertEquals(25, root.getChildren().size());
+        int childVisits = 0;
+        for (MCTSNode child : root.getChildren()) {
+            childVisits += child.getVisits();
+            assertEquals(0, child.getVirtualLosses());
+            // each node is expanded at most once
+            assertTrue(child.getChildren().isEmpty() || child.getChildren().size() == 24);
+        }
+        assertEquals(800, childVisits);
+    }
+
+    @Test
+    public void testTreeParallelFindsLegalMove() {
+        GomokuState state = new GomokuState(3);
+        MonteCarloTreeSearch mcts = new MonteCarloTreeSearch(MCTSConfig.iterations(20).withParallelism(ParallelMode.TREE, 2));
+        assertTrue(state.getLegalMoves().contains(mcts.findNextMove(state)));
+    }
+
+    @Test
+    public void testTranspositionsShareNodes() {
+        GomokuState state = new GomokuState(3);
+        MonteCarloTreeSearch plain = new MonteCarloTreeSearch(MCTSConfig.iterations(300));
+        MonteCarloTreeSearch shared = new MonteCarloTreeSearch(MCTSConfig.iterations(300).withTranspositionTable(1 << 12));
+        assertTrue(state.getLegalMoves().contains(plain.findNextMove(state)));
+        assertTrue(state.getLegalMoves().contains(shared.findNextMove(state)));
+        assertEquals(0.0, plain.getTranspositionHitRate(), 0.0);
+        assertTrue(shared.getTranspositionHitRate() > 0);
+        assertTrue(shared.getNodesCreated() < plain.getNodesCreated());
+    }
+
+    @Test
+    public void testTranspositionSearchVisits() {
+        GomokuState state = new GomokuState(3);
+        MonteCarloTreeSearch mcts = new MonteCarloTreeSearch(MCTSConfig.iterations(200).withTranspositionTable(1 << 12));
+        MCTSNode root = mcts.search(state, 200);
+        assertEquals(200, root.getVisits());
+        int childVisits = 0;
+        for (MCTSNode child : root.getChildren()) childVisits += child.getVisits();
+        assertEquals(200, childVisits);
+        MCTSNode child = root.getChildren().get(0);
+        MCTSNode grandchild = child.getChildren().isEmpty() ? null : child.getChildren().get(0);
+        if (grandchild != null) {
+            GomokuMove move = MonteCarloTreeSearch.moveTo(child, grandchild);
+            GomokuState expected = child.getState().clone();
+            expected.makeMove(move);
+            assertEquals(expected, grandchild.getState());
+        }
+    }
+
+    @Test
+    public void testTreeParallelWithTranspositions() {
+        GomokuState state = new GomokuState(4);
+        MonteCarloTreeSearch mcts = new MonteCarloTreeSearch(MCTSConfig.iterations(100)
+                .withParallelism(ParallelMode.TREE, 3).withTranspositionTable(1 << 12));
+        MCTSNode root = mcts.search(state, 100);
+        assertEquals(300, root.getVisits());
+        assertEquals(0, root.getVirtualLosses());
+        for (MCTSNode child : root.getChildren()) {
+            assertEquals(0, child.getVirtualLosses());
+            for (MCTSNode grandchild : child.getChildren()) assertEquals(0, grandchild.getVirtualLosses());
+        }
+    }
+
+    @Test
+    public void testTreeReuseCarriesVisits() {
+        GomokuState state = new GomokuState(5);
+        MonteCarloTreeSearch mcts = new MonteCarloTreeSearch(MCTSConfig.iterations(500).withTreeReuse(true));
+        GomokuMove move = mcts.findNextMove(state);
+        assertEquals(0, mcts.getCarriedVisits());
+        state.makeMove(move);
+        state.makeMove(state.getLegalMoves().get(0));
+        GomokuMove next = mcts.findNextMove(state);
+        assertTrue(mcts.getCarriedVisits() > 0);
+        assertTrue(state.getLegalMoves().contains(next));
+        // a different game: nothing to reuse
+        mcts.findNextMove(new GomokuState(5));
+        assertEquals(0, mcts.getCarriedVisits());
+    }
+
+    @Test
+    public void testTreeReuseDoesNotRetainCallerState() {
+        GomokuState state = new GomokuState(4);
+        MonteCarloTreeSearch mcts = new MonteCarloTreeSearch(MCTSConfig.iterations(200).withTreeReuse(true));
+        state.makeMove(mcts.findNextMove(state));
+        state.makeMove(state.getLegalMoves().get(0));
+        GomokuMove move = mcts.findNextMove(state);
+        assertTrue(state.getLegalMoves().contains(move));
+    }
+
+    @Test
+    public void testNoTreeReuseByDefault() {
+        GomokuState state = new GomokuState(4);
+        MonteCarloTreeSearch mcts = new MonteCarloTreeSearch(200);
+        state.makeMove(mcts.findNextMove(state));
+        state.makeMove(state.getLegalMoves().get(0));
+        mcts.findNextMove(state);
+        assertEquals(0, mcts.getCarriedVisits());
+    }
+
+    @Test
+    public void testTreeReuseWithTranspositions() {
+        GomokuState state = new GomokuState(5);
+        MonteCarloTreeSearch mcts = new MonteCarloTreeSearch(MCTSConfig.iterations(400)
+                .withTranspositionTable(1 << 12).withTreeReuse(true));
+        for (int i = 0; i < 3; i++) {
+            GomokuMove move = mcts.findNextMove(state);
+            assertTrue(state.getLegalMoves().contains(move));
+            state.makeMove(move);
+            state.makeMove(state.getLegalMoves().get(0));
+        }
+        assertTrue(mcts.getCarriedVisits() > 0);
+    }
+
+    @Test
+    public void testTreeParallelReuse() {
+        GomokuState state = new GomokuState(5);
+        MonteCarloTreeSearch mcts = new MonteCarloTreeSearch(MCTSConfig.iterations(200)
+                .withParallelism(ParallelMode.TREE, 2).withTreeReuse(true));
+        state.makeMove(mcts.findNextMove(state));
+        state.makeMove(state.getLegalMoves().get(0));
+        assertTrue(state.getLegalMoves().contains(mcts.findNextMove(state)));
+        assertTrue(mcts.getCarriedVisits() > 0);
+    }
+
+    @Test
+    public void testTimeBudget() {
+        GomokuState state = new GomokuState(15);
+        MonteCarloTreeSearch mcts = new MonteCarloTreeSearch(MCTSConfig.timeBudget(200).withEarlyStop(false));
+        long start = System.nanoTime();
+        GomokuMove move = mcts.findNextMove(state);
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        assertTrue(state.getLegalMoves().contains(move));
+        assertTrue(millis >= 200);
+        assertTrue("took " + millis + "ms", millis < 1000);
+        assertTrue(mcts.getIterations() > 1);
+    }
+
+    @Test
+    public void testEarlyStop() {
+        GomokuState state = new GomokuState(7);
+        for (int c = 0; c < 4; c++) {
+            state.makeMove(new GomokuMove(3, c));
+            state.makeMove(new GomokuMove(6, 2 * c));
+        }
+        MonteCarloTreeSearch mcts = new MonteCarloTreeSearch(MCTSConfig.iterations(100000).withEarlyStop(true));
+        assertEquals(new GomokuMove(3, 4), mcts.findNextMove(state));
+        assertTrue(mcts.isStoppedEarly());
+        assertTrue(mcts.getIterations() < 100000);
+    }
+
+    @Test
+    public void testStopFromAnotherThread() throws Exception {
+        GomokuState state = new GomokuState(15);
+        MonteCarloTreeSearch mcts = new MonteCarloTreeSearch(MCTSConfig.timeBudget(60000).withEarlyStop(false));
+        Thread stopper = new Thread(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                return;
+            }
+            mcts.stop();
+        });
+        stopper.start();
+        long start = System.nanoTime();
+        GomokuMove move = mcts.findNextMove(state);
+        stopper.join();
+        assertTrue(state.getLegalMoves().contains(move));
+        assertTrue((System.nanoTime() - start) / 1_000_000 < 10000);
+    }
+
+    @Test
+    public void testInterruptionReturnsBestSoFar() {
+        GomokuState state = new GomokuState(9);
+        for (MCTSConfig config : new MCTSConfig[]{MCTSConfig.timeBudget(60000),
+                MCTSConfig.timeBudget(60000).withParallelism(ParallelMode.TREE, 2),
+                MCTSConfig.timeBudget(60000).withParallelism(ParallelMode.ROOT, 2)}) {
+            MonteCarloTreeSearch mcts = new MonteCarloTreeSearch(config);
+            Thread.currentThread().interrupt();
+            try {
+                GomokuMove move = mcts.findNextMove(state);
+                assertTrue(state.getLegalMoves().contains(move));
+                assertTrue(Thread.currentThread().isInterrupted());
+            } finally {
+                Thread.interrupted();
+            }
+        }
+    }
+
+    @Test
+    public void testCandidateMovesLimitExpansion() {
+        GomokuState state = new GomokuState(15);
+        state.makeMove(new GomokuMove(7, 7));
+        MonteCarloTreeSearch mcts = new MonteCarloTreeSearch(MCTSConfig.iterations(30).withCandidateDistance(2));
+        MCTSNode root = mcts.search(state, 30);
+        assertEquals(24, root.getChildren().size());
+        GomokuMove move = MCTSNode.bestChild(root).getMove();
+        assertTrue(Math.abs(move.getRow() - 7) <= 2 && Math.abs(move.getCol() - 7) <= 2);
+    }
+
+    @Test
+    public void testProgressiveWidening() {
+        GomokuState state = new GomokuState(9);
+        state.makeMove(new GomokuMove(4, 4));
+        MonteCarloTreeSearch mcts = new MonteCarloTreeSearch(MCTSConfig.iterations(100)
+                .withCandidateDistance(2).withProgressiveWidening(1, 0.5));
+        MCTSNode root = mcts.search(state, 100);
+        assertEquals(100, root.getVisits());
+        // at most ceil(sqrt(99)) children
+        assertTrue(root.getChildren().size() <= 10);
+        assertTrue(root.getChildren().size() > 1);
+        // the first child has the most neighbouring stones: it is adjacent to (4, 4)
+        GomokuMove first = root.getChildren().get(0).getMove();
+        assertEquals(1, state.adjacentStones(first));
+    }
+
+    @Test
+    public void testWideningTakesImmediateWin() {
+        GomokuState state = new GomokuState(19);
+        for (int c = 0; c < 4; c++) {
+            state.makeMove(new GomokuMove(9, 5 + c));
+            state.makeMove(new GomokuMove(0, 3 * c));
+        }
+        MonteCarloTreeSearch mcts = new MonteCarloTreeSearch(MCTSConfig.iterations(3000)
+                .withCandidateDistance(1).withProgressiveWidening(2, 0.5).withTranspositionTable(1 << 16));
+        GomokuMove move = mcts.findNextMove(state);
+        assertTrue(move.equals(new GomokuMove(9, 4)) || move.equals(new GomokuMove(9, 9)));
+    }
+
+    @Test
+    public void testTreeParallelWidening() {
+        GomokuState state = new GomokuState(9);
+        MonteCarloTreeSearch mcts = new MonteCarloTreeSearch(MCTSConfig.iterations(100)
+                .withParallelism(ParallelMode.TREE, 3).withCandidateDistance(2).withProgressiveWidening(1, 0.5));
+        MCTSNode root = mcts.search(state, 100);
+        assertEquals(300, root.getVisits());
+        assertEquals(1, root.getChildren().size()); // the only candidate on an empty board is the centre
+        assertEquals(new GomokuMove(4, 4), root.getChildren().get(0).getMove());
+    }
+
+    @Test
+    public void testThreatPlayoutsBlockFour() {
+        // O to move must block X's four at (4, 1), which also makes an open four of O's three in column 1.
+        // The threat playouts are then forced: after any other reply X completes its five, and after (4, 1)
+        // X must block one end of O's four and O completes the other.
+        GomokuState state = new GomokuState(9);
+        int[][] moves = {{4, 2}, {1, 1}, {4, 3}, {2, 1}, {4, 4}, {3, 1}, {4, 5}, {4, 6}, {8, 8}};
+        for (int[] move : moves) state.makeMove(new GomokuMove(move[0], move[1]));
+        MonteCarloTreeSearch mcts = new MonteCarloTreeSearch(MCTSConfig.iterations(500)
+                .withCandidateDistance(1).withRolloutPolicy(RolloutPolicy.THREATS));
+        assertEquals(new GomokuMove(4, 1), mcts.findNextMove(state));
+    }
+
+    @Test
+    public void testRaveStatistics() {
+        GomokuState state = new GomokuState(5);
+        MonteCarloTreeSearch mcts = new MonteCarloTreeSearch(MCTSConfig.iterations(200).withRave(100));
+        MCTSNode root = mcts.search(state, 200);
+        int raveVisits = 0;
+        for (int slot = 0; slot < root.getChildren().size(); slot++) {
+            assertTrue(root.getRaveWins(slot) <= root.getRaveVisits(slot));
+            raveVisits += root.getRaveVisits(slot);
+        }
+        // each playout counts for every cell X takes, not just the first move
+        assertTrue(raveVisits > 2 * 200);
+        MonteCarloTreeSearch plain = new MonteCarloTreeSearch(MCTSConfig.iterations(200));
+        assertEquals(0, plain.search(state, 200).getRaveVisits(0));
+    }
+
+    @Test
+    public void testRaveBlocksFour() {
+        GomokuState state = new GomokuState(9);
+        int[][] moves = {{4, 5}, {0, 0}, {4, 4}, {8, 8}, {4, 3}, {4, 6}, {4, 2}};
+        for (int[] move : moves) state.makeMove(new GomokuMove(move[0], move[1]));
+        MonteCarloTreeSearch mcts = new MonteCarloTreeSearch(MCTSConfig.iterations(3000)
+                .withCandidateDistance(1).withRave(300).withParallelism(ParallelMode.TREE, 2));
+        assertEquals(new GomokuMove(4, 1), mcts.findNextMove(state));
+    }
+
+    @Test
+    public void testNodeArenaTakesWin() {
+        GomokuState state = new GomokuState(9);
+        int[][] moves = {{4, 1}, {0, 0}, {4, 2}, {8, 8}, {4, 3}, {0, 8}, {4, 4}, {8, 0}};
+        for (int[] move : moves) state.makeMove(new GomokuMove(move[0], move[1]));
+        MonteCarloTreeSearch mcts = new MonteCarloTreeSearch(MCTSConfig.iterations(2000).withNodeArena(true).withCandidateDistance(1));
+        GomokuMove move = mcts.findNextMove(state);
+        assertTrue(move.equals(new GomokuMove(4, 0)) || move.equals(new GomokuMove(4, 5)));
+        assertEquals(2000, mcts.getIterations());
+        NodeArena arena = mcts.getNodeArena();
+        assertEquals(arena.size(), mcts.getNodesCreated());
+        assertEquals(2000, arena.getVisits(NodeArena.ROOT));
+    }
+
+    @Test
+    public void testNodeArenaIsReused() {
+        GomokuState state = new GomokuState(7);
+        MonteCarloTreeSearch mcts = new MonteCarloTreeSearch(MCTSConfig.iterations(300).withNodeArena(true));
+        assertNull(mcts.getNodeArena());
+        GomokuMove first = mcts.findNextMove(state);
+        NodeArena arena = mcts.getNodeArena();
+        state.makeMove(first);
+        assertTrue(state.getLegalMoves().contains(mcts.findNextMove(state)) || state.isTerminal());
+        assertSame(arena, mcts.getNodeArena());
+        assertEquals(300, arena.getVisits(NodeArena.ROOT));
+        assertEquals(48, arena.getChildCount(NodeArena.ROOT));
+    }
+
+    @Test
+    public void testNodeArenaTimeBudget() {
+        MonteCarloTreeSearch mcts = new MonteCarloTreeSearch(MCTSConfig.timeBudget(50).withNodeArena(true));
+        long start = System.nanoTime();
+        GomokuMove move = mcts.findNextMove(new GomokuState(9));
+        assertNotNull(move);
+        assertTrue(System.nanoTime() - start < 2_000_000_000L);
+        assertTrue(mcts.getIterations() > 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNodeArenaIsSequential() {
+        new MonteCarloTreeSearch(MCTSConfig.iterations(10).withNodeArena(true).withParallelism(ParallelMode.TREE, 2));
+    }
+
+    @Test
+    public void testNodeBudget() {
+        GomokuState state = new GomokuState(9);
+        MonteCarloTreeSearch mcts = new MonteCarloTreeSearch(MCTSConfig.iterations(1000).withNodeBudget(5000));
+        assertTrue(state.getLegalMoves().contains(mcts.findNextMove(state)));
+        assertEquals(1000, mcts.getIterations());
+        assertTrue(mcts.getPrunings() > 0);
+        assertTrue(mcts.getNodesPruned() > 0);
+        // at most one expansion beyond the budget
+        assertTrue(mcts.getPeakNodes() > 5000);
+        assertTrue(mcts.getPeakNodes() <= 5000 + 81);
+    }
+
+    @Test
+    public void testNodeBudgetWithSharedTreeAndTable() {
+        GomokuState state = new GomokuState(9);
+        state.makeMove(new GomokuMove(4, 4));
+        MonteCarloTreeSearch mcts = new MonteCarloTreeSearch(MCTSConfig.iterations(500).withNodeBudget(3000)
+                .withParallelism(ParallelMode.TREE, 2).withTranspositionTable(1 << 12).withTreeReuse(true));
+        GomokuMove move = mcts.findNextMove(state);
+        assertTrue(state.getLegalMoves().contains(move));
+        assertTrue(mcts.getPrunings() > 0);
+        state.makeMove(move);
+        state.makeMove(state.getLegalMoves().get(0));
+        assertTrue(state.getLegalMoves().contains(mcts.findNextMove(state)));
+        assertTrue(mcts.getPeakNodes() < 3000 + 2 * 81);
+    }
+
+    @Test
+    public void testNoNodeBudget() {
+        MonteCarloTreeSearch mcts = new MonteCarloTreeSearch(MCTSConfig.iterations(100));
+        mcts.findNextMove(new GomokuState(9));
+        assertEquals(0, mcts.getPrunings());
+        assertEquals(0, mcts.getPeakNodes());
+    }
+
+    @Test
+    public void testPonderingGrowsTheTree() throws InterruptedException {
+        GomokuState state = new GomokuState(5);
+        MonteCarloTreeSearch mcts = new MonteCarloTreeSearch(MCTSConfig.iterations(100).withTreeReuse(true));
+        state.makeMove(mcts.findNextMove(state));
+        assertTrue(mcts.startPondering(state));
+        assertTrue(mcts.isPondering());
+        for (int i = 0; i < 1000 && mcts.getPonderIterations() < 10000; i++) Thread.sleep(10);
+        long pondered = mcts.getPonderIterations();
+        assertTrue(pondered >= 10000);
+        state.makeMove(state.getLegalMoves().get(0));
+        GomokuMove move = mcts.findNextMove(state);
+        assertFalse(mcts.isPondering());
+        assertTrue(state.getLegalMoves().contains(move));
+        // the reply's share of the pondering is carried over (without it, fewer than 100 visits could be)
+        assertTrue(mcts.getCarriedVisits() >= 100);
+        assertTrue(mcts.getPonderIterations() >= pondered);
+    }
+
+    @Test
+    public void testStopPondering() {
+        GomokuState state = new GomokuState(9);
+        MonteCarloTreeSearch mcts = new MonteCarloTreeSearch(MCTSConfig.iterations(100).withTreeReuse(true).withNodeBudget(5000));
+        state.makeMove(mcts.findNextMove(state));
+        assertTrue(mcts.startPondering(state));
+        mcts.stopPondering();
+        assertFalse(mcts.isPondering());
+        long pondered = mcts.getPonderIterations();
+        assertEquals(pondered, mcts.getPonderIterations());
+        mcts.stopPondering();
+    }
+
+    @Test
+    public void testPonderingNeedsTreeReuse() {
+        GomokuState state = new GomokuState(5);
+        assertFalse(new MonteCarloTreeSearch(100).startPondering(state));
+        assertFalse(new MonteCarloTreeSearch(MCTSConfig.iterations(100).withParallelism(ParallelMode.ROOT, 2).withTreeReuse(true)).startPondering(state));
+        MonteCarloTreeSearch mcts = new MonteCarloTreeSearch(MCTSConfig.iterations(100).withTreeReuse(true));
+        for (int col = 0; col < 5; col++) {
+            state.makeMove(new GomokuMove(0, col));
+            if (col < 4) state.makeMove(new GomokuMove(1, col));
+        }
+        assertTrue(state.isTerminal());
+        assertFalse(mcts.startPondering(state));
+        assertFalse(mcts.isPondering());
+    }
+
+    @Test
+    public void testSeededSearchIsRepeatable() {
+        GomokuState state = new GomokuState(9);
+        MCTSConfig config = MCTSConfig.iterations(300).withCandidateDistance(2).withSeed(7);
+        List<GomokuMove> first = new ArrayList<>();
+        List<GomokuMove> second = new ArrayList<>();
+        for (List<GomokuMove> moves : List.of(first, second)) {
+            MonteCarloTreeSearch mcts = new MonteCarloTreeSearch(config);
+            GomokuState copy = state.clone();
+            for (int i = 0; i < 6; i++) {
+                GomokuMove move = mcts.findNextMove(copy);
+                moves.add(move);
+                copy.makeMove(move);
+            }
+        }
+        assertEquals(first, second);
+    }
+
+    @Test
+    public void testThreatSearchShortcut() {
+        // Black to move: (7, 8) makes fours on row 7 and column 8 at once.
+        GomokuState state = new GomokuState(15);
+        int[][] black = {{7, 5}, {7, 6}, {7, 7}, {8, 8}, {9, 8}, {10, 8}};
+        int[][] white = {{7, 4}, {11, 8}, {0, 0}, {0, 2}, {14, 14}, {14, 0}};
+        for (int i = 0; i < black.length; i++) {
+            state.makeMove(new GomokuMove(black[i][0], black[i][1]));
+            state.makeMove(new GomokuMove(white[i][0], white[i][1]));
+        }
+        MonteCarloTreeSearch mcts = new MonteCarloTreeSearch(MCTSConfig.iterations(1000).withThreatSearch(1000).withTreeReuse(true));
+        assertEquals(new GomokuMove(7, 8), mcts.findNextMove(state));
+        assertEquals(ThreatSpaceSearch.Shortcut.VCF, mcts.getShortcut());
+        assertEquals(0, mcts.getIterations());
+        state.makeMove(new GomokuMove(7, 8));
+        state.makeMove(new GomokuMove(7, 9));
+        assertEquals(new GomokuMove(6, 8), mcts.findNextMove(state));
+        assertEquals(ThreatSpaceSearch.Shortcut.FIVE, mcts.getShortcut());
+        assertEquals(2, mcts.getShortcutCount());
+        assertEquals(1, mcts.getShortcutCount(ThreatSpaceSearch.Shortcut.VCF));
+        // a quiet position is searched as usual
+        mcts.findNextMove(new GomokuState(15));
+        assertNull(mcts.getShortcut());
+        assertTrue(mcts.getIterations() > 0);
+        assertEquals(2, mcts.getShortcutCount());
+    }
+
+    @Test
+    public void testMetrics() {
+        MonteCarloTreeSearch mcts = new MonteCarloTreeSearch(MCTSConfig.iterations(2048).withPhaseTimers(true).withSeed(5));
+        GomokuState state = new GomokuState(9);
+        mcts.findNextMove(state);
+        SearchMetrics.Snapshot snapshot = mcts.getMetrics().snapshot();
+        assertEquals(2048, snapshot.getIterations());
+        assertEquals(mcts.getNodesCreated(), snapshot.getNodes());
+        assertTrue(snapshot.getMaxDepth() >= 1);
+        assertEquals(2, snapshot.getPvSamples());
+        assertTrue(state.getLegalMoves().contains(snapshot.getPrincipalVariation().get(0)));
+        for (PhaseTimers.Phase phase : PhaseTimers.Phase.values())
+            assertEquals(2048, mcts.getMetrics().getPhaseTimers().getCount(phase));
+        // the metrics accumulate over searches, without phase timing unless it is configured
+        MonteCarloTreeSearch untimed = new MonteCarloTreeSearch(MCTSConfig.iterations(500));
+        untimed.findNextMove(state);
+        untimed.findNextMove(state);
+        assertEquals(1000, untimed.getMetrics().snapshot().getIterations());
+        assertEquals(0, untimed.getMetrics().snapshot().getPhaseNanos(PhaseTimers.Phase.ROLLOUT));
+    }
+
+    @Test
+    public void testNodeArenaMetrics() {
+        MonteCarloTreeSearch mcts = new MonteCarloTreeSearch(MCTSConfig.iterations(1024).withNodeArena(true));
+        mcts.findNextMove(new GomokuState(7));
+        SearchMetrics.Snapshot snapshot = mcts.getMetrics().snapshot();
+        assertEquals(1024, snapshot.getIterations());
+        assertEquals(mcts.getNodeArena().size() - 1, snapshot.getNodes());
+        assertEquals(1, snapshot.getPvSamples());
+        assertFalse(snapshot.getPrincipalVariation().isEmpty());
+    }
+
+    @Test
+    public void testBatchedLeafEvaluation() {
+        int[] calls = new int[1];
+        int[] largest = new int[1];
+        LeafEvaluator counting = (boardSize, cells, players, count, values) -> {
+            calls[0]++;
+            largest[0] = Math.max(largest[0], count);
+            LeafEvaluator.PATTERNS.evaluate(boardSize, cells, players, count, values);
+        };
+        MonteCarloTreeSearch mcts = new MonteCarloTreeSearch(MCTSConfig.iterations(1000).withLeafEvaluator(counting, 8).withSeed(2));
+        GomokuState state = new GomokuState(9);
+        MCTSNode root = mcts.search(state, 1000);
+        assertEquals(1000, root.getVisits());
+        assertEquals(8, largest[0]);
+        assertTrue(calls[0] >= 125);
+        assertTrue(calls[0] < 1000);
+        for (MCTSNode child : root.getChildren()) assertEquals(0, child.getVirtualLosses());
+        assertEquals(0, root.getVirtualLosses());
+    }
+
+    @Test
+    public void testBatchedLeafEvaluationTakesWin() {
+        // Black to move, with four in a row.
+        GomokuState state = new GomokuState(9);
+        int[][] moves = {{4, 0}, {0, 0}, {4, 1}, {0, 2}, {4, 2}, {0, 4}, {4, 3}, {8, 8}};
+        for (int[] move : moves) state.makeMove(new GomokuMove(move[0], move[1]));
+        MonteCarloTreeSearch mcts = new MonteCarloTreeSearch(MCTSConfig.iterations(2000).withLeafEvaluator(LeafEvaluator.PATTERNS, 16)
+                .withParallelism(ParallelMode.TREE, 2).withTreeReuse(true));
+        assertEquals(new GomokuMove(4, 4), mcts.findNextMove(state));
+        assertEquals(4000, mcts.getIterations());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLeafEvaluatorWithRave() {
+        new MonteCarloTreeSearch(MCTSConfig.iterations(10).withLeafEvaluator(LeafEvaluator.PATTERNS, 4).withRave(100));
+    }
+
+    @Test
+    public void testRootVisits() {
+        GomokuState state = new GomokuState(9);
+        MonteCarloTreeSearch mcts = new MonteCarloTreeSearch(MCTSConfig.iterations(500).withTreeReuse(true));
+        assertNull(mcts.getRootVisits());
+        GomokuMove move = mcts.findNextMove(state);
+        int[] visits = mcts.getRootVisits();
+        assertEquals(81, visits.length);
+        assertEquals(500, Arrays.stream(visits).sum());
+        for (int v : visits) assertTrue(v <= visits[move.getRow() * 9 + move.getCol()]);
+        // a copy is returned
+        visits[0] = -1;
+        assertTrue(mcts.getRootVisits()[0] >= 0);
+        // with tree reuse, the visits carried over are counted too
+        state.makeMove(move);
+        mcts.findNextMove(state);
+        assertTrue(Arrays.stream(mcts.getRootVisits()).sum() >= 500);
+        assertEquals(0, mcts.getRootVisits()[move.getRow() * 9 + move.getCol()]);
+    }
+
+    @Test
+    public void testRootVisitsOtherSearches() {
+        GomokuState state = new GomokuState(9);
+        MonteCarloTreeSearch arena = new MonteCarloTreeSearch(MCTSConfig.iterations(300).withNodeArena(true));
+        arena.findNextMove(state);
+        assertEquals(300, Arrays.stream(arena.getRootVisits()).sum());
+        MonteCarloTreeSearch rootParallel = new MonteCarloTreeSearch(MCTSConfig.iterations(300).withParallelism(ParallelMode.ROOT, 2));
+        rootParallel.findNextMove(state);
+        assertTrue(Arrays.stream(rootParallel.getRootVisits()).sum() >= 300);
+        // a move found without a search has no visits
+        int[][] moves = {{4, 0}, {0, 0}, {4, 1}, {0, 2}, {4, 2}, {0, 4}, {4, 3}, {8, 8}};
+        for (int[] m : moves) state.makeMove(new GomokuMove(m[0], m[1]));
+        MonteCarloTreeSearch threats = new MonteCarloTreeSearch(MCTSConfig.iterations(300).withThreatSearch(1000));
+        threats.findNextMove(new GomokuState(9));
+        assertNotNull(threats.getRootVisits());
+        threats.findNextMove(state);
+        assertNotNull(threats.getShortcut());
+        assertNull(threats.getRootVisits());
+    }
+
+    @Test
+    public void testSolverStopsOnWin() {
+        // Black to move, with four in a row.
+        GomokuState state = new GomokuState(9);
+        int[][] moves = {{4, 0}, {0, 0}, {4, 1}, {0, 2}, {4, 2}, {0, 4}, {4, 3}, {8, 8}};
+        for (int[] move : moves) state.makeMove(new GomokuMove(move[0], move[1]));
+        MonteCarloTreeSearch mcts = new MonteCarloTreeSearch(MCTSConfig.iterations(20000).withSolver(true));
+        assertEquals(new GomokuMove(4, 4), mcts.findNextMove(state));
+        assertTrue(mcts.isSolved());
+        // every move is tried once at most before the win is found
+        assertTrue(mcts.getIterations() <= state.getEmptyCount());
+    }
+
+    @Test
+    public void testSolverProvesLoss() {
+        // White to move, against an open four: every move loses.
+        GomokuState state = new GomokuState(9);
+        int[][] moves = {{4, 1}, {0, 0}, {4, 2}, {0, 2}, {4, 3}, {8, 8}, {4, 4}};
+        for (int[] move : moves) state.makeMove(new GomokuMove(move[0], move[1]));
+        MonteCarloTreeSearch mcts = new MonteCarloTreeSearch(MCTSConfig.iterations(20000).withCandidateDistance(0).withSolver(true));
+        GomokuMove move = mcts.findNextMove(state);
+        assertTrue(state.getLegalMoves().contains(move));
+        assertTrue(mcts.isSolved());
+        assertTrue(mcts.getIterations() < 20000);
+        // with candidate moves only, the loss is never proven (a move outside them might defend)
+        MonteCarloTreeSearch candidates = new MonteCarloTreeSearch(MCTSConfig.iterations(5000).withCandidateDistance(1).withSolver(true));
+        candidates.findNextMove(state);
+        assertFalse(candidates.isSolved());
+        assertEquals(5000, candidates.getIterations());
+        // without the solver, the whole budget is spent
+        MonteCarloTreeSearch plain = new MonteCarloTreeSearch(MCTSConfig.iterations(5000).withCandidateDistance(1));
+        plain.findNextMove(state);
+        assertFalse(plain.isSolved());
+        assertEquals(5000, plain.getIterations());
+    }
+
+    @Test
+    public void testSolverFindsWinInThree() {
+        // Black to move: (4, 4) makes an open four, which White cannot stop.
+        GomokuState state = new GomokuState(9);
+        int[][] moves = {{4, 1}, {0, 0}, {4, 2}, {0, 8}, {4, 3}, {8, 8}};
+        for (int[] move : moves) state.makeMove(new GomokuMove(move[0], move[1]));
+        MonteCarloTreeSearch mcts = new MonteCarloTreeSearch(MCTSConfig.iterations(50000).withCandidateDistance(0).withSolver(true).withSeed(3));
+        GomokuMove move = mcts.findNextMove(state);
+        assertTrue(move.equals(new GomokuMove(4, 4)) || move.equals(new GomokuMove(4, 0)));
+        assertTrue(mcts.isSolved());
+        assertTrue(mcts.getIterations() < 50000);
+    }
+
+    @Test
+    public void testSolverWithSharedTreeAndReuse() {
+        GomokuState state = new GomokuState(9);
+        int[][] moves = {{4, 0}, {0, 0}, {4, 1}, {0, 2}, {4, 2}, {0, 4}, {4, 3}, {8, 8}};
+        for (int[] move : moves) state.makeMove(new GomokuMove(move[0], move[1]));
+        MonteCarloTreeSearch mcts = new MonteCarloTreeSearch(MCTSConfig.iterations(20000).withSolver(true)
+                .withParallelism(ParallelMode.TREE, 2).withTranspositionTable(1 << 12).withTreeReuse(true));
+        assertEquals(new GomokuMove(4, 4), mcts.findNextMove(state));
+        assertTrue(mcts.isSolved());
+        assertTrue(mcts.getIterations() < 40000);
+        MonteCarloTreeSearch rootParallel = new MonteCarloTreeSearch(MCTSConfig.iterations(20000).withSolver(true)
+                .withParallelism(ParallelMode.ROOT, 2));
+        assertEquals(new GomokuMove(4, 4), rootParallel.findNextMove(state));
+        assertTrue(rootParallel.isSolved());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNodeArenaWithSolver() {
+        new MonteCarloTreeSearch(MCTSConfig.iterations(10).withNodeArena(true).withSolver(true));
+    }
+}
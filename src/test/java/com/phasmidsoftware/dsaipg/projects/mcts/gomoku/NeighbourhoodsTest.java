@@ -0,0 +1,37 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.gomoku;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class NeighbourhoodsTest {
+
+    private static int cells(long[] mask) {
+        int count = 0;
+        for (long word : mask) count += Long.bitCount(word);
+        return count;
+    }
+
+    @Test
+    public void testMaskSizes() {
+        Neighbourhoods neighbourhoods = Neighbourhoods.of(15, 2);
+        assertEquals(25, cells(neighbourhoods.mask(7 * 15 + 7)));
+        assertEquals(9, cells(neighbourhoods.mask(0)));
+        assertEquals(12, cells(neighbourhoods.mask(1 * 15 + 0)));
+        assertEquals(9, cells(Neighbourhoods.of(15, 1).mask(7 * 15 + 7)));
+    }
+
+    @Test
+    public void testNoRowWraparound() {
+        long[] mask = Neighbourhoods.of(9, 1).mask(9 + 8); // (1, 8): the right-hand edge
+        assertEquals(6, cells(mask));
+        int leftEdgeOfNextRow = 2 * 9;
+        assertEquals(0, mask[leftEdgeOfNextRow >>> 6] & (1L << leftEdgeOfNextRow));
+    }
+
+    @Test
+    public void testShared() {
+        assertSame(Neighbourhoods.of(19, 2), Neighbourhoods.of(19, 2));
+        assertNotSame(Neighbourhoods.of(19, 2), Neighbourhoods.of(19, 3));
+    }
+}
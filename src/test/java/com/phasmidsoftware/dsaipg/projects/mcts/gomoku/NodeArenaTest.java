@@ -0,0 +1,84 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.gomoku;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class NodeArenaTest {
+
+    @Test
+    public void testNewRoot() {
+        NodeArena arena = new NodeArena(4);
+        assertEquals(NodeArena.ROOT, arena.newRoot());
+        assertEquals(1, arena.size());
+        assertEquals(-1, arena.getParent(NodeArena.ROOT));
+        assertEquals(-1, arena.getMove(NodeArena.ROOT));
+        assertEquals(0, arena.getChildCount(NodeArena.ROOT));
+        assertEquals(0, arena.getVisits(NodeArena.ROOT));
+    }
+
+    @Test
+    public void testAddChildren() {
+        NodeArena arena = new NodeArena(4);
+        int root = arena.newRoot();
+        int first = arena.addChildren(root, new int[]{12, 7, 3, 99}, 3);
+        assertEquals(1, first);
+        assertEquals(4, arena.size());
+        assertEquals(first, arena.getFirstChild(root));
+        assertEquals(3, arena.getChildCount(root));
+        assertEquals(12, arena.getMove(first));
+        assertEquals(7, arena.getMove(first + 1));
+        assertEquals(3, arena.getMove(first + 2));
+        for (int i = 0; i < 3; i++) assertEquals(root, arena.getParent(first + i));
+        int grandchild = arena.addChildren(first + 1, new int[]{360}, 1);
+        assertEquals(first + 1, arena.getParent(grandchild));
+        assertEquals(360, arena.getMove(grandchild));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testAddChildrenTwice() {
+        NodeArena arena = new NodeArena(4);
+        int root = arena.newRoot();
+        arena.addChildren(root, new int[]{1}, 1);
+        arena.addChildren(root, new int[]{2}, 1);
+    }
+
+    @Test
+    public void testUpdate() {
+        NodeArena arena = new NodeArena(1);
+        int root = arena.newRoot();
+        arena.update(root, 2);
+        arena.update(root, 1);
+        arena.update(root, 0);
+        assertEquals(3, arena.getVisits(root));
+        assertEquals(1.5, arena.getWins(root), 0.0);
+    }
+
+    @Test
+    public void testGrowAndReuse() {
+        NodeArena arena = new NodeArena(2);
+        int root = arena.newRoot();
+        int[] cells = new int[100];
+        for (int i = 0; i < cells.length; i++) cells[i] = i;
+        int first = arena.addChildren(root, cells, cells.length);
+        arena.update(first + 99, 2);
+        assertEquals(101, arena.size());
+        assertEquals(128, arena.capacity());
+        assertEquals(99, arena.getMove(first + 99));
+        assertEquals(1, arena.getVisits(first + 99));
+        assertEquals(128L * NodeArena.BYTES_PER_NODE, arena.getAllocatedBytes());
+        assertEquals(128.0 * NodeArena.BYTES_PER_NODE / 101, arena.getBytesPerNode(), 1e-9);
+        // a new tree keeps the arrays, and its nodes start afresh
+        arena.newRoot();
+        assertEquals(1, arena.size());
+        assertEquals(128, arena.capacity());
+        assertEquals(0, arena.getChildCount(NodeArena.ROOT));
+        arena.addChildren(NodeArena.ROOT, cells, cells.length);
+        assertEquals(0, arena.getVisits(first + 99));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadCapacity() {
+        new NodeArena(0);
+    }
+}
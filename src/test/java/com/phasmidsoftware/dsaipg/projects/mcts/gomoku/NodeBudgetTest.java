@@ -0,0 +1,112 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.gomoku;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class NodeBudgetTest {
+
+    /**
+     * @return a root with one child per element of visits, each with four leaf children.
+     */
+    private static MCTSNode tree(int... visits) {
+        MCTSNode root = new MCTSNode(new GomokuState(5), null, null);
+        List<MCTSNode> children = new ArrayList<>();
+        for (int i = 0; i < visits.length; i++) {
+            MCTSNode child = child(root, 0, i);
+            for (int v = 0; v < visits[i]; v++) child.updateStats(1.0);
+            List<MCTSNode> grandchildren = new ArrayList<>();
+            for (int j = 0; j < 4; j++) grandchildren.add(child(child, 1 + j, i));
+            child.addChildren(grandchildren);
+            children.add(child);
+        }
+        root.addChildren(children);
+        return root;
+    }
+
+    private static MCTSNode child(MCTSNode parent, int row, int col) {
+        GomokuState state = parent.getState().clone();
+        GomokuMove move = new GomokuMove(row, col);
+        state.makeMove(move);
+        return new MCTSNode(state, parent, move);
+    }
+
+    @Test
+    public void testCount() {
+        assertEquals(16, NodeBudget.count(tree(10, 5, 1)));
+        assertEquals(1, NodeBudget.count(new MCTSNode(new GomokuState(3), null, null)));
+    }
+
+    @Test
+    public void testAddedAndPeak() {
+        NodeBudget budget = new NodeBudget(20, tree(10, 5, 1));
+        assertEquals(16, budget.getNodes());
+        assertFalse(budget.isExceeded());
+        budget.added(5);
+        assertTrue(budget.isExceeded());
+        assertEquals(21, budget.getPeakNodes());
+    }
+
+    @Test
+    public void testPruneLeastVisited() {
+        MCTSNode root = tree(10, 5, 1);
+        NodeBudget budget = new NodeBudget(12, root);
+        assertTrue(budget.isExceeded());
+        // down to 9 nodes: collapsing the child with 1 visit frees only 4, so the one with 5 goes too
+        assertTrue(budget.prune(root));
+        List<MCTSNode> children = root.getChildren();
+        assertEquals(3, children.size());
+        assertEquals(4, children.get(0).getChildren().size());
+        assertTrue(children.get(1).getChildren().isEmpty());
+        assertTrue(children.get(2).getChildren().isEmpty());
+        // the statistics of the collapsed nodes are kept
+        assertEquals(5, children.get(1).getVisits());
+        assertEquals(5.0, children.get(1).getWins(), 0.0);
+        assertEquals(8, budget.getNodes());
+        assertEquals(8, NodeBudget.count(root));
+        assertEquals(1, budget.getPrunings());
+        assertEquals(8, budget.getNodesPruned());
+        assertEquals(16, budget.getPeakNodes());
+        assertFalse(budget.isExceeded());
+        // a collapsed node may be expanded again
+        assertTrue(children.get(1).claimExpansion());
+    }
+
+    @Test
+    public void testPruneNeverCollapsesRoot() {
+        MCTSNode root = tree(3, 2);
+        NodeBudget budget = new NodeBudget(1, root);
+        assertTrue(budget.prune(root));
+        assertEquals(3, NodeBudget.count(root));
+        // nothing more can go, so the budget does not ask to prune again at once
+        assertFalse(budget.isExceeded());
+        assertFalse(budget.prune(root));
+    }
+
+    @Test
+    public void testPruneWaitsForIteration() throws InterruptedException {
+        MCTSNode root = tree(10, 5, 1);
+        NodeBudget budget = new NodeBudget(12, root);
+        budget.beginIteration();
+        Thread pruner = new Thread(() -> budget.prune(root));
+        pruner.start();
+        while (pruner.getState() != Thread.State.WAITING) Thread.sleep(1);
+        // the iteration in progress still sees the whole tree
+        assertEquals(16, NodeBudget.count(root));
+        budget.endIteration();
+        pruner.join();
+        assertEquals(8, NodeBudget.count(root));
+        assertEquals(1, budget.getPrunings());
+    }
+
+    @Test
+    public void testNothingToPrune() {
+        MCTSNode root = tree(3, 2);
+        NodeBudget budget = new NodeBudget(100, root);
+        assertFalse(budget.prune(root));
+        assertEquals(11, NodeBudget.count(root));
+    }
+}
@@ -0,0 +1,127 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.gomoku;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.*;
+
+public class OpeningBookTest {
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        GomokuState state = new GomokuState(15);
+        OpeningBook.Builder builder = new OpeningBook.Builder(15).add(state, new GomokuMove(7, 7));
+        state.makeMove(new GomokuMove(7, 7));
+        builder.add(state, new GomokuMove(6, 8));
+        OpeningBook book = OpeningBook.load(write(builder));
+        assertEquals(2, book.size());
+        assertEquals(15, book.getBoardSize());
+        assertEquals(1, book.getMaxStones());
+        assertEquals(new GomokuMove(7, 7), book.lookup(new GomokuState(15)));
+        assertEquals(new GomokuMove(6, 8), book.lookup(state));
+        state.makeMove(new GomokuMove(6, 8));
+        assertNull(book.lookup(state));
+        assertNull(book.lookup(new GomokuState(9)));
+    }
+
+    @Test
+    public void testSymmetry() throws IOException {
+        // Black at (3, 4) and White at (5, 4): the book says (4, 5).
+        GomokuState state = new GomokuState(15);
+        state.makeMove(new GomokuMove(3, 4));
+        state.makeMove(new GomokuMove(5, 4));
+        OpeningBook book = OpeningBook.load(write(new OpeningBook.Builder(15).add(state, new GomokuMove(4, 5))));
+        // the position rotated a quarter turn clockwise, (row, col) to (col, 14 - row)
+        GomokuState rotated = new GomokuState(15);
+        rotated.makeMove(new GomokuMove(4, 11));
+        rotated.makeMove(new GomokuMove(4, 9));
+        assertEquals(new GomokuMove(5, 10), book.lookup(rotated));
+        // the position reflected in the main diagonal
+        GomokuState reflected = new GomokuState(15);
+        reflected.makeMove(new GomokuMove(4, 3));
+        reflected.makeMove(new GomokuMove(4, 5));
+        assertEquals(new GomokuMove(5, 4), book.lookup(reflected));
+        // the same stones with the colours swapped are a different position
+        GomokuState swapped = new GomokuState(15);
+        swapped.makeMove(new GomokuMove(5, 4));
+        swapped.makeMove(new GomokuMove(3, 4));
+        assertNull(book.lookup(swapped));
+    }
+
+    @Test
+    public void testGenerate() throws IOException {
+        OpeningBook.Builder builder = new OpeningBook.Builder(9).generate(3, MCTSConfig.iterations(50).withCandidateDistance(2).withSeed(1));
+        // The first move; the reply to it (up to symmetry, the move is either orthogonal or diagonal to it); and Black's second move.
+        assertTrue(builder.size() >= 3);
+        OpeningBook book = OpeningBook.load(write(builder));
+        assertEquals(builder.size(), book.size());
+        assertEquals(2, book.getMaxStones());
+        GomokuState state = new GomokuState(9);
+        GomokuMove first = book.lookup(state);
+        assertNotNull(first);
+        state.makeMove(first);
+        // White's reply is in the book
+        assertNotNull(book.lookup(state));
+        // every reply adjacent to the first stone is in the book
+        for (GomokuMove reply : state.withCandidateDistance(1).getCandidateMoves()) {
+            GomokuState next = state.clone();
+            next.makeMove(reply);
+            GomokuMove move = book.lookup(next);
+            assertNotNull(next.toString(), move);
+            assertEquals(GomokuState.EMPTY, next.getCell(move.getRow(), move.getCol()));
+        }
+    }
+
+    @Test
+    public void testPlayerUsesBook() throws IOException {
+        GomokuState state = new GomokuState(9);
+        Path path = write(new OpeningBook.Builder(9).add(state, new GomokuMove(2, 2)));
+        MCTSPlayer player = new MCTSPlayer(MCTSConfig.iterations(50).withSeed(1), path);
+        assertEquals(new GomokuMove(2, 2), player.getMove(state));
+        assertTrue(player.isBookMove());
+        state.makeMove(new GomokuMove(2, 2));
+        state.makeMove(new GomokuMove(4, 4));
+        assertNotNull(player.getMove(state));
+        assertFalse(player.isBookMove());
+        assertEquals(1, player.getBookMoves());
+    }
+
+    @Test
+    public void testOpenIsShared() throws IOException {
+        Path path = write(new OpeningBook.Builder(9).add(new GomokuState(9), new GomokuMove(4, 4)));
+        assertSame(OpeningBook.open(path), OpeningBook.open(path));
+    }
+
+    @Test(expected = IOException.class)
+    public void testNotABook() throws IOException {
+        Path path = Files.createTempFile("gomoku", ".book");
+        path.toFile().deleteOnExit();
+        Files.write(path, new byte[100]);
+        OpeningBook.load(path);
+    }
+
+    @Test(expected = UncheckedIOException.class)
+    public void testMissingBook() throws IOException {
+        Path path = Files.createTempFile("gomoku", ".book");
+        Files.delete(path);
+        new MCTSPlayer(MCTSConfig.iterations(10), path).getMove(new GomokuState(9));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOccupiedCell() {
+        GomokuState state = new GomokuState(9);
+        state.makeMove(new GomokuMove(4, 4));
+        new OpeningBook.Builder(9).add(state, new GomokuMove(4, 4));
+    }
+
+    private static Path write(OpeningBook.Builder builder) throws IOException {
+        Path path = Files.createTempFile("gomoku", ".book");
+        path.toFile().deleteOnExit();
+        builder.write(path);
+        return path;
+    }
+}
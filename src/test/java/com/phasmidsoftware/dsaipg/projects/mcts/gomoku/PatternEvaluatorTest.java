@@ -0,0 +1,90 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.gomoku;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PatternEvaluatorTest {
+
+    @Test
+    public void testLines() {
+        PatternEvaluator evaluator = new PatternEvaluator();
+        // 15 rows, 15 columns and 21 diagonals of each kind with at least five cells.
+        assertEquals(15 + 15 + 21 + 21, evaluator.linesFor(15).length);
+        assertEquals(5 + 5 + 1 + 1, evaluator.linesFor(5).length);
+        assertEquals(0, evaluator.linesFor(4).length);
+    }
+
+    @Test
+    public void testEmptyBoardIsEven() {
+        double[] values = evaluate(new GomokuState(15));
+        assertEquals(0.5, values[0], 1e-9);
+    }
+
+    @Test
+    public void testFourToMoveIsWon() {
+        GomokuState state = new GomokuState(15);
+        int[][] moves = {{7, 3}, {0, 0}, {7, 4}, {0, 2}, {7, 5}, {0, 4}, {7, 6}, {14, 14}};
+        for (int[] move : moves) state.makeMove(new GomokuMove(move[0], move[1]));
+        // Black (to move) has four in a row.
+        assertEquals(GomokuState.PLAYER_ONE, state.getCurrentPlayer());
+        assertTrue(evaluate(state)[0] > 0.99);
+        // With White to move instead, the (open) four is Black's.
+        state.makeMove(new GomokuMove(14, 0));
+        assertTrue(evaluate(state)[0] < 0.01);
+    }
+
+    @Test
+    public void testBlockableFourIsNotLost() {
+        GomokuState state = new GomokuState(15);
+        int[][] moves = {{7, 0}, {0, 4}, {7, 1}, {0, 6}, {7, 2}, {0, 8}, {7, 3}};
+        for (int[] move : moves) state.makeMove(new GomokuMove(move[0], move[1]));
+        // White (to move) can block Black's four at (7, 4).
+        assertEquals(GomokuState.PLAYER_TWO, state.getCurrentPlayer());
+        double blockable = evaluate(state)[0];
+        assertTrue(blockable > 0.1 && blockable < 0.5);
+        // A second four, which needs another block, cannot be stopped.
+        state.makeMove(new GomokuMove(14, 14));
+        state.makeMove(new GomokuMove(3, 4));
+        state.makeMove(new GomokuMove(14, 12));
+        state.makeMove(new GomokuMove(4, 4));
+        state.makeMove(new GomokuMove(14, 10));
+        state.makeMove(new GomokuMove(5, 4));
+        state.makeMove(new GomokuMove(13, 13));
+        state.makeMove(new GomokuMove(6, 4));
+        assertEquals(GomokuState.PLAYER_TWO, state.getCurrentPlayer());
+        assertTrue(evaluate(state)[0] < 0.01);
+    }
+
+    @Test
+    public void testBatchMatchesSingleEvaluations() {
+        GomokuState a = ParallelSearchBenchmark.openingPosition();
+        GomokuState b = a.clone();
+        b.makeMove(new GomokuMove(9, 9));
+        int area = 15 * 15;
+        byte[] cells = new byte[3 * area];
+        a.getCells(cells, 0);
+        b.getCells(cells, area);
+        a.getCells(cells, 2 * area);
+        int[] players = {a.getCurrentPlayer(), b.getCurrentPlayer(), GomokuState.getOpponent(a.getCurrentPlayer())};
+        double[] values = new double[3];
+        new PatternEvaluator(2).evaluate(15, cells, players, 3, values);
+        assertEquals(evaluate(a)[0], values[0], 1e-12);
+        assertEquals(evaluate(b)[0], values[1], 1e-12);
+        assertTrue(Math.abs(values[0] - values[2]) > 1e-6);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadThreshold() {
+        new PatternEvaluator(-1);
+    }
+
+    private static double[] evaluate(GomokuState state) {
+        int size = state.getBoardSize();
+        byte[] cells = new byte[size * size];
+        state.getCells(cells, 0);
+        double[] values = new double[1];
+        LeafEvaluator.PATTERNS.evaluate(size, cells, new int[]{state.getCurrentPlayer()}, 1, values);
+        return values;
+    }
+}
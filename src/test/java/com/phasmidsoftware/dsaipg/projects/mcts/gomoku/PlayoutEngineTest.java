@@ -0,0 +1,82 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.gomoku;
+
+import org.junit.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.Assert.*;
+
+public class PlayoutEngineTest {
+
+    @Test
+    public void testTerminalState() {
+        GomokuState state = new GomokuState(1);
+        state.makeMove(new GomokuMove(0, 0));
+        assertEquals(GomokuState.EMPTY, new PlayoutEngine().play(state));
+        GomokuState won = new GomokuState(5);
+        for (int c = 0; c < 5; c++) won.setCell(0, c, GomokuState.PLAYER_TWO);
+        assertEquals(GomokuState.PLAYER_TWO, new PlayoutEngine().play(won));
+    }
+
+    @Test
+    public void testSmallBoardIsAlwaysDrawn() {
+        PlayoutEngine engine = new PlayoutEngine();
+        for (int i = 0; i < 100; i++) assertEquals(GomokuState.EMPTY, engine.play(new GomokuState(4)));
+    }
+
+    @Test
+    public void testOnlyMoveWins() {
+        // X to move with a single empty cell, which completes the top row
+        String[] rows = {"XX.XX", "OOXOO", "XXOXX", "OOXOO", "XXOXX"};
+        GomokuState state = new GomokuState(5);
+        for (int r = 0; r < 5; r++)
+            for (int c = 0; c < 5; c++) {
+                char ch = rows[r].charAt(c);
+                if (ch != '.') state.setCell(r, c, ch == 'X' ? GomokuState.PLAYER_ONE : GomokuState.PLAYER_TWO);
+            }
+        assertEquals(GomokuState.EMPTY, state.checkWin());
+        assertEquals(GomokuState.PLAYER_ONE, state.getCurrentPlayer());
+        assertEquals(GomokuState.PLAYER_ONE, new PlayoutEngine().play(state));
+        state.setCell(0, 2, GomokuState.PLAYER_TWO);
+        state.setCell(0, 0, GomokuState.EMPTY);
+        assertEquals(GomokuState.EMPTY, new PlayoutEngine().play(state));
+    }
+
+    @Test
+    public void testStateUnchanged() {
+        GomokuState state = new GomokuState(9);
+        state.makeMove(new GomokuMove(4, 4));
+        GomokuState copy = state.clone();
+        new PlayoutEngine().play(state);
+        assertEquals(copy, state);
+        assertEquals(80, state.getEmptyCount());
+    }
+
+    @Test
+    public void testBothPlayersWin() {
+        PlayoutEngine engine = new PlayoutEngine(new SplittableRandom(42));
+        int[] wins = new int[3];
+        for (int i = 0; i < 500; i++) wins[engine.play(new GomokuState(9))]++;
+        assertTrue(wins[GomokuState.PLAYER_ONE] > 100);
+        assertTrue(wins[GomokuState.PLAYER_TWO] > 100);
+        // the first player has the advantage
+        assertTrue(wins[GomokuState.PLAYER_ONE] > wins[GomokuState.PLAYER_TWO]);
+    }
+
+    @Test
+    public void testSeededEngineIsRepeatable() {
+        GomokuState state = new GomokuState(15);
+        PlayoutEngine a = new PlayoutEngine(new SplittableRandom(7));
+        PlayoutEngine b = new PlayoutEngine(new SplittableRandom(7));
+        for (int i = 0; i < 50; i++) assertEquals(a.play(state), b.play(state));
+    }
+
+    @Test
+    public void testResize() {
+        PlayoutEngine engine = new PlayoutEngine();
+        assertEquals(GomokuState.EMPTY, engine.play(new GomokuState(3)));
+        int result = engine.play(new GomokuState(19));
+        assertTrue(result >= GomokuState.EMPTY && result <= GomokuState.PLAYER_TWO);
+        assertEquals(GomokuState.EMPTY, engine.play(new GomokuState(4)));
+    }
+}
@@ -22,4 +22,10 @@ public class RandomPlayerTest {
         GomokuMove move = player.getMove(state);
         assertTrue(state.getLegalMoves().contains(move));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testSeededPlayerIsRepeatable() {
+        GomokuState state = new GomokuState(9);
+        assertEquals(new RandomPlayer(3).getMove(state), new RandomPlayer(3).getMove(state));
+    }
+}
@@ -0,0 +1,65 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.gomoku;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SelfPlayTest {
+
+    @Test
+    public void testPlay() {
+        GameRecord record = new SelfPlay(MCTSConfig.iterations(100).withTreeReuse(true), 7, 2).play(1);
+        assertEquals(7, record.getBoardSize());
+        GomokuState state = record.getState(record.getMoveCount());
+        assertTrue(state.isTerminal());
+        assertEquals(state.checkWin(), record.getWinner());
+        // the opening stones are in the central square and were not searched for
+        for (int ply = 0; ply < 2; ply++) {
+            assertTrue(Math.abs(record.getMove(ply).getRow() - 3) <= 2);
+            assertTrue(Math.abs(record.getMove(ply).getCol() - 3) <= 2);
+            assertEquals(0, record.getTotalVisits(ply));
+        }
+        for (int ply = 2; ply < record.getMoveCount(); ply++) {
+            assertTrue(record.getTotalVisits(ply) >= 100);
+            // the move made is the one most visited
+            int[] visits = record.getVisits(ply);
+            for (int v : visits) assertTrue(v <= visits[record.getCell(ply)]);
+        }
+    }
+
+    @Test
+    public void testPlayIsRepeatable() {
+        SelfPlay selfPlay = new SelfPlay(MCTSConfig.iterations(50), 7, 3);
+        assertEquals(selfPlay.play(42), selfPlay.play(42));
+        assertNotEquals(SelfPlay.gameSeed(42, 0), SelfPlay.gameSeed(42, 1));
+    }
+
+    @Test
+    public void testGenerate() throws IOException {
+        Path path = Files.createTempFile("selfplay", ".gmr");
+        path.toFile().deleteOnExit();
+        Files.delete(path);
+        SelfPlay selfPlay = new SelfPlay(MCTSConfig.iterations(50), 7, 2);
+        try (GameRecordWriter writer = new GameRecordWriter(path)) {
+            assertEquals(6, selfPlay.generate(6, 3, 7, writer));
+        }
+        List<GameRecord> records = new ArrayList<>();
+        try (GameRecordReader reader = new GameRecordReader(path)) {
+            while (reader.next()) records.add(reader.read());
+        }
+        assertEquals(6, records.size());
+        // each game is the one its seed gives, whichever thread played it
+        for (int game = 0; game < 6; game++) assertTrue(records.contains(selfPlay.play(SelfPlay.gameSeed(7, game))));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadOpeningMoves() {
+        new SelfPlay(MCTSConfig.iterations(50), 7, -1);
+    }
+}
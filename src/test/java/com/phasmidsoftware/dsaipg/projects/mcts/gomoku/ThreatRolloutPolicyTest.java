@@ -0,0 +1,117 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.gomoku;
+
+import org.junit.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.Assert.*;
+
+public class ThreatRolloutPolicyTest {
+
+    @Test
+    public void testCompletesFive() {
+        // X (to move) and O both have a four: X should win rather than block
+        PlayoutEngine engine = load(".XXXX..\n" + "OOOO...\n" + ".......", RolloutPolicy.THREATS);
+        assertEquals(2, engine.getThreatCount(GomokuState.PLAYER_ONE, PlayoutEngine.FIVE));
+        for (int i = 0; i < 20; i++) {
+            int move = RolloutPolicy.THREATS.selectMove(engine, GomokuState.PLAYER_ONE, new SplittableRandom(i));
+            assertTrue(move == 0 || move == 5);
+        }
+        assertEquals(GomokuState.PLAYER_ONE, engine.play(state(".XXXX..\n" + "OOOO...\n" + ".......")));
+    }
+
+    @Test
+    public void testBlocksFour() {
+        // O (to move) must block X's four on the right
+        PlayoutEngine engine = load("OXXXX..\n" + ".......\n" + "...O...", RolloutPolicy.THREATS);
+        assertEquals(1, engine.getThreatCount(GomokuState.PLAYER_ONE, PlayoutEngine.FIVE));
+        assertEquals(0, engine.getThreatCount(GomokuState.PLAYER_TWO, PlayoutEngine.FIVE));
+        for (int i = 0; i < 20; i++)
+            assertEquals(5, RolloutPolicy.THREATS.selectMove(engine, GomokuState.PLAYER_TWO, new SplittableRandom(i)));
+    }
+
+    @Test
+    public void testMakesOpenFour() {
+        // X (to move) has an open three on the middle row, O has nothing
+        PlayoutEngine engine = load(".......\n" + "..XXX..\n" + "O.....O", RolloutPolicy.THREATS);
+        assertEquals(2, engine.getThreatCount(GomokuState.PLAYER_ONE, PlayoutEngine.OPEN_FOUR));
+        for (int i = 0; i < 20; i++) {
+            int move = RolloutPolicy.THREATS.selectMove(engine, GomokuState.PLAYER_ONE, new SplittableRandom(i));
+            assertTrue(move == 8 || move == 12);
+        }
+    }
+
+    @Test
+    public void testThreatLevels() {
+        // a closed four, an open four and an open three
+        PlayoutEngine engine = load("OXXX...\n" + "..XXX..\n" + "..XX...", RolloutPolicy.THREATS);
+        assertEquals(PlayoutEngine.THREE, engine.getThreatLevel(GomokuState.PLAYER_ONE, 4));
+        assertEquals(PlayoutEngine.OPEN_FOUR, engine.getThreatLevel(GomokuState.PLAYER_ONE, 12));
+        assertEquals(PlayoutEngine.THREE, engine.getThreatLevel(GomokuState.PLAYER_ONE, 18));
+        assertEquals(0, engine.getThreatLevel(GomokuState.PLAYER_ONE, 20));
+        assertEquals(0, engine.getThreatLevel(GomokuState.PLAYER_TWO, 12));
+    }
+
+    @Test
+    public void testIncrementalThreatsMatchRecomputed() {
+        // check the threat sets against a fresh load before every move of many playouts
+        RolloutPolicy checking = new RolloutPolicy() {
+            @Override
+            public int selectMove(PlayoutEngine board, int player, java.util.random.RandomGenerator random) {
+                GomokuState state = new GomokuState(board.getBoardSize());
+                for (int i = 0; i < board.getBoardSize() * board.getBoardSize(); i++)
+                    if (board.getCell(i) != GomokuState.EMPTY)
+                        state.setCell(i / board.getBoardSize(), i % board.getBoardSize(), board.getCell(i));
+                PlayoutEngine fresh = new PlayoutEngine(RolloutPolicy.THREATS, null);
+                fresh.load(state);
+                for (int p = GomokuState.PLAYER_ONE; p <= GomokuState.PLAYER_TWO; p++) {
+                    for (int level = PlayoutEngine.THREE; level <= PlayoutEngine.FIVE; level++)
+                        assertEquals(fresh.getThreatCount(p, level), board.getThreatCount(p, level));
+                    for (int i = 0; i < board.getEmptyCount(); i++)
+                        assertEquals(fresh.getThreatLevel(p, board.getEmpty(i)), board.getThreatLevel(p, board.getEmpty(i)));
+                }
+                return RolloutPolicy.THREATS.selectMove(board, player, random);
+            }
+
+            @Override
+            public boolean needsThreats() {
+                return true;
+            }
+        };
+        PlayoutEngine engine = new PlayoutEngine(checking, new SplittableRandom(3));
+        for (int i = 0; i < 20; i++) engine.play(new GomokuState(9));
+    }
+
+    @Test
+    public void testOpenFourIsWon() {
+        // O to move cannot stop X's open four: heavy playouts always see that, uniform ones do not
+        GomokuState state = new GomokuState(7);
+        int[][] moves = {{1, 2}, {6, 0}, {1, 3}, {6, 6}, {1, 4}, {6, 3}, {1, 5}};
+        for (int[] move : moves) state.makeMove(new GomokuMove(move[0], move[1]));
+        PlayoutEngine threats = new PlayoutEngine(RolloutPolicy.THREATS, new SplittableRandom(11));
+        PlayoutEngine uniform = new PlayoutEngine(RolloutPolicy.UNIFORM, new SplittableRandom(11));
+        int uniformWins = 0;
+        for (int i = 0; i < 200; i++) {
+            assertEquals(GomokuState.PLAYER_ONE, threats.play(state));
+            if (uniform.play(state) == GomokuState.PLAYER_ONE) uniformWins++;
+        }
+        assertTrue(uniformWins < 200);
+    }
+
+    private static PlayoutEngine load(String board, RolloutPolicy policy) {
+        PlayoutEngine engine = new PlayoutEngine(policy, null);
+        engine.load(state(board));
+        return engine;
+    }
+
+    private static GomokuState state(String board) {
+        String[] rows = board.split("\n");
+        GomokuState state = new GomokuState(7);
+        for (int r = 0; r < rows.length; r++)
+            for (int c = 0; c < rows[r].length(); c++) {
+                char ch = rows[r].charAt(c);
+                if (ch != '.') state.setCell(r, c, ch == 'X' ? GomokuState.PLAYER_ONE : GomokuState.PLAYER_TWO);
+            }
+        return state;
+    }
+}
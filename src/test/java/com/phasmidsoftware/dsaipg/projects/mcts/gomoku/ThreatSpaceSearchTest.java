@@ -0,0 +1,151 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.gomoku;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ThreatSpaceSearchTest {
+    /**
+     * Black to move, with a three on row 7 (blocked on the left) and a three on column 8 (blocked below):
+     * (7, 8) makes two fours at once.
+     */
+    private static GomokuState doubleFour() {
+        GomokuState state = new GomokuState(15);
+        int[][] black = {{7, 5}, {7, 6}, {7, 7}, {8, 8}, {9, 8}, {10, 8}};
+        int[][] white = {{7, 4}, {11, 8}, {0, 0}, {0, 2}, {14, 14}, {14, 0}};
+        for (int i = 0; i < black.length; i++) {
+            state.makeMove(new GomokuMove(black[i][0], black[i][1]));
+            state.makeMove(new GomokuMove(white[i][0], white[i][1]));
+        }
+        return state;
+    }
+
+    @Test
+    public void testFive() {
+        GomokuState state = new GomokuState(9);
+        for (int col = 0; col < 4; col++) {
+            state.makeMove(new GomokuMove(4, col));
+            state.makeMove(new GomokuMove(0, 2 * col));
+        }
+        ThreatSpaceSearch search = new ThreatSpaceSearch(100);
+        assertEquals(new GomokuMove(4, 4), search.findShortcut(state));
+        assertEquals(ThreatSpaceSearch.Shortcut.FIVE, search.getShortcut());
+    }
+
+    @Test
+    public void testBlockFive() {
+        GomokuState state = new GomokuState(9);
+        for (int col = 0; col < 4; col++) {
+            state.makeMove(new GomokuMove(4, col));
+            state.makeMove(new GomokuMove(2 * col, 8));
+        }
+        state.makeMove(new GomokuMove(8, 8));
+        ThreatSpaceSearch search = new ThreatSpaceSearch(100);
+        assertEquals(new GomokuMove(4, 4), search.findShortcut(state));
+        assertEquals(ThreatSpaceSearch.Shortcut.BLOCK_FIVE, search.getShortcut());
+    }
+
+    @Test
+    public void testDoubleFour() {
+        ThreatSpaceSearch search = new ThreatSpaceSearch(100);
+        assertEquals(new GomokuMove(7, 8), search.findVcf(doubleFour()));
+        assertEquals(new GomokuMove(7, 8), search.findShortcut(doubleFour()));
+        assertEquals(ThreatSpaceSearch.Shortcut.VCF, search.getShortcut());
+    }
+
+    @Test
+    public void testVcf() {
+        // (7, 8) makes a four on row 7 (forcing (7, 9)) and a three on column 8, which (8, 8) then makes an open four.
+        GomokuState state = new GomokuState(15);
+        int[][] black = {{7, 5}, {7, 6}, {7, 7}, {5, 8}, {6, 8}};
+        int[][] white = {{7, 4}, {0, 0}, {0, 2}, {14, 14}, {14, 0}};
+        for (int i = 0; i < black.length; i++) {
+            state.makeMove(new GomokuMove(black[i][0], black[i][1]));
+            state.makeMove(new GomokuMove(white[i][0], white[i][1]));
+        }
+        ThreatSpaceSearch search = new ThreatSpaceSearch(1000);
+        assertEquals(new GomokuMove(7, 8), search.findVcf(state));
+        assertFalse(search.isLimitReached());
+        // with the column blocked, the four leads nowhere
+        state.setCell(4, 8, GomokuState.PLAYER_TWO);
+        assertNull(search.findVcf(state));
+    }
+
+    /**
+     * Black to move, with two pairs which can be made into threes at once; there are no fours to be had.
+     */
+    private static GomokuState twoPairs() {
+        GomokuState state = new GomokuState(15);
+        int[][] black = {{7, 7}, {7, 8}, {8, 9}, {9, 9}};
+        int[][] white = {{0, 0}, {0, 2}, {14, 14}, {14, 0}};
+        for (int i = 0; i < black.length; i++) {
+            state.makeMove(new GomokuMove(black[i][0], black[i][1]));
+            state.makeMove(new GomokuMove(white[i][0], white[i][1]));
+        }
+        return state;
+    }
+
+    @Test
+    public void testVct() {
+        GomokuState state = twoPairs();
+        ThreatSpaceSearch search = new ThreatSpaceSearch(ThreatSpaceSearch.DEFAULT_NODE_LIMIT);
+        assertNull(search.findVcf(state));
+        GomokuMove move = search.findShortcut(state);
+        assertNotNull(move);
+        assertEquals(ThreatSpaceSearch.Shortcut.VCT, search.getShortcut());
+        // whatever White replies (near the stones), Black still has a VCT, though it may take more nodes to find
+        ThreatSpaceSearch deeper = new ThreatSpaceSearch(200_000);
+        state.makeMove(move);
+        for (int row = 4; row <= 11; row++)
+            for (int col = 4; col <= 12; col++)
+                if (state.getCell(row, col) == GomokuState.EMPTY) {
+                    GomokuState reply = state.clone();
+                    reply.makeMove(new GomokuMove(row, col));
+                    assertNotNull(reply.toString(), deeper.findVct(reply));
+                }
+    }
+
+    @Test
+    public void testBlockVcf() {
+        // White to move: Black threatens a VCF beginning (5, 8), which only a stone there stops.
+        GomokuState state = new GomokuState(15);
+        int[][] black = {{3, 6}, {4, 7}, {4, 8}, {6, 9}, {7, 6}, {7, 7}, {8, 8}};
+        int[][] white = {{0, 9}, {2, 6}, {2, 9}, {3, 8}, {5, 7}, {8, 7}};
+        for (int i = 0; i < black.length; i++) {
+            state.makeMove(new GomokuMove(black[i][0], black[i][1]));
+            if (i < white.length) state.makeMove(new GomokuMove(white[i][0], white[i][1]));
+        }
+        ThreatSpaceSearch search = new ThreatSpaceSearch(ThreatSpaceSearch.DEFAULT_NODE_LIMIT);
+        GomokuMove move = search.findShortcut(state);
+        assertEquals(ThreatSpaceSearch.Shortcut.BLOCK_VCF, search.getShortcut());
+        assertEquals(new GomokuMove(5, 8), move);
+        state.makeMove(move);
+        state.makeMove(new GomokuMove(14, 14)); // White has blocked: Black to move has no VCF
+        state.makeMove(new GomokuMove(0, 0));
+        assertNull(search.findVcf(state));
+    }
+
+    @Test
+    public void testNothingToFind() {
+        ThreatSpaceSearch search = new ThreatSpaceSearch(100);
+        assertNull(search.findShortcut(new GomokuState(15)));
+        assertNull(search.getShortcut());
+        GomokuState state = new GomokuState(15);
+        state.makeMove(new GomokuMove(7, 7));
+        state.makeMove(new GomokuMove(7, 8));
+        assertNull(search.findShortcut(state));
+        assertNull(search.findShortcut(new GomokuState(3)));
+    }
+
+    @Test
+    public void testNodeLimit() {
+        ThreatSpaceSearch search = new ThreatSpaceSearch(1);
+        assertNull(search.findVct(twoPairs()));
+        assertTrue(search.isLimitReached());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadNodeLimit() {
+        new ThreatSpaceSearch(0);
+    }
+}
@@ -0,0 +1,65 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.gomoku;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TranspositionTableTest {
+
+    private static MCTSNode node(int visits) {
+        MCTSNode result = new MCTSNode(new GomokuState(3), null, null);
+        for (int i = 0; i < visits; i++) result.updateStats(1.0);
+        return result;
+    }
+
+    @Test
+    public void testGetAndPut() {
+        TranspositionTable table = new TranspositionTable(16);
+        MCTSNode node = node(0);
+        assertNull(table.get(42L));
+        assertSame(node, table.putIfAbsent(42L, node));
+        assertSame(node, table.get(42L));
+        assertSame(node, table.putIfAbsent(42L, node(1)));
+        assertEquals(1, table.size());
+        assertEquals(2, table.getProbes());
+        assertEquals(1, table.getHits());
+        assertEquals(0.5, table.getHitRate(), 1e-9);
+        assertEquals(1, table.getStores());
+    }
+
+    @Test
+    public void testCapacity() {
+        assertEquals(4, new TranspositionTable(1).capacity());
+        assertEquals(4, new TranspositionTable(4).capacity());
+        assertEquals(8, new TranspositionTable(5).capacity());
+        assertEquals(1024, new TranspositionTable(1000).capacity());
+    }
+
+    @Test
+    public void testReplacesLeastVisited() {
+        TranspositionTable table = new TranspositionTable(4); // a single bucket
+        MCTSNode[] nodes = {node(5), node(1), node(7), node(3)};
+        for (int i = 0; i < nodes.length; i++) table.putIfAbsent(i, nodes[i]);
+        assertEquals(4, table.size());
+        assertEquals(0, table.getReplacements());
+        MCTSNode newcomer = node(0);
+        table.putIfAbsent(99L, newcomer);
+        assertEquals(1, table.getReplacements());
+        assertEquals(4, table.size());
+        assertNull(table.get(1L)); // the node with one visit was evicted
+        assertSame(newcomer, table.get(99L));
+        assertSame(nodes[0], table.get(0L));
+    }
+
+    @Test
+    public void testClear() {
+        TranspositionTable table = new TranspositionTable(8);
+        table.putIfAbsent(1L, node(0));
+        table.get(1L);
+        table.clear();
+        assertEquals(0, table.size());
+        assertNull(table.get(1L));
+        assertEquals(1, table.getProbes());
+        assertEquals(0, table.getHits());
+    }
+}
@@ -0,0 +1,29 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.gomoku;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class ZobristTest {
+
+    @Test
+    public void testForBoardSizeIsShared() {
+        assertSame(Zobrist.forBoardSize(15), Zobrist.forBoardSize(15));
+        assertNotSame(Zobrist.forBoardSize(15), Zobrist.forBoardSize(9));
+    }
+
+    @Test
+    public void testKeysAreDistinct() {
+        Zobrist zobrist = Zobrist.forBoardSize(15);
+        Set<Long> keys = new HashSet<>();
+        for (int i = 0; i < 225; i++) {
+            keys.add(zobrist.stone(GomokuState.PLAYER_ONE, i));
+            keys.add(zobrist.stone(GomokuState.PLAYER_TWO, i));
+        }
+        keys.add(zobrist.sideToMove());
+        assertEquals(451, keys.size());
+    }
+}
@@ -1,6 +1,7 @@
 // src/test/java/com/phasmidsoftware/dsaipg/projects/mcts/tictactoe/MCTSTest.java
 package com.phasmidsoftware.dsaipg.projects.mcts.tictactoe;
 
+import com.phasmidsoftware.dsaipg.projects.mcts.core.EngineConfig;
 import com.phasmidsoftware.dsaipg.projects.mcts.core.Node;
 import com.phasmidsoftware.dsaipg.projects.mcts.core.State;
 import com.phasmidsoftware.dsaipg.projects.mcts.core.Move;
@@ -99,4 +100,20 @@ public class MCTSTest {
         }
         assertTrue("Draw count in range", draws >= 0 && draws <= totalGames);
     }
+
+    @Test
+    public void testRunWithSymmetries() {
+        MCTS engine = new MCTS(new TicTacToeNode(new TicTacToe().start()), EngineConfig.iterations(500), true);
+        State<TicTacToe> end = engine.run();
+        assertTrue(end.isTerminal());
+        assertTrue(engine.getSimulations() >= 500 * 5);
+    }
+
+    @Test
+    public void testRunQuietly() {
+        MCTS engine = new MCTS(TicTacToeNode.withSymmetries(new TicTacToe().start()), EngineConfig.iterations(500));
+        State<TicTacToe> end = engine.run(true);
+        assertTrue(end.isTerminal());
+        assertTrue(engine.getSimulations() >= 500 * 5);
+    }
 }
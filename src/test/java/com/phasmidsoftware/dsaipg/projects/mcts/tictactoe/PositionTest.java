@@ -2,6 +2,7 @@ package com.phasmidsoftware.dsaipg.projects.mcts.tictactoe;
 
 import org.junit.Test;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 
@@ -55,10 +56,56 @@ public class PositionTest {
 
     @Test
     public void testReflect() {
+        Position target = Position.parsePosition("X . 0\n. O .\nX . .", 0);
+        assertEquals(Position.parsePosition("X . .\n. O .\nX . 0", 0), target.reflect(0));
+        assertEquals(Position.parsePosition("0 . X\n. O .\n. . X", 0), target.reflect(1));
+        assertEquals(target, target.reflect(1).reflect(1));
     }
 
     @Test
     public void testRotate() {
+        Position target = Position.parsePosition("X . 0\n. O .\nX . .", 0);
+        assertEquals(Position.parsePosition("0 . .\n. O .\nX . X", 0), target.rotate());
+        assertEquals(target, target.rotate().rotate().rotate().rotate());
+        assertEquals(0, target.rotate().last);
+    }
+
+    @Test
+    public void testCanonical() {
+        Position target = Position.parsePosition("X . 0\n. O .\nX . .", 0);
+        Position canonical = target.canonical();
+        assertEquals(canonical, canonical.canonical());
+        assertEquals(canonical, target.rotate().canonical());
+        assertEquals(canonical, target.reflect(0).canonical());
+        assertEquals(canonical, target.rotate().reflect(1).canonical());
+        assertEquals(target.canonicalKey(), target.reflect(1).rotate().canonicalKey());
+        assertNotEquals(canonical, Position.parsePosition("X . 0\n. O .\n. . X", 0).canonical());
+        // the four corners are equivalent, as are the four edges, but not the centre
+        Position empty = Position.parsePosition(". . .\n. . .\n. . .", -1);
+        assertEquals(empty.move(1, 0, 0).canonical(), empty.move(1, 2, 2).canonical());
+        assertEquals(empty.move(1, 0, 1).canonical(), empty.move(1, 1, 2).canonical());
+        assertNotEquals(empty.move(1, 0, 0).canonical(), empty.move(1, 1, 1).canonical());
+    }
+
+    @Test
+    public void testDistinctMoveCodes() {
+        int[] codes = new int[9];
+        Position empty = Position.parsePosition(". . .\n. . .\n. . .", -1);
+        assertEquals(3, empty.distinctMoveCodes(1, codes));
+        assertArrayEquals(new int[]{0, 1, 4}, Arrays.copyOf(codes, 3));
+        Position centre = empty.move(1, 1, 1);
+        assertEquals(2, centre.distinctMoveCodes(0, codes));
+        assertArrayEquals(new int[]{0, 1}, Arrays.copyOf(codes, 2));
+        Position target = Position.parsePosition("X . 0\n. X .\n0 . .", 0);
+        assertEquals(target.moveCodes(1, new int[9]) - 2, target.distinctMoveCodes(1, codes));
+    }
+
+    @Test
+    public void testWinnerDiagonals() {
+        assertTrue(Position.parsePosition("X . 0\n. X 0\n. . X", 1).winner().isPresent());
+        assertTrue(Position.parsePosition("X . 0\n. 0 X\n0 . X", 0).winner().isPresent());
+        assertTrue(Position.parsePosition("X X X\n. 0 0\n. . .", 1).winner().isPresent());
+        assertFalse(Position.parsePosition("X 0 X\nX 0 0\n0 X X", 1).winner().isPresent());
     }
 
     @Test
@@ -0,0 +1,121 @@
+package com.phasmidsoftware.dsaipg.projects.mcts.tictactoe;
+
+import com.phasmidsoftware.dsaipg.projects.mcts.core.EngineConfig;
+import com.phasmidsoftware.dsaipg.projects.mcts.core.Move;
+import com.phasmidsoftware.dsaipg.projects.mcts.core.Oracle;
+import com.phasmidsoftware.dsaipg.projects.mcts.core.State;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class SolverTest {
+
+    private final Solver solver = Solver.getInstance();
+    private final TicTacToe game = new TicTacToe(0L);
+
+    @Test
+    public void testSize() {
+        assertEquals(5478, solver.size());
+        Set<Integer> canonical = new HashSet<>();
+        for (Position position : solver.positions()) canonical.add(position.canonicalKey());
+        assertEquals(765, canonical.size());
+    }
+
+    @Test
+    public void testStart() {
+        assertEquals(Oracle.DRAW, solver.value(game.start()));
+        assertEquals(0, solver.score(TicTacToe.startingPosition()));
+    }
+
+    @Test
+    public void testWinInOne() {
+        Position position = Position.parsePosition("X X .\n0 0 .\n. . .", TicTacToe.O);
+        assertEquals(Oracle.WIN, solver.value(position));
+        assertEquals(9, solver.score(position));
+        assertEquals(2, solver.bestMove(position));
+        assertFalse(solver.isMistake(position, 2));
+        // failing to block would lose: but X need not block, since it can win first
+        assertTrue(solver.isMistake(position, 5));
+    }
+
+    @Test
+    public void testBlock() {
+        Position position = Position.parsePosition("X X .\n. 0 .\n. . .", TicTacToe.X);
+        assertEquals(2, solver.bestMove(position));
+        assertTrue(solver.isMistake(position, 8));
+    }
+
+    @Test
+    public void testTerminal() {
+        Position won = Position.parsePosition("X X X\n0 0 .\n. . .", TicTacToe.X);
+        assertEquals(Oracle.LOSS, solver.value(won));
+        assertEquals(-1, solver.bestMove(won));
+        Position drawn = Position.parsePosition("X 0 X\nX 0 0\n0 X X", TicTacToe.X);
+        assertEquals(Oracle.DRAW, solver.value(drawn));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnreachable() {
+        solver.value(Position.parsePosition("X X X\n. . .\n. . .", TicTacToe.X));
+    }
+
+    @Test
+    public void testSymmetry() {
+        for (Position position : solver.positions()) {
+            assertEquals(solver.score(position), solver.score(position.rotate()));
+            assertEquals(solver.score(position), solver.score(position.reflect(0)));
+        }
+    }
+
+    @Test
+    public void testConsistency() {
+        // the score of every position follows from those of its successors
+        for (Position position : solver.positions()) {
+            int move = solver.bestMove(position);
+            if (move < 0) continue;
+            State<TicTacToe> state = game.new TicTacToeState(position);
+            Position next = ((TicTacToe.TicTacToeState) state.next(solver.bestMove(state))).position();
+            assertEquals(-solver.value(next), solver.value(position));
+            assertFalse(solver.isMistake(position, move));
+        }
+    }
+
+    @Test
+    public void testPerfectPlayer() {
+        PerfectPlayer player = new PerfectPlayer();
+        assertEquals(0.0, solver.mistakeRate(player::getMove), 0);
+        State<TicTacToe> state = game.start();
+        while (!state.isTerminal()) state = state.next(player.getMove(state));
+        assertTrue(state.winner().isEmpty());
+    }
+
+    @Test
+    public void testRandomPlayerMakesMistakes() {
+        double rate = solver.mistakeRate(state -> state.chooseMove(state.player()));
+        assertTrue(rate > 0.1);
+    }
+
+    @Test
+    public void testMCTSIsNearlyPerfect() {
+        MCTS mcts = new MCTS(new TicTacToeNode(game.start()), EngineConfig.iterations(1000).withSeed(1));
+        double rate = solver.mistakeRate(mcts::findNextMove);
+        assertTrue("MCTS mistake rate: " + rate, rate < 0.02);
+        MCTS weak = new MCTS(new TicTacToeNode(game.start()), EngineConfig.iterations(10).withSeed(1));
+        assertTrue(solver.mistakeRate(weak::findNextMove) > rate);
+    }
+
+    @Test
+    public void testOracle() {
+        Oracle<TicTacToe> oracle = Solver.solve();
+        State<TicTacToe> state = game.start().next(4);
+        assertEquals(Oracle.DRAW, oracle.value(state));
+        Move<TicTacToe> move = oracle.bestMove(state);
+        assertEquals(TicTacToe.O, move.player());
+        // O must take a corner
+        int[] xy = ((TicTacToe.TicTacToeMove) move).move();
+        assertTrue(xy[0] != 1 && xy[1] != 1);
+    }
+}
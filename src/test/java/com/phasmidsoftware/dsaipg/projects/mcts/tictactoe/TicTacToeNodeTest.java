@@ -97,4 +97,35 @@ public class TicTacToeNodeTest {
         TicTacToeNode child = (TicTacToeNode) root.children().iterator().next();
         assertSame(root, child.getParent());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testSymmetries() {
+        TicTacToeNode root = TicTacToeNode.withSymmetries(new TicTacToe().new TicTacToeState());
+        assertTrue(root.symmetries());
+        root.expandAll();
+        // a corner, an edge and the centre
+        assertEquals(3, root.children().size());
+        for (Node<TicTacToe> c : root.children()) {
+            assertTrue(((TicTacToeNode) c).symmetries());
+            ((TicTacToeNode) c).incrementPlayouts();
+            ((TicTacToeNode) c).addWins(2);
+        }
+        // each merged child is counted once by its parent
+        root.backPropagate();
+        assertEquals(3, root.playouts());
+        assertEquals(6, root.wins());
+        TicTacToeNode centre = null;
+        for (Node<TicTacToe> c : root.children())
+            if (((TicTacToe.TicTacToeState) c.state()).position().equals(Position.parsePosition(". . .\n. X .\n. . .", TicTacToe.X)))
+                centre = (TicTacToeNode) c;
+        assertNotNull(centre);
+        centre.expandAll();
+        // after the centre, a corner or an edge
+        assertEquals(2, centre.children().size());
+        // an ordinary tree merges nothing
+        TicTacToeNode plain = new TicTacToeNode(new TicTacToe().new TicTacToeState());
+        assertFalse(plain.symmetries());
+        plain.expandAll();
+        assertEquals(9, plain.children().size());
+    }
+}
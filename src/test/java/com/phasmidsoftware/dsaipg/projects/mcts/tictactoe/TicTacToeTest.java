@@ -1,12 +1,15 @@
 package com.phasmidsoftware.dsaipg.projects.mcts.tictactoe;
 
+import com.phasmidsoftware.dsaipg.projects.mcts.core.CodedState;
+import com.phasmidsoftware.dsaipg.projects.mcts.core.Move;
 import com.phasmidsoftware.dsaipg.projects.mcts.core.State;
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.Optional;
 
-import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.fail;
+import static org.junit.Assert.*;
 
 public class TicTacToeTest {
 
@@ -22,4 +25,18 @@ public class TicTacToeTest {
         if (winner.isPresent()) assertEquals(Integer.valueOf(TicTacToe.X), winner.get());
         else fail("no winner");
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testMoveCodes() {
+        CodedState<TicTacToe> state = new TicTacToe(0L).start();
+        CodedState<TicTacToe> next = state.next(4);
+        int[] codes = new int[next.maxMoves()];
+        int n = next.moveCodes(next.player(), codes);
+        assertEquals(8, n);
+        assertArrayEquals(new int[]{0, 1, 2, 3, 5, 6, 7, 8}, Arrays.copyOf(codes, n));
+        assertEquals(state.next(state.move(4)).toString(), next.toString());
+        int count = 0;
+        for (Iterator<Move<TicTacToe>> it = next.moveIterator(next.player()); it.hasNext(); it.next()) count++;
+        assertEquals(8, count);
+    }
+}